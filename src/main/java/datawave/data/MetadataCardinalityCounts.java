@@ -12,6 +12,8 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+import datawave.query.util.MetadataStrings;
+
 /**
  * This class can be used to handle the selectivity entries in the metadata table.
  *
@@ -35,7 +37,7 @@ public class MetadataCardinalityCounts implements Serializable {
     
     public MetadataCardinalityCounts(String field, String value, long fieldValueCount, long fieldAllValueCount, long uniqueFieldAllValueCount,
                     long totalAllFieldAllValueCount, long totalUniqueAllFieldAllValueCount, long totalUniqueAllFieldCount) {
-        this.field = field;
+        this.field = MetadataStrings.intern(field);
         this.value = value;
         this.fieldValueCount = fieldValueCount;
         this.fieldAllValueCount = fieldAllValueCount;
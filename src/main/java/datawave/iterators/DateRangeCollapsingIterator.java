@@ -0,0 +1,238 @@
+package datawave.iterators;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+
+/**
+ * Collapses the daily keys of the metadata table, whose column qualifiers are {@code datatype\0yyyyMMdd}, into one key for each run of consecutive days of
+ * the same row, column family and datatype. This lets the field index holes be computed from the date ranges in which each field was seen, rather than from
+ * every daily key.
+ * <p>
+ * The returned keys hold the row, column family and a column qualifier of {@code datatype\0startDate\0endDate}, where both dates are inclusive and formatted
+ * as yyyyMMdd, with an empty visibility and value and the latest timestamp in the run. Keys whose column qualifier does not end with a valid date are skipped.
+ * <p>
+ * With the {@link #SPAN_OPTION} set, the gaps between the days are ignored, and a single key is returned for each row, column family and datatype that spans
+ * from the first day to the last day seen for it.
+ */
+public class DateRangeCollapsingIterator extends WrappingIterator implements OptionDescriber {
+    
+    public static final String SPAN_OPTION = "span";
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final int DATE_LENGTH = 8;
+    private static final long INVALID_DAY = Long.MIN_VALUE;
+    private static final Value EMPTY_VALUE = new Value(new byte[0]);
+    
+    private boolean span;
+    
+    private Range range;
+    private Collection<ByteSequence> columnFamilies;
+    private boolean inclusive;
+    private boolean exhausted;
+    
+    private Key topKey;
+    
+    /**
+     * Return a single date range from the first day to the last day of each datatype, ignoring the gaps between the days.
+     *
+     * @param setting
+     *            the iterator setting
+     * @param span
+     *            whether to ignore the gaps
+     */
+    public static void setSpan(IteratorSetting setting, boolean span) {
+        setting.addOption(SPAN_OPTION, Boolean.toString(span));
+    }
+    
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+        super.init(source, options, env);
+        span = Boolean.parseBoolean(options.get(SPAN_OPTION));
+    }
+    
+    @Override
+    public IteratorOptions describeOptions() {
+        return new IteratorOptions("dateRangeCollapsing", "collapses the consecutive days of each row, column family and datatype into date ranges",
+                        Collections.singletonMap(SPAN_OPTION, "whether to return a single date range from the first to the last day, false if not set"), null);
+    }
+    
+    @Override
+    public boolean validateOptions(Map<String,String> options) {
+        return true;
+    }
+    
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+        DateRangeCollapsingIterator copy = new DateRangeCollapsingIterator();
+        copy.setSource(getSource().deepCopy(env));
+        copy.span = span;
+        return copy;
+    }
+    
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        this.range = range;
+        this.columnFamilies = columnFamilies;
+        this.inclusive = inclusive;
+        this.exhausted = false;
+        
+        // when resuming after a returned date range, skip the rest of the days in it instead of returning the remainder as a new range
+        Key start = range.getStartKey();
+        Key following = (start != null && !range.isStartKeyInclusive()) ? followingDateRange(start) : null;
+        if (following != null) {
+            seekSource(following);
+        } else {
+            super.seek(range, columnFamilies, inclusive);
+        }
+        findTop();
+    }
+    
+    @Override
+    public boolean hasTop() {
+        return topKey != null;
+    }
+    
+    @Override
+    public Key getTopKey() {
+        return topKey;
+    }
+    
+    @Override
+    public Value getTopValue() {
+        return EMPTY_VALUE;
+    }
+    
+    @Override
+    public void next() throws IOException {
+        findTop();
+    }
+    
+    private void findTop() throws IOException {
+        topKey = null;
+        
+        while (topKey == null && sourceHasTop()) {
+            Key key = getSource().getTopKey();
+            ByteSequence cq = key.getColumnQualifierData();
+            int index = MetadataKeys.nullIndex(cq);
+            long day = index == -1 ? INVALID_DAY : parseDay(cq, index + 1);
+            if (day == INVALID_DAY) {
+                getSource().next();
+                continue;
+            }
+            
+            // copy the parts of the key that are needed after the source moves on
+            ByteSequence row = new ArrayByteSequence(key.getRowData().toArray());
+            ByteSequence columnFamily = new ArrayByteSequence(key.getColumnFamilyData().toArray());
+            ByteSequence datatype = new ArrayByteSequence(cq.subSequence(0, index).toArray());
+            long startDay = day;
+            long endDay = day;
+            long timestamp = key.getTimestamp();
+            getSource().next();
+            
+            // extend the date range while the following days are consecutive, or to every day of the datatype when spanning the gaps, allowing for the same
+            // day under several visibilities
+            while (sourceHasTop()) {
+                key = getSource().getTopKey();
+                cq = key.getColumnQualifierData();
+                if (!key.getRowData().equals(row) || !key.getColumnFamilyData().equals(columnFamily) || MetadataKeys.nullIndex(cq) != datatype.length()
+                                || !cq.subSequence(0, datatype.length()).equals(datatype)) {
+                    break;
+                }
+                day = parseDay(cq, datatype.length() + 1);
+                if (!span && day > endDay + 1) {
+                    break;
+                } else if (day != INVALID_DAY) {
+                    endDay = Math.max(endDay, day);
+                    timestamp = Math.max(timestamp, key.getTimestamp());
+                }
+                getSource().next();
+            }
+            
+            topKey = new Key(row.toArray(), columnFamily.toArray(), dateRangeQualifier(datatype, startDay, endDay), MetadataKeys.EMPTY_BYTES, timestamp);
+        }
+    }
+    
+    /**
+     * @return the first key after the days of a date range key returned by this iterator, or null if the key is not a date range key
+     */
+    private static Key followingDateRange(Key key) {
+        ByteSequence cq = key.getColumnQualifierData();
+        int index = MetadataKeys.nullIndex(cq);
+        int endIndex = cq.length() - DATE_LENGTH - 1;
+        if (index == -1 || endIndex <= index || cq.byteAt(endIndex) != 0) {
+            return null;
+        }
+        
+        // datatype\0endDate\0 sorts after every key for the end date, and before the key for the next day
+        byte[] following = new byte[index + DATE_LENGTH + 2];
+        System.arraycopy(cq.toArray(), 0, following, 0, index + 1);
+        System.arraycopy(cq.toArray(), endIndex + 1, following, index + 1, DATE_LENGTH);
+        return new Key(key.getRowData().toArray(), key.getColumnFamilyData().toArray(), following, MetadataKeys.EMPTY_BYTES, Long.MAX_VALUE);
+    }
+    
+    private static byte[] dateRangeQualifier(ByteSequence datatype, long startDay, long endDay) {
+        byte[] qualifier = Arrays.copyOf(datatype.toArray(), datatype.length() + 2 * (DATE_LENGTH + 1));
+        int offset = datatype.length() + 1;
+        System.arraycopy(formatDay(startDay), 0, qualifier, offset, DATE_LENGTH);
+        offset += DATE_LENGTH + 1;
+        System.arraycopy(formatDay(endDay), 0, qualifier, offset, DATE_LENGTH);
+        return qualifier;
+    }
+    
+    private static byte[] formatDay(long day) {
+        return LocalDate.ofEpochDay(day).format(DATE_FORMAT).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * @return the epoch day of the yyyyMMdd date at the offset, which must run to the end of the column qualifier, or {@link #INVALID_DAY} if there is no
+     *         valid date there
+     */
+    private static long parseDay(ByteSequence cq, int offset) {
+        if (cq.length() - offset != DATE_LENGTH) {
+            return INVALID_DAY;
+        }
+        int date = 0;
+        for (int i = offset; i < cq.length(); i++) {
+            int digit = cq.byteAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_DAY;
+            }
+            date = date * 10 + digit;
+        }
+        try {
+            return LocalDate.of(date / 10000, date / 100 % 100, date % 100).toEpochDay();
+        } catch (DateTimeException e) {
+            return INVALID_DAY;
+        }
+    }
+    
+    private boolean sourceHasTop() {
+        return !exhausted && getSource().hasTop();
+    }
+    
+    private void seekSource(Key start) throws IOException {
+        if (range.afterEndKey(start)) {
+            exhausted = true;
+        } else {
+            getSource().seek(new Range(start, true, range.getEndKey(), range.isEndKeyInclusive()), columnFamilies, inclusive);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package datawave.iterators;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.hadoop.io.Text;
+
+import datawave.util.StringUtils;
+
+/**
+ * Returns a single key for each distinct row, column family and datatype in the configured column families of the metadata table, and seeks past the rest of
+ * the keys for that datatype. The datatype is the part of the column qualifier up to the first null byte, or the whole column qualifier if it has none. The
+ * returned key holds only the row, column family, datatype, and the timestamp of the first key seen for it, with an empty visibility and value. Keys in other
+ * column families are returned unchanged.
+ * <p>
+ * This is meant for loads that only need to know which fields are present for each datatype, such as the field lists in the metadata table.
+ */
+public class DistinctDatatypeIterator extends WrappingIterator implements OptionDescriber {
+    
+    public static final String COLUMNS_OPTION = "columns";
+    
+    // the number of times to call next() looking for the next datatype before seeking to it instead
+    private static final int NEXTS_BEFORE_SEEK = 10;
+    private static final Value EMPTY_VALUE = new Value(new byte[0]);
+    
+    private Set<ByteSequence> distinctColumns = new HashSet<>();
+    private Range range;
+    private Collection<ByteSequence> columnFamilies;
+    private boolean inclusive;
+    private boolean exhausted;
+    private Key topKey;
+    
+    /**
+     * Set the column families for which only the distinct row and datatype keys are returned.
+     *
+     * @param setting
+     *            the iterator setting
+     * @param columns
+     *            the column families
+     */
+    public static void setColumns(IteratorSetting setting, Collection<Text> columns) {
+        setting.addOption(COLUMNS_OPTION, columns.stream().map(Text::toString).collect(Collectors.joining(",")));
+    }
+    
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+        super.init(source, options, env);
+        if (!validateOptions(options)) {
+            throw new IllegalArgumentException("The " + COLUMNS_OPTION + " option is required by DistinctDatatypeIterator");
+        }
+        for (String column : StringUtils.split(options.get(COLUMNS_OPTION), ',')) {
+            distinctColumns.add(new ArrayByteSequence(column));
+        }
+    }
+    
+    @Override
+    public IteratorOptions describeOptions() {
+        return new IteratorOptions("distinctDatatype", "returns one key per distinct row, column family and datatype",
+                        Collections.singletonMap(COLUMNS_OPTION, "comma separated column families to return distinct datatypes for"), null);
+    }
+    
+    @Override
+    public boolean validateOptions(Map<String,String> options) {
+        String columns = options.get(COLUMNS_OPTION);
+        return columns != null && !columns.isEmpty();
+    }
+    
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+        DistinctDatatypeIterator copy = new DistinctDatatypeIterator();
+        copy.setSource(getSource().deepCopy(env));
+        copy.distinctColumns = distinctColumns;
+        return copy;
+    }
+    
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        this.range = range;
+        this.columnFamilies = columnFamilies;
+        this.inclusive = inclusive;
+        this.exhausted = false;
+        this.topKey = null;
+        
+        // when resuming after a key that was returned, skip the rest of its datatype instead of returning the same distinct key again
+        Key start = range.getStartKey();
+        if (start != null && !range.isStartKeyInclusive() && isDistinct(start)) {
+            Key following = MetadataKeys.followingDatatype(start.getRowData(), start.getColumnFamilyData(), MetadataKeys.datatype(start));
+            if (range.afterEndKey(following)) {
+                exhausted = true;
+                return;
+            }
+            range = new Range(following, true, range.getEndKey(), range.isEndKeyInclusive());
+        }
+        super.seek(range, columnFamilies, inclusive);
+    }
+    
+    @Override
+    public boolean hasTop() {
+        return !exhausted && super.hasTop();
+    }
+    
+    @Override
+    public Key getTopKey() {
+        if (topKey == null) {
+            Key key = super.getTopKey();
+            if (isDistinct(key)) {
+                topKey = new Key(key.getRowData().toArray(), key.getColumnFamilyData().toArray(), MetadataKeys.datatype(key).toArray(),
+                                MetadataKeys.EMPTY_BYTES, key.getTimestamp());
+            } else {
+                topKey = key;
+            }
+        }
+        return topKey;
+    }
+    
+    @Override
+    public Value getTopValue() {
+        return isDistinct(super.getTopKey()) ? EMPTY_VALUE : super.getTopValue();
+    }
+    
+    @Override
+    public void next() throws IOException {
+        topKey = null;
+        Key key = super.getTopKey();
+        if (!isDistinct(key)) {
+            super.next();
+            return;
+        }
+        
+        // copy the parts of the key that are needed after the source moves on
+        ByteSequence row = new ArrayByteSequence(key.getRowData().toArray());
+        ByteSequence columnFamily = new ArrayByteSequence(key.getColumnFamilyData().toArray());
+        ByteSequence datatype = new ArrayByteSequence(MetadataKeys.datatype(key).toArray());
+        
+        // the next datatype is usually close by, so try a few next() calls before paying for a seek
+        for (int i = 0; i < NEXTS_BEFORE_SEEK; i++) {
+            super.next();
+            if (!super.hasTop() || !isSameDatatype(super.getTopKey(), row, columnFamily, datatype)) {
+                return;
+            }
+        }
+        
+        Key next = MetadataKeys.followingDatatype(row, columnFamily, datatype);
+        if (range.afterEndKey(next)) {
+            exhausted = true;
+            return;
+        }
+        super.seek(new Range(next, true, range.getEndKey(), range.isEndKeyInclusive()), columnFamilies, inclusive);
+    }
+    
+    private boolean isDistinct(Key key) {
+        return distinctColumns.contains(key.getColumnFamilyData());
+    }
+    
+    private static boolean isSameDatatype(Key key, ByteSequence row, ByteSequence columnFamily, ByteSequence datatype) {
+        return key.getRowData().equals(row) && key.getColumnFamilyData().equals(columnFamily) && MetadataKeys.datatype(key).equals(datatype);
+    }
+}
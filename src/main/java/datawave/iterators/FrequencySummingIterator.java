@@ -0,0 +1,230 @@
+package datawave.iterators;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.ValueFormatException;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+
+import datawave.data.ColumnFamilyConstants;
+import datawave.util.StringUtils;
+
+/**
+ * Sums the frequency counts in the {@link ColumnFamilyConstants#COLF_F} column of the metadata table on the tablet server, returning a single key per field
+ * and datatype instead of one per day. The column qualifiers, {@code datatype\0yyyyMMdd}, are compared as raw bytes against the inclusive begin and end dates
+ * and the optional datatypes, and the dates before the begin date and after the end date of each datatype are seeked past.
+ * <p>
+ * The returned keys hold the row, the f column family, the datatype as the column qualifier, and the latest timestamp of the summed entries. The value is the
+ * sum, encoded with {@link SummingCombiner#VAR_LEN_ENCODER}. A field and datatype without any counts in the date range is not returned.
+ */
+public class FrequencySummingIterator extends WrappingIterator implements OptionDescriber {
+    
+    public static final String BEGIN_DATE_OPTION = "begin";
+    public static final String END_DATE_OPTION = "end";
+    public static final String DATATYPES_OPTION = "datatypes";
+    
+    private static final ByteSequence COLF_F = new ArrayByteSequence(ColumnFamilyConstants.COLF_F.toString());
+    
+    private ByteSequence beginDate;
+    private ByteSequence endDate;
+    private Set<ByteSequence> datatypes;
+    
+    private Range range;
+    private Collection<ByteSequence> columnFamilies;
+    private boolean inclusive;
+    private boolean exhausted;
+    
+    private Key topKey;
+    private Value topValue;
+    
+    /**
+     * Configure the date range and datatypes to sum.
+     *
+     * @param setting
+     *            the iterator setting
+     * @param beginDate
+     *            the first day to include, as yyyyMMdd
+     * @param endDate
+     *            the last day to include, as yyyyMMdd
+     * @param datatypes
+     *            the datatypes to include, or null for all of them
+     */
+    public static void configure(IteratorSetting setting, String beginDate, String endDate, Collection<String> datatypes) {
+        setting.addOption(BEGIN_DATE_OPTION, beginDate);
+        setting.addOption(END_DATE_OPTION, endDate);
+        if (datatypes != null) {
+            setting.addOption(DATATYPES_OPTION, String.join(",", datatypes));
+        }
+    }
+    
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+        super.init(source, options, env);
+        if (!validateOptions(options)) {
+            throw new IllegalArgumentException("The " + BEGIN_DATE_OPTION + " and " + END_DATE_OPTION + " options are required by FrequencySummingIterator");
+        }
+        beginDate = new ArrayByteSequence(options.get(BEGIN_DATE_OPTION));
+        endDate = new ArrayByteSequence(options.get(END_DATE_OPTION));
+        if (options.containsKey(DATATYPES_OPTION)) {
+            datatypes = new HashSet<>();
+            for (String datatype : StringUtils.split(options.get(DATATYPES_OPTION), ',')) {
+                datatypes.add(new ArrayByteSequence(datatype));
+            }
+        }
+    }
+    
+    @Override
+    public IteratorOptions describeOptions() {
+        Map<String,String> options = new HashMap<>();
+        options.put(BEGIN_DATE_OPTION, "the first day to include, as yyyyMMdd");
+        options.put(END_DATE_OPTION, "the last day to include, as yyyyMMdd");
+        options.put(DATATYPES_OPTION, "comma separated datatypes to include, all datatypes if not set");
+        return new IteratorOptions("frequencySumming", "sums the frequency counts of each field and datatype within a date range", options, null);
+    }
+    
+    @Override
+    public boolean validateOptions(Map<String,String> options) {
+        return options.get(BEGIN_DATE_OPTION) != null && options.get(END_DATE_OPTION) != null;
+    }
+    
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+        FrequencySummingIterator copy = new FrequencySummingIterator();
+        copy.setSource(getSource().deepCopy(env));
+        copy.beginDate = beginDate;
+        copy.endDate = endDate;
+        copy.datatypes = datatypes;
+        return copy;
+    }
+    
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        this.range = range;
+        this.columnFamilies = columnFamilies;
+        this.inclusive = inclusive;
+        this.exhausted = false;
+        
+        // when resuming after a returned sum, skip the rest of its datatype instead of summing the remainder again
+        Key start = range.getStartKey();
+        if (start != null && !range.isStartKeyInclusive() && COLF_F.equals(start.getColumnFamilyData())) {
+            seekSource(MetadataKeys.followingDatatype(start.getRowData(), start.getColumnFamilyData(), MetadataKeys.datatype(start)));
+        } else {
+            super.seek(range, columnFamilies, inclusive);
+        }
+        findTop();
+    }
+    
+    @Override
+    public boolean hasTop() {
+        return topKey != null;
+    }
+    
+    @Override
+    public Key getTopKey() {
+        return topKey;
+    }
+    
+    @Override
+    public Value getTopValue() {
+        return topValue;
+    }
+    
+    @Override
+    public void next() throws IOException {
+        findTop();
+    }
+    
+    private void findTop() throws IOException {
+        topKey = null;
+        topValue = null;
+        
+        while (topKey == null && sourceHasTop()) {
+            Key key = getSource().getTopKey();
+            // skip the keys of other columns, and any f key without a date in its column qualifier
+            if (!COLF_F.equals(key.getColumnFamilyData()) || MetadataKeys.nullIndex(key.getColumnQualifierData()) == -1) {
+                getSource().next();
+                continue;
+            }
+            
+            ByteSequence row = new ArrayByteSequence(key.getRowData().toArray());
+            ByteSequence datatype = new ArrayByteSequence(MetadataKeys.datatype(key).toArray());
+            if (datatypes != null && !datatypes.contains(datatype)) {
+                seekSource(MetadataKeys.followingDatatype(row, COLF_F, datatype));
+                continue;
+            }
+            
+            sumDatatype(row, datatype);
+        }
+    }
+    
+    /**
+     * Sum the counts of the datatype in the row, starting from the current source key, and leave the source after the datatype.
+     */
+    private void sumDatatype(ByteSequence row, ByteSequence datatype) throws IOException {
+        long sum = 0;
+        long timestamp = -1;
+        
+        while (sourceHasTop()) {
+            Key key = getSource().getTopKey();
+            ByteSequence cq = key.getColumnQualifierData();
+            int index = MetadataKeys.nullIndex(cq);
+            if (!key.getRowData().equals(row) || !COLF_F.equals(key.getColumnFamilyData()) || index != datatype.length()
+                            || !cq.subSequence(0, index).equals(datatype)) {
+                break;
+            }
+            
+            ByteSequence date = cq.subSequence(index + 1, cq.length());
+            if (date.compareTo(beginDate) < 0) {
+                // jump to the first day in the date range
+                byte[] begin = new byte[index + 1 + beginDate.length()];
+                System.arraycopy(cq.toArray(), 0, begin, 0, index + 1);
+                System.arraycopy(beginDate.toArray(), 0, begin, index + 1, beginDate.length());
+                seekSource(new Key(row.toArray(), COLF_F.toArray(), begin, MetadataKeys.EMPTY_BYTES, Long.MAX_VALUE));
+                continue;
+            } else if (date.compareTo(endDate) > 0) {
+                // the rest of the days for this datatype are after the date range
+                seekSource(MetadataKeys.followingDatatype(row, COLF_F, datatype));
+                break;
+            }
+            
+            try {
+                sum += SummingCombiner.VAR_LEN_ENCODER.decode(getSource().getTopValue().get());
+                timestamp = Math.max(timestamp, key.getTimestamp());
+            } catch (ValueFormatException e) {
+                // skip counts that cannot be decoded, as the client did before summing moved to the server
+            }
+            getSource().next();
+        }
+        
+        if (timestamp != -1) {
+            topKey = new Key(row.toArray(), COLF_F.toArray(), datatype.toArray(), MetadataKeys.EMPTY_BYTES, timestamp);
+            topValue = new Value(SummingCombiner.VAR_LEN_ENCODER.encode(sum));
+        }
+    }
+    
+    private boolean sourceHasTop() {
+        return !exhausted && getSource().hasTop();
+    }
+    
+    private void seekSource(Key start) throws IOException {
+        if (range.afterEndKey(start)) {
+            exhausted = true;
+        } else {
+            getSource().seek(new Range(start, true, range.getEndKey(), range.isEndKeyInclusive()), columnFamilies, inclusive);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package datawave.iterators;
+
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * Byte-level helpers for the column qualifiers of the metadata table, which start with the datatype followed by a null byte and, for some column families,
+ * more information such as a date.
+ */
+final class MetadataKeys {
+    
+    static final byte[] EMPTY_BYTES = new byte[0];
+    
+    private MetadataKeys() {}
+    
+    /**
+     * @return the position of the first null byte in the column qualifier, or -1 if there is none
+     */
+    static int nullIndex(ByteSequence cq) {
+        for (int i = 0; i < cq.length(); i++) {
+            if (cq.byteAt(i) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @return the part of the column qualifier up to the first null byte, or the whole column qualifier if it has none
+     */
+    static ByteSequence datatype(Key key) {
+        ByteSequence cq = key.getColumnQualifierData();
+        int index = nullIndex(cq);
+        return index == -1 ? cq : cq.subSequence(0, index);
+    }
+    
+    /**
+     * The first key after every key for the datatype, i.e. with a column qualifier after the datatype and every qualifier that starts with the datatype and a
+     * null byte.
+     */
+    static Key followingDatatype(ByteSequence row, ByteSequence columnFamily, ByteSequence datatype) {
+        byte[] following = Arrays.copyOf(datatype.toArray(), datatype.length() + 1);
+        following[datatype.length()] = 1;
+        return new Key(row.toArray(), columnFamily.toArray(), following, EMPTY_BYTES, Long.MAX_VALUE);
+    }
+}
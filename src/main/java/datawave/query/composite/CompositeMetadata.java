@@ -7,11 +7,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 
+import datawave.query.util.MetadataStrings;
 import datawave.util.DateSchema;
 import datawave.util.StringMultimapSchema;
 import io.protostuff.Input;
@@ -50,6 +52,10 @@ public class CompositeMetadata implements Message<CompositeMetadata> {
     }
     
     public void setCompositeFieldMappingByType(String ingestType, String compositeField, Collection<String> componentFields) {
+        ingestType = MetadataStrings.intern(ingestType);
+        compositeField = MetadataStrings.intern(compositeField);
+        componentFields = componentFields.stream().map(MetadataStrings::intern).collect(Collectors.toList());
+        
         Multimap<String,String> compositeFieldMap;
         if (!compositeFieldMapByType.containsKey(ingestType)) {
             compositeFieldMap = ArrayListMultimap.create();
@@ -73,6 +79,9 @@ public class CompositeMetadata implements Message<CompositeMetadata> {
     }
     
     public void addCompositeTransitionDateByType(String ingestType, String compositeFieldName, Date transitionDate) {
+        ingestType = MetadataStrings.intern(ingestType);
+        compositeFieldName = MetadataStrings.intern(compositeFieldName);
+        
         Map<String,Date> compositeTransitionDateMap;
         if (!compositeTransitionDatesByType.containsKey(ingestType)) {
             compositeTransitionDateMap = new HashMap<>();
@@ -92,6 +101,18 @@ public class CompositeMetadata implements Message<CompositeMetadata> {
         this.compositeFieldSeparatorsByType = compositeFieldSeparatorsByType;
     }
     
+    private void setCompositeFieldMapByTypeInternal(Map<String,Multimap<String,String>> compositeFieldMapByType) {
+        this.compositeFieldMapByType = new HashMap<>();
+        compositeFieldMapByType.forEach((ingestType, v) -> v.asMap()
+                        .forEach((compositeField, componentFields) -> setCompositeFieldMappingByType(ingestType, compositeField, componentFields)));
+    }
+    
+    private void setCompositeTransitionDatesByTypeInternal(Map<String,Map<String,Date>> compositeTransitionDatesByType) {
+        this.compositeTransitionDatesByType = new HashMap<>();
+        compositeTransitionDatesByType.forEach(
+                        (ingestType, v) -> v.forEach((compositeField, date) -> addCompositeTransitionDateByType(ingestType, compositeField, date)));
+    }
+    
     private void setCompositeFieldSeparatorsByTypeInternal(Map<String,Multimap<String,String>> compositeFieldSeparatorsByType) {
         this.compositeFieldSeparatorsByType = new HashMap<>();
         compositeFieldSeparatorsByType.forEach(
@@ -99,6 +120,9 @@ public class CompositeMetadata implements Message<CompositeMetadata> {
     }
     
     public void addCompositeFieldSeparatorByType(String ingestType, String compositeFieldName, String separator) {
+        ingestType = MetadataStrings.intern(ingestType);
+        compositeFieldName = MetadataStrings.intern(compositeFieldName);
+        
         Map<String,String> compositeFieldSeparatorMap;
         if (!compositeFieldSeparatorsByType.containsKey(ingestType)) {
             compositeFieldSeparatorMap = new HashMap<>();
@@ -124,6 +148,38 @@ public class CompositeMetadata implements Message<CompositeMetadata> {
         return filter(ingestTypes, componentFields);
     }
     
+    /**
+     * Get the composite metadata of the ingest types in the filter. This composite metadata is returned when the filter allows every ingest type.
+     *
+     * @param ingestTypeFilter
+     *            the ingest types to include, null or empty for all ingest types
+     * @return the composite metadata of the ingest types
+     */
+    public CompositeMetadata filterIngestTypes(Set<String> ingestTypeFilter) {
+        if (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) {
+            return this;
+        }
+        CompositeMetadata compositeMetadata = new CompositeMetadata();
+        this.compositeFieldMapByType.forEach((ingestType, fieldMap) -> {
+            if (ingestTypeFilter.contains(ingestType)) {
+                for (String compositeField : fieldMap.keySet()) {
+                    compositeMetadata.setCompositeFieldMappingByType(ingestType, compositeField, fieldMap.get(compositeField));
+                }
+            }
+        });
+        this.compositeTransitionDatesByType.forEach((ingestType, dateMap) -> {
+            if (ingestTypeFilter.contains(ingestType)) {
+                dateMap.forEach((compositeField, date) -> compositeMetadata.addCompositeTransitionDateByType(ingestType, compositeField, date));
+            }
+        });
+        this.compositeFieldSeparatorsByType.forEach((ingestType, separatorMap) -> {
+            if (ingestTypeFilter.contains(ingestType)) {
+                separatorMap.forEach((compositeField, separator) -> compositeMetadata.addCompositeFieldSeparatorByType(ingestType, compositeField, separator));
+            }
+        });
+        return compositeMetadata;
+    }
+    
     public CompositeMetadata filter(Set<String> ingestTypes, Set<String> componentFields) {
         if (!isEmpty()) {
             CompositeMetadata compositeMetadata = new CompositeMetadata();
@@ -247,10 +303,10 @@ public class CompositeMetadata implements Message<CompositeMetadata> {
                     case 0:
                         return;
                     case 1:
-                        compositeMetadata.setCompositeFieldMapByType(input.mergeObject(null, compositeFieldMappingByTypeSchema));
+                        compositeMetadata.setCompositeFieldMapByTypeInternal(input.mergeObject(null, compositeFieldMappingByTypeSchema));
                         break;
                     case 2:
-                        compositeMetadata.setCompositeTransitionDatesByType(input.mergeObject(null, compositeTransitionDateByTypeSchema));
+                        compositeMetadata.setCompositeTransitionDatesByTypeInternal(input.mergeObject(null, compositeTransitionDateByTypeSchema));
                         break;
                     case 3:
                         compositeMetadata.setCompositeFieldSeparatorsByTypeInternal(input.mergeObject(null, compositeFieldSeparatorsByTypeSchema));
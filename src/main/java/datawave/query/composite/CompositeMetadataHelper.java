@@ -26,6 +26,9 @@ import org.springframework.stereotype.Component;
 import com.google.common.base.Preconditions;
 
 import datawave.data.ColumnFamilyConstants;
+import datawave.query.util.MetadataKeyParser;
+import datawave.query.util.MetadataSnapshotHelper;
+import datawave.query.util.StringPool;
 import datawave.security.util.ScannerHelper;
 
 @EnableCaching
@@ -43,6 +46,7 @@ public class CompositeMetadataHelper {
     protected final AccumuloClient accumuloClient;
     protected final String metadataTableName;
     protected final Set<Authorizations> auths;
+    protected final MetadataSnapshotHelper metadataSnapshotHelper;
     
     /**
      * Initializes the instance with a provided update interval.
@@ -55,6 +59,23 @@ public class CompositeMetadataHelper {
      *            Any {@link Authorizations} to use
      */
     public CompositeMetadataHelper(AccumuloClient client, String metadataTableName, Set<Authorizations> auths) {
+        this(client, metadataTableName, auths, null);
+    }
+    
+    /**
+     * Initializes the instance with an optional {@link MetadataSnapshotHelper}. When supplied, composite metadata is served from the shared metadata snapshot
+     * instead of a separate scan.
+     *
+     * @param client
+     *            A client connection to Accumulo
+     * @param metadataTableName
+     *            The name of the DatawaveMetadata table
+     * @param auths
+     *            Any {@link Authorizations} to use
+     * @param metadataSnapshotHelper
+     *            the snapshot helper for the same auths and table, may be null
+     */
+    public CompositeMetadataHelper(AccumuloClient client, String metadataTableName, Set<Authorizations> auths, MetadataSnapshotHelper metadataSnapshotHelper) {
         Preconditions.checkNotNull(client, "A valid AccumuloClient is required by CompositeMetadataHelper");
         this.accumuloClient = client;
         
@@ -64,6 +85,8 @@ public class CompositeMetadataHelper {
         Preconditions.checkNotNull(auths, "Accumulo scan Authorizations are required by CompositeMetadataHelper");
         this.auths = auths;
         
+        this.metadataSnapshotHelper = metadataSnapshotHelper;
+        
         if (log.isTraceEnabled()) {
             log.trace("Constructor  connector: " + accumuloClient.getClass().getCanonicalName() + " with auths: " + auths + " and metadata table name: "
                             + metadataTableName);
@@ -78,16 +101,35 @@ public class CompositeMetadataHelper {
         return metadataTableName;
     }
     
-    @Cacheable(value = "getCompositeMetadata", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getCompositeMetadata", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public CompositeMetadata getCompositeMetadata() throws TableNotFoundException {
         log.debug("cache fault for getCompositeMetadata(" + this.auths + "," + this.metadataTableName + ")");
-        return this.getCompositeMetadata(null);
+        if (metadataSnapshotHelper != null && metadataSnapshotHelper.covers(metadataTableName, auths)) {
+            return MetadataSnapshotHelper.getCurrentMetadataSnapshot(metadataSnapshotHelper).getCompositeMetadata(null);
+        }
+        return loadCompositeMetadata();
     }
     
+    /**
+     * Get the composite metadata of the datatypes in the filter, which is cached for each filter.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return the composite metadata of the datatypes
+     * @throws TableNotFoundException
+     */
     @Cacheable(value = "getCompositeMetadata", key = "{#root.target.auths,#root.target.metadataTableName,#datatypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
+                    cacheManager = "metadataHelperCacheManager", sync = true)
     public CompositeMetadata getCompositeMetadata(Set<String> datatypeFilter) throws TableNotFoundException {
         log.debug("cache fault for getCompositeMetadata(" + this.auths + "," + this.metadataTableName + "," + datatypeFilter + ")");
+        if (metadataSnapshotHelper != null && metadataSnapshotHelper.covers(metadataTableName, auths)) {
+            return MetadataSnapshotHelper.getCurrentMetadataSnapshot(metadataSnapshotHelper).getCompositeMetadata(datatypeFilter);
+        }
+        return loadCompositeMetadata().filterIngestTypes(datatypeFilter);
+    }
+    
+    private CompositeMetadata loadCompositeMetadata() throws TableNotFoundException {
         CompositeMetadata compositeMetadata = new CompositeMetadata();
         
         SimpleDateFormat dateFormat = new SimpleDateFormat(transitionDateFormat);
@@ -103,55 +145,34 @@ public class CompositeMetadataHelper {
             bs.fetchColumnFamily(colf);
         }
         
+        MetadataKeyParser parser = new MetadataKeyParser();
         for (Entry<Key,Value> entry : bs) {
-            Text colFam = entry.getKey().getColumnFamily();
+            parser.parse(entry.getKey());
+            String type = parser.getDatatype(); // this is the datatype
             
-            String colq = entry.getKey().getColumnQualifier().toString();
-            int idx = colq.indexOf(NULL_BYTE);
-            String type = colq.substring(0, idx); // this is the datatype
+            if (!parser.hasSeparator()) {
+                log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey());
+                continue;
+            }
             
-            if (datatypeFilter == null || datatypeFilter.isEmpty() || datatypeFilter.contains(type)) {
-                String fieldName = entry.getKey().getRow().toString();
-                if (colFam.equals(ColumnFamilyConstants.COLF_CITD)) {
-                    if (null != entry.getKey().getColumnQualifier()) {
-                        if (idx != -1) {
-                            try {
-                                Date transitionDate = dateFormat.parse(colq.substring(idx + 1));
-                                compositeMetadata.addCompositeTransitionDateByType(type, fieldName, transitionDate);
-                            } catch (ParseException e) {
-                                log.trace("Unable to parse composite field transition date", e);
-                            }
-                        } else {
-                            log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey());
-                        }
-                    } else {
-                        log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey());
-                    }
-                } else if (colFam.equals(ColumnFamilyConstants.COLF_CI)) {
-                    // Get the column qualifier from the key. It contains the datatype
-                    // and composite name,idx
-                    if (null != entry.getKey().getColumnQualifier()) {
-                        if (idx != -1) {
-                            String[] componentFields = colq.substring(idx + 1).split(",");
-                            compositeMetadata.setCompositeFieldMappingByType(type, fieldName, Arrays.asList(componentFields));
-                        } else {
-                            log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey());
-                        }
-                    } else {
-                        log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey());
-                    }
-                } else if (colFam.equals(ColumnFamilyConstants.COLF_CISEP)) {
-                    if (null != entry.getKey().getColumnQualifier()) {
-                        if (idx != -1) {
-                            String separator = colq.substring(idx + 1);
-                            compositeMetadata.addCompositeFieldSeparatorByType(type, fieldName, separator);
-                        } else {
-                            log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey().toString());
-                        }
-                    } else {
-                        log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey().toString());
-                    }
+            String fieldName = parser.getFieldName();
+            if (parser.isColumnFamily(ColumnFamilyConstants.COLF_CITD)) {
+                try {
+                    Date transitionDate = dateFormat.parse(parser.getSuffix());
+                    compositeMetadata.addCompositeTransitionDateByType(type, fieldName, transitionDate);
+                } catch (ParseException e) {
+                    log.trace("Unable to parse composite field transition date", e);
+                }
+            } else if (parser.isColumnFamily(ColumnFamilyConstants.COLF_CI)) {
+                // the column qualifier contains the datatype and the comma separated component fields
+                String[] componentFields = parser.getSuffix().split(",");
+                StringPool pool = parser.getPool();
+                for (int i = 0; i < componentFields.length; i++) {
+                    componentFields[i] = pool.intern(componentFields[i]);
                 }
+                compositeMetadata.setCompositeFieldMappingByType(type, fieldName, Arrays.asList(componentFields));
+            } else if (parser.isColumnFamily(ColumnFamilyConstants.COLF_CISEP)) {
+                compositeMetadata.addCompositeFieldSeparatorByType(type, fieldName, parser.getSuffix());
             }
         }
         
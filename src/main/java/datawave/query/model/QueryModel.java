@@ -20,6 +20,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
+import datawave.query.util.MetadataStrings;
 import datawave.util.StringUtils;
 
 public class QueryModel implements Serializable {
@@ -61,11 +62,11 @@ public class QueryModel implements Serializable {
     }
     
     public void addTermToModel(String alias, String nameOnDisk) {
-        forwardQueryMapping.put(alias, nameOnDisk);
+        forwardQueryMapping.put(MetadataStrings.intern(alias), MetadataStrings.intern(nameOnDisk));
     }
     
     public void addTermToReverseModel(String nameOnDisk, String alias) {
-        reverseQueryMapping.put(nameOnDisk, alias);
+        reverseQueryMapping.put(MetadataStrings.intern(nameOnDisk), MetadataStrings.intern(alias));
     }
     
     public Collection<String> getMappingsForAlias(String field) {
@@ -77,11 +78,11 @@ public class QueryModel implements Serializable {
     }
     
     public void setModelFieldAttributes(String modelField, Collection<String> attributes) {
-        this.modelFieldAttributes.putAll(modelField, attributes);
+        attributes.forEach(attribute -> setModelFieldAttribute(modelField, attribute));
     }
     
     public void setModelFieldAttribute(String modelField, String attribute) {
-        this.modelFieldAttributes.put(modelField, attribute);
+        this.modelFieldAttributes.put(MetadataStrings.intern(modelField), MetadataStrings.intern(attribute));
     }
     
     public Collection<String> getModelFieldAttributes(String modelField) {
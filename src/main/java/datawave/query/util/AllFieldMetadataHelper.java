@@ -4,8 +4,9 @@ import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.charset.CharacterCodingException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
@@ -23,13 +24,17 @@ import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.FirstEntryInRowIterator;
+import org.apache.accumulo.core.iterators.ValueFormatException;
 import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.io.Text;
@@ -43,7 +48,6 @@ import org.springframework.stereotype.Component;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -51,9 +55,13 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 
 import datawave.data.ColumnFamilyConstants;
 import datawave.data.type.Type;
+import datawave.iterators.DateRangeCollapsingIterator;
+import datawave.iterators.DistinctDatatypeIterator;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.composite.CompositeMetadataHelper;
 import datawave.query.model.FieldIndexHole;
@@ -69,6 +77,10 @@ public class AllFieldMetadataHelper {
     
     public static final String NULL_BYTE = "\0";
     
+    // the false positive probability of the field name filter, and the number of field names it is sized for at least
+    public static final double FIELD_NAME_FILTER_FPP = 0.01;
+    private static final int FIELD_NAME_FILTER_MIN_SIZE = 1000;
+    
     protected static final Function<MetadataEntry,String> toFieldName = new MetadataEntryToFieldName(), toDatatype = new MetadataEntryToDatatype();
     
     protected final Metadata metadata = new Metadata();
@@ -78,6 +90,7 @@ public class AllFieldMetadataHelper {
     protected final List<Text> metadataTypeColfs = Arrays.asList(ColumnFamilyConstants.COLF_T);
     protected final List<Text> metadataCompositeIndexColfs = Arrays.asList(ColumnFamilyConstants.COLF_CI);
     
+    
     protected final AccumuloClient accumuloClient;
     protected final String metadataTableName;
     protected final Set<Authorizations> auths;
@@ -85,6 +98,9 @@ public class AllFieldMetadataHelper {
     
     protected final TypeMetadataHelper typeMetadataHelper;
     protected final CompositeMetadataHelper compositeMetadataHelper;
+    protected final MetadataSnapshotHelper metadataSnapshotHelper;
+    
+    private volatile FieldsToDatatypesViews fieldsToDatatypesViews;
     
     /**
      * Initializes the instance with a provided update interval.
@@ -98,12 +114,32 @@ public class AllFieldMetadataHelper {
      */
     public AllFieldMetadataHelper(TypeMetadataHelper typeMetadataHelper, CompositeMetadataHelper compositeMetadataHelper, AccumuloClient client,
                     String metadataTableName, Set<Authorizations> auths, Set<Authorizations> fullUserAuths) {
+        this(typeMetadataHelper, compositeMetadataHelper, new MetadataSnapshotHelper(client, metadataTableName, auths), client, metadataTableName, auths,
+                        fullUserAuths);
+    }
+    
+    /**
+     * Initializes the instance with a {@link MetadataSnapshotHelper} that is shared with the other helpers for the same auths.
+     *
+     * @param client
+     *            A client connection to Accumulo
+     * @param metadataTableName
+     *            The name of the DatawaveMetadata table
+     * @param auths
+     *            Any {@link Authorizations} to use
+     */
+    public AllFieldMetadataHelper(TypeMetadataHelper typeMetadataHelper, CompositeMetadataHelper compositeMetadataHelper,
+                    MetadataSnapshotHelper metadataSnapshotHelper, AccumuloClient client, String metadataTableName, Set<Authorizations> auths,
+                    Set<Authorizations> fullUserAuths) {
         Preconditions.checkNotNull(typeMetadataHelper, "A TypeMetadataHelper is required by AllFieldMetadataHelper");
         this.typeMetadataHelper = typeMetadataHelper;
         
         Preconditions.checkNotNull(compositeMetadataHelper, "A CompositeMetadataHelper is required by AllFieldMetadataHelper");
         this.compositeMetadataHelper = compositeMetadataHelper;
         
+        Preconditions.checkNotNull(metadataSnapshotHelper, "A MetadataSnapshotHelper is required by AllFieldMetadataHelper");
+        this.metadataSnapshotHelper = metadataSnapshotHelper;
+        
         Preconditions.checkNotNull(client, "A valid AccumuloClient is required by AllFieldMetadataHelper");
         this.accumuloClient = client;
         
@@ -158,6 +194,20 @@ public class AllFieldMetadataHelper {
         return typeMetadataHelper;
     }
     
+    public MetadataSnapshotHelper getMetadataSnapshotHelper() {
+        return metadataSnapshotHelper;
+    }
+    
+    /**
+     * Get the snapshot of the metadata table that the field, datatype, and composite lookups are served from.
+     *
+     * @return the snapshot for this helper's auths and table
+     * @throws TableNotFoundException
+     */
+    public MetadataSnapshot getMetadataSnapshot() throws TableNotFoundException {
+        return MetadataSnapshotHelper.getCurrentMetadataSnapshot(metadataSnapshotHelper);
+    }
+    
     /**
      * Method that determines whether or not a column exists in the metadata table for the given key.
      * 
@@ -181,6 +231,11 @@ public class AllFieldMetadataHelper {
         
         Preconditions.checkNotNull(fieldName);
         
+        // Answer from the snapshot when it covers the table, rather than scanning for each key
+        if (MetadataSnapshot.isTracked(colf) && metadataSnapshotHelper.covers(tableName, auths)) {
+            return getMetadataSnapshot().hasColumn(colf, fieldName, datatype);
+        }
+        
         // FieldNames are "normalized" to be all upper case
         String upCaseFieldName = fieldName.toUpperCase();
         
@@ -217,6 +272,62 @@ public class AllFieldMetadataHelper {
         return result;
     }
     
+    /**
+     * Scans the metadata table once for the given columns of all of the given fields, as {@link #isIndexed(Text, Entry)} does for a single field and column.
+     * The fields are read with a single {@link BatchScanner}, and only the distinct datatypes of each column are returned by the tablet servers. The result is
+     * not cached.
+     * 
+     * @param tableName
+     *            the metadata table name
+     * @param colfs
+     *            the column families to look for
+     * @param fieldNames
+     *            the field names
+     * @return a map of each of the upper case field names to the column families found for it, and their datatypes
+     * @throws TableNotFoundException
+     */
+    public Map<String,Map<Text,Set<String>>> getColumnDatatypes(String tableName, Collection<Text> colfs, Collection<String> fieldNames)
+                    throws TableNotFoundException {
+        log.debug("scanning " + colfs + " for " + fieldNames.size() + " fields in " + tableName);
+        
+        Map<String,Map<Text,Set<String>>> found = new HashMap<>();
+        List<Range> ranges = new ArrayList<>();
+        for (String fieldName : fieldNames) {
+            String upCaseFieldName = fieldName.toUpperCase();
+            if (found.put(upCaseFieldName, new HashMap<>()) == null) {
+                ranges.add(Range.exact(upCaseFieldName));
+            }
+        }
+        if (ranges.isEmpty()) {
+            return found;
+        }
+        
+        BatchScanner bs = ScannerHelper.createBatchScanner(accumuloClient, tableName, auths, Math.min(ParallelScans.getLoadThreads(), ranges.size()));
+        try {
+            bs.setRanges(ranges);
+            for (Text colf : colfs) {
+                bs.fetchColumnFamily(colf);
+            }
+            
+            // only the datatypes are needed, so skip the rest of the keys for each datatype on the tablet servers
+            IteratorSetting distinct = new IteratorSetting(60, DistinctDatatypeIterator.class);
+            DistinctDatatypeIterator.setColumns(distinct, colfs);
+            bs.addScanIterator(distinct);
+            
+            List<Text> colfList = new ArrayList<>(colfs);
+            MetadataKeyParser parser = new MetadataKeyParser();
+            for (Entry<Key,Value> entry : bs) {
+                parser.parse(entry.getKey());
+                Text colf = colfList.get(parser.getColumnFamilyIndex(colfList));
+                found.get(parser.getFieldName()).computeIfAbsent(colf, k -> new HashSet<>()).add(parser.getDatatype());
+            }
+        } finally {
+            bs.close();
+        }
+        
+        return found;
+    }
+    
     /**
      * Returns a Set of all Types in use by any type in Accumulo
      * 
@@ -225,50 +336,25 @@ public class AllFieldMetadataHelper {
      * @throws IllegalAccessException
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getAllDatatypes", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getAllDatatypes", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager", sync = true)
     public Set<Type<?>> getAllDatatypes() throws InstantiationException, IllegalAccessException, TableNotFoundException {
         log.debug("cache fault for getAllDatatypes(" + this.auths + "," + this.metadataTableName + ")");
         Set<Type<?>> datatypes = Sets.newHashSetWithExpectedSize(10);
         if (log.isTraceEnabled())
             log.trace("getAllDatatypes from table: " + metadataTableName);
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        Range range = new Range();
         
-        bs.setRange(range);
-        
-        // Fetch all of the index columns
-        for (Text colf : metadataTypeColfs) {
-            bs.fetchColumnFamily(colf);
-        }
-        
-        for (Entry<Key,Value> entry : bs) {
-            Key key = entry.getKey();
-            
-            // Get the column qualifier from the key. It contains the
-            // datatype and normalizer class
-            if (null != key.getColumnQualifier()) {
-                String colq = key.getColumnQualifier().toString();
-                int idx = colq.indexOf(NULL_BYTE);
-                if (idx != -1) {
-                    try {
-                        @SuppressWarnings("unchecked")
-                        Class<? extends Type<?>> clazz = (Class<? extends Type<?>>) Class.forName(colq.substring(idx + 1));
-                        
-                        datatypes.add(getDatatypeFromClass(clazz));
-                    } catch (ClassNotFoundException e) {
-                        log.error("Unable to find normalizer on class path: " + colq.substring(idx + 1), e);
-                    }
-                } else {
-                    log.warn("ColumnFamilyConstants entry did not contain a null byte in the column qualifier: " + key);
-                    
-                }
-            } else {
-                log.warn("ColumnQualifier null in EventMetadata for key: " + key);
+        for (String className : getMetadataSnapshot().getNormalizerClassNames()) {
+            try {
+                @SuppressWarnings("unchecked")
+                Class<? extends Type<?>> clazz = (Class<? extends Type<?>>) Class.forName(className);
+                
+                datatypes.add(getDatatypeFromClass(clazz));
+            } catch (ClassNotFoundException e) {
+                log.error("Unable to find normalizer on class path: " + className, e);
             }
         }
         
         return Collections.unmodifiableSet(datatypes);
-        
     }
     
     /**
@@ -278,55 +364,15 @@ public class AllFieldMetadataHelper {
      * @return An unmodifiable Multimap
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getCompositeToFieldMap", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getCompositeToFieldMap", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Multimap<String,String> getCompositeToFieldMap() throws TableNotFoundException {
         log.debug("cache fault for getCompositeToFieldMap(" + this.auths + "," + this.metadataTableName + ")");
         return this.getCompositeToFieldMap(null);
     }
     
-    @Cacheable(value = "getCompositeToFieldMap", key = "{#root.target.auths,#root.target.metadataTableName,#ingestTypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> getCompositeToFieldMap(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        log.debug("cache fault for getCompositeToFieldMap(" + this.auths + "," + this.metadataTableName + "," + ingestTypeFilter + ")");
-        
-        ArrayListMultimap<String,String> compositeToFieldMap = ArrayListMultimap.create();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        Range range = new Range();
-        
-        bs.setRange(range);
-        
-        // Fetch all of the index columns
-        for (Text colf : this.metadataCompositeIndexColfs) {
-            bs.fetchColumnFamily(colf);
-        }
-        
-        for (Entry<Key,Value> entry : bs) {
-            String fieldName = entry.getKey().getRow().toString();
-            if (null != entry.getKey().getColumnQualifier()) {
-                String colq = entry.getKey().getColumnQualifier().toString();
-                int idx = colq.indexOf(NULL_BYTE);
-                
-                String type = colq.substring(0, idx);
-                
-                // If types are specified and this type is not in the list,
-                // skip it.
-                if (null != ingestTypeFilter && !ingestTypeFilter.isEmpty() && !ingestTypeFilter.contains(type)) {
-                    continue;
-                }
-                
-                if (idx != -1) {
-                    String[] componentFields = colq.substring(idx + 1).split(",");
-                    compositeToFieldMap.putAll(fieldName, Arrays.asList(componentFields));
-                } else {
-                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey());
-                }
-            } else {
-                log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey());
-            }
-        }
-        
-        return Multimaps.unmodifiableMultimap(compositeToFieldMap);
+        return getMetadataSnapshot().getCompositeToFieldMap(ingestTypeFilter);
     }
     
     /**
@@ -336,58 +382,14 @@ public class AllFieldMetadataHelper {
      * @throws TableNotFoundException
      */
     @Cacheable(value = "getCompositeTransitionDateMap", key = "{#root.target.auths,#root.target.metadataTableName}",
-                    cacheManager = "metadataHelperCacheManager")
+                    cacheManager = "metadataHelperCacheManager", sync = true)
     public Map<String,Date> getCompositeTransitionDateMap() throws TableNotFoundException {
         log.debug("cache fault for getCompositeTransitionDateMap(" + this.auths + "," + this.metadataTableName + ")");
         return this.getCompositeTransitionDateMap(null);
     }
     
-    @Cacheable(value = "getCompositeTransitionDateMap", key = "{#root.target.auths,#root.target.metadataTableName,#ingestTypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
     public Map<String,Date> getCompositeTransitionDateMap(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        log.debug("cache fault for getCompositeTransitionDateMap(" + this.auths + "," + this.metadataTableName + "," + ingestTypeFilter + ")");
-        
-        Map<String,Date> tdMap = new HashMap<>();
-        
-        SimpleDateFormat dateFormat = new SimpleDateFormat(CompositeMetadataHelper.transitionDateFormat);
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        Range range = new Range();
-        
-        bs.setRange(range);
-        
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_CITD);
-        
-        for (Entry<Key,Value> entry : bs) {
-            String fieldName = entry.getKey().getRow().toString();
-            if (null != entry.getKey().getColumnQualifier()) {
-                String colq = entry.getKey().getColumnQualifier().toString();
-                int idx = colq.indexOf(NULL_BYTE);
-                
-                String type = colq.substring(0, idx);
-                
-                // If types are specified and this type is not in the list,
-                // skip it.
-                if (null != ingestTypeFilter && !ingestTypeFilter.isEmpty() && !ingestTypeFilter.contains(type)) {
-                    continue;
-                }
-                
-                if (idx != -1) {
-                    try {
-                        Date transitionDate = dateFormat.parse(colq.substring(idx + 1));
-                        tdMap.put(fieldName, transitionDate);
-                    } catch (ParseException e) {
-                        log.trace("Unable to parse composite field transition date", e);
-                    }
-                } else {
-                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey());
-                }
-            } else {
-                log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey());
-            }
-        }
-        
-        return Collections.unmodifiableMap(tdMap);
+        return getMetadataSnapshot().getCompositeTransitionDateMap(ingestTypeFilter);
     }
     
     /**
@@ -396,59 +398,15 @@ public class AllFieldMetadataHelper {
      * @return An unmodifiable Map
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getWhindexCreationDateMap", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getWhindexCreationDateMap", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Map<String,Date> getWhindexCreationDateMap() throws TableNotFoundException {
         log.debug("cache fault for getWhindexCreationDateMap(" + this.auths + "," + this.metadataTableName + ")");
         return this.getWhindexCreationDateMap(null);
     }
     
-    @Cacheable(value = "getWhindexCreationDateMap", key = "{#root.target.auths,#root.target.metadataTableName,#ingestTypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
     public Map<String,Date> getWhindexCreationDateMap(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        log.debug("cache fault for getWhindexCreationDateMap(" + this.auths + "," + this.metadataTableName + "," + ingestTypeFilter + ")");
-        
-        Map<String,Date> tdMap = new HashMap<>();
-        
-        // Note: Intentionally using the same transition date format as the composite fields.
-        SimpleDateFormat dateFormat = new SimpleDateFormat(CompositeMetadataHelper.transitionDateFormat);
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        Range range = new Range();
-        
-        bs.setRange(range);
-        
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_WCD);
-        
-        for (Entry<Key,Value> entry : bs) {
-            String fieldName = entry.getKey().getRow().toString();
-            if (null != entry.getKey().getColumnQualifier()) {
-                String colq = entry.getKey().getColumnQualifier().toString();
-                int idx = colq.indexOf(NULL_BYTE);
-                
-                if (idx != -1) {
-                    String type = colq.substring(0, idx);
-                    
-                    // If types are specified and this type is not in the list,
-                    // skip it.
-                    if (null != ingestTypeFilter && !ingestTypeFilter.isEmpty() && !ingestTypeFilter.contains(type)) {
-                        continue;
-                    }
-                    
-                    try {
-                        Date transitionDate = dateFormat.parse(colq.substring(idx + 1));
-                        tdMap.put(fieldName, transitionDate);
-                    } catch (ParseException e) {
-                        log.trace("Unable to parse whindex field creation date", e);
-                    }
-                } else {
-                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey());
-                }
-            } else {
-                log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey());
-            }
-        }
-        
-        return Collections.unmodifiableMap(tdMap);
+        return getMetadataSnapshot().getWhindexCreationDateMap(ingestTypeFilter);
     }
     
     /**
@@ -458,89 +416,87 @@ public class AllFieldMetadataHelper {
      * @throws TableNotFoundException
      */
     @Cacheable(value = "getCompositeFieldSeparatorMap", key = "{#root.target.auths,#root.target.metadataTableName}",
-                    cacheManager = "metadataHelperCacheManager")
+                    cacheManager = "metadataHelperCacheManager", sync = true)
     public Map<String,String> getCompositeFieldSeparatorMap() throws TableNotFoundException {
         log.debug("cache fault for getCompositeFieldSeparatorMap(" + this.auths + "," + this.metadataTableName + ")");
         return this.getCompositeFieldSeparatorMap(null);
     }
     
-    @Cacheable(value = "getCompositeFieldSeparatorMap", key = "{#root.target.auths,#root.target.metadataTableName,#ingestTypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
     public Map<String,String> getCompositeFieldSeparatorMap(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        log.debug("cache fault for getCompositeFieldSeparatorMap(" + this.auths + "," + this.metadataTableName + "," + ingestTypeFilter + ")");
-        
-        Map<String,String> sepMap = new HashMap<>();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        Range range = new Range();
-        
-        bs.setRange(range);
-        
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_CISEP);
-        
-        for (Entry<Key,Value> entry : bs) {
-            String fieldName = entry.getKey().getRow().toString();
-            if (null != entry.getKey().getColumnQualifier()) {
-                String colq = entry.getKey().getColumnQualifier().toString();
-                int idx = colq.indexOf(NULL_BYTE);
-                
-                String type = colq.substring(0, idx);
-                
-                // If types are specified and this type is not in the list,
-                // skip it.
-                if (null != ingestTypeFilter && ingestTypeFilter.size() > 0 && !ingestTypeFilter.contains(type)) {
-                    continue;
-                }
-                
-                if (idx != -1) {
-                    String separator = colq.substring(idx + 1);
-                    sepMap.put(fieldName, separator);
-                } else {
-                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey().toString());
-                }
-            } else {
-                log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey().toString());
-            }
-        }
-        
-        return Collections.unmodifiableMap(sepMap);
+        return getMetadataSnapshot().getCompositeFieldSeparatorMap(ingestTypeFilter);
     }
     
     public TypeMetadata getTypeMetadata() throws TableNotFoundException {
-        return this.typeMetadataHelper.getTypeMetadata(null);
+        return this.typeMetadataHelper.getTypeMetadata();
+    }
+    
+    /**
+     * @return the immutable type metadata of every datatype, from {@link TypeMetadataHelper#getFrozenTypeMetadata()}
+     * @throws TableNotFoundException
+     */
+    public PackedTypeMetadata getFrozenTypeMetadata() throws TableNotFoundException {
+        return this.typeMetadataHelper.getFrozenTypeMetadata();
     }
     
+    /**
+     * Get the type metadata of the datatypes in the filter.
+     *
+     * @param ingestTypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return a modifiable copy of the type metadata of the datatypes
+     * @throws TableNotFoundException
+     */
     public TypeMetadata getTypeMetadata(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        return this.typeMetadataHelper.getTypeMetadata(ingestTypeFilter);
+        return new TypeMetadata(this.typeMetadataHelper.getFrozenTypeMetadata().filter(ingestTypeFilter));
     }
     
     public CompositeMetadata getCompositeMetadata() throws TableNotFoundException {
-        return this.compositeMetadataHelper.getCompositeMetadata(null);
+        return this.compositeMetadataHelper.getCompositeMetadata();
     }
     
+    /**
+     * Get the composite metadata of the datatypes in the filter.
+     *
+     * @param ingestTypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return the composite metadata of the datatypes, which must not be modified
+     * @throws TableNotFoundException
+     */
     public CompositeMetadata getCompositeMetadata(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        return this.compositeMetadataHelper.getCompositeMetadata(ingestTypeFilter);
+        return this.compositeMetadataHelper.getCompositeMetadata().filterIngestTypes(ingestTypeFilter);
     }
     
     /**
      * Fetch the set of {@link Type}s that are configured for this <code>fieldName</code> as specified in the table pointed to by the
      * <code>metadataTableName</code> parameter.
      * 
+     * The result is derived from the cached type metadata of every datatype, and memoized for each filter as long as that type metadata is cached.
+     *
      * @param ingestTypeFilter
      *            Any projection of datatypes to limit the fetch for.
-     * @return
+     * @return an unmodifiable Multimap
      * @throws InstantiationException
      * @throws IllegalAccessException
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getFieldsToDatatypes", key = "{#root.target.auths,#root.target.metadataTableName,#ingestTypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
     public Multimap<String,Type<?>> getFieldsToDatatypes(Set<String> ingestTypeFilter)
                     throws InstantiationException, IllegalAccessException, TableNotFoundException {
-        log.debug("cache fault for getFieldsToDatatypes(" + this.auths + "," + this.metadataTableName + "," + ingestTypeFilter + ")");
-        TypeMetadata typeMetadata = this.typeMetadataHelper.getTypeMetadata(ingestTypeFilter);
+        TypeMetadata typeMetadata = this.typeMetadataHelper.getFrozenTypeMetadata();
+        FieldsToDatatypesViews views = this.fieldsToDatatypesViews;
+        if (views == null || views.typeMetadata != typeMetadata) {
+            views = new FieldsToDatatypesViews(typeMetadata);
+            this.fieldsToDatatypesViews = views;
+        }
+        
+        Set<String> filter = nullIfEmpty(ingestTypeFilter);
+        Multimap<String,Type<?>> memoized = views.views.get(filter);
+        if (memoized != null) {
+            return memoized;
+        }
+        
+        log.debug("computing getFieldsToDatatypes(" + this.auths + "," + this.metadataTableName + "," + ingestTypeFilter + ")");
         Multimap<String,Type<?>> typeMap = HashMultimap.create();
-        for (Entry<String,String> entry : typeMetadata.fold().entries()) {
+        for (Entry<String,String> entry : typeMetadata.fold(filter).entries()) {
             String value = entry.getValue();
             try {
                 @SuppressWarnings("unchecked")
@@ -551,7 +507,7 @@ public class AllFieldMetadataHelper {
             }
             
         }
-        return typeMap;
+        return views.views.put(filter, Multimaps.unmodifiableMultimap(typeMap));
     }
     
     /**
@@ -564,7 +520,7 @@ public class AllFieldMetadataHelper {
      * @throws TableNotFoundException
      */
     @Cacheable(value = "getFieldsForDatatype", key = "{#root.target.auths,#root.target.metadataTableName,#datawaveType}",
-                    cacheManager = "metadataHelperCacheManager")
+                    cacheManager = "metadataHelperCacheManager", sync = true)
     public Set<String> getFieldsForDatatype(Class<? extends Type<?>> datawaveType)
                     throws InstantiationException, IllegalAccessException, TableNotFoundException {
         log.debug("cache fault for getFieldsForDatatype(" + datawaveType + ")");
@@ -582,17 +538,17 @@ public class AllFieldMetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getFieldsForDatatype", key = "{#root.target.auths,#root.target.metadataTableName,#datawaveType,#ingestTypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
     public Set<String> getFieldsForDatatype(Class<? extends Type<?>> datawaveType, Set<String> ingestTypeFilter) throws TableNotFoundException {
-        log.debug("cache fault for getFieldsForDatatype(" + datawaveType + "," + ingestTypeFilter + ")");
-        TypeMetadata typeMetadata = this.typeMetadataHelper.getTypeMetadata(ingestTypeFilter);
+        TypeMetadata typeMetadata = this.typeMetadataHelper.getFrozenTypeMetadata();
         String datawaveTypeClassName = datawaveType.getName();
         
-        // datatype class name to field name <--field name to datatype class name
-        Multimap<String,String> inverted = Multimaps.invertFrom(typeMetadata.fold(ingestTypeFilter), HashMultimap.<String,String> create());
-        
-        return Sets.newHashSet(inverted.get(datawaveTypeClassName));
+        Set<String> fields = Sets.newHashSet();
+        for (Entry<String,String> entry : typeMetadata.fold(nullIfEmpty(ingestTypeFilter)).entries()) {
+            if (entry.getValue().equals(datawaveTypeClassName)) {
+                fields.add(entry.getKey());
+            }
+        }
+        return fields;
     }
     
     /**
@@ -616,18 +572,7 @@ public class AllFieldMetadataHelper {
      * @throws ExecutionException
      */
     public Set<String> getTermFrequencyFields(Set<String> ingestTypeFilter) throws TableNotFoundException, ExecutionException {
-        
-        Multimap<String,String> termFrequencyFields = loadTermFrequencyFields();
-        
-        Set<String> fields = new HashSet<>();
-        if (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) {
-            fields.addAll(termFrequencyFields.values());
-        } else {
-            for (String datatype : ingestTypeFilter) {
-                fields.addAll(termFrequencyFields.get(datatype));
-            }
-        }
-        return Collections.unmodifiableSet(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_TF, nullIfEmpty(ingestTypeFilter));
     }
     
     /**
@@ -638,18 +583,7 @@ public class AllFieldMetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getExpansionFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        
-        Multimap<String,String> expansionFields = loadExpansionFields();
-        
-        Set<String> fields = new HashSet<>();
-        if (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) {
-            fields.addAll(expansionFields.values());
-        } else {
-            for (String datatype : ingestTypeFilter) {
-                fields.addAll(expansionFields.get(datatype));
-            }
-        }
-        return Collections.unmodifiableSet(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_EXP, nullIfEmpty(ingestTypeFilter));
     }
     
     /**
@@ -660,28 +594,22 @@ public class AllFieldMetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getContentFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        
-        Multimap<String,String> contentFields = loadContentFields();
-        
-        Set<String> fields = new HashSet<>();
-        if (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) {
-            fields.addAll(contentFields.values());
-        } else {
-            for (String datatype : ingestTypeFilter) {
-                fields.addAll(contentFields.get(datatype));
-            }
-        }
-        return Collections.unmodifiableSet(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_CONTENT, nullIfEmpty(ingestTypeFilter));
     }
     
     public Set<String> getDatatypes(Set<String> ingestTypeFilter) throws TableNotFoundException {
         
         Set<String> datatypes = loadDatatypes();
         if (ingestTypeFilter != null && !ingestTypeFilter.isEmpty()) {
-            datatypes = Sets.newHashSet(Sets.intersection(datatypes, ingestTypeFilter));
+            datatypes = Collections.unmodifiableSet(Sets.newHashSet(Sets.intersection(datatypes, ingestTypeFilter)));
         }
         
-        return Collections.unmodifiableSet(datatypes);
+        return datatypes;
+    }
+    
+    // an empty filter means all datatypes, as it always has for these lookups, rather than none of them
+    private static Set<String> nullIfEmpty(Set<String> ingestTypeFilter) {
+        return (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) ? null : ingestTypeFilter;
     }
     
     protected HashMap<String,Long> getCountsByFieldInDayWithTypes(Entry<String,String> identifier) throws TableNotFoundException, IOException {
@@ -696,7 +624,7 @@ public class AllFieldMetadataHelper {
         RegExFilter.setRegexs(cqRegex, null, null, ".*\u0000" + date, null, false);
         scanner.addScanIterator(cqRegex);
         
-        final Text holder = new Text();
+        final MetadataKeyParser parser = new MetadataKeyParser();
         final HashMap<String,Long> datatypeToCounts = Maps.newHashMap();
         for (Entry<Key,Value> countEntry : scanner) {
             ByteArrayInputStream bais = new ByteArrayInputStream(countEntry.getValue().get());
@@ -704,12 +632,11 @@ public class AllFieldMetadataHelper {
             
             Long sum = WritableUtils.readVLong(inputStream);
             
-            countEntry.getKey().getColumnQualifier(holder);
-            int offset = holder.find(NULL_BYTE);
+            parser.parse(countEntry.getKey());
             
-            Preconditions.checkArgument(-1 != offset, "Could not find nullbyte separator in column qualifier for: " + countEntry.getKey());
+            Preconditions.checkArgument(parser.hasSeparator(), "Could not find nullbyte separator in column qualifier for: " + countEntry.getKey());
             
-            String datatype = Text.decode(holder.getBytes(), 0, offset);
+            String datatype = parser.getDatatype();
             
             datatypeToCounts.put(datatype, sum);
         }
@@ -763,110 +690,172 @@ public class AllFieldMetadataHelper {
      * 
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadAllFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadAllFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager", sync = true)
     public Multimap<String,String> loadAllFields() throws TableNotFoundException {
         log.debug("cache fault for loadAllFields(" + this.auths + "," + this.metadataTableName + ")");
         if (log.isTraceEnabled()) {
             log.trace("Using these minimized auths:" + AuthorizationsMinimizer.minimize(this.auths).iterator().next());
         }
-        Multimap<String,String> fields = HashMultimap.create();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        if (log.isTraceEnabled())
-            log.trace("loadAllFields from table: " + metadataTableName);
-        
-        bs.setRange(new Range());
-        
-        // We don't want to fetch all columns because that could include model
-        // field names
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_T);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_I);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_E);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_RI);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_TF);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_CI);
-        
-        Iterator<Entry<Key,Value>> iterator = bs.iterator();
-        
-        while (iterator.hasNext()) {
-            Entry<Key,Value> entry = iterator.next();
-            Key k = entry.getKey();
-            
-            String fieldname = k.getRow().toString();
-            String datatype = getDatatype(k);
+        return getMetadataSnapshot().getAllFields();
+    }
+    
+    /**
+     * Loads all of the daily frequency counts of a field from the {@link ColumnFamilyConstants#COLF_F} column of the {@link #metadataTableName} table, so that
+     * the counts over any date range can be answered from memory. The counts are loaded lazily, one field at a time, and the number of fields kept is bounded
+     * by the cache.
+     * 
+     * @param fieldName
+     *            the field name, as it is stored in the metadata table
+     * @return the frequency counts of the field
+     * @throws TableNotFoundException
+     */
+    @Cacheable(value = "getFieldFrequencies", key = "{#root.target.auths,#root.target.metadataTableName,#fieldName}",
+                    cacheManager = "metadataHelperCacheManager", sync = true)
+    public FieldFrequencies getFieldFrequencies(String fieldName) throws TableNotFoundException {
+        log.debug("cache fault for getFieldFrequencies(" + this.auths + "," + this.metadataTableName + "," + fieldName + ")");
+        return loadFieldFrequencies(accumuloClient, fieldName);
+    }
+    
+    /**
+     * Reads the daily counts of a field from the {@link ColumnFamilyConstants#COLF_F} column of the {@link #metadataTableName} table, without caching them.
+     * 
+     * @param client
+     *            the client to scan with
+     * @param fieldName
+     *            the field name, as it is stored in the metadata table
+     * @return the daily counts of the field, which are {@link FieldFrequencies#EMPTY} if it has none
+     * @throws TableNotFoundException
+     */
+    public FieldFrequencies loadFieldFrequencies(AccumuloClient client, String fieldName) throws TableNotFoundException {
+        FieldFrequencies.Builder builder = FieldFrequencies.builder();
+        Scanner scanner = ScannerHelper.createScanner(client, metadataTableName, auths);
+        try {
+            scanner.setRange(Range.exact(fieldName, ColumnFamilyConstants.COLF_F.toString()));
+            scanner.fetchColumnFamily(ColumnFamilyConstants.COLF_F);
             
-            fields.put(datatype, fieldname);
+            MetadataKeyParser parser = new MetadataKeyParser();
+            for (Entry<Key,Value> entry : scanner) {
+                parser.parse(entry.getKey());
+                try {
+                    if (!parser.hasSeparator()) {
+                        throw new IndexOutOfBoundsException("no null byte in the column qualifier");
+                    }
+                    builder.add(parser.getDatatype(), parser.getSuffix(), SummingCombiner.VAR_LEN_ENCODER.decode(entry.getValue().get()));
+                } catch (IndexOutOfBoundsException | DateTimeParseException | ValueFormatException e) {
+                    log.warn("Could not read the frequency count for " + entry.getKey(), e);
+                }
+            }
+        } finally {
+            scanner.close();
         }
         
-        return Multimaps.unmodifiableMultimap(fields);
+        return builder.build();
     }
     
     /**
-     * Fetches results from {@link #metadataTableName} and calculates the set of fieldNames which are indexed but do not appear as an attribute on the Event
-     * Returns a multimap of datatype to field
+     * Fetches the first and last days in the {@link ColumnFamilyConstants#COLF_F} column of the {@link #metadataTableName} table for each of the fields and
+     * datatypes, with one range for each field. The days between are skipped on the tablet servers, so only a single date range is returned for each field and
+     * datatype.
      * 
+     * @param fieldNames
+     *            the field names
+     * @return a map of each of the upper case field names to datatype to the first and last day, inclusive, which is empty for a field that was not seen
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getIndexOnlyFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
-    public Multimap<String,String> getIndexOnlyFields() throws TableNotFoundException {
-        log.debug("cache fault for getIndexOnlyFields(" + this.auths + "," + this.metadataTableName + ")");
-        Multimap<String,String> fields = HashMultimap.create();
-        
-        final Map<String,Multimap<Text,Text>> metadata = new HashMap<>();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        if (log.isTraceEnabled())
-            log.trace("loadIndexOnlyFields from table: " + metadataTableName);
-        
-        // Fetch the 'e' and 'i' columns
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_E);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_I);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_CI);
-        
-        // For all keys in the DatawaveMetadata table
-        bs.setRange(new Range());
-        
-        Iterator<Entry<Key,Value>> iterator = bs.iterator();
-        Set<String> compositeFields = Sets.newHashSet();
-        // Collect the results and put them into a Multimap
-        while (iterator.hasNext()) {
-            Entry<Key,Value> entry = iterator.next();
-            Key k = entry.getKey();
-            Text fieldName = k.getRow();
-            Text fieldType = k.getColumnFamily();
-            String dataType = getDatatype(k);
-            if (fieldType.equals(ColumnFamilyConstants.COLF_CI)) {
-                compositeFields.add(getCompositeFieldName(k));
+    public Map<String,Map<String,Pair<Date,Date>>> getFieldDateRanges(Collection<String> fieldNames) throws TableNotFoundException {
+        log.debug("scanning the date ranges of " + fieldNames.size() + " fields in " + this.metadataTableName);
+        
+        Map<String,Map<String,Pair<Date,Date>>> dateRanges = new HashMap<>();
+        List<Range> ranges = new ArrayList<>();
+        for (String fieldName : fieldNames) {
+            String upCaseFieldName = fieldName.toUpperCase();
+            if (dateRanges.put(upCaseFieldName, new HashMap<>()) == null) {
+                ranges.add(Range.exact(upCaseFieldName));
             }
+        }
+        if (ranges.isEmpty()) {
+            return dateRanges;
+        }
+        
+        BatchScanner bs = ScannerHelper.createBatchScanner(accumuloClient, metadataTableName, auths, Math.min(ParallelScans.getLoadThreads(), ranges.size()));
+        try {
+            bs.setRanges(ranges);
+            bs.fetchColumnFamily(ColumnFamilyConstants.COLF_F);
+            IteratorSetting setting = new IteratorSetting(50, DateRangeCollapsingIterator.class);
+            DateRangeCollapsingIterator.setSpan(setting, true);
+            bs.addScanIterator(setting);
             
-            Multimap<Text,Text> md = metadata.get(dataType);
-            if (md == null) {
-                md = HashMultimap.create();
-                metadata.put(dataType, md);
-                
+            MetadataKeyParser parser = new MetadataKeyParser();
+            for (Entry<Key,Value> entry : bs) {
+                // Parse the data type and the date range from the column qualifier, datatype\0firstDate\0lastDate.
+                parser.parse(entry.getKey());
+                Pair<Date,Date> dateRange = Pair.of(DateHelper.parse(parser.getQualifierPart(1)), DateHelper.parse(parser.getQualifierPart(2)));
+                dateRanges.get(parser.getFieldName()).put(parser.getDatatype(), dateRange);
             }
-            md.put(fieldName, fieldType);
+        } finally {
+            bs.close();
         }
         
-        // Find all of the fields which only have the 'i' column
-        for (String dataType : metadata.keySet()) {
-            for (Text fieldName : metadata.get(dataType).keySet()) {
-                Collection<Text> columns = metadata.get(dataType).get(fieldName);
-                
-                if (1 == columns.size()) {
-                    Text c = columns.iterator().next();
-                    
-                    if (c.equals(ColumnFamilyConstants.COLF_I)) {
-                        if (compositeFields.contains(fieldName.toString()) == false) {
-                            fields.put(dataType, fieldName.toString());
-                        }
-                    }
-                }
+        return dateRanges;
+    }
+    
+    /**
+     * Builds a Bloom filter of the rows of the {@link #metadataTableName} table, i.e. of every field name in upper case, so that lookups for fields that do not
+     * exist can be answered without scanning for them. A field that the filter does not contain is not in the table, as of when the filter was built; a
+     * field that it does contain is in the table, except for about {@value #FIELD_NAME_FILTER_FPP} of the time.
+     * 
+     * @return the field name filter
+     * @throws TableNotFoundException
+     */
+    @Cacheable(value = "getFieldNameFilter", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
+    public BloomFilter<CharSequence> getFieldNameFilter() throws TableNotFoundException {
+        log.debug("cache fault for getFieldNameFilter(" + this.auths + "," + this.metadataTableName + ")");
+        return getFieldNameFilter(this.metadataTableName);
+    }
+    
+    /**
+     * Builds a Bloom filter of the rows of the given metadata table, as {@link #getFieldNameFilter()} does for the {@link #metadataTableName} table.
+     *
+     * @param tableName
+     *            the metadata table to build the filter for
+     * @return the field name filter
+     * @throws TableNotFoundException
+     */
+    @Cacheable(value = "getFieldNameFilter", key = "{#root.target.auths,#tableName}", cacheManager = "metadataHelperCacheManager", sync = true)
+    public BloomFilter<CharSequence> getFieldNameFilter(String tableName) throws TableNotFoundException {
+        log.debug("cache fault for getFieldNameFilter(" + this.auths + "," + tableName + ")");
+        
+        // only the first key of each row is needed to know that the field exists
+        List<String> fieldNames = new ArrayList<>();
+        BatchScanner bs = ParallelScans.createFullTableBatchScanner(accumuloClient, tableName, auths);
+        try {
+            bs.addScanIterator(new IteratorSetting(50, FirstEntryInRowIterator.class));
+            for (Entry<Key,Value> entry : bs) {
+                // every row is seen once, so there is nothing to pool
+                fieldNames.add(new String(entry.getKey().getRowData().toArray(), StandardCharsets.UTF_8));
             }
+        } finally {
+            bs.close();
         }
         
-        return Multimaps.unmodifiableMultimap(fields);
+        BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                        Math.max(fieldNames.size(), FIELD_NAME_FILTER_MIN_SIZE), FIELD_NAME_FILTER_FPP);
+        fieldNames.forEach(filter::put);
+        return filter;
+    }
+    
+    /**
+     * Fetches results from {@link #metadataTableName} and calculates the set of fieldNames which are indexed but do not appear as an attribute on the Event
+     * Returns a multimap of datatype to field
+     * 
+     * @throws TableNotFoundException
+     */
+    @Cacheable(value = "getIndexOnlyFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
+    public Multimap<String,String> getIndexOnlyFields() throws TableNotFoundException {
+        log.debug("cache fault for getIndexOnlyFields(" + this.auths + "," + this.metadataTableName + ")");
+        return getMetadataSnapshot().getIndexOnlyFields();
     }
     
     /**
@@ -876,23 +865,11 @@ public class AllFieldMetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadTermFrequencyFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadTermFrequencyFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Multimap<String,String> loadTermFrequencyFields() throws TableNotFoundException {
         log.debug("cache fault for loadTermFrequencyFields(" + this.auths + "," + this.metadataTableName + ")");
-        Multimap<String,String> fields = HashMultimap.create();
-        if (log.isTraceEnabled())
-            log.trace("loadTermFrequencyFields from table: " + metadataTableName);
-        // Scanner to the provided metadata table
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        bs.setRange(new Range());
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_TF);
-        
-        for (Entry<Key,Value> entry : bs) {
-            fields.put(getDatatype(entry.getKey()), entry.getKey().getRow().toString());
-        }
-        
-        return Multimaps.unmodifiableMultimap(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_TF);
     }
     
     /**
@@ -901,25 +878,11 @@ public class AllFieldMetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadIndexedFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadIndexedFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Multimap<String,String> loadIndexedFields() throws TableNotFoundException {
         log.debug("cache fault for loadIndexedFields(" + this.auths + "," + this.metadataTableName + ")");
-        Multimap<String,String> fields = HashMultimap.create();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        bs.setRange(new Range());
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_I);
-        
-        if (log.isTraceEnabled())
-            log.trace("loadIndexedFields from table: " + metadataTableName);
-        
-        for (Entry<Key,Value> entry : bs) {
-            fields.put(getDatatype(entry.getKey()), entry.getKey().getRow().toString());
-            
-        }
-        
-        return Multimaps.unmodifiableMultimap(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_I);
     }
     
     /**
@@ -928,25 +891,11 @@ public class AllFieldMetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadReverseIndexedFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadReverseIndexedFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Multimap<String,String> loadReverseIndexedFields() throws TableNotFoundException {
         log.debug("cache fault for loadReverseIndexedFields(" + this.auths + "," + this.metadataTableName + ")");
-        Multimap<String,String> fields = HashMultimap.create();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        bs.setRange(new Range());
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_RI);
-        
-        if (log.isTraceEnabled())
-            log.trace("loadReverseIndexedFields from table: " + metadataTableName);
-        
-        for (Entry<Key,Value> entry : bs) {
-            fields.put(getDatatype(entry.getKey()), entry.getKey().getRow().toString());
-            
-        }
-        
-        return Multimaps.unmodifiableMultimap(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_RI);
     }
     
     /**
@@ -955,22 +904,31 @@ public class AllFieldMetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadIndexedFields", key = "{#root.target.fullUserAuths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadIndexedFields", key = "{#root.target.fullUserAuths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Multimap<String,String> loadAllIndexedFields() throws TableNotFoundException {
         log.debug("cache fault for loadIndexedFields(" + this.auths + "," + this.metadataTableName + ")");
         Multimap<String,String> fields = HashMultimap.create();
         
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, fullUserAuths);
+        BatchScanner bs = ParallelScans.createFullTableBatchScanner(accumuloClient, metadataTableName, fullUserAuths);
         
-        bs.setRange(new Range());
         bs.fetchColumnFamily(ColumnFamilyConstants.COLF_I);
         
+        IteratorSetting distinct = new IteratorSetting(60, DistinctDatatypeIterator.class);
+        DistinctDatatypeIterator.setColumns(distinct, Collections.singleton(ColumnFamilyConstants.COLF_I));
+        bs.addScanIterator(distinct);
+        
         if (log.isTraceEnabled())
             log.trace("loadIndexedFields from table: " + metadataTableName);
         
-        for (Entry<Key,Value> entry : bs) {
-            fields.put(getDatatype(entry.getKey()), entry.getKey().getRow().toString());
-            
+        MetadataKeyParser parser = new MetadataKeyParser();
+        try {
+            for (Entry<Key,Value> entry : bs) {
+                parser.parse(entry.getKey());
+                fields.put(parser.getDatatype(), parser.getFieldName());
+            }
+        } finally {
+            bs.close();
         }
         
         return Multimaps.unmodifiableMultimap(fields);
@@ -982,24 +940,11 @@ public class AllFieldMetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadExpansionFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadExpansionFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Multimap<String,String> loadExpansionFields() throws TableNotFoundException {
         log.debug("cache fault for loadExpansionFields(" + this.auths + "," + this.metadataTableName + ")");
-        Multimap<String,String> fields = HashMultimap.create();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        bs.setRange(new Range());
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_EXP);
-        
-        if (log.isTraceEnabled())
-            log.trace("loadExpansionFields from table: " + metadataTableName);
-        
-        for (Entry<Key,Value> entry : bs) {
-            fields.put(getDatatype(entry.getKey()), entry.getKey().getRow().toString());
-        }
-        
-        return Multimaps.unmodifiableMultimap(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_EXP);
     }
     
     /**
@@ -1008,24 +953,11 @@ public class AllFieldMetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadContentFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadContentFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Multimap<String,String> loadContentFields() throws TableNotFoundException {
         log.debug("cache fault for loadContentFields(" + this.auths + "," + this.metadataTableName + ")");
-        Multimap<String,String> fields = HashMultimap.create();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        bs.setRange(new Range());
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_CONTENT);
-        
-        if (log.isTraceEnabled())
-            log.trace("loadContentFields from table: " + metadataTableName);
-        
-        for (Entry<Key,Value> entry : bs) {
-            fields.put(getDatatype(entry.getKey()), entry.getKey().getRow().toString());
-        }
-        
-        return Multimaps.unmodifiableMultimap(fields);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_CONTENT);
     }
     
     /**
@@ -1036,26 +968,10 @@ public class AllFieldMetadataHelper {
      * 
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "loadDatatypes", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "loadDatatypes", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager", sync = true)
     public Set<String> loadDatatypes() throws TableNotFoundException {
         log.debug("cache fault for loadDatatypes(" + this.auths + "," + this.metadataTableName + ")");
-        if (log.isTraceEnabled())
-            log.trace("loadDatatypes from table: " + metadataTableName);
-        HashSet<String> datatypes = new HashSet<>();
-        final Text holder = new Text();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        bs.setRange(new Range());
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_E);
-        
-        for (Entry<Key,Value> entry : bs) {
-            entry.getKey().getColumnQualifier(holder);
-            
-            datatypes.add(holder.toString());
-        }
-        
-        return Collections.unmodifiableSet(datatypes);
+        return getMetadataSnapshot().getDatatypes();
     }
     
     /**
@@ -1064,7 +980,8 @@ public class AllFieldMetadataHelper {
      * 
      * @return a map of field names and datatype pairs to field index holes
      */
-    @Cacheable(value = "getFieldIndexHoles", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getFieldIndexHoles", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Map<String,Map<String,FieldIndexHole>> getFieldIndexHoles() throws TableNotFoundException, CharacterCodingException {
         return getFieldIndexHoles(ColumnFamilyConstants.COLF_I);
     }
@@ -1075,7 +992,8 @@ public class AllFieldMetadataHelper {
      * 
      * @return a map of field names and datatype pairs to field index holes
      */
-    @Cacheable(value = "getReversedFieldIndexHoles", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getReversedFieldIndexHoles", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Map<String,Map<String,FieldIndexHole>> getReversedFieldIndexHoles() throws TableNotFoundException, CharacterCodingException {
         return getFieldIndexHoles(ColumnFamilyConstants.COLF_RI);
     }
@@ -1095,136 +1013,39 @@ public class AllFieldMetadataHelper {
         // For all keys in the DatawaveMetadata table.
         bs.setRange(new Range());
         
-        // We must first scan over the fieldName-datatype combinations and extract the date ranges in which we've seen them. Each date range represents a span
-        // of time when we saw an event for each day in that date range, from the start (inclusive) to end (inclusive).
+        // Collapse the daily rows into date ranges on the tablet servers. Each date range represents a span of time when we saw an event for each day in that
+        // date range, from the start (inclusive) to end (inclusive).
+        bs.addScanIterator(new IteratorSetting(50, DateRangeCollapsingIterator.class));
+        
         Map<String,SortedSet<Pair<Date,Date>>> frequencyMap = new HashMap<>();
         Map<String,SortedSet<Pair<Date,Date>>> indexMap = new HashMap<>();
-        Calendar calendar = Calendar.getInstance();
-        
-        String prevFieldName = null;
-        String prevDatatype = null;
-        Date prevDate = null;
-        Date startDate = null;
-        Text prevColumnFamily = null;
-        
-        // Points to the target map object that we add date ranges to. This changes when we see a different column family compared to the previous row. We must
-        // initially start adding entries to the frequency map.
-        Map<String,SortedSet<Pair<Date,Date>>> dateMap = frequencyMap;
-        
         Map<String,Multimap<String,Pair<Date,Date>>> fieldIndexHoles = new HashMap<>();
+        String prevFieldName = null;
+        MetadataKeyParser parser = new MetadataKeyParser();
         
-        // Scan each row and extract the date ranges.
+        // Collect the date ranges of each field, and get the field index holes for the previous field whenever the field name changes.
         for (Entry<Key,Value> entry : bs) {
-            Key key = entry.getKey();
-            String fieldName = key.getRow().toString();
-            Text columnFamily = key.getColumnFamily();
-            
-            // Parse the data type and event date from the column qualifier.
-            String cq = key.getColumnQualifier().toString();
-            int offset = cq.indexOf(NULL_BYTE);
-            String datatype = cq.substring(0, offset);
-            Date date = DateHelper.parse(cq.substring((offset + 1)));
-            
-            // If this is the very first entry we've seen, update the tracking variables and continue to the next entry.
-            if (prevFieldName == null) {
-                prevFieldName = fieldName;
-                prevDatatype = datatype;
-                prevDate = date;
-                startDate = date;
-                prevColumnFamily = columnFamily;
-                continue;
+            parser.parse(entry.getKey());
+            String fieldName = parser.getFieldName();
+            if (prevFieldName != null && !fieldName.equals(prevFieldName)) {
+                fieldIndexHoles.put(prevFieldName, getFieldIndexHoles(frequencyMap, indexMap));
+                frequencyMap.clear();
+                indexMap.clear();
             }
+            prevFieldName = fieldName;
             
-            // The column family is different. We have two possible scenarios:
-            // - The previous column family was 'f'. The current row is an index row for to the current field.
-            // - The previous column family was the target index column family. The current row is an 'f' row for a new field.
-            //
-            // In both cases, record the last date range, and begin collecting date ranges for the next batch of related rows.
-            if (!prevColumnFamily.equals(columnFamily)) {
-                // Add the latest date range seen for the previous fieldName-datatype combination.
-                Pair<Date,Date> dateRange = Pair.of(startDate, prevDate);
-                SortedSet<Pair<Date,Date>> dates = dateMap.computeIfAbsent(prevDatatype, (k) -> new TreeSet<>());
-                dates.add(dateRange);
-                
-                // The column family is "f". We have collected the date ranges for all datatypes for the previous field name. Get the field index holes for the
-                // previously collected data.
-                if (columnFamily.equals(ColumnFamilyConstants.COLF_F)) {
-                    Multimap<String,Pair<Date,Date>> datatypeHoles = getFieldIndexHoles(frequencyMap, indexMap);
-                    fieldIndexHoles.put(prevFieldName, datatypeHoles);
-                    // Clear the date range maps.
-                    frequencyMap.clear();
-                    indexMap.clear();
-                    // Set the target date map to the frequency map.
-                    dateMap = frequencyMap;
-                } else {
-                    // The current column family is the target index. Add the latest date range seen for the previous datatype.
-                    dateMap = indexMap;
-                }
-                // Update our tracking variables.
-                prevFieldName = fieldName;
-                prevDatatype = datatype;
-                startDate = date;
-            } else {
-                // The column family is the same. We have three possible scenarios:
-                // - A row with a field that is different to the previous field.
-                // - A row with the same field and datatype.
-                // - A row with the same field, but a different datatype.
-                //
-                // We have encountered a new field name and the previous fieldName-datatype combination did not have any corresponding index row entries.
-                if (!fieldName.equals(prevFieldName)) {
-                    // Add the latest date range seen for the previous fieldName.
-                    Pair<Date,Date> dateRange = Pair.of(startDate, prevDate);
-                    SortedSet<Pair<Date,Date>> dates = dateMap.computeIfAbsent(prevDatatype, (k) -> new TreeSet<>());
-                    dates.add(dateRange);
-                    // Add the field index holes for the previous field name.
-                    Multimap<String,Pair<Date,Date>> datatypeHoles = getFieldIndexHoles(frequencyMap, indexMap);
-                    fieldIndexHoles.put(prevFieldName, datatypeHoles);
-                    // Clear the date range maps.
-                    frequencyMap.clear();
-                    indexMap.clear();
-                    // Update our tracking variables.
-                    prevFieldName = fieldName;
-                    prevDatatype = datatype;
-                    startDate = date;
-                } else if (datatype.equals(prevDatatype)) {
-                    // We are on the same fieldName-datatype combination as the previous row. Determine if we can add a date-range.
-                    calendar.setTime(prevDate);
-                    calendar.add(Calendar.DATE, 1);
-                    // If the current date is not one day after the previous date, it is not a continuous part of the previously tracked date range. Save the
-                    // previous date range and begin a new one.
-                    if (!calendar.getTime().equals(date)) {
-                        // The current date should not be included in the current date range. Add the current date range, and start a new one.
-                        Pair<Date,Date> dateRange = Pair.of(startDate, prevDate);
-                        SortedSet<Pair<Date,Date>> dates = dateMap.computeIfAbsent(datatype, (k) -> new TreeSet<>());
-                        dates.add(dateRange);
-                        
-                        // Update the date tracking variables.
-                        startDate = date;
-                    }
-                } else {
-                    // We've encountered a new datatype. Add the latest date range seen for the previous datatype.
-                    Pair<Date,Date> dateRange = Pair.of(startDate, prevDate);
-                    SortedSet<Pair<Date,Date>> dates = dateMap.computeIfAbsent(prevDatatype, (k) -> new TreeSet<>());
-                    dates.add(dateRange);
-                    
-                    // Update our tracking variables.
-                    prevDatatype = datatype;
-                    startDate = date;
-                }
-            }
-            // Update the previous date and column family.
-            prevDate = date;
-            prevColumnFamily = columnFamily;
+            // Parse the data type and the date range from the column qualifier, datatype\0startDate\0endDate.
+            String datatype = parser.getDatatype();
+            Pair<Date,Date> dateRange = Pair.of(DateHelper.parse(parser.getQualifierPart(1)), DateHelper.parse(parser.getQualifierPart(2)));
+            
+            Map<String,SortedSet<Pair<Date,Date>>> dateMap = parser.isColumnFamily(ColumnFamilyConstants.COLF_F) ? frequencyMap : indexMap;
+            dateMap.computeIfAbsent(datatype, (k) -> new TreeSet<>()).add(dateRange);
         }
         
-        // After there are no more rows, ensure that we record the last date range for the last fieldName-datatype combination that we saw.
-        Pair<Date,Date> dateRange = Pair.of(startDate, prevDate);
-        SortedSet<Pair<Date,Date>> dates = dateMap.computeIfAbsent(prevDatatype, (k) -> new TreeSet<>());
-        dates.add(dateRange);
-        
-        // Get the field index holes for the previous field name.
-        Multimap<String,Pair<Date,Date>> datatypeHoles = getFieldIndexHoles(frequencyMap, indexMap);
-        fieldIndexHoles.put(prevFieldName, datatypeHoles);
+        // After there are no more rows, get the field index holes for the last field name.
+        if (prevFieldName != null) {
+            fieldIndexHoles.put(prevFieldName, getFieldIndexHoles(frequencyMap, indexMap));
+        }
         
         // Create immutable versions of the field index holes, and do not retain any empty collections.
         ImmutableMap.Builder<String,Map<String,FieldIndexHole>> fieldMapBuilder = new ImmutableMap.Builder<>();
@@ -1423,4 +1244,15 @@ public class AllFieldMetadataHelper {
         return getKey(this);
     }
     
+    /**
+     * The memoized results of {@link #getFieldsToDatatypes(Set)}, which hold as long as the cached type metadata is the same instance.
+     */
+    private static class FieldsToDatatypesViews {
+        private final TypeMetadata typeMetadata;
+        private final FilteredViews<Multimap<String,Type<?>>> views = new FilteredViews<>();
+        
+        private FieldsToDatatypesViews(TypeMetadata typeMetadata) {
+            this.typeMetadata = typeMetadata;
+        }
+    }
 }
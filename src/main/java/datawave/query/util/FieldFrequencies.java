@@ -0,0 +1,415 @@
+package datawave.query.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import datawave.data.ColumnFamilyConstants;
+
+/**
+ * The daily frequency counts of a single field, from the {@link ColumnFamilyConstants#COLF_F} column of the metadata table, kept compactly in memory so that
+ * the count over any date range can be answered without another scan.
+ * <p>
+ * The counts of each datatype are kept as a series over the epoch days from the first to the last day seen. The daily counts, which are the deltas of the
+ * running total, are stored as zig-zag varints, so that a day without a count takes a single byte. The running total and the position in the varints are
+ * also stored at the start of every block of {@value #BLOCK_DAYS} days, so that the count over any date range decodes at most {@value #BLOCK_DAYS} varints
+ * at each end of the range.
+ */
+public class FieldFrequencies {
+    
+    static final int BLOCK_DAYS = 32;
+    
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    
+    /**
+     * The frequencies of a field without any counts, e.g. of a field that is not in the metadata table
+     */
+    public static final FieldFrequencies EMPTY = new FieldFrequencies(Collections.emptyMap());
+    
+    private final Map<String,Series> seriesByDatatype;
+    
+    private FieldFrequencies(Map<String,Series> seriesByDatatype) {
+        this.seriesByDatatype = Collections.unmodifiableMap(seriesByDatatype);
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * @return the datatypes with counts for the field
+     */
+    public Set<String> getDatatypes() {
+        return seriesByDatatype.keySet();
+    }
+    
+    /**
+     * @return true if there are no counts for the field
+     */
+    public boolean isEmpty() {
+        return seriesByDatatype.isEmpty();
+    }
+    
+    /**
+     * Get the first day with a count in any of the datatypes.
+     *
+     * @param datatypes
+     *            the datatypes, or null for all datatypes
+     * @return the first day, as yyyyMMdd, or null if there are no counts for the datatypes
+     */
+    public String getFirstDay(Collection<String> datatypes) {
+        Long firstDay = null;
+        for (Map.Entry<String,Series> entry : seriesByDatatype.entrySet()) {
+            if (datatypes == null || datatypes.contains(entry.getKey())) {
+                firstDay = firstDay == null ? entry.getValue().firstDay : Math.min(firstDay, entry.getValue().firstDay);
+            }
+        }
+        return firstDay == null ? null : LocalDate.ofEpochDay(firstDay).format(DAY_FORMAT);
+    }
+    
+    /**
+     * Get the last day with a count in any of the datatypes.
+     *
+     * @param datatypes
+     *            the datatypes, or null for all datatypes
+     * @return the last day, as yyyyMMdd, or null if there are no counts for the datatypes
+     */
+    public String getLastDay(Collection<String> datatypes) {
+        Long lastDay = null;
+        for (Map.Entry<String,Series> entry : seriesByDatatype.entrySet()) {
+            if (datatypes == null || datatypes.contains(entry.getKey())) {
+                long day = entry.getValue().firstDay + entry.getValue().days - 1;
+                lastDay = lastDay == null ? day : Math.max(lastDay, day);
+            }
+        }
+        return lastDay == null ? null : LocalDate.ofEpochDay(lastDay).format(DAY_FORMAT);
+    }
+    
+    /**
+     * Sum the counts of a datatype between two days, inclusive.
+     *
+     * @param datatype
+     *            the datatype, or null for all datatypes
+     * @param beginDay
+     *            the first day, as yyyyMMdd
+     * @param endDay
+     *            the last day, as yyyyMMdd
+     * @return the sum of the counts
+     */
+    public long getCount(String datatype, String beginDay, String endDay) {
+        return getCount(datatype == null ? null : Collections.singleton(datatype), beginDay, endDay);
+    }
+    
+    /**
+     * Sum the counts of the datatypes between two days, inclusive.
+     *
+     * @param datatypes
+     *            the datatypes, or null for all datatypes
+     * @param beginDay
+     *            the first day, as yyyyMMdd
+     * @param endDay
+     *            the last day, as yyyyMMdd
+     * @return the sum of the counts
+     */
+    public long getCount(Collection<String> datatypes, String beginDay, String endDay) {
+        long begin = toEpochDay(beginDay);
+        long end = toEpochDay(endDay);
+        
+        long count = 0;
+        for (Map.Entry<String,Series> entry : seriesByDatatype.entrySet()) {
+            if (datatypes == null || datatypes.contains(entry.getKey())) {
+                count += entry.getValue().getCount(begin, end);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Get the counts of the datatypes for each day between two days, inclusive.
+     *
+     * @param beginDay
+     *            the first day, as yyyyMMdd
+     * @param endDay
+     *            the last day, as yyyyMMdd
+     * @param datatypes
+     *            the datatypes, or null for all datatypes
+     * @return a sorted map of day, as yyyyMMdd, to datatype to count, without the days and datatypes that have no count
+     */
+    public SortedMap<String,Map<String,Long>> getCountsByDay(String beginDay, String endDay, Collection<String> datatypes) {
+        long begin = toEpochDay(beginDay);
+        long end = toEpochDay(endDay);
+        
+        SortedMap<String,Map<String,Long>> countsByDay = new TreeMap<>();
+        for (Map.Entry<String,Series> entry : seriesByDatatype.entrySet()) {
+            if (datatypes == null || datatypes.contains(entry.getKey())) {
+                entry.getValue().forEachDay(begin, end, (day, count) -> countsByDay
+                                .computeIfAbsent(LocalDate.ofEpochDay(day).format(DAY_FORMAT), (k) -> new HashMap<>()).put(entry.getKey(), count));
+            }
+        }
+        return countsByDay;
+    }
+    
+    /**
+     * @return the approximate number of bytes held by the series of counts
+     */
+    public long getSizeInBytes() {
+        long size = 0;
+        for (Series series : seriesByDatatype.values()) {
+            size += series.getSizeInBytes();
+        }
+        return size;
+    }
+    
+    /**
+     * @return the number of bytes written by {@link #writeTo(ByteBuffer)}
+     */
+    public int getSerializedSize() {
+        int size = Integer.BYTES;
+        for (Map.Entry<String,Series> entry : seriesByDatatype.entrySet()) {
+            size += Integer.BYTES + entry.getKey().getBytes(StandardCharsets.UTF_8).length + entry.getValue().getSerializedSize();
+        }
+        return size;
+    }
+    
+    /**
+     * Write the series of counts to a buffer, from which they can be read again with {@link #readFrom(ByteBuffer)}.
+     *
+     * @param buffer
+     *            the buffer, with at least {@link #getSerializedSize()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(seriesByDatatype.size());
+        for (Map.Entry<String,Series> entry : seriesByDatatype.entrySet()) {
+            byte[] datatype = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(datatype.length);
+            buffer.put(datatype);
+            entry.getValue().writeTo(buffer);
+        }
+    }
+    
+    /**
+     * Read the series of counts written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer
+     *            the buffer, positioned at the start of the series
+     * @return the frequencies
+     */
+    public static FieldFrequencies readFrom(ByteBuffer buffer) {
+        int datatypes = buffer.getInt();
+        if (datatypes == 0) {
+            return EMPTY;
+        }
+        Map<String,Series> seriesByDatatype = new HashMap<>();
+        for (int i = 0; i < datatypes; i++) {
+            byte[] datatype = new byte[buffer.getInt()];
+            buffer.get(datatype);
+            seriesByDatatype.put(new String(datatype, StandardCharsets.UTF_8), Series.readFrom(buffer));
+        }
+        return new FieldFrequencies(seriesByDatatype);
+    }
+    
+    private static long toEpochDay(String day) {
+        return LocalDate.parse(day, DAY_FORMAT).toEpochDay();
+    }
+    
+    @Override
+    public String toString() {
+        return "FieldFrequencies{datatypes=" + seriesByDatatype.keySet() + ", sizeInBytes=" + getSizeInBytes() + "}";
+    }
+    
+    @FunctionalInterface
+    private interface DayCountConsumer {
+        void accept(long day, long count);
+    }
+    
+    /**
+     * The daily counts of a single datatype.
+     */
+    private static final class Series {
+        private final long firstDay;
+        private final int days;
+        private final long total;
+        private final byte[] counts;
+        private final long[] blockTotals;
+        private final int[] blockOffsets;
+        
+        private Series(long firstDay, int days, long total, byte[] counts, long[] blockTotals, int[] blockOffsets) {
+            this.firstDay = firstDay;
+            this.days = days;
+            this.total = total;
+            this.counts = counts;
+            this.blockTotals = blockTotals;
+            this.blockOffsets = blockOffsets;
+        }
+        
+        private Series(SortedMap<Long,Long> countsByDay) {
+            this.firstDay = countsByDay.firstKey();
+            this.days = Math.toIntExact(countsByDay.lastKey() - firstDay + 1);
+            
+            int blocks = (days + BLOCK_DAYS - 1) / BLOCK_DAYS;
+            this.blockTotals = new long[blocks];
+            this.blockOffsets = new int[blocks];
+            
+            byte[] bytes = new byte[days + countsByDay.size() * 2];
+            int offset = 0;
+            long runningTotal = 0;
+            for (int i = 0; i < days; i++) {
+                if (i % BLOCK_DAYS == 0) {
+                    blockTotals[i / BLOCK_DAYS] = runningTotal;
+                    blockOffsets[i / BLOCK_DAYS] = offset;
+                }
+                if (bytes.length - offset < 10) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2 + 10);
+                }
+                long count = countsByDay.getOrDefault(firstDay + i, 0L);
+                offset = writeVarint(bytes, offset, (count << 1) ^ (count >> 63));
+                runningTotal += count;
+            }
+            this.counts = Arrays.copyOf(bytes, offset);
+            this.total = runningTotal;
+        }
+        
+        long getCount(long begin, long end) {
+            int from = index(begin);
+            int to = index(end + 1);
+            return from >= to ? 0 : totalBefore(to) - totalBefore(from);
+        }
+        
+        void forEachDay(long begin, long end, DayCountConsumer consumer) {
+            int from = index(begin);
+            int to = index(end + 1);
+            if (from >= to) {
+                return;
+            }
+            
+            int[] position = {blockOffsets[from / BLOCK_DAYS]};
+            for (int i = from / BLOCK_DAYS * BLOCK_DAYS; i < to; i++) {
+                long count = readCount(counts, position);
+                if (i >= from && count != 0) {
+                    consumer.accept(firstDay + i, count);
+                }
+            }
+        }
+        
+        long getSizeInBytes() {
+            return counts.length + blockTotals.length * 8L + blockOffsets.length * 4L;
+        }
+        
+        int getSerializedSize() {
+            return Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + counts.length + blockTotals.length * (Long.BYTES + Integer.BYTES);
+        }
+        
+        void writeTo(ByteBuffer buffer) {
+            buffer.putLong(firstDay).putInt(days).putLong(total);
+            buffer.putInt(counts.length).put(counts);
+            for (int i = 0; i < blockTotals.length; i++) {
+                buffer.putLong(blockTotals[i]).putInt(blockOffsets[i]);
+            }
+        }
+        
+        static Series readFrom(ByteBuffer buffer) {
+            long firstDay = buffer.getLong();
+            int days = buffer.getInt();
+            long total = buffer.getLong();
+            byte[] counts = new byte[buffer.getInt()];
+            buffer.get(counts);
+            int blocks = (days + BLOCK_DAYS - 1) / BLOCK_DAYS;
+            long[] blockTotals = new long[blocks];
+            int[] blockOffsets = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                blockTotals[i] = buffer.getLong();
+                blockOffsets[i] = buffer.getInt();
+            }
+            return new Series(firstDay, days, total, counts, blockTotals, blockOffsets);
+        }
+        
+        /**
+         * @return the index of the day within the series, clamped to the days of the series
+         */
+        private int index(long day) {
+            return (int) Math.max(0, Math.min(days, day - firstDay));
+        }
+        
+        /**
+         * @return the running total of the counts before the day at the given index
+         */
+        private long totalBefore(int index) {
+            if (index >= days) {
+                return total;
+            }
+            int block = index / BLOCK_DAYS;
+            long runningTotal = blockTotals[block];
+            int[] position = {blockOffsets[block]};
+            for (int i = block * BLOCK_DAYS; i < index; i++) {
+                runningTotal += readCount(counts, position);
+            }
+            return runningTotal;
+        }
+        
+        private static int writeVarint(byte[] bytes, int offset, long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[offset++] = (byte) value;
+            return offset;
+        }
+        
+        private static long readCount(byte[] bytes, int[] position) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position[0]++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+    
+    /**
+     * Collects the daily counts of a field, summing the counts of the same datatype and day.
+     */
+    public static class Builder {
+        private final Map<String,SortedMap<Long,Long>> countsByDatatype = new HashMap<>();
+        
+        private Builder() {}
+        
+        /**
+         * Add a daily count.
+         *
+         * @param datatype
+         *            the datatype
+         * @param day
+         *            the day, as yyyyMMdd
+         * @param count
+         *            the count
+         * @return this builder
+         */
+        public Builder add(String datatype, String day, long count) {
+            countsByDatatype.computeIfAbsent(datatype, (k) -> new TreeMap<>()).merge(toEpochDay(day), count, Long::sum);
+            return this;
+        }
+        
+        public FieldFrequencies build() {
+            if (countsByDatatype.isEmpty()) {
+                return EMPTY;
+            }
+            Map<String,Series> seriesByDatatype = new HashMap<>();
+            for (Map.Entry<String,SortedMap<Long,Long>> entry : countsByDatatype.entrySet()) {
+                seriesByDatatype.put(entry.getKey(), new Series(entry.getValue()));
+            }
+            return new FieldFrequencies(seriesByDatatype);
+        }
+    }
+}
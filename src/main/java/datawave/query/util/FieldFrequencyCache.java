@@ -0,0 +1,314 @@
+package datawave.query.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+
+import org.apache.accumulo.core.security.Authorizations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * A local cache of the {@link FieldFrequencies} of each field, used in place of the cached metadata table of a
+ * {@link datawave.webservice.common.connection.WrappedAccumuloClient}. The frequencies of a field are read from the real table once and kept in a size-bounded
+ * on-heap tier. Entries evicted from the heap for its size are moved to an optional memory-mapped file tier, from which they are read back without another
+ * scan. Fields without any counts are cached too, so repeated lookups of a missing field do not scan the table again.
+ * <p>
+ * Entries expire a fixed time after they were loaded, in either tier. The file tier is written sequentially and starts over from the beginning of the file
+ * once it is full, dropping every entry in it.
+ */
+public class FieldFrequencyCache {
+    private static final Logger log = LoggerFactory.getLogger(FieldFrequencyCache.class);
+    
+    public static final long DEFAULT_MAXIMUM_HEAP_BYTES = 64L * 1024L * 1024L;
+    public static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofHours(24);
+    public static final Duration DEFAULT_NEGATIVE_EXPIRE_AFTER_WRITE = Duration.ofMinutes(15);
+    
+    // the approximate size of a cache entry, its key and the frequencies object, without the series of counts
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    
+    private static final FieldFrequencyCache DEFAULT = builder().build();
+    
+    private final Cache<Object,Entry> heap;
+    private final FileTier file;
+    private final long expireNanos;
+    private final long negativeExpireNanos;
+    private final Ticker ticker;
+    
+    private FieldFrequencyCache(Builder builder) {
+        this.expireNanos = builder.expireAfterWrite.toNanos();
+        this.negativeExpireNanos = builder.negativeExpireAfterWrite.toNanos();
+        this.ticker = builder.ticker;
+        this.file = builder.file == null ? null : new FileTier(builder.file, builder.fileCapacityBytes);
+        
+        // @formatter:off
+        this.heap = Caffeine.newBuilder()
+                        .maximumWeight(builder.maximumHeapBytes)
+                        .weigher((Object key, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + entry.frequencies.getSizeInBytes()))
+                        .expireAfter(new EntryExpiry())
+                        .ticker(ticker)
+                        .executor(Runnable::run)
+                        .removalListener(this::onRemoval)
+                        .build();
+        // @formatter:on
+    }
+    
+    /**
+     * @return the cache shared by the helpers that are not given one of their own, with the default limits and no file tier
+     */
+    public static FieldFrequencyCache getDefault() {
+        return DEFAULT;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Get the frequencies of a field, loading them if they are in neither tier.
+     *
+     * @param tableName
+     *            the metadata table name
+     * @param auths
+     *            the authorizations the frequencies are read with
+     * @param fieldName
+     *            the field name, as it is stored in the metadata table
+     * @param loader
+     *            loads the frequencies from the table
+     * @return the frequencies, which are {@link FieldFrequencies#EMPTY} for a field without counts
+     * @throws Exception
+     *             if the loader fails
+     */
+    public FieldFrequencies get(String tableName, Set<Authorizations> auths, String fieldName, Callable<FieldFrequencies> loader) throws Exception {
+        Object key = Arrays.asList(tableName, auths, fieldName);
+        try {
+            return heap.get(key, (k) -> load(k, loader)).frequencies;
+        } catch (CompletionException e) {
+            // the checked exceptions of the loader are wrapped to get them out of the mapping function
+            throw (Exception) e.getCause();
+        }
+    }
+    
+    /**
+     * @return the number of fields in the heap tier
+     */
+    public long getHeapSize() {
+        heap.cleanUp();
+        return heap.estimatedSize();
+    }
+    
+    /**
+     * @return the number of fields in the file tier
+     */
+    public int getFileSize() {
+        return file == null ? 0 : file.size();
+    }
+    
+    /**
+     * Drop every entry from both tiers.
+     */
+    public void clear() {
+        heap.invalidateAll();
+        heap.cleanUp();
+        if (file != null) {
+            file.clear();
+        }
+    }
+    
+    private Entry load(Object key, Callable<FieldFrequencies> loader) {
+        Entry entry = file == null ? null : file.remove(key);
+        if (entry != null && !isExpired(entry)) {
+            return entry;
+        }
+        
+        try {
+            FieldFrequencies frequencies = loader.call();
+            return new Entry(frequencies == null ? FieldFrequencies.EMPTY : frequencies, ticker.read());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+    
+    private boolean isExpired(Entry entry) {
+        return ticker.read() - entry.loadTime >= expireNanos(entry);
+    }
+    
+    private long expireNanos(Entry entry) {
+        return entry.frequencies.isEmpty() ? negativeExpireNanos : expireNanos;
+    }
+    
+    private void onRemoval(Object key, Entry entry, RemovalCause cause) {
+        // only the entries pushed out by the size of the heap are kept, the rest expired or were dropped on purpose
+        if (file != null && key != null && entry != null && cause == RemovalCause.SIZE) {
+            file.put(key, entry);
+        }
+    }
+    
+    /**
+     * The frequencies of a field and the time at which they were read from the table.
+     */
+    private static final class Entry {
+        private final FieldFrequencies frequencies;
+        private final long loadTime;
+        
+        private Entry(FieldFrequencies frequencies, long loadTime) {
+            this.frequencies = frequencies;
+            this.loadTime = loadTime;
+        }
+    }
+    
+    /**
+     * Expires the entries of the heap tier a fixed time after they were read from the table, including the time spent in the file tier.
+     */
+    private final class EntryExpiry implements Expiry<Object,Entry> {
+        @Override
+        public long expireAfterCreate(Object key, Entry entry, long currentTime) {
+            return Math.max(0, expireNanos(entry) - (currentTime - entry.loadTime));
+        }
+        
+        @Override
+        public long expireAfterUpdate(Object key, Entry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(Object key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+    
+    /**
+     * A file of serialized frequencies, mapped into memory, and an index of where the frequencies of each field are in it.
+     */
+    private static final class FileTier {
+        private final MappedByteBuffer buffer;
+        private final Map<Object,long[]> index = new HashMap<>();
+        
+        private FileTier(Path path, long capacityBytes) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // the contents of a previous file are not trusted, as the index of it is gone
+                channel.truncate(0);
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map the field frequency cache file " + path, e);
+            }
+            path.toFile().deleteOnExit();
+        }
+        
+        synchronized int size() {
+            return index.size();
+        }
+        
+        synchronized void clear() {
+            index.clear();
+            buffer.clear();
+        }
+        
+        synchronized void put(Object key, Entry entry) {
+            int size = entry.frequencies.getSerializedSize();
+            if (size > buffer.capacity()) {
+                log.debug("The frequencies of {} are too large for the field frequency cache file", key);
+                return;
+            } else if (size > buffer.remaining()) {
+                log.debug("The field frequency cache file is full, dropping its {} entries", index.size());
+                clear();
+            }
+            index.put(key, new long[] {buffer.position(), entry.loadTime});
+            entry.frequencies.writeTo(buffer);
+        }
+        
+        synchronized Entry remove(Object key) {
+            long[] location = index.remove(key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) location[0]);
+            return new Entry(FieldFrequencies.readFrom(view), location[1]);
+        }
+    }
+    
+    public static class Builder {
+        private long maximumHeapBytes = DEFAULT_MAXIMUM_HEAP_BYTES;
+        private Duration expireAfterWrite = DEFAULT_EXPIRE_AFTER_WRITE;
+        private Duration negativeExpireAfterWrite = DEFAULT_NEGATIVE_EXPIRE_AFTER_WRITE;
+        private Path file;
+        private int fileCapacityBytes;
+        private Ticker ticker = Ticker.systemTicker();
+        
+        private Builder() {}
+        
+        /**
+         * @param maximumHeapBytes
+         *            the approximate number of bytes of frequencies to keep on the heap
+         * @return this builder
+         */
+        public Builder maximumHeapBytes(long maximumHeapBytes) {
+            this.maximumHeapBytes = maximumHeapBytes;
+            return this;
+        }
+        
+        /**
+         * @param expireAfterWrite
+         *            how long the frequencies of a field are kept after they were read from the table
+         * @return this builder
+         */
+        public Builder expireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+        
+        /**
+         * @param negativeExpireAfterWrite
+         *            how long a field without counts is remembered as such, which is usually shorter as the field may be ingested at any time
+         * @return this builder
+         */
+        public Builder negativeExpireAfterWrite(Duration negativeExpireAfterWrite) {
+            this.negativeExpireAfterWrite = negativeExpireAfterWrite;
+            return this;
+        }
+        
+        /**
+         * Keep the frequencies evicted from the heap in a memory-mapped file. The file is overwritten, and deleted when the JVM exits.
+         *
+         * @param file
+         *            the file
+         * @param capacityBytes
+         *            the size of the file
+         * @return this builder
+         */
+        public Builder file(Path file, int capacityBytes) {
+            this.file = file;
+            this.fileCapacityBytes = capacityBytes;
+            return this;
+        }
+        
+        public Builder ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+        
+        public FieldFrequencyCache build() {
+            return new FieldFrequencyCache(this);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package datawave.query.util;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The memoized, immutable views of some cached metadata, keyed by the datatype filter they were computed for. A null filter is the unfiltered view. Filters
+ * are compared by their contents, so any set with the same datatypes finds the same view, and a view that has been computed once is returned again without
+ * any allocation.
+ * <p>
+ * The views live as long as the metadata they were computed from. As the filters come from users, at most {@link #MAX_FILTERS} filtered views are kept, and the
+ * views of any other filter are computed on every call.
+ *
+ * <pre>
+ * Set&lt;String&gt; fields = views.get(datatypeFilter);
+ * if (fields == null) {
+ *     fields = views.put(datatypeFilter, computeFields(datatypeFilter));
+ * }
+ * </pre>
+ *
+ * @param <T>
+ *            the type of the views, which must be immutable
+ */
+final class FilteredViews<T> {
+    
+    static final int MAX_FILTERS = 256;
+    
+    private volatile T unfiltered;
+    private final ConcurrentMap<Set<String>,T> filtered = new ConcurrentHashMap<>();
+    
+    /**
+     * @param datatypeFilter
+     *            the datatype filter, or null for the unfiltered view
+     * @return the memoized view for the filter, or null if it has not been computed
+     */
+    T get(Set<String> datatypeFilter) {
+        return datatypeFilter == null ? unfiltered : filtered.get(datatypeFilter);
+    }
+    
+    /**
+     * Memoize a view, unless another thread memoized the view of the same filter first.
+     *
+     * @param datatypeFilter
+     *            the datatype filter, or null for the unfiltered view
+     * @param view
+     *            the immutable view computed for the filter
+     * @return the memoized view for the filter, which is the given view unless another thread memoized one first
+     */
+    T put(Set<String> datatypeFilter, T view) {
+        if (datatypeFilter == null) {
+            unfiltered = view;
+            return view;
+        }
+        if (filtered.size() >= MAX_FILTERS) {
+            return view;
+        }
+        // the filter is copied so the caller can not change the key. A filter that is not equal to its copy, such as a UniversalSet, is not memoized.
+        Set<String> key = Collections.unmodifiableSet(new HashSet<>(datatypeFilter));
+        if (!datatypeFilter.equals(key)) {
+            return view;
+        }
+        T memoized = filtered.putIfAbsent(key, view);
+        return memoized == null ? view : memoized;
+    }
+}
@@ -13,8 +13,6 @@ import java.util.concurrent.ExecutionException;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.iterators.OptionDescriber;
 
-import com.google.common.collect.Sets;
-
 import datawave.util.StringUtils;
 
 public class Metadata implements Serializable, OptionDescriber {
@@ -39,22 +37,24 @@ public class Metadata implements Serializable, OptionDescriber {
     public Metadata() {}
     
     /**
+     * The sets of a metadata are never modified, only replaced by {@link #init(Map)}, so a copy shares them.
+     *
      * @param other
      */
     public Metadata(Metadata other) {
-        this(Sets.newHashSet(other.datatypes), Sets.newHashSet(other.termFrequencyFields), Sets.newHashSet(other.allFields),
-                        Sets.newHashSet(other.indexedFields), Sets.newHashSet(other.indexOnlyFields));
+        this(other.datatypes, other.termFrequencyFields, other.allFields, other.indexedFields, other.indexOnlyFields);
     }
     
     /**
+     * The sets come from the helper, which returns unmodifiable sets that it memoizes per datatype filter, so they are not copied.
+     *
      * @param helper
      * @throws ExecutionException
      * @throws TableNotFoundException
      */
     public Metadata(MetadataHelper helper, Set<String> datatypeFilter) throws ExecutionException, TableNotFoundException {
-        this(Sets.<String> newHashSet(helper.getDatatypes(datatypeFilter)), Sets.<String> newHashSet(helper.getTermFrequencyFields(datatypeFilter)),
-                        Sets.<String> newHashSet(helper.getAllFields(datatypeFilter)), Sets.<String> newHashSet(helper.getIndexedFields(datatypeFilter)),
-                        Sets.<String> newHashSet(helper.getIndexOnlyFields(datatypeFilter)));
+        this(helper.getDatatypes(datatypeFilter), helper.getTermFrequencyFields(datatypeFilter), helper.getAllFields(datatypeFilter),
+                        helper.getIndexedFields(datatypeFilter), helper.getIndexOnlyFields(datatypeFilter));
     }
     
     protected Metadata(Set<String> datatypes, Set<String> termFrequencyFields, Set<String> allFields, Set<String> indexedFields, Set<String> indexOnlyFields) {
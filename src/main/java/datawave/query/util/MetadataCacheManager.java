@@ -16,6 +16,8 @@ import org.springframework.stereotype.Component;
  */
 @Component
 public class MetadataCacheManager {
+    private static final String SNAPSHOT_CACHE_NAME = "getMetadataSnapshot";
+    
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final CacheManager cacheManager;
     
@@ -36,6 +38,43 @@ public class MetadataCacheManager {
         });
     }
     
+    /**
+     * Clears the caches in the metadata helper {@link CacheManager} like {@link #evictCaches()}, except that cached {@link MetadataSnapshot}s are kept and
+     * marked stale. The next request for a stale snapshot scans only the entries written since it was built, instead of rebuilding it from the whole table.
+     * Caches of a {@link RefreshingCacheManager} are not cleared, but reloaded in the background while they continue to serve their current values. Use
+     * {@link #evictCaches()} when entries may have been deleted from the metadata table.
+     */
+    @SuppressWarnings("unchecked")
+    public void refreshCaches() {
+        Cache snapshotCache = cacheManager.getCache(SNAPSHOT_CACHE_NAME);
+        if (snapshotCache instanceof RefreshingCache) {
+            log.debug("Marking metadata cache {} stale.", SNAPSHOT_CACHE_NAME);
+            ((RefreshingCache) snapshotCache).replaceValues(MetadataCacheManager::stale);
+        } else if (snapshotCache != null && snapshotCache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache) {
+            log.debug("Marking metadata cache {} stale.", SNAPSHOT_CACHE_NAME);
+            Map<Object,Object> map = ((com.github.benmanes.caffeine.cache.Cache<Object,Object>) snapshotCache.getNativeCache()).asMap();
+            map.replaceAll((key, value) -> stale(value));
+        } else if (snapshotCache != null) {
+            snapshotCache.clear();
+        }
+        
+        // the snapshots are marked stale first so that the caches refreshed from them pick up the new entries
+        cacheManager.getCacheNames().forEach(cacheName -> {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache instanceof RefreshingCache && !SNAPSHOT_CACHE_NAME.equals(cacheName)) {
+                log.debug("Refreshing metadata cache {}.", cacheName);
+                ((RefreshingCache) cache).refreshAll();
+            } else if (cache != null && !SNAPSHOT_CACHE_NAME.equals(cacheName)) {
+                log.debug("Clearing metadata cache {}.", cacheName);
+                cache.clear();
+            }
+        });
+    }
+    
+    private static Object stale(Object value) {
+        return value instanceof MetadataSnapshot ? ((MetadataSnapshot) value).stale() : value;
+    }
+    
     /**
      * Dump all entries in the metadata helper {@link CacheManager}'s caches.
      * 
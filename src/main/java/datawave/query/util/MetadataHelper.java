@@ -1,10 +1,8 @@
 package datawave.query.util;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.charset.CharacterCodingException;
-import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
@@ -17,34 +15,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TimeZone;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
-import org.apache.accumulo.core.client.BatchWriter;
-import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.IteratorSetting;
-import org.apache.accumulo.core.client.MutationsRejectedException;
 import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Key;
-import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.ValueFormatException;
-import org.apache.accumulo.core.iterators.user.RegExFilter;
 import org.apache.accumulo.core.iterators.user.SummingCombiner;
 import org.apache.accumulo.core.security.Authorizations;
-import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.commons.lang.time.DateUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.io.WritableUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
@@ -67,6 +60,7 @@ import datawave.data.ColumnFamilyConstants;
 import datawave.data.MetadataCardinalityCounts;
 import datawave.data.type.Type;
 import datawave.iterators.EdgeMetadataCombiner;
+import datawave.iterators.FrequencySummingIterator;
 import datawave.iterators.filter.EdgeMetadataCQStrippingIterator;
 import datawave.marking.MarkingFunctions;
 import datawave.query.composite.CompositeMetadata;
@@ -124,6 +118,8 @@ public class MetadataHelper {
     protected final List<Text> metadataTypeColfs = Arrays.asList(ColumnFamilyConstants.COLF_T);
     protected final List<Text> metadataCompositeIndexColfs = Arrays.asList(ColumnFamilyConstants.COLF_CI);
     protected final List<Text> metadataCardinalityColfs = Arrays.asList(ColumnFamilyConstants.COLF_COUNT);
+    protected final List<Text> metadataIndexFlagColfs = Arrays.asList(ColumnFamilyConstants.COLF_I, ColumnFamilyConstants.COLF_RI,
+                    ColumnFamilyConstants.COLF_TF);
     
     protected final AccumuloClient accumuloClient;
     protected final String metadataTableName;
@@ -136,6 +132,12 @@ public class MetadataHelper {
     // a set of fields that are dynamically created at evaluation time, and are not registered in the metadata table
     protected Set<String> evaluationOnlyFields = Collections.emptySet();
     
+    // the results of getAllFields for the snapshot and evaluation only fields they were computed from
+    private volatile AllFieldsViews allFieldsViews;
+    
+    // the daily counts of the fields read through a WrappedAccumuloClient
+    protected FieldFrequencyCache fieldFrequencyCache = FieldFrequencyCache.getDefault();
+    
     public MetadataHelper(AllFieldMetadataHelper allFieldMetadataHelper, Collection<Authorizations> allMetadataAuths, AccumuloClient client,
                     String metadataTableName, Set<Authorizations> auths, Set<Authorizations> fullUserAuths) {
         Preconditions.checkNotNull(allFieldMetadataHelper, "An AllFieldMetadataHelper is required by MetadataHelper");
@@ -218,47 +220,14 @@ public class MetadataHelper {
         return minimizedAllMetadataAuths;
     }
     
-    private Set<Set<String>> getAllMetadataAuthsPowerSet(Collection<Authorizations> allMetadataAuthsCollection) {
-        
-        // first, minimize the usersAuths:
-        Collection<Authorizations> minimizedCollection = AuthorizationsMinimizer.minimize(allMetadataAuthsCollection);
-        // now, the first entry in the minimized auths should have everything common to every Authorizations in the set
-        // make sure that the first entry contains all the Authorizations in the allMetadataAuths
-        Authorizations minimized = minimizedCollection.iterator().next(); // get the first one, which has all auths common to all in the original collection
-        Set<String> minimizedUserAuths = StreamSupport.stream(minimized.spliterator(), false).map(String::new).collect(Collectors.toSet());
-        if (log.isDebugEnabled()) {
-            log.debug("minimizedUserAuths:" + minimizedUserAuths + " with size " + minimizedUserAuths.size());
-        }
-        Set<Set<String>> powerset = Sets.powerSet(minimizedUserAuths);
-        Set<Set<String>> set = Sets.newHashSet();
-        for (Set<String> sub : powerset) {
-            Set<String> serializableSet = Sets.newHashSet(sub);
-            set.add(serializableSet);
-        }
-        return set;
-    }
-    
+    /**
+     * Get the {@link TypeMetadata} visible to every subset of the {@link #allMetadataAuths}, from a single scan of the metadata table.
+     *
+     * @return the type metadata, keyed by subset of the auths
+     * @throws TableNotFoundException
+     */
     public Map<Set<String>,TypeMetadata> getTypeMetadataMap() throws TableNotFoundException {
-        Collection<Set<String>> powerset = getAllMetadataAuthsPowerSet(this.allMetadataAuths);
-        if (log.isTraceEnabled()) {
-            log.trace("powerset:" + powerset);
-        }
-        Map<Set<String>,TypeMetadata> map = Maps.newHashMap();
-        
-        for (Set<String> a : powerset) {
-            if (log.isTraceEnabled()) {
-                log.trace("get TypeMetadata with auths:" + a);
-            }
-            
-            Authorizations at = new Authorizations(a.toArray(new String[a.size()]));
-            
-            if (log.isTraceEnabled()) {
-                log.trace("made an Authorizations:" + at);
-            }
-            TypeMetadata tm = this.allFieldMetadataHelper.getTypeMetadataHelper().getTypeMetadataForAuths(Collections.singleton(at));
-            map.put(a, tm);
-        }
-        return map;
+        return this.allFieldMetadataHelper.getTypeMetadataHelper().getTypeMetadataMap(this.allMetadataAuths);
     }
     
     public String getUsersMetadataAuthorizationSubset() {
@@ -320,25 +289,36 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getAllFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        Multimap<String,String> allFields = this.allFieldMetadataHelper.loadAllFields();
+        MetadataSnapshot snapshot = getMetadataSnapshot();
+        Set<String> evaluationOnlyFields = this.evaluationOnlyFields;
+        AllFieldsViews views = this.allFieldsViews;
+        if (views == null || views.snapshot != snapshot || views.evaluationOnlyFields != evaluationOnlyFields) {
+            views = new AllFieldsViews(snapshot, evaluationOnlyFields);
+            this.allFieldsViews = views;
+        }
+        
+        Set<String> filter = nullIfEmpty(ingestTypeFilter);
+        Set<String> fields = views.views.get(filter);
+        if (fields != null) {
+            return fields;
+        }
+        
+        Set<String> allFields = snapshot.getAllFields(filter);
         if (log.isTraceEnabled())
-            log.trace("loadAllFields() with auths:" + this.allFieldMetadataHelper.getAuths() + " returned " + allFields);
+            log.trace("getAllFields() with auths:" + this.allFieldMetadataHelper.getAuths() + " found " + allFields);
         
-        Set<String> fields = new HashSet<>();
-        if (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) {
-            fields.addAll(allFields.values());
+        if (evaluationOnlyFields.isEmpty()) {
+            fields = allFields;
         } else {
-            for (String datatype : ingestTypeFilter) {
-                fields.addAll(allFields.get(datatype));
-            }
+            fields = new HashSet<>(allFields);
+            // Add any additional fields that are created at evaluation time and are hence not in the metadata table.
+            fields.addAll(evaluationOnlyFields);
+            fields = Collections.unmodifiableSet(fields);
         }
         
-        // Add any additional fields that are created at evaluation time and are hence not in the metadata table.
-        fields.addAll(evaluationOnlyFields);
-        
         if (log.isTraceEnabled())
             log.trace("getAllFields(" + ingestTypeFilter + ") returning " + fields);
-        return Collections.unmodifiableSet(fields);
+        return views.views.put(filter, fields);
     }
     
     public Set<String> getEvaluationOnlyFields() {
@@ -349,6 +329,14 @@ public class MetadataHelper {
         this.evaluationOnlyFields = (evaluationOnlyFields == null ? Collections.emptySet() : new HashSet<>(evaluationOnlyFields));
     }
     
+    public FieldFrequencyCache getFieldFrequencyCache() {
+        return fieldFrequencyCache;
+    }
+    
+    public void setFieldFrequencyCache(FieldFrequencyCache fieldFrequencyCache) {
+        this.fieldFrequencyCache = (fieldFrequencyCache == null ? FieldFrequencyCache.getDefault() : fieldFrequencyCache);
+    }
+    
     /**
      * Get the fields that have values not in the same form as the event (excluding normalization). This would include index only fields, term frequency fields
      * (as the index may contain tokens), and composite fields.
@@ -394,18 +382,7 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getIndexOnlyFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        
-        Multimap<String,String> indexOnlyFields = this.allFieldMetadataHelper.getIndexOnlyFields();
-        
-        Set<String> fields = new HashSet<>();
-        if (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) {
-            fields.addAll(indexOnlyFields.values());
-        } else {
-            for (String datatype : ingestTypeFilter) {
-                fields.addAll(indexOnlyFields.get(datatype));
-            }
-        }
-        return Collections.unmodifiableSet(fields);
+        return getMetadataSnapshot().getIndexOnlyFields(nullIfEmpty(ingestTypeFilter));
     }
     
     public QueryModel getQueryModel(String modelTableName, String modelName) throws TableNotFoundException, ExecutionException {
@@ -487,7 +464,7 @@ public class MetadataHelper {
      * @return a list of query model names
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getQueryModelNames", key = "{#root.target.auths,#table}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getQueryModelNames", key = "{#root.target.auths,#table}", cacheManager = "metadataHelperCacheManager", sync = true)
     public Set<String> getQueryModelNames(String modelTableName) throws TableNotFoundException {
         Preconditions.checkNotNull(modelTableName);
         
@@ -544,6 +521,14 @@ public class MetadataHelper {
     public boolean isReverseIndexed(String fieldName, Set<String> ingestTypeFilter) throws TableNotFoundException {
         Preconditions.checkNotNull(fieldName);
         
+        if (isSnapshotTable()) {
+            return getMetadataSnapshot().hasColumn(ColumnFamilyConstants.COLF_RI, fieldName, ingestTypeFilter);
+        }
+        
+        if (!mightExist(fieldName.toUpperCase())) {
+            return false;
+        }
+        
         Entry<String,Entry<String,Set<String>>> entry = Maps.immutableEntry(metadataTableName, Maps.immutableEntry(fieldName, ingestTypeFilter));
         
         try {
@@ -564,6 +549,14 @@ public class MetadataHelper {
     public boolean isIndexed(String fieldName, Set<String> ingestTypeFilter) throws TableNotFoundException {
         Preconditions.checkNotNull(fieldName);
         
+        if (isSnapshotTable()) {
+            return getMetadataSnapshot().hasColumn(ColumnFamilyConstants.COLF_I, fieldName, ingestTypeFilter);
+        }
+        
+        if (!mightExist(fieldName.toUpperCase())) {
+            return false;
+        }
+        
         Entry<String,Entry<String,Set<String>>> entry = Maps.immutableEntry(metadataTableName, Maps.immutableEntry(fieldName, ingestTypeFilter));
         
         try {
@@ -585,6 +578,14 @@ public class MetadataHelper {
     public boolean isTokenized(String fieldName, Set<String> ingestTypeFilter) throws TableNotFoundException {
         Preconditions.checkNotNull(fieldName);
         
+        if (isSnapshotTable()) {
+            return getMetadataSnapshot().hasColumn(ColumnFamilyConstants.COLF_TF, fieldName, ingestTypeFilter);
+        }
+        
+        if (!mightExist(fieldName.toUpperCase())) {
+            return false;
+        }
+        
         Entry<String,Entry<String,Set<String>>> entry = Maps.immutableEntry(metadataTableName, Maps.immutableEntry(fieldName, ingestTypeFilter));
         
         try {
@@ -594,6 +595,60 @@ public class MetadataHelper {
         }
     }
     
+    /**
+     * Determines for each of the fields whether it has been indexed, reverse indexed and tokenized, as {@link #isIndexed(String, Set)},
+     * {@link #isReverseIndexed(String, Set)} and {@link #isTokenized(String, Set)} do. All of the fields are looked up with a single batch scan of the metadata
+     * table.
+     *
+     * @param fieldNames
+     * @param ingestTypeFilter
+     * @return a map of each of the field names, as given, to the i, ri and tf column families found for it
+     * @throws TableNotFoundException
+     */
+    public Map<String,Set<Text>> getIndexFlagColumns(Collection<String> fieldNames, Set<String> ingestTypeFilter) throws TableNotFoundException {
+        Preconditions.checkNotNull(fieldNames);
+        
+        Map<String,Set<Text>> columns = new HashMap<>();
+        if (isSnapshotTable()) {
+            MetadataSnapshot snapshot = getMetadataSnapshot();
+            for (String fieldName : fieldNames) {
+                Set<Text> found = new HashSet<>();
+                for (Text colf : metadataIndexFlagColfs) {
+                    if (snapshot.hasColumn(colf, fieldName, ingestTypeFilter)) {
+                        found.add(colf);
+                    }
+                }
+                columns.put(fieldName, found);
+            }
+            return columns;
+        }
+        
+        // fields that are known not to exist have none of the columns
+        List<String> existingFieldNames = new ArrayList<>();
+        for (String fieldName : fieldNames) {
+            if (mightExist(fieldName.toUpperCase())) {
+                existingFieldNames.add(fieldName);
+            } else {
+                columns.put(fieldName, new HashSet<>());
+            }
+        }
+        
+        // scan for all of the fields at once
+        Map<String,Map<Text,Set<String>>> datatypes = this.allFieldMetadataHelper.getColumnDatatypes(metadataTableName, metadataIndexFlagColfs,
+                        existingFieldNames);
+        for (String fieldName : existingFieldNames) {
+            Set<Text> found = new HashSet<>();
+            for (Entry<Text,Set<String>> column : datatypes.get(fieldName.toUpperCase()).entrySet()) {
+                if (ingestTypeFilter == null || ingestTypeFilter.isEmpty() || !Collections.disjoint(column.getValue(), ingestTypeFilter)) {
+                    found.add(column.getKey());
+                }
+            }
+            columns.put(fieldName, found);
+        }
+        
+        return columns;
+    }
+    
     /**
      * Returns a Set of all TextNormalizers in use by any type in Accumulo
      *
@@ -602,31 +657,32 @@ public class MetadataHelper {
      * @throws IllegalAccessException
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getFacets", key = "{#root.target.auths,#table}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getFacets", key = "{#root.target.auths,#table}", cacheManager = "metadataHelperCacheManager", sync = true)
     public Multimap<String,String> getFacets(String table) throws InstantiationException, IllegalAccessException, TableNotFoundException {
         log.debug("cache fault for getFacets(" + this.auths + "," + table + ")");
         Multimap<String,String> fieldPivots = HashMultimap.create();
         
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, table, auths);
-        Range range = new Range();
-        
-        bs.setRange(range);
+        BatchScanner bs = ParallelScans.createFullTableBatchScanner(accumuloClient, table, auths);
         
         bs.fetchColumnFamily(PV);
         
-        for (Entry<Key,Value> entry : bs) {
-            Key key = entry.getKey();
-            
-            if (null != key.getRow()) {
-                String[] parts = StringUtils.split(key.getRow().toString(), "\0");
-                if (parts.length == 2) {
-                    fieldPivots.put(parts[0], parts[1]);
-                    fieldPivots.put(parts[1], parts[0]);
-                    fieldPivots.put(parts[0], parts[0]);
+        try {
+            for (Entry<Key,Value> entry : bs) {
+                Key key = entry.getKey();
+                
+                if (null != key.getRow()) {
+                    String[] parts = StringUtils.split(key.getRow().toString(), "\0");
+                    if (parts.length == 2) {
+                        fieldPivots.put(parts[0], parts[1]);
+                        fieldPivots.put(parts[1], parts[0]);
+                        fieldPivots.put(parts[0], parts[0]);
+                    }
+                } else {
+                    log.warn("Row null in ColumnFamilyConstants for key: " + key);
                 }
-            } else {
-                log.warn("Row null in ColumnFamilyConstants for key: " + key);
             }
+        } finally {
+            bs.close();
         }
         
         return fieldPivots;
@@ -640,7 +696,7 @@ public class MetadataHelper {
      * @throws IllegalAccessException
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getTermCounts", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getTermCounts", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager", sync = true)
     public Map<String,Map<String,MetadataCardinalityCounts>> getTermCounts() throws InstantiationException, IllegalAccessException, TableNotFoundException {
         log.debug("cache fault for getTermCounts(" + this.auths + "," + this.metadataTableName + ")");
         Map<String,Map<String,MetadataCardinalityCounts>> allCounts = Maps.newHashMap();
@@ -648,10 +704,7 @@ public class MetadataHelper {
         if (log.isTraceEnabled())
             log.trace("getTermCounts from table: " + metadataTableName);
         
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        Range range = new Range();
-        
-        bs.setRange(range);
+        BatchScanner bs = ParallelScans.createFullTableBatchScanner(accumuloClient, metadataTableName, auths);
         
         // Fetch all of the index columns
         for (Text colf : metadataCardinalityColfs) {
@@ -685,7 +738,7 @@ public class MetadataHelper {
      * @throws IllegalAccessException
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getTermCountsWithRootAuths", key = "{#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getTermCountsWithRootAuths", key = "{#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager", sync = true)
     public Map<String,Map<String,MetadataCardinalityCounts>> getTermCountsWithRootAuths()
                     throws InstantiationException, IllegalAccessException, TableNotFoundException, AccumuloSecurityException, AccumuloException {
         log.debug("cache fault for getTermCounts(" + this.auths + "," + this.metadataTableName + ")");
@@ -696,10 +749,7 @@ public class MetadataHelper {
         
         Authorizations rootAuths = accumuloClient.securityOperations().getUserAuthorizations(accumuloClient.whoami());
         
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, Collections.singleton(rootAuths));
-        Range range = new Range();
-        
-        bs.setRange(range);
+        BatchScanner bs = ParallelScans.createFullTableBatchScanner(accumuloClient, metadataTableName, Collections.singleton(rootAuths));
         
         // Fetch all of the index columns
         for (Text colf : metadataCardinalityColfs) {
@@ -733,38 +783,14 @@ public class MetadataHelper {
      * @throws IllegalAccessException
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getAllNormalized", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    @Cacheable(value = "getAllNormalized", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
     public Set<String> getAllNormalized() throws InstantiationException, IllegalAccessException, TableNotFoundException {
         log.debug("cache fault for getAllNormalized(" + this.auths + "," + this.metadataTableName + ")");
-        Set<String> normalizedFields = Sets.newHashSetWithExpectedSize(10);
         if (log.isTraceEnabled())
             log.trace("getAllNormalized from table: " + metadataTableName);
         
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        Range range = new Range();
-        
-        bs.setRange(range);
-        
-        // Fetch all of the index columns
-        for (Text colf : metadataNormalizedColfs) {
-            bs.fetchColumnFamily(colf);
-        }
-        
-        try {
-            for (Entry<Key,Value> entry : bs) {
-                Key key = entry.getKey();
-                
-                if (null != key.getRow()) {
-                    normalizedFields.add(key.getRow().toString());
-                } else {
-                    log.warn("Row null in ColumnFamilyConstants for key: " + key);
-                }
-            }
-        } finally {
-            bs.close();
-        }
-        
-        return Collections.unmodifiableSet(normalizedFields);
+        return this.allFieldMetadataHelper.getMetadataSnapshot().getNormalizedFields();
     }
     
     /**
@@ -874,6 +900,13 @@ public class MetadataHelper {
         return dataTypes;
     }
     
+    /**
+     * Get a modifiable copy of the type metadata of every datatype. The copy is made from the cached {@link #getFrozenTypeMetadata()} on every call, so use
+     * that instead when the type metadata is only read.
+     *
+     * @return a modifiable copy of the type metadata
+     * @throws TableNotFoundException
+     */
     public TypeMetadata getTypeMetadata() throws TableNotFoundException {
         return this.allFieldMetadataHelper.getTypeMetadata(null);
     }
@@ -882,6 +915,17 @@ public class MetadataHelper {
         return this.allFieldMetadataHelper.getTypeMetadata(ingestTypeFilter);
     }
     
+    /**
+     * Get the type metadata of every datatype as an immutable {@link PackedTypeMetadata}, which is shared rather than copied. Use {@link #getTypeMetadata()}
+     * for a TypeMetadata that can be modified.
+     *
+     * @return the frozen type metadata
+     * @throws TableNotFoundException
+     */
+    public PackedTypeMetadata getFrozenTypeMetadata() throws TableNotFoundException {
+        return this.allFieldMetadataHelper.getFrozenTypeMetadata();
+    }
+    
     public CompositeMetadata getCompositeMetadata() throws TableNotFoundException {
         return this.allFieldMetadataHelper.getCompositeMetadata(null);
     }
@@ -897,7 +941,7 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      * @throws ExecutionException
      */
-    @Cacheable(value = "getEdges", key = "{#root.target.fullUserAuths,#root.target.metadataTableName}")
+    @Cacheable(value = "getEdges", key = "{#root.target.fullUserAuths,#root.target.metadataTableName}", sync = true)
     public SetMultimap<Key,Value> getEdges() throws TableNotFoundException, ExecutionException {
         log.debug("cache fault for getEdges(" + this.auths + ")");
         SetMultimap<Key,Value> edges = HashMultimap.create();
@@ -905,9 +949,8 @@ public class MetadataHelper {
             log.trace("getEdges from table: " + metadataTableName);
         // unlike other entries, the edges colf entries have many auths set. We'll use the fullUserAuths in the scanner instead
         // of the minimal set in this.auths
-        Scanner scanner = ScannerHelper.createScanner(accumuloClient, metadataTableName, fullUserAuths);
+        BatchScanner scanner = ParallelScans.createFullTableBatchScanner(accumuloClient, metadataTableName, fullUserAuths);
         
-        scanner.setRange(new Range());
         scanner.fetchColumnFamily(ColumnFamilyConstants.COLF_EDGE);
         
         // First iterator strips the optional attribute2 and attribute3 off the cq, second one
@@ -918,8 +961,12 @@ public class MetadataHelper {
         scanner.addScanIterator(stripConfig);
         scanner.addScanIterator(combineConfig);
         
-        for (Map.Entry<Key,Value> entry : scanner) {
-            edges.put(entry.getKey(), entry.getValue());
+        try {
+            for (Map.Entry<Key,Value> entry : scanner) {
+                edges.put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            scanner.close();
         }
         
         return Multimaps.unmodifiableSetMultimap(edges);
@@ -989,11 +1036,8 @@ public class MetadataHelper {
      * @return
      * @throws TableNotFoundException
      */
-    @Cacheable(value = "getTermFrequencyFields", key = "{#root.target.auths,#root.target.metadataTableName,#p0}", cacheManager = "metadataHelperCacheManager")
     public Set<String> getTermFrequencyFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        Multimap<String,String> termFrequencyFields = loadTermFrequencyFields();
-        
-        return getFields(termFrequencyFields, ingestTypeFilter);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_TF, ingestTypeFilter);
     }
     
     /**
@@ -1004,9 +1048,7 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getIndexedFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        Multimap<String,String> indexedFields = this.allFieldMetadataHelper.loadIndexedFields();
-        
-        return getFields(indexedFields, ingestTypeFilter);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_I, ingestTypeFilter);
     }
     
     /**
@@ -1017,9 +1059,7 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getReverseIndexedFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        Multimap<String,String> reverseIndexedFields = this.allFieldMetadataHelper.loadReverseIndexedFields();
-        
-        return getFields(reverseIndexedFields, ingestTypeFilter);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_RI, ingestTypeFilter);
     }
     
     /**
@@ -1030,9 +1070,7 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getExpansionFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        Multimap<String,String> expansionFields = this.allFieldMetadataHelper.loadExpansionFields();
-        
-        return getFields(expansionFields, ingestTypeFilter);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_EXP, ingestTypeFilter);
     }
     
     /**
@@ -1043,21 +1081,29 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     public Set<String> getContentFields(Set<String> ingestTypeFilter) throws TableNotFoundException {
-        Multimap<String,String> contentFields = this.allFieldMetadataHelper.loadContentFields();
-        
-        return getFields(contentFields, ingestTypeFilter);
+        return getMetadataSnapshot().getFields(ColumnFamilyConstants.COLF_CONTENT, ingestTypeFilter);
     }
     
-    private Set<String> getFields(Multimap<String,String> fields, Set<String> ingestTypeFilter) {
-        Set<String> returnedFields = new HashSet<>();
-        if (ingestTypeFilter == null) {
-            returnedFields.addAll(fields.values());
-        } else if (!ingestTypeFilter.isEmpty()) {
-            for (String datatype : ingestTypeFilter) {
-                returnedFields.addAll(fields.get(datatype));
-            }
-        } // non-null but empty typeFilters allow nothing
-        return Collections.unmodifiableSet(returnedFields);
+    /**
+     * Get the snapshot of the metadata table that field lookups are served from. Note that the snapshot treats a non-null but empty datatype filter as
+     * allowing nothing.
+     *
+     * @return the snapshot
+     * @throws TableNotFoundException
+     */
+    public MetadataSnapshot getMetadataSnapshot() throws TableNotFoundException {
+        return this.allFieldMetadataHelper.getMetadataSnapshot();
+    }
+    
+    /**
+     * Returns true if the snapshot was loaded from this helper's metadata table, and so can answer the column lookups for it.
+     */
+    private boolean isSnapshotTable() {
+        return this.metadataTableName.equals(this.allFieldMetadataHelper.getMetadataTableName());
+    }
+    
+    private static Set<String> nullIfEmpty(Set<String> ingestTypeFilter) {
+        return (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) ? null : ingestTypeFilter;
     }
     
     /**
@@ -1085,71 +1131,169 @@ public class MetadataHelper {
      */
     public long getCardinalityForField(String fieldName, String datatype, Date begin, Date end) throws TableNotFoundException {
         log.trace("getCardinalityForField from table: " + metadataTableName);
-        Text row = new Text(fieldName.toUpperCase());
+        String row = fieldName.toUpperCase();
         
-        // Get all the rows in DatawaveMetadata for the field, only in the 'f'
-        // colfam
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
+        // the days whose counts are included, i.e. whose start falls within begin and end, inclusive
+        String beginDay = getFirstDayOnOrAfter(begin);
+        String endDay = DateHelper.format(end);
+        if (beginDay.compareTo(endDay) > 0 || !mightExist(row)) {
+            return 0;
+        }
         
-        Key startKey = new Key(row);
-        bs.setRange(new Range(startKey, startKey.followingKey(PartialKey.ROW)));
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_F);
+        // the daily counts of the field are loaded once and cached, after which any date range is summed from memory
+        return getFieldFrequencies(row).getCount(datatype, beginDay, endDay);
+    }
+    
+    /**
+     * Sum all of the frequency counts for each of the fields in the datatypes between a start and end date (inclusive). The counts for all of the fields are
+     * read with a single batch scan, with a range for each field, and summed on the tablet servers.
+     *
+     * @param fields
+     *            the field names
+     * @param datatypes
+     *            the datatypes to include, or null for all datatypes
+     * @param begin
+     * @param end
+     * @return a map of each of the field names, as given, to its count
+     * @throws TableNotFoundException
+     */
+    public Map<String,Long> getCardinalityForFields(Collection<String> fields, Set<String> datatypes, Date begin, Date end) throws TableNotFoundException {
+        log.trace("getCardinalityForFields from table: " + metadataTableName);
+        Map<String,Long> counts = new HashMap<>();
+        
+        // the fields are stored in upper case, so map each row back to the field names as they were given
+        Multimap<String,String> fieldsByRow = HashMultimap.create();
+        for (String field : fields) {
+            fieldsByRow.put(field.toUpperCase(), field);
+            counts.put(field, 0L);
+        }
         
-        long count = 0;
+        // the days whose counts are included, i.e. whose start falls within begin and end, inclusive
+        String beginDay = getFirstDayOnOrAfter(begin);
+        String endDay = DateHelper.format(end);
         
-        for (Entry<Key,Value> entry : bs) {
-            Text colq = entry.getKey().getColumnQualifier();
-            
-            int index = colq.find(NULL_BYTE);
-            if (index != -1) {
-                // If we were given a non-null datatype
-                // Ensure that we process records only on that type
-                if (null != datatype) {
-                    try {
-                        String type = Text.decode(colq.getBytes(), 0, index);
-                        if (!type.equals(datatype)) {
-                            continue;
-                        }
-                    } catch (CharacterCodingException e) {
-                        log.warn("Could not deserialize colqual: " + entry.getKey());
-                        continue;
-                    }
+        // note that the UniversalSet is empty
+        boolean allDatatypes = datatypes == null || datatypes instanceof UniversalSet;
+        if (fieldsByRow.isEmpty() || beginDay.compareTo(endDay) > 0 || (!allDatatypes && datatypes.isEmpty())) {
+            return counts;
+        }
+        
+        // a range of the 'f' colfam for each field, bounded by the date range for each datatype when the datatypes are known
+        List<Range> ranges = new ArrayList<>();
+        for (String field : fieldsByRow.keySet()) {
+            if (!mightExist(field)) {
+                continue;
+            }
+            Text row = new Text(field);
+            if (allDatatypes) {
+                Key startKey = new Key(row, ColumnFamilyConstants.COLF_F);
+                ranges.add(new Range(startKey, true, startKey.followingKey(PartialKey.ROW_COLFAM), false));
+            } else {
+                for (String datatype : datatypes) {
+                    Key startKey = new Key(row, ColumnFamilyConstants.COLF_F, new Text(datatype + NULL_BYTE + beginDay));
+                    Key endKey = new Key(row, ColumnFamilyConstants.COLF_F, new Text(datatype + NULL_BYTE + endDay));
+                    ranges.add(new Range(startKey, true, endKey.followingKey(PartialKey.ROW_COLFAM_COLQUAL), false));
                 }
-                
-                // Parse the date to ensure that we want this record
-                String dateStr = "null";
-                Date date;
+            }
+        }
+        if (ranges.isEmpty()) {
+            return counts;
+        }
+        
+        BatchScanner bs = ScannerHelper.createBatchScanner(accumuloClient, metadataTableName, auths, Math.min(ParallelScans.getLoadThreads(), ranges.size()));
+        try {
+            bs.setRanges(ranges);
+            bs.fetchColumnFamily(ColumnFamilyConstants.COLF_F);
+            
+            IteratorSetting summing = new IteratorSetting(50, FrequencySummingIterator.class);
+            FrequencySummingIterator.configure(summing, beginDay, endDay, allDatatypes ? null : datatypes);
+            bs.addScanIterator(summing);
+            
+            // the batch scanner returns a sum for each field and datatype, in no particular order
+            Map<String,Long> countsByRow = new HashMap<>();
+            MetadataKeyParser parser = new MetadataKeyParser();
+            for (Entry<Key,Value> entry : bs) {
                 try {
-                    dateStr = Text.decode(colq.getBytes(), index + 1, colq.getLength() - (index + 1));
-                    date = DateHelper.parse(dateStr);
-                    // Add the provided count if we fall within begin and end,
-                    // inclusive
-                    if (date.compareTo(begin) >= 0 && date.compareTo(end) <= 0) {
-                        count += SummingCombiner.VAR_LEN_ENCODER.decode(entry.getValue().get());
-                    }
+                    countsByRow.merge(parser.parse(entry.getKey()).getFieldName(), SummingCombiner.VAR_LEN_ENCODER.decode(entry.getValue().get()), Long::sum);
                 } catch (ValueFormatException e) {
                     log.warn("Could not convert the Value to a long" + entry.getValue());
-                } catch (CharacterCodingException e) {
-                    log.warn("Could not deserialize colqual: " + entry.getKey());
-                } catch (DateTimeParseException e) {
-                    log.warn("Could not convert date string: " + dateStr);
                 }
             }
+            
+            for (Entry<String,Long> rowCount : countsByRow.entrySet()) {
+                for (String field : fieldsByRow.get(rowCount.getKey())) {
+                    counts.put(field, rowCount.getValue());
+                }
+            }
+        } finally {
+            bs.close();
         }
         
-        bs.close();
+        return counts;
+    }
+    
+    /**
+     * Determines whether a field might be in the {@link #metadataTableName} table, using the {@link AllFieldMetadataHelper#getFieldNameFilter(String)} of
+     * that table, so that lookups for fields that are known not to exist can be answered without a scan. The filter is only rebuilt when its cache entry is
+     * refreshed, so a field that it does not contain is looked up in the snapshot, which is refreshed incrementally. The filter is not used for a table
+     * without a snapshot, or with a {@link WrappedAccumuloClient}, whose cached table may not have every field.
+     *
+     * @param row
+     *            the field name, as it is stored in the metadata table
+     * @return false if the field is not in the metadata table
+     * @throws TableNotFoundException
+     */
+    private boolean mightExist(String row) throws TableNotFoundException {
+        if (accumuloClient instanceof WrappedAccumuloClient || !isSnapshotTable()) {
+            return true;
+        }
+        return this.allFieldMetadataHelper.getFieldNameFilter(metadataTableName).mightContain(row) || getMetadataSnapshot().containsField(row);
+    }
+    
+    /**
+     * Get the daily counts of a field from {@link AllFieldMetadataHelper#getFieldFrequencies(String)}. With a {@link WrappedAccumuloClient}, the counts are
+     * read from its real client into the local {@link #fieldFrequencyCache} instead, which also remembers the fields without counts.
+     *
+     * @param row
+     *            the field name, as it is stored in the metadata table
+     * @return the daily counts of the field
+     * @throws TableNotFoundException
+     */
+    private FieldFrequencies getFieldFrequencies(String row) throws TableNotFoundException {
+        if (!(accumuloClient instanceof WrappedAccumuloClient)) {
+            return this.allFieldMetadataHelper.getFieldFrequencies(row);
+        }
         
-        return count;
+        AccumuloClient realClient = ((WrappedAccumuloClient) accumuloClient).getReal();
+        try {
+            return fieldFrequencyCache.get(metadataTableName, auths, row, () -> this.allFieldMetadataHelper.loadFieldFrequencies(realClient, row));
+        } catch (TableNotFoundException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    /**
+     * @return the first day, as yyyyMMdd, that starts on or after the given date
+     */
+    private static String getFirstDayOnOrAfter(Date date) {
+        String day = DateHelper.format(date);
+        Date dayStart = DateHelper.parse(day);
+        if (dayStart.before(date)) {
+            day = DateHelper.format(new Date(dayStart.getTime() + DateUtils.MILLIS_PER_DAY));
+        }
+        return day;
     }
     
     public Set<String> getDatatypes(Set<String> ingestTypeFilter) throws TableNotFoundException {
         
         Set<String> datatypes = this.allFieldMetadataHelper.loadDatatypes();
         if (ingestTypeFilter != null && !ingestTypeFilter.isEmpty()) {
-            datatypes = Sets.newHashSet(Sets.intersection(datatypes, ingestTypeFilter));
+            datatypes = Collections.unmodifiableSet(Sets.newHashSet(Sets.intersection(datatypes, ingestTypeFilter)));
         }
         
-        return Collections.unmodifiableSet(datatypes);
+        return datatypes;
     }
     
     public Long getCountsByFieldForDays(String fieldName, Date begin, Date end) {
@@ -1173,19 +1317,11 @@ public class MetadataHelper {
             truncatedEnd = new Date(truncatedEnd.getTime() + 86400000);
         }
         
-        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        cal.setTime(truncatedBegin);
+        // the last day is the last whole day that starts before the truncated end
+        Date lastDay = new Date(truncatedBegin.getTime()
+                        + ((truncatedEnd.getTime() - truncatedBegin.getTime() - 1) / DateUtils.MILLIS_PER_DAY) * DateUtils.MILLIS_PER_DAY);
         
-        long sum = 0l;
-        while (cal.getTime().before(truncatedEnd)) {
-            Date curDate = cal.getTime();
-            String desiredDate = DateHelper.format(curDate);
-            
-            sum += getCountsByFieldInDayWithTypes(fieldName, desiredDate, ingestTypeFilter);
-            cal.add(Calendar.DATE, 1);
-        }
-        
-        return sum;
+        return sum(getCountsByFieldForDaysWithTypes(fieldName, DateHelper.format(truncatedBegin), DateHelper.format(lastDay), ingestTypeFilter).values());
     }
     
     /**
@@ -1211,171 +1347,130 @@ public class MetadataHelper {
         Preconditions.checkNotNull(fieldName);
         Preconditions.checkNotNull(date);
         
+        return sum(getCountsByFieldForDaysWithTypes(fieldName, date, date, datatypes).values());
+    }
+    
+    /**
+     * Return the counts of the {@link ColumnFamilyConstants#COLF_F} for each day and datatype of a field between two days, inclusive. The counts for all of
+     * the days are read with a single scan of the field, which seeks past the days outside of the range and the datatypes that are not wanted.
+     *
+     * @param fieldName
+     *            the field name
+     * @param beginDay
+     *            the first day, as yyyyMMdd
+     * @param endDay
+     *            the last day, as yyyyMMdd
+     * @param datatypes
+     *            the datatypes to include, or null for all datatypes
+     * @return a sorted map of day to datatype to count, without the days that have no counts
+     */
+    public SortedMap<String,Map<String,Long>> getCountsByFieldForDaysWithTypes(String fieldName, String beginDay, String endDay, final Set<String> datatypes) {
+        Preconditions.checkNotNull(fieldName);
+        Preconditions.checkNotNull(beginDay);
+        Preconditions.checkNotNull(endDay);
+        
         try {
-            Map<String,Long> countsByType = getCountsByFieldInDayWithTypes(Maps.immutableEntry(fieldName, date));
-            
-            Iterable<Entry<String,Long>> filteredByType = datatypes == null ? countsByType.entrySet()
-                            : Iterables.filter(countsByType.entrySet(), input -> datatypes.contains(input.getKey()));
-            
-            long sum = 0;
-            for (Entry<String,Long> entry : filteredByType) {
-                sum += entry.getValue();
+            if (!mightExist(fieldName)) {
+                return new TreeMap<>();
             }
             
-            return sum;
-        } catch (TableNotFoundException | IOException e) {
+            // note that the UniversalSet is empty
+            boolean allDatatypes = datatypes == null || datatypes instanceof UniversalSet;
+            return getFieldFrequencies(fieldName).getCountsByDay(beginDay, endDay, allDatatypes ? null : datatypes);
+        } catch (TableNotFoundException e) {
             throw new RuntimeException(e);
         }
     }
     
     protected HashMap<String,Long> getCountsByFieldInDayWithTypes(Entry<String,String> identifier) throws TableNotFoundException, IOException {
-        String fieldName = identifier.getKey();
         String date = identifier.getValue();
-        
-        // try to get the counts by field using the original (cached) connector
-        HashMap<String,Long> datatypeToCounts = getCountsByFieldInDayWithTypes(fieldName, date, accumuloClient, null);
-        
-        // if we don't get a hit, try the real connector
-        if (datatypeToCounts.isEmpty() && accumuloClient instanceof WrappedAccumuloClient) {
-            WrappedAccumuloClient wrappedClient = ((WrappedAccumuloClient) accumuloClient);
-            datatypeToCounts = getCountsByFieldInDayWithTypes(fieldName, date, wrappedClient.getReal(), wrappedClient);
-        }
-        
-        return datatypeToCounts;
+        Map<String,Long> countsByType = getCountsByFieldForDaysWithTypes(identifier.getKey(), date, date, null).get(date);
+        return countsByType == null ? Maps.newHashMap() : new HashMap<>(countsByType);
     }
     
-    protected HashMap<String,Long> getCountsByFieldInDayWithTypes(String fieldName, String date, AccumuloClient client, WrappedAccumuloClient wrappedClient)
-                    throws TableNotFoundException, IOException {
-        final HashMap<String,Long> datatypeToCounts = Maps.newHashMap();
-        
-        BatchWriter writer = null;
-        
-        try {
-            // we have to use the real connector since the f column is not cached
-            Scanner scanner = ScannerHelper.createScanner(client, metadataTableName, auths);
-            scanner.fetchColumnFamily(ColumnFamilyConstants.COLF_F);
-            scanner.setRange(Range.exact(fieldName));
-            
-            IteratorSetting cqRegex = new IteratorSetting(50, RegExFilter.class);
-            RegExFilter.setRegexs(cqRegex, null, null, ".*\u0000" + date, null, false);
-            scanner.addScanIterator(cqRegex);
-            
-            final Text holder = new Text();
-            for (Entry<Key,Value> entry : scanner) {
-                // if this is the real connector, and wrapped connector is not null, it means
-                // that we didn't get a hit in the cache. So, we will update the cache with the
-                // entries from the real table
-                if (wrappedClient != null && client == wrappedClient.getReal()) {
-                    writer = updateCache(entry, writer, wrappedClient);
-                }
-                
-                ByteArrayInputStream bais = new ByteArrayInputStream(entry.getValue().get());
-                DataInputStream inputStream = new DataInputStream(bais);
-                
-                Long sum = WritableUtils.readVLong(inputStream);
-                
-                entry.getKey().getColumnQualifier(holder);
-                int offset = holder.find(NULL_BYTE);
-                
-                Preconditions.checkArgument(-1 != offset, "Could not find nullbyte separator in column qualifier for: " + entry.getKey());
-                
-                String datatype = Text.decode(holder.getBytes(), 0, offset);
-                
-                datatypeToCounts.put(datatype, sum);
-            }
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (MutationsRejectedException e) {
-                    log.warn("Error closing batch writer for cached table: " + metadataTableName, e);
-                }
+    private static long sum(Collection<Map<String,Long>> countsByType) {
+        long sum = 0;
+        for (Map<String,Long> counts : countsByType) {
+            for (Long count : counts.values()) {
+                sum += count;
             }
         }
-        
-        return datatypeToCounts;
+        return sum;
     }
     
-    public Date getEarliestOccurrenceOfField(String fieldName) {
-        return getEarliestOccurrenceOfFieldWithType(fieldName, null);
+    /**
+     * Get the first and last days on which each of the fields was seen in each datatype, from the {@link ColumnFamilyConstants#COLF_F} column. The days are
+     * found for all of the fields with a single batch scan of their rows, so that query date ranges can be clipped to the days on which the fields have data.
+     * The field names are looked up in upper case.
+     *
+     * @param fieldNames
+     *            the field names
+     * @return a map of each of the field names, as given, to datatype to the first and last day, inclusive, which is empty for a field that was not seen
+     * @throws TableNotFoundException
+     */
+    public Map<String,Map<String,Pair<Date,Date>>> getOccurrenceDateRanges(Collection<String> fieldNames) throws TableNotFoundException {
+        Map<String,Map<String,Pair<Date,Date>>> found = this.allFieldMetadataHelper.getFieldDateRanges(fieldNames);
+        Map<String,Map<String,Pair<Date,Date>>> dateRanges = new HashMap<>();
+        for (String fieldName : fieldNames) {
+            dateRanges.put(fieldName, found.get(fieldName.toUpperCase()));
+        }
+        return dateRanges;
     }
     
-    public Date getEarliestOccurrenceOfFieldWithType(String fieldName, final String dataType) {
-        // try to get the date using the original (cached) connector
-        Date date = getEarliestOccurrenceOfFieldWithType(fieldName, dataType, accumuloClient, null);
-        
-        // if we don't get a hit, try the real connector
-        if (date == null && accumuloClient instanceof WrappedAccumuloClient) {
-            WrappedAccumuloClient wrappedClient = ((WrappedAccumuloClient) accumuloClient);
-            date = getEarliestOccurrenceOfFieldWithType(fieldName, dataType, wrappedClient.getReal(), wrappedClient);
-        }
+    /**
+     * Get the first and last days on which a field was seen in any of the datatypes, from the daily counts in its own row of the
+     * {@link ColumnFamilyConstants#COLF_F} column. As with the earliest and latest occurrence lookups, the field name is looked up as given.
+     *
+     * @param fieldName
+     *            the field name
+     * @param datatypes
+     *            the datatypes, or null for all datatypes
+     * @return the first and last day, inclusive, or null if the field was not seen
+     * @throws TableNotFoundException
+     */
+    public Pair<Date,Date> getOccurrenceDateRange(String fieldName, Set<String> datatypes) throws TableNotFoundException {
+        // note that the UniversalSet is empty
+        Set<String> filter = datatypes instanceof UniversalSet ? null : datatypes;
         
-        return date;
+        FieldFrequencies frequencies = getFieldFrequencies(fieldName);
+        String first = frequencies.getFirstDay(filter);
+        return first == null ? null : Pair.of(DateHelper.parse(first), DateHelper.parse(frequencies.getLastDay(filter)));
     }
     
-    protected Date getEarliestOccurrenceOfFieldWithType(String fieldName, final String dataType, AccumuloClient client, WrappedAccumuloClient wrappedClient) {
-        String dateString = null;
-        BatchWriter writer = null;
-        
+    private Pair<Date,Date> getOccurrenceDateRangeOfType(String fieldName, String dataType) {
         try {
-            Scanner scanner = ScannerHelper.createScanner(client, metadataTableName, auths);
-            scanner.fetchColumnFamily(ColumnFamilyConstants.COLF_F);
-            scanner.setRange(Range.exact(fieldName));
-            
-            // if a type was specified, add a regex filter for it
-            if (dataType != null) {
-                IteratorSetting cqRegex = new IteratorSetting(50, RegExFilter.class);
-                RegExFilter.setRegexs(cqRegex, null, null, dataType + "\u0000.*", null, false);
-                scanner.addScanIterator(cqRegex);
-            }
-            
-            try {
-                final Text holder = new Text();
-                for (Entry<Key,Value> entry : scanner) {
-                    // if this is the real connector, and wrapped connector is not null, it means
-                    // that we didn't get a hit in the cache. So, we will update the cache with the
-                    // entries from the real table
-                    if (wrappedClient != null && client == wrappedClient.getReal()) {
-                        writer = updateCache(entry, writer, wrappedClient);
-                    }
-                    
-                    entry.getKey().getColumnQualifier(holder);
-                    int startPos = holder.find(NULL_BYTE) + 1;
-                    
-                    if (0 == startPos) {
-                        log.trace("Could not find nullbyte separator in column qualifier for: " + entry.getKey());
-                    } else if ((holder.getLength() - startPos) <= 0) {
-                        log.trace("Could not find date to parse in column qualifier for: " + entry.getKey());
-                    } else {
-                        try {
-                            dateString = Text.decode(holder.getBytes(), startPos, holder.getLength() - startPos);
-                            break;
-                        } catch (CharacterCodingException e) {
-                            log.trace("Unable to decode date string for: " + entry.getKey().getColumnQualifier());
-                        }
-                    }
-                }
-            } finally {
-                scanner.close();
-            }
+            return getOccurrenceDateRange(fieldName, dataType == null ? null : Collections.singleton(dataType));
         } catch (TableNotFoundException e) {
             log.warn("Error creating scanner against table: " + metadataTableName, e);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (MutationsRejectedException e) {
-                    log.warn("Error closing batch writer for cached table: " + metadataTableName, e);
-                }
-            }
-        }
-        
-        Date date = null;
-        if (dateString != null) {
-            date = DateHelper.parse(dateString);
+            return null;
         }
-        
-        return date;
+    }
+    
+    public Date getEarliestOccurrenceOfField(String fieldName) {
+        return getEarliestOccurrenceOfFieldWithType(fieldName, null);
+    }
+    
+    public Date getEarliestOccurrenceOfFieldWithType(String fieldName, final String dataType) {
+        Pair<Date,Date> dateRange = getOccurrenceDateRangeOfType(fieldName, dataType);
+        return dateRange == null ? null : dateRange.getLeft();
+    }
+    
+    public Date getLatestOccurrenceOfField(String fieldName) {
+        return getLatestOccurrenceOfFieldWithType(fieldName, null);
+    }
+    
+    /**
+     * Get the last day on which a field was seen in a datatype, from the daily counts in its own row of the {@link ColumnFamilyConstants#COLF_F} column.
+     *
+     * @param fieldName
+     *            the field name
+     * @param dataType
+     *            the datatype, or null for all datatypes
+     * @return the last day, or null if the field was not seen
+     */
+    public Date getLatestOccurrenceOfFieldWithType(String fieldName, final String dataType) {
+        Pair<Date,Date> dateRange = getOccurrenceDateRangeOfType(fieldName, dataType);
+        return dateRange == null ? null : dateRange.getRight();
     }
     
     /**
@@ -1396,40 +1491,6 @@ public class MetadataHelper {
         return allFieldMetadataHelper.getReversedFieldIndexHoles();
     }
     
-    /**
-     * Updates the table cache via the mock connector with the given entry and writer. If writer is null, a writer will be created and returned for subsequent
-     * use.
-     *
-     * @param entry
-     *            the entry to add
-     * @param writer
-     *            the batch writer
-     * @param wrappedClient
-     *            the wrapped client
-     * @return a batch writer
-     */
-    private BatchWriter updateCache(Entry<Key,Value> entry, BatchWriter writer, WrappedAccumuloClient wrappedClient) {
-        try {
-            if (writer == null) {
-                BatchWriterConfig bwConfig = new BatchWriterConfig().setMaxMemory(10L * (1024L * 1024L)).setMaxLatency(100L, TimeUnit.MILLISECONDS)
-                                .setMaxWriteThreads(1);
-                writer = wrappedClient.getMock().createBatchWriter(metadataTableName, bwConfig);
-            }
-            
-            Key valueKey = entry.getKey();
-            
-            Mutation m = new Mutation(entry.getKey().getRow());
-            m.put(valueKey.getColumnFamily(), valueKey.getColumnQualifier(), new ColumnVisibility(valueKey.getColumnVisibility()), valueKey.getTimestamp(),
-                            entry.getValue());
-            
-            writer.addMutation(m);
-        } catch (MutationsRejectedException | TableNotFoundException e) {
-            log.trace("Unable to add entry to cache for: " + entry.getKey());
-        }
-        
-        return writer;
-    }
-    
     /**
      * Transform an Iterable of MetadataEntry's to just fieldName. This does not de-duplicate field names
      *
@@ -1477,36 +1538,7 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     protected Multimap<String,String> loadAllFields() throws TableNotFoundException {
-        Multimap<String,String> fields = HashMultimap.create();
-        
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        if (log.isTraceEnabled())
-            log.trace("loadAllFields from table: " + metadataTableName);
-        
-        bs.setRange(new Range());
-        
-        // We don't want to fetch all columns because that could include model
-        // field names
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_T);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_I);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_E);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_RI);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_TF);
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_CI);
-        
-        Iterator<Entry<Key,Value>> iterator = bs.iterator();
-        
-        while (iterator.hasNext()) {
-            Entry<Key,Value> entry = iterator.next();
-            Key k = entry.getKey();
-            
-            String fieldname = k.getRow().toString();
-            String datatype = getDatatype(k);
-            
-            fields.put(datatype, fieldname);
-        }
-        
-        return Multimaps.unmodifiableMultimap(fields);
+        return this.allFieldMetadataHelper.loadAllFields();
     }
     
     /**
@@ -1527,20 +1559,7 @@ public class MetadataHelper {
      * @throws TableNotFoundException
      */
     protected Multimap<String,String> loadTermFrequencyFields() throws TableNotFoundException {
-        Multimap<String,String> fields = HashMultimap.create();
-        if (log.isTraceEnabled())
-            log.trace("loadTermFrequencyFields from table: " + metadataTableName);
-        // Scanner to the provided metadata table
-        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
-        
-        bs.setRange(new Range());
-        bs.fetchColumnFamily(ColumnFamilyConstants.COLF_TF);
-        
-        for (Entry<Key,Value> entry : bs) {
-            fields.put(getDatatype(entry.getKey()), entry.getKey().getRow().toString());
-        }
-        
-        return Multimaps.unmodifiableMultimap(fields);
+        return this.allFieldMetadataHelper.loadTermFrequencyFields();
     }
     
     private static String getKey(String instanceID, String metadataTableName) {
@@ -1579,4 +1598,17 @@ public class MetadataHelper {
         return metadataTableName;
     }
     
+    /**
+     * The memoized results of {@link #getAllFields(Set)}, which hold as long as the snapshot and the evaluation only fields are the same instances.
+     */
+    private static class AllFieldsViews {
+        private final MetadataSnapshot snapshot;
+        private final Set<String> evaluationOnlyFields;
+        private final FilteredViews<Set<String>> views = new FilteredViews<>();
+        
+        private AllFieldsViews(MetadataSnapshot snapshot, Set<String> evaluationOnlyFields) {
+            this.snapshot = snapshot;
+            this.evaluationOnlyFields = evaluationOnlyFields;
+        }
+    }
 }
@@ -61,11 +61,13 @@ public class MetadataHelperFactory {
             Collection<String> mergedAuths = MetadataHelper.getUsersMetadataAuthorizationSubset(fullUserAuths, allMetadataAuths);
             Set<Authorizations> authSubset = Collections.singleton(new Authorizations(mergedAuths.toArray(new String[0])));
             
+            MetadataSnapshotHelper metadataSnapshotHelper = beanFactory.getBean(MetadataSnapshotHelper.class, client, metadataTableName, authSubset);
             TypeMetadataHelper typeMetadataHelper = typeMetadataHelperFactory.createTypeMetadataHelper(client, metadataTableName, authSubset,
-                            useTypeSubstitution);
-            CompositeMetadataHelper compositeMetadataHelper = beanFactory.getBean(CompositeMetadataHelper.class, client, metadataTableName, authSubset);
+                            useTypeSubstitution, metadataSnapshotHelper);
+            CompositeMetadataHelper compositeMetadataHelper = beanFactory.getBean(CompositeMetadataHelper.class, client, metadataTableName, authSubset,
+                            metadataSnapshotHelper);
             AllFieldMetadataHelper allFieldMetadataHelper = beanFactory.getBean(AllFieldMetadataHelper.class, typeMetadataHelper, compositeMetadataHelper,
-                            client, metadataTableName, authSubset, fullUserAuths);
+                            metadataSnapshotHelper, client, metadataTableName, authSubset, fullUserAuths);
             return beanFactory.getBean(MetadataHelper.class, allFieldMetadataHelper, allMetadataAuths, client, metadataTableName, authSubset, fullUserAuths);
         } else {
             log.warn("MetadataHelper created outside of dependency-injection context. This is fine for unit testing, but this is an error in production code");
@@ -78,10 +80,12 @@ public class MetadataHelperFactory {
             Set<Authorizations> allMetadataAuths = Collections.singleton(MetadataDefaultsFactory.getDefaultAuthorizations());
             Collection<String> mergedAuths = MetadataHelper.getUsersMetadataAuthorizationSubset(fullUserAuths, allMetadataAuths);
             Set<Authorizations> authSubset = Collections.singleton(new Authorizations(mergedAuths.toArray(new String[0])));
-            TypeMetadataHelper typeMetadataHelper = new TypeMetadataHelper(typeSubstitutions, allMetadataAuths, client, metadataTableName, authSubset, false);
-            CompositeMetadataHelper compositeMetadataHelper = new CompositeMetadataHelper(client, metadataTableName, authSubset);
-            AllFieldMetadataHelper allFieldMetadataHelper = new AllFieldMetadataHelper(typeMetadataHelper, compositeMetadataHelper, client, metadataTableName,
-                            authSubset, fullUserAuths);
+            MetadataSnapshotHelper metadataSnapshotHelper = new MetadataSnapshotHelper(client, metadataTableName, authSubset);
+            TypeMetadataHelper typeMetadataHelper = new TypeMetadataHelper(typeSubstitutions, allMetadataAuths, client, metadataTableName, authSubset, false,
+                            metadataSnapshotHelper);
+            CompositeMetadataHelper compositeMetadataHelper = new CompositeMetadataHelper(client, metadataTableName, authSubset, metadataSnapshotHelper);
+            AllFieldMetadataHelper allFieldMetadataHelper = new AllFieldMetadataHelper(typeMetadataHelper, compositeMetadataHelper, metadataSnapshotHelper,
+                            client, metadataTableName, authSubset, fullUserAuths);
             return new MetadataHelper(allFieldMetadataHelper, allMetadataAuths, client, metadataTableName, authSubset, fullUserAuths);
         }
     }
@@ -0,0 +1,170 @@
+package datawave.query.util;
+
+import java.util.List;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Parses the keys of the metadata table from their bytes, without copying the row, column family or column qualifier of each key into a {@link Text} or a
+ * {@link String}. The row is the field name, and the column qualifier is the datatype, optionally followed by a null byte and more information that depends
+ * on the column family, such as a date or a normalizer class name.
+ * <p>
+ * The strings returned by the parser come from its {@link StringPool}, so each distinct field name, datatype or qualifier suffix is decoded once per parser.
+ * A parser is meant to be used for a single load of the table, and is not thread-safe.
+ *
+ * <pre>
+ * MetadataKeyParser parser = new MetadataKeyParser();
+ * for (Entry&lt;Key,Value&gt; entry : scanner) {
+ *     parser.parse(entry.getKey());
+ *     String fieldName = parser.getFieldName();
+ *     String datatype = parser.getDatatype();
+ * }
+ * </pre>
+ */
+public class MetadataKeyParser {
+    
+    private final StringPool pool;
+    
+    private ByteSequence row;
+    private ByteSequence columnFamily;
+    private ByteSequence columnQualifier;
+    private int separator;
+    
+    public MetadataKeyParser() {
+        this(new StringPool());
+    }
+    
+    public MetadataKeyParser(StringPool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Parse a key, replacing the key parsed before it.
+     *
+     * @param key
+     *            a key from the metadata table
+     * @return this parser
+     */
+    public MetadataKeyParser parse(Key key) {
+        this.row = key.getRowData();
+        this.columnFamily = key.getColumnFamilyData();
+        this.columnQualifier = key.getColumnQualifierData();
+        this.separator = indexOf(columnQualifier, 0);
+        return this;
+    }
+    
+    /**
+     * @return the row of the key, which is the field name
+     */
+    public String getFieldName() {
+        return pool.get(row);
+    }
+    
+    /**
+     * @param columnFamily
+     *            a column family
+     * @return whether the key has the column family
+     */
+    public boolean isColumnFamily(Text columnFamily) {
+        return equals(this.columnFamily, columnFamily);
+    }
+    
+    /**
+     * @param columnFamilies
+     *            a list of column families
+     * @return the index of the column family of the key in the list, or -1 if it is not in it
+     */
+    public int getColumnFamilyIndex(List<Text> columnFamilies) {
+        for (int i = 0; i < columnFamilies.size(); i++) {
+            if (equals(columnFamily, columnFamilies.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @return the column family of the key
+     */
+    public String getColumnFamily() {
+        return pool.get(columnFamily);
+    }
+    
+    /**
+     * @return the column qualifier of the key
+     */
+    public String getColumnQualifier() {
+        return pool.get(columnQualifier);
+    }
+    
+    /**
+     * @return whether the column qualifier has a null byte after the datatype
+     */
+    public boolean hasSeparator() {
+        return separator != -1;
+    }
+    
+    /**
+     * @return the part of the column qualifier up to the first null byte, which is the datatype, or the whole column qualifier if it has no null byte
+     */
+    public String getDatatype() {
+        return separator == -1 ? pool.get(columnQualifier) : pool.get(columnQualifier, 0, separator);
+    }
+    
+    /**
+     * @return the part of the column qualifier after the first null byte, or null if it has no null byte
+     */
+    public String getSuffix() {
+        return separator == -1 ? null : pool.get(columnQualifier, separator + 1, columnQualifier.length() - separator - 1);
+    }
+    
+    /**
+     * @param index
+     *            the index of a part of the column qualifier, where the parts are separated by null bytes and the datatype is the first part
+     * @return the part, or null if the column qualifier has fewer parts
+     */
+    public String getQualifierPart(int index) {
+        int start = 0;
+        for (int i = 0; i < index; i++) {
+            int end = indexOf(columnQualifier, start);
+            if (end == -1) {
+                return null;
+            }
+            start = end + 1;
+        }
+        int end = indexOf(columnQualifier, start);
+        return pool.get(columnQualifier, start, (end == -1 ? columnQualifier.length() : end) - start);
+    }
+    
+    /**
+     * @return the pool the strings are taken from
+     */
+    public StringPool getPool() {
+        return pool;
+    }
+    
+    private static int indexOf(ByteSequence bytes, int from) {
+        for (int i = from; i < bytes.length(); i++) {
+            if (bytes.byteAt(i) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean equals(ByteSequence bytes, Text text) {
+        int length = text.getLength();
+        if (bytes.length() != length) {
+            return false;
+        }
+        byte[] textBytes = text.getBytes();
+        for (int i = 0; i < length; i++) {
+            if (bytes.byteAt(i) != textBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
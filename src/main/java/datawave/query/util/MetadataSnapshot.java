@@ -0,0 +1,1044 @@
+package datawave.query.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+
+import datawave.data.ColumnFamilyConstants;
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.composite.CompositeMetadataHelper;
+
+/**
+ * An immutable, in-memory view of the DatawaveMetadata table that is built from a single pass over the table. The field lists, datatypes, type metadata, and
+ * composite metadata that were previously loaded with one full-table scan apiece by {@link AllFieldMetadataHelper}, {@link TypeMetadataHelper}, and
+ * {@link CompositeMetadataHelper} are all derived from a snapshot instead.
+ * <p>
+ * Field names, datatypes, and normalizer class names are each stored once in a sorted dictionary. Every (field, datatype) pair is recorded as a single entry
+ * holding the datatype's dictionary id and a small bitset of the {@link #BITSET_COLUMN_FAMILIES} that exist for the pair, so that questions like "is this field
+ * indexed for any of these datatypes" are answered with a binary search and a few bit tests.
+ * <p>
+ * A snapshot remembers the highest timestamp of the entries it was built from, so that it can be brought up to date by scanning only the newer entries and
+ * adding them to a {@link Builder} seeded with the snapshot. Deletes are not seen by an incremental refresh, which is why a full rebuild is still done after
+ * {@link MetadataCacheManager#evictCaches()}.
+ * <p>
+ * A snapshot can be written to a versioned binary file with {@link #writeTo(OutputStream)} and read back with {@link #readFrom(ByteBuffer)}, which copies
+ * the dictionaries and arrays onto the heap in bulk instead of rebuilding them entry by entry. The snapshot does not refer to the buffer once it is read.
+ * <p>
+ * The field lists are memoized per datatype filter, so asking a snapshot for the same list twice returns the same unmodifiable instance.
+ */
+public class MetadataSnapshot {
+    private static final Logger log = LoggerFactory.getLogger(MetadataSnapshot.class);
+    
+    public static final String NULL_BYTE = "\0";
+    
+    // "DWMS", and the version of the file format written by writeTo
+    private static final int FILE_MAGIC = 0x44574D53;
+    private static final int FILE_VERSION = 1;
+    
+    /**
+     * The column families that are read when building a snapshot
+     */
+    public static final List<Text> COLUMN_FAMILIES = Collections.unmodifiableList(Arrays.asList(ColumnFamilyConstants.COLF_E, ColumnFamilyConstants.COLF_I,
+                    ColumnFamilyConstants.COLF_RI, ColumnFamilyConstants.COLF_TF, ColumnFamilyConstants.COLF_T, ColumnFamilyConstants.COLF_N,
+                    ColumnFamilyConstants.COLF_EXP, ColumnFamilyConstants.COLF_CONTENT, ColumnFamilyConstants.COLF_CI, ColumnFamilyConstants.COLF_CITD,
+                    ColumnFamilyConstants.COLF_CISEP, ColumnFamilyConstants.COLF_WCD));
+    
+    /**
+     * The column families that are tracked in the per (field, datatype) bitset. The position of a column family in this list is its bit.
+     */
+    public static final List<Text> BITSET_COLUMN_FAMILIES = Collections.unmodifiableList(Arrays.asList(ColumnFamilyConstants.COLF_E,
+                    ColumnFamilyConstants.COLF_I, ColumnFamilyConstants.COLF_RI, ColumnFamilyConstants.COLF_TF, ColumnFamilyConstants.COLF_T,
+                    ColumnFamilyConstants.COLF_N, ColumnFamilyConstants.COLF_EXP, ColumnFamilyConstants.COLF_CONTENT, ColumnFamilyConstants.COLF_CI));
+    
+    /**
+     * The column families whose column qualifier holds nothing but the datatype, so only one key per (field, datatype) is needed to load them.
+     */
+    public static final List<Text> DISTINCT_COLUMN_FAMILIES = Collections.unmodifiableList(Arrays.asList(ColumnFamilyConstants.COLF_E,
+                    ColumnFamilyConstants.COLF_I, ColumnFamilyConstants.COLF_RI, ColumnFamilyConstants.COLF_TF, ColumnFamilyConstants.COLF_N,
+                    ColumnFamilyConstants.COLF_EXP, ColumnFamilyConstants.COLF_CONTENT));
+    
+    private static final short E = columnBit(ColumnFamilyConstants.COLF_E);
+    private static final short I = columnBit(ColumnFamilyConstants.COLF_I);
+    private static final short CI = columnBit(ColumnFamilyConstants.COLF_CI);
+    
+    // We don't want to include all columns because that could include model field names
+    private static final short ALL_FIELDS = (short) (columnBit(ColumnFamilyConstants.COLF_T) | I | E | columnBit(ColumnFamilyConstants.COLF_RI)
+                    | columnBit(ColumnFamilyConstants.COLF_TF) | CI);
+    
+    // sorted dictionaries
+    private final String[] fieldNames;
+    private final String[] datatypes;
+    private final String[] normalizers;
+    
+    // the entries for fieldNames[i] are at [entryOffsets[i], entryOffsets[i + 1]), sorted by datatype
+    private final int[] entryOffsets;
+    private final int[] entryDatatypes;
+    private final short[] entryColumns;
+    
+    // the normalizers for entry j are normalizerIds[normalizerOffsets[j]] through normalizerIds[normalizerOffsets[j + 1] - 1]
+    private final int[] normalizerOffsets;
+    private final int[] normalizerIds;
+    
+    // the first component of every composite field
+    private final Set<String> compositeComponentFields;
+    private final CompositeMetadata compositeMetadata;
+    // <datatype, <field name, creation date>>
+    private final Map<String,Map<String,Date>> whindexCreationDatesByType;
+    
+    // the highest timestamp of any entry added to this snapshot
+    private final long maxTimestamp;
+    // true if entries may have been written to the table since this snapshot was built
+    private final boolean stale;
+    
+    // the field lists already computed from this snapshot, which are shared with its stale copy
+    private final MemoizedViews views;
+    
+    private MetadataSnapshot(Builder builder) {
+        SortedSet<String> datatypeSet = new TreeSet<>();
+        SortedSet<String> normalizerSet = new TreeSet<>();
+        int entryCount = 0;
+        int normalizerCount = 0;
+        for (SortedMap<String,FieldEntry> entries : builder.entries.values()) {
+            datatypeSet.addAll(entries.keySet());
+            for (FieldEntry entry : entries.values()) {
+                normalizerSet.addAll(entry.normalizers);
+                normalizerCount += entry.normalizers.size();
+            }
+            entryCount += entries.size();
+        }
+        
+        this.fieldNames = builder.entries.keySet().toArray(new String[0]);
+        this.datatypes = datatypeSet.toArray(new String[0]);
+        this.normalizers = normalizerSet.toArray(new String[0]);
+        
+        this.entryOffsets = new int[fieldNames.length + 1];
+        this.entryDatatypes = new int[entryCount];
+        this.entryColumns = new short[entryCount];
+        this.normalizerOffsets = new int[entryCount + 1];
+        this.normalizerIds = new int[normalizerCount];
+        
+        int field = 0;
+        int entry = 0;
+        int normalizer = 0;
+        for (SortedMap<String,FieldEntry> entries : builder.entries.values()) {
+            entryOffsets[field++] = entry;
+            for (Map.Entry<String,FieldEntry> fieldEntry : entries.entrySet()) {
+                entryDatatypes[entry] = Arrays.binarySearch(datatypes, fieldEntry.getKey());
+                entryColumns[entry] = fieldEntry.getValue().columns;
+                normalizerOffsets[entry] = normalizer;
+                for (String className : fieldEntry.getValue().normalizers) {
+                    normalizerIds[normalizer++] = Arrays.binarySearch(normalizers, className);
+                }
+                entry++;
+            }
+        }
+        entryOffsets[field] = entry;
+        normalizerOffsets[entry] = normalizer;
+        
+        this.compositeComponentFields = Collections.unmodifiableSet(new HashSet<>(builder.compositeComponentFields));
+        this.compositeMetadata = copy(builder.compositeMetadata, null);
+        this.whindexCreationDatesByType = copy(builder.whindexCreationDatesByType);
+        this.maxTimestamp = builder.maxTimestamp;
+        this.stale = false;
+        this.views = new MemoizedViews();
+    }
+    
+    private MetadataSnapshot(String[] fieldNames, String[] datatypes, String[] normalizers, int[] entryOffsets, int[] entryDatatypes, short[] entryColumns,
+                    int[] normalizerOffsets, int[] normalizerIds, Set<String> compositeComponentFields, CompositeMetadata compositeMetadata,
+                    Map<String,Map<String,Date>> whindexCreationDatesByType, long maxTimestamp) {
+        this.fieldNames = fieldNames;
+        this.datatypes = datatypes;
+        this.normalizers = normalizers;
+        this.entryOffsets = entryOffsets;
+        this.entryDatatypes = entryDatatypes;
+        this.entryColumns = entryColumns;
+        this.normalizerOffsets = normalizerOffsets;
+        this.normalizerIds = normalizerIds;
+        this.compositeComponentFields = Collections.unmodifiableSet(compositeComponentFields);
+        this.compositeMetadata = compositeMetadata;
+        this.whindexCreationDatesByType = whindexCreationDatesByType;
+        this.maxTimestamp = maxTimestamp;
+        this.stale = false;
+        this.views = new MemoizedViews();
+    }
+    
+    private MetadataSnapshot(MetadataSnapshot other, boolean stale) {
+        this.fieldNames = other.fieldNames;
+        this.datatypes = other.datatypes;
+        this.normalizers = other.normalizers;
+        this.entryOffsets = other.entryOffsets;
+        this.entryDatatypes = other.entryDatatypes;
+        this.entryColumns = other.entryColumns;
+        this.normalizerOffsets = other.normalizerOffsets;
+        this.normalizerIds = other.normalizerIds;
+        this.compositeComponentFields = other.compositeComponentFields;
+        this.compositeMetadata = other.compositeMetadata;
+        this.whindexCreationDatesByType = other.whindexCreationDatesByType;
+        this.maxTimestamp = other.maxTimestamp;
+        this.stale = stale;
+        this.views = other.views;
+    }
+    
+    /**
+     * Get the highest timestamp of the entries this snapshot was built from. An incremental refresh only needs to scan for entries at or after this timestamp.
+     *
+     * @return the highest timestamp, or {@link Long#MIN_VALUE} for an empty snapshot
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+    
+    /**
+     * Returns true if this snapshot has been marked as needing an incremental refresh.
+     *
+     * @return true if the snapshot is stale
+     */
+    public boolean isStale() {
+        return stale;
+    }
+    
+    /**
+     * Get a copy of this snapshot that is marked as stale. The copy shares all of its structures with this snapshot.
+     *
+     * @return a stale copy of this snapshot
+     */
+    public MetadataSnapshot stale() {
+        return stale ? this : new MetadataSnapshot(this, true);
+    }
+    
+    /**
+     * Get the bit used for a column family in the per (field, datatype) bitset.
+     *
+     * @param columnFamily
+     *            the column family
+     * @return the bit, or 0 if the column family is not one of the {@link #BITSET_COLUMN_FAMILIES}
+     */
+    public static short columnBit(Text columnFamily) {
+        int index = BITSET_COLUMN_FAMILIES.indexOf(columnFamily);
+        return index == -1 ? 0 : (short) (1 << index);
+    }
+    
+    /**
+     * Returns true if the column family is tracked in the per (field, datatype) bitset, and may be used with {@link #hasColumn(Text, String, Set)} and
+     * {@link #getFields(Text, Set)}.
+     *
+     * @param columnFamily
+     *            the column family
+     * @return true if the column family is tracked
+     */
+    public static boolean isTracked(Text columnFamily) {
+        return columnBit(columnFamily) != 0;
+    }
+    
+    /**
+     * @param fieldName
+     *            the field name, as it is stored in the metadata table
+     * @return true if the field has an entry in any of the {@link #COLUMN_FAMILIES}
+     */
+    public boolean containsField(String fieldName) {
+        return fieldIndex(fieldName) >= 0;
+    }
+    
+    private int fieldIndex(String fieldName) {
+        return fieldName == null ? -1 : Arrays.binarySearch(fieldNames, fieldName);
+    }
+    
+    private boolean includes(int entry, Collection<String> datatypeFilter) {
+        return datatypeFilter == null || datatypeFilter.contains(datatypes[entryDatatypes[entry]]);
+    }
+    
+    /**
+     * Determine whether any entry exists for the field in the given column family. The field name is upper cased first, as field names are "normalized" to be
+     * all upper case.
+     *
+     * @param columnFamily
+     *            one of the {@link #BITSET_COLUMN_FAMILIES}
+     * @param fieldName
+     *            the field name
+     * @param datatypeFilter
+     *            the datatypes to consider, null or empty for all datatypes
+     * @return true if the field has the column for at least one of the datatypes
+     */
+    public boolean hasColumn(Text columnFamily, String fieldName, Set<String> datatypeFilter) {
+        short bit = columnBit(columnFamily);
+        int field = fieldIndex(fieldName == null ? null : fieldName.toUpperCase());
+        if (bit == 0 || field < 0) {
+            return false;
+        }
+        Set<String> filter = (datatypeFilter == null || datatypeFilter.isEmpty()) ? null : datatypeFilter;
+        for (int entry = entryOffsets[field]; entry < entryOffsets[field + 1]; entry++) {
+            if ((entryColumns[entry] & bit) != 0 && includes(entry, filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public boolean isIndexed(String fieldName, Set<String> datatypeFilter) {
+        return hasColumn(ColumnFamilyConstants.COLF_I, fieldName, datatypeFilter);
+    }
+    
+    public boolean isReverseIndexed(String fieldName, Set<String> datatypeFilter) {
+        return hasColumn(ColumnFamilyConstants.COLF_RI, fieldName, datatypeFilter);
+    }
+    
+    public boolean isTokenized(String fieldName, Set<String> datatypeFilter) {
+        return hasColumn(ColumnFamilyConstants.COLF_TF, fieldName, datatypeFilter);
+    }
+    
+    /**
+     * Get the fields that have an entry in the given column family.
+     *
+     * @param columnFamily
+     *            one of the {@link #BITSET_COLUMN_FAMILIES}
+     * @return an unmodifiable multimap of datatype to field name
+     */
+    public Multimap<String,String> getFields(Text columnFamily) {
+        return getFieldsMatching(columnBit(columnFamily));
+    }
+    
+    /**
+     * Get the fields that have an entry in the given column family for any of the datatypes in the filter. Note that, as with
+     * {@link MetadataHelper#getIndexedFields(Set)}, a null filter allows every datatype while an empty filter allows none.
+     *
+     * @param columnFamily
+     *            one of the {@link #BITSET_COLUMN_FAMILIES}
+     * @param datatypeFilter
+     *            the datatypes to include
+     * @return an unmodifiable set of field names
+     */
+    public Set<String> getFields(Text columnFamily, Set<String> datatypeFilter) {
+        return getFieldNamesMatching(columnBit(columnFamily), datatypeFilter);
+    }
+    
+    /**
+     * Get the set of all fields that have occurred in the database, i.e. those with a {@link ColumnFamilyConstants#COLF_T},
+     * {@link ColumnFamilyConstants#COLF_I}, {@link ColumnFamilyConstants#COLF_E}, {@link ColumnFamilyConstants#COLF_RI}, {@link ColumnFamilyConstants#COLF_TF},
+     * or {@link ColumnFamilyConstants#COLF_CI} entry.
+     *
+     * @return an unmodifiable multimap of datatype to field name
+     */
+    public Multimap<String,String> getAllFields() {
+        return getFieldsMatching(ALL_FIELDS);
+    }
+    
+    /**
+     * Get the set of all fields that have occurred in the database for the datatypes in the filter.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null for all datatypes
+     * @return an unmodifiable set of field names
+     */
+    public Set<String> getAllFields(Set<String> datatypeFilter) {
+        return getFieldNamesMatching(ALL_FIELDS, datatypeFilter);
+    }
+    
+    /**
+     * Get the set of fields which are indexed but do not appear as an attribute on the event. Of the {@link ColumnFamilyConstants#COLF_E},
+     * {@link ColumnFamilyConstants#COLF_I}, and {@link ColumnFamilyConstants#COLF_CI} columns, these fields only have an 'i' entry for the datatype, and they
+     * are not the first component of a composite field.
+     *
+     * @return an unmodifiable multimap of datatype to field name
+     */
+    public Multimap<String,String> getIndexOnlyFields() {
+        Multimap<String,String> memoized = views.indexOnlyFields;
+        if (memoized != null) {
+            return memoized;
+        }
+        Multimap<String,String> fields = HashMultimap.create();
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (!compositeComponentFields.contains(fieldNames[field])) {
+                for (int entry = entryOffsets[field]; entry < entryOffsets[field + 1]; entry++) {
+                    if ((entryColumns[entry] & (E | I | CI)) == I) {
+                        fields.put(datatypes[entryDatatypes[entry]], fieldNames[field]);
+                    }
+                }
+            }
+        }
+        memoized = Multimaps.unmodifiableMultimap(fields);
+        views.indexOnlyFields = memoized;
+        return memoized;
+    }
+    
+    /**
+     * Get the set of index-only fields for the datatypes in the filter.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null for all datatypes
+     * @return an unmodifiable set of field names
+     */
+    public Set<String> getIndexOnlyFields(Set<String> datatypeFilter) {
+        Set<String> memoized = views.indexOnlyFieldNames.get(datatypeFilter);
+        if (memoized != null) {
+            return memoized;
+        }
+        Set<String> fields = new HashSet<>();
+        for (Map.Entry<String,String> entry : getIndexOnlyFields().entries()) {
+            if (datatypeFilter == null || datatypeFilter.contains(entry.getKey())) {
+                fields.add(entry.getValue());
+            }
+        }
+        return views.indexOnlyFieldNames.put(datatypeFilter, Collections.unmodifiableSet(fields));
+    }
+    
+    private Multimap<String,String> getFieldsMatching(short columns) {
+        Multimap<String,String> memoized = views.fields.get(columns);
+        if (memoized != null) {
+            return memoized;
+        }
+        Multimap<String,String> fields = HashMultimap.create();
+        for (int field = 0; field < fieldNames.length; field++) {
+            for (int entry = entryOffsets[field]; entry < entryOffsets[field + 1]; entry++) {
+                if ((entryColumns[entry] & columns) != 0) {
+                    fields.put(datatypes[entryDatatypes[entry]], fieldNames[field]);
+                }
+            }
+        }
+        views.fields.compareAndSet(columns, null, Multimaps.unmodifiableMultimap(fields));
+        return views.fields.get(columns);
+    }
+    
+    private Set<String> getFieldNamesMatching(short columns, Set<String> datatypeFilter) {
+        FilteredViews<Set<String>> memoized = views.fieldNames.get(columns);
+        if (memoized == null) {
+            views.fieldNames.compareAndSet(columns, null, new FilteredViews<>());
+            memoized = views.fieldNames.get(columns);
+        }
+        Set<String> names = memoized.get(datatypeFilter);
+        return names != null ? names : memoized.put(datatypeFilter, computeFieldNamesMatching(columns, datatypeFilter));
+    }
+    
+    private Set<String> computeFieldNamesMatching(short columns, Set<String> datatypeFilter) {
+        Set<String> fields = new HashSet<>();
+        for (int field = 0; field < fieldNames.length; field++) {
+            for (int entry = entryOffsets[field]; entry < entryOffsets[field + 1]; entry++) {
+                if ((entryColumns[entry] & columns) != 0 && includes(entry, datatypeFilter)) {
+                    fields.add(fieldNames[field]);
+                    break;
+                }
+            }
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+    
+    /**
+     * Get the set of all datatypes, i.e. those which have at least one field that appears in an event.
+     *
+     * @return an unmodifiable set of datatypes
+     */
+    public Set<String> getDatatypes() {
+        Set<String> memoized = views.datatypes;
+        if (memoized != null) {
+            return memoized;
+        }
+        boolean[] found = new boolean[datatypes.length];
+        for (int entry = 0; entry < entryColumns.length; entry++) {
+            if ((entryColumns[entry] & E) != 0) {
+                found[entryDatatypes[entry]] = true;
+            }
+        }
+        Set<String> eventDatatypes = new HashSet<>();
+        for (int datatype = 0; datatype < datatypes.length; datatype++) {
+            if (found[datatype]) {
+                eventDatatypes.add(datatypes[datatype]);
+            }
+        }
+        memoized = Collections.unmodifiableSet(eventDatatypes);
+        views.datatypes = memoized;
+        return memoized;
+    }
+    
+    /**
+     * Get the set of all fields that are normalized, {@link ColumnFamilyConstants#COLF_N}.
+     *
+     * @return an unmodifiable set of field names
+     */
+    public Set<String> getNormalizedFields() {
+        return getFieldNamesMatching(columnBit(ColumnFamilyConstants.COLF_N), null);
+    }
+    
+    /**
+     * Get the class names of all normalizers in use by any field, as written in the table.
+     *
+     * @return an unmodifiable set of normalizer class names
+     */
+    public Set<String> getNormalizerClassNames() {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(normalizers)));
+    }
+    
+    /**
+     * Build a new {@link TypeMetadata} from the {@link ColumnFamilyConstants#COLF_T} entries in this snapshot.
+     *
+     * @param typeSubstitutions
+     *            normalizer class name substitutions to apply, may be empty
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return a new TypeMetadata
+     */
+    public TypeMetadata getTypeMetadata(Map<String,String> typeSubstitutions, Set<String> datatypeFilter) {
+        return new TypeMetadata(getFrozenTypeMetadata(typeSubstitutions).filter(datatypeFilter));
+    }
+    
+    /**
+     * Get the immutable {@link TypeMetadata} of the {@link ColumnFamilyConstants#COLF_T} entries in this snapshot, whose put methods throw an
+     * {@link UnsupportedOperationException}. It is built once, and its {@link TypeMetadata#filter(Set) filters} are memoized.
+     *
+     * @param typeSubstitutions
+     *            normalizer class name substitutions to apply, may be empty
+     * @return a frozen TypeMetadata, shared by the calls with the same substitutions
+     */
+    public PackedTypeMetadata getFrozenTypeMetadata(Map<String,String> typeSubstitutions) {
+        TypeMetadataView memoized = views.typeMetadata;
+        if (memoized == null || !memoized.typeSubstitutions.equals(typeSubstitutions)) {
+            memoized = new TypeMetadataView(new HashMap<>(typeSubstitutions), computeTypeMetadata(typeSubstitutions).freeze());
+            views.typeMetadata = memoized;
+        }
+        return memoized.typeMetadata;
+    }
+    
+    private PackedTypeMetadata computeTypeMetadata(Map<String,String> typeSubstitutions) {
+        PackedTypeMetadata.Builder typeMetadata = PackedTypeMetadata.builder();
+        for (int field = 0; field < fieldNames.length; field++) {
+            for (int entry = entryOffsets[field]; entry < entryOffsets[field + 1]; entry++) {
+                if (normalizerOffsets[entry] != normalizerOffsets[entry + 1]) {
+                    for (int i = normalizerOffsets[entry]; i < normalizerOffsets[entry + 1]; i++) {
+                        String className = normalizers[normalizerIds[i]];
+                        if (typeSubstitutions.containsKey(className)) {
+                            className = typeSubstitutions.get(className);
+                        }
+                        typeMetadata.put(fieldNames[field], datatypes[entryDatatypes[entry]], className);
+                    }
+                }
+            }
+        }
+        return typeMetadata.build();
+    }
+    
+    /**
+     * Get the {@link CompositeMetadata} of the composite entries in this snapshot.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return a CompositeMetadata, shared by the calls with an equal filter, which must not be modified
+     */
+    public CompositeMetadata getCompositeMetadata(Set<String> datatypeFilter) {
+        return memoized(views.compositeMetadata, datatypeFilter, filter -> copy(compositeMetadata, filter));
+    }
+    
+    private static CompositeMetadata copy(CompositeMetadata compositeMetadata, Set<String> datatypeFilter) {
+        return addAll(new CompositeMetadata(), compositeMetadata, datatypeFilter);
+    }
+    
+    private static CompositeMetadata addAll(CompositeMetadata target, CompositeMetadata compositeMetadata, Set<String> datatypeFilter) {
+        compositeMetadata.getCompositeFieldMapByType().forEach((datatype, fieldMap) -> {
+            if (isIncluded(datatype, datatypeFilter)) {
+                for (String compositeField : fieldMap.keySet()) {
+                    target.setCompositeFieldMappingByType(datatype, compositeField, fieldMap.get(compositeField));
+                }
+            }
+        });
+        compositeMetadata.getCompositeTransitionDatesByType().forEach((datatype, dateMap) -> {
+            if (isIncluded(datatype, datatypeFilter)) {
+                dateMap.forEach((compositeField, date) -> target.addCompositeTransitionDateByType(datatype, compositeField, date));
+            }
+        });
+        compositeMetadata.getCompositeFieldSeparatorsByType().forEach((datatype, separatorMap) -> {
+            if (isIncluded(datatype, datatypeFilter)) {
+                separatorMap.forEach((compositeField, separator) -> target.addCompositeFieldSeparatorByType(datatype, compositeField, separator));
+            }
+        });
+        return target;
+    }
+    
+    /**
+     * A map of composite name to its component fields, for the datatypes in the given filter.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return an unmodifiable multimap
+     */
+    public Multimap<String,String> getCompositeToFieldMap(Set<String> datatypeFilter) {
+        return memoized(views.compositeToFieldMaps, datatypeFilter, this::computeCompositeToFieldMap);
+    }
+    
+    private Multimap<String,String> computeCompositeToFieldMap(Set<String> datatypeFilter) {
+        ArrayListMultimap<String,String> compositeToFieldMap = ArrayListMultimap.create();
+        Map<String,Multimap<String,String>> fieldMapByType = compositeMetadata.getCompositeFieldMapByType();
+        // visit the datatypes in the order that they were scanned
+        for (String datatype : new TreeSet<>(fieldMapByType.keySet())) {
+            if (isIncluded(datatype, datatypeFilter)) {
+                Multimap<String,String> fieldMap = fieldMapByType.get(datatype);
+                for (String compositeField : fieldMap.keySet()) {
+                    compositeToFieldMap.putAll(compositeField, fieldMap.get(compositeField));
+                }
+            }
+        }
+        return Multimaps.unmodifiableMultimap(compositeToFieldMap);
+    }
+    
+    /**
+     * A map of composite name to transition date, for the datatypes in the given filter.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return an unmodifiable map
+     */
+    public Map<String,Date> getCompositeTransitionDateMap(Set<String> datatypeFilter) {
+        return memoized(views.compositeTransitionDateMaps, datatypeFilter, filter -> flatten(compositeMetadata.getCompositeTransitionDatesByType(), filter));
+    }
+    
+    /**
+     * A map of composite name to field separator, for the datatypes in the given filter.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return an unmodifiable map
+     */
+    public Map<String,String> getCompositeFieldSeparatorMap(Set<String> datatypeFilter) {
+        return memoized(views.compositeFieldSeparatorMaps, datatypeFilter, filter -> flatten(compositeMetadata.getCompositeFieldSeparatorsByType(), filter));
+    }
+    
+    /**
+     * A map of whindex field to creation date, for the datatypes in the given filter.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return an unmodifiable map
+     */
+    public Map<String,Date> getWhindexCreationDateMap(Set<String> datatypeFilter) {
+        return memoized(views.whindexCreationDateMaps, datatypeFilter, filter -> flatten(whindexCreationDatesByType, filter));
+    }
+    
+    private static <T> T memoized(FilteredViews<T> views, Set<String> datatypeFilter, Function<Set<String>,T> compute) {
+        // a null and an empty filter both allow every datatype, so they share the unfiltered view
+        Set<String> filter = (datatypeFilter == null || datatypeFilter.isEmpty()) ? null : datatypeFilter;
+        T view = views.get(filter);
+        return view != null ? view : views.put(filter, compute.apply(filter));
+    }
+    
+    private static <T> Map<String,T> flatten(Map<String,Map<String,T>> valuesByType, Set<String> datatypeFilter) {
+        Map<String,T> flattened = new HashMap<>();
+        // visit the datatypes in the order that they were scanned so that the last datatype wins, as it would have for a scan
+        for (String datatype : new TreeSet<>(valuesByType.keySet())) {
+            if (isIncluded(datatype, datatypeFilter)) {
+                flattened.putAll(valuesByType.get(datatype));
+            }
+        }
+        return Collections.unmodifiableMap(flattened);
+    }
+    
+    private static <T> Map<String,Map<String,T>> copy(Map<String,Map<String,T>> valuesByType) {
+        Map<String,Map<String,T>> copy = new HashMap<>();
+        valuesByType.forEach((datatype, values) -> copy.put(datatype, new HashMap<>(values)));
+        return copy;
+    }
+    
+    private static boolean isIncluded(String datatype, Collection<String> datatypeFilter) {
+        return datatypeFilter == null || datatypeFilter.isEmpty() || datatypeFilter.contains(datatype);
+    }
+    
+    /**
+     * Write this snapshot in a versioned binary format that can be read back with {@link #readFrom(ByteBuffer)}. The format holds the dictionaries and arrays
+     * of the snapshot as they are, followed by a checksum of everything before it. Whether the snapshot is stale is not written.
+     *
+     * @param out
+     *            the stream to write to, which is not closed
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+        DataOutputStream data = new DataOutputStream(checked);
+        data.writeInt(FILE_MAGIC);
+        data.writeInt(FILE_VERSION);
+        // the meaning of the column bits depends on the order of the tracked column families
+        writeStrings(data, BITSET_COLUMN_FAMILIES.stream().map(Text::toString).toArray(String[]::new));
+        data.writeLong(maxTimestamp);
+        
+        writeStrings(data, fieldNames);
+        writeStrings(data, datatypes);
+        writeStrings(data, normalizers);
+        writeInts(data, entryOffsets);
+        writeInts(data, entryDatatypes);
+        data.writeInt(entryColumns.length);
+        for (short columns : entryColumns) {
+            data.writeShort(columns);
+        }
+        writeInts(data, normalizerOffsets);
+        writeInts(data, normalizerIds);
+        
+        writeStrings(data, compositeComponentFields.toArray(new String[0]));
+        byte[] composite = CompositeMetadata.toBytes(compositeMetadata);
+        data.writeInt(composite.length);
+        data.write(composite);
+        data.writeInt(whindexCreationDatesByType.size());
+        for (Map.Entry<String,Map<String,Date>> byType : whindexCreationDatesByType.entrySet()) {
+            writeString(data, byType.getKey());
+            data.writeInt(byType.getValue().size());
+            for (Map.Entry<String,Date> date : byType.getValue().entrySet()) {
+                writeString(data, date.getKey());
+                data.writeLong(date.getValue().getTime());
+            }
+        }
+        data.flush();
+        
+        new DataOutputStream(out).writeLong(checked.getChecksum().getValue());
+        out.flush();
+    }
+    
+    /**
+     * Read a snapshot written by {@link #writeTo(OutputStream)}, typically from a memory-mapped file. The dictionaries and arrays are copied out of the buffer
+     * onto the heap, so the buffer, and any file mapped into it, can be released as soon as this returns.
+     *
+     * @param buffer
+     *            the buffer, holding exactly one snapshot from its position to its limit
+     * @return the snapshot, which is not stale
+     * @throws IOException
+     *             if the buffer does not hold a complete snapshot of the current format
+     */
+    public static MetadataSnapshot readFrom(ByteBuffer buffer) throws IOException {
+        try {
+            // check the whole snapshot before reading any of it
+            int end = buffer.limit() - Long.BYTES;
+            ByteBuffer checked = buffer.duplicate();
+            checked.limit(end);
+            CRC32 crc = new CRC32();
+            crc.update(checked);
+            if (buffer.getLong(end) != crc.getValue()) {
+                throw new IOException("The metadata snapshot is corrupt");
+            }
+            
+            if (buffer.getInt() != FILE_MAGIC) {
+                throw new IOException("Not a metadata snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported metadata snapshot version " + version);
+            }
+            if (!Arrays.asList(readStrings(buffer)).equals(BITSET_COLUMN_FAMILIES.stream().map(Text::toString).collect(Collectors.toList()))) {
+                throw new IOException("The metadata snapshot was written for different column families");
+            }
+            long maxTimestamp = buffer.getLong();
+            
+            String[] fieldNames = readStrings(buffer);
+            String[] datatypes = readStrings(buffer);
+            String[] normalizers = readStrings(buffer);
+            int[] entryOffsets = readInts(buffer);
+            int[] entryDatatypes = readInts(buffer);
+            short[] entryColumns = new short[readCount(buffer, Short.BYTES)];
+            buffer.asShortBuffer().get(entryColumns);
+            buffer.position(buffer.position() + entryColumns.length * Short.BYTES);
+            int[] normalizerOffsets = readInts(buffer);
+            int[] normalizerIds = readInts(buffer);
+            
+            Set<String> compositeComponentFields = new HashSet<>(Arrays.asList(readStrings(buffer)));
+            byte[] composite = new byte[readCount(buffer, 1)];
+            buffer.get(composite);
+            CompositeMetadata compositeMetadata = copy(CompositeMetadata.fromBytes(composite), null);
+            Map<String,Map<String,Date>> whindexCreationDatesByType = new HashMap<>();
+            for (int types = buffer.getInt(); types > 0; types--) {
+                Map<String,Date> dates = whindexCreationDatesByType.computeIfAbsent(readString(buffer), k -> new HashMap<>());
+                for (int fields = buffer.getInt(); fields > 0; fields--) {
+                    dates.put(readString(buffer), new Date(buffer.getLong()));
+                }
+            }
+            if (buffer.position() != end) {
+                throw new IOException("The metadata snapshot has unexpected trailing bytes");
+            }
+            buffer.position(buffer.limit());
+            
+            return new MetadataSnapshot(fieldNames, datatypes, normalizers, entryOffsets, entryDatatypes, entryColumns, normalizerOffsets, normalizerIds,
+                            compositeComponentFields, compositeMetadata, whindexCreationDatesByType, maxTimestamp);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("The metadata snapshot is truncated", e);
+        }
+    }
+    
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+    
+    private static void writeStrings(DataOutputStream data, String[] values) throws IOException {
+        data.writeInt(values.length);
+        for (String value : values) {
+            writeString(data, value);
+        }
+    }
+    
+    private static void writeInts(DataOutputStream data, int[] values) throws IOException {
+        data.writeInt(values.length);
+        for (int value : values) {
+            data.writeInt(value);
+        }
+    }
+    
+    /**
+     * @return a count read from the buffer, after checking that the buffer could hold that many values of the given size, so that a corrupt count does not
+     *         allocate a huge array
+     */
+    private static int readCount(ByteBuffer buffer, int size) {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * size > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readCount(buffer, 1)];
+        buffer.get(bytes);
+        return MetadataStrings.intern(new String(bytes, StandardCharsets.UTF_8));
+    }
+    
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] values = new String[readCount(buffer, Integer.BYTES)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(buffer);
+        }
+        return values;
+    }
+    
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[readCount(buffer, Integer.BYTES)];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+    
+    /**
+     * The mutable state of a (field, datatype) pair while building a snapshot
+     */
+    private static class FieldEntry {
+        private short columns;
+        private SortedSet<String> normalizers = Collections.emptySortedSet();
+        
+        private void addNormalizer(String className) {
+            if (normalizers.isEmpty()) {
+                normalizers = new TreeSet<>();
+            }
+            normalizers.add(className);
+        }
+    }
+    
+    /**
+     * The field lists that have been computed from a snapshot. As a snapshot is immutable, each list is computed once and the same unmodifiable instance is
+     * returned by every later call.
+     */
+    private static class MemoizedViews {
+        // indexed by the column bits that a field must have
+        private final AtomicReferenceArray<FilteredViews<Set<String>>> fieldNames = new AtomicReferenceArray<>(1 << BITSET_COLUMN_FAMILIES.size());
+        private final AtomicReferenceArray<Multimap<String,String>> fields = new AtomicReferenceArray<>(1 << BITSET_COLUMN_FAMILIES.size());
+        
+        private final FilteredViews<Set<String>> indexOnlyFieldNames = new FilteredViews<>();
+        private volatile Multimap<String,String> indexOnlyFields;
+        private volatile Set<String> datatypes;
+        
+        private volatile TypeMetadataView typeMetadata;
+        private final FilteredViews<CompositeMetadata> compositeMetadata = new FilteredViews<>();
+        private final FilteredViews<Multimap<String,String>> compositeToFieldMaps = new FilteredViews<>();
+        private final FilteredViews<Map<String,Date>> compositeTransitionDateMaps = new FilteredViews<>();
+        private final FilteredViews<Map<String,String>> compositeFieldSeparatorMaps = new FilteredViews<>();
+        private final FilteredViews<Map<String,Date>> whindexCreationDateMaps = new FilteredViews<>();
+    }
+    
+    private static class TypeMetadataView {
+        private final Map<String,String> typeSubstitutions;
+        private final PackedTypeMetadata typeMetadata;
+        
+        private TypeMetadataView(Map<String,String> typeSubstitutions, PackedTypeMetadata typeMetadata) {
+            this.typeSubstitutions = typeSubstitutions;
+            this.typeMetadata = typeMetadata;
+        }
+    }
+    
+    /**
+     * Accumulates the entries of a single pass over the metadata table into a {@link MetadataSnapshot}. Entries for column families other than
+     * {@link #COLUMN_FAMILIES} are ignored. A builder is not thread-safe.
+     */
+    public static class Builder {
+        
+        // <field name, <datatype, entry>>
+        private final SortedMap<String,SortedMap<String,FieldEntry>> entries = new TreeMap<>();
+        // parses the keys and dedupes the field names and datatypes so that each distinct string is decoded and held once
+        private final MetadataKeyParser parser = new MetadataKeyParser();
+        private final Set<String> compositeComponentFields = new HashSet<>();
+        private CompositeMetadata compositeMetadata = new CompositeMetadata();
+        private final Map<String,Map<String,Date>> whindexCreationDatesByType = new HashMap<>();
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat(CompositeMetadataHelper.transitionDateFormat);
+        private long maxTimestamp = Long.MIN_VALUE;
+        
+        public Builder() {}
+        
+        /**
+         * Create a builder that starts with the contents of a previous snapshot. Adding the entries written since the previous snapshot's
+         * {@link MetadataSnapshot#getMaxTimestamp()} brings the snapshot up to date.
+         *
+         * @param previous
+         *            the snapshot to start from
+         */
+        public Builder(MetadataSnapshot previous) {
+            for (int field = 0; field < previous.fieldNames.length; field++) {
+                String fieldName = intern(previous.fieldNames[field]);
+                SortedMap<String,FieldEntry> fieldEntries = new TreeMap<>();
+                for (int entry = previous.entryOffsets[field]; entry < previous.entryOffsets[field + 1]; entry++) {
+                    FieldEntry fieldEntry = new FieldEntry();
+                    fieldEntry.columns = previous.entryColumns[entry];
+                    for (int i = previous.normalizerOffsets[entry]; i < previous.normalizerOffsets[entry + 1]; i++) {
+                        fieldEntry.addNormalizer(previous.normalizers[previous.normalizerIds[i]]);
+                    }
+                    fieldEntries.put(intern(previous.datatypes[previous.entryDatatypes[entry]]), fieldEntry);
+                }
+                entries.put(fieldName, fieldEntries);
+            }
+            compositeComponentFields.addAll(previous.compositeComponentFields);
+            compositeMetadata = copy(previous.compositeMetadata, null);
+            whindexCreationDatesByType.putAll(copy(previous.whindexCreationDatesByType));
+            maxTimestamp = previous.maxTimestamp;
+        }
+        
+        private String intern(String value) {
+            return parser.getPool().intern(value);
+        }
+        
+        /**
+         * Add a metadata table entry to the snapshot.
+         *
+         * @param key
+         *            the key of the entry
+         * @return this builder
+         */
+        public Builder add(Key key) {
+            parser.parse(key);
+            int columnFamily = parser.getColumnFamilyIndex(COLUMN_FAMILIES);
+            if (columnFamily == -1) {
+                return this;
+            }
+            
+            maxTimestamp = Math.max(maxTimestamp, key.getTimestamp());
+            
+            String fieldName = parser.getFieldName();
+            String datatype = parser.getDatatype();
+            
+            short bit = columnBit(COLUMN_FAMILIES.get(columnFamily));
+            if (bit != 0) {
+                FieldEntry entry = entries.computeIfAbsent(fieldName, k -> new TreeMap<>()).computeIfAbsent(datatype, k -> new FieldEntry());
+                entry.columns |= bit;
+                
+                if (parser.isColumnFamily(ColumnFamilyConstants.COLF_T)) {
+                    if (parser.hasSeparator()) {
+                        entry.addNormalizer(parser.getSuffix());
+                    } else {
+                        log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + key);
+                    }
+                }
+            }
+            
+            if (parser.isColumnFamily(ColumnFamilyConstants.COLF_CI)) {
+                if (parser.hasSeparator()) {
+                    String components = parser.getSuffix();
+                    String[] componentFields = components.split(",");
+                    for (int i = 0; i < componentFields.length; i++) {
+                        componentFields[i] = intern(componentFields[i]);
+                    }
+                    compositeMetadata.setCompositeFieldMappingByType(datatype, fieldName, Arrays.asList(componentFields));
+                    compositeComponentFields.add(componentFields[0]);
+                } else {
+                    compositeComponentFields.add(datatype);
+                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + key);
+                }
+            } else if (parser.isColumnFamily(ColumnFamilyConstants.COLF_CITD)) {
+                if (parser.hasSeparator()) {
+                    try {
+                        compositeMetadata.addCompositeTransitionDateByType(datatype, fieldName, dateFormat.parse(parser.getSuffix()));
+                    } catch (ParseException e) {
+                        log.trace("Unable to parse composite field transition date", e);
+                    }
+                } else {
+                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + key);
+                }
+            } else if (parser.isColumnFamily(ColumnFamilyConstants.COLF_CISEP)) {
+                if (parser.hasSeparator()) {
+                    compositeMetadata.addCompositeFieldSeparatorByType(datatype, fieldName, parser.getSuffix());
+                } else {
+                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + key);
+                }
+            } else if (parser.isColumnFamily(ColumnFamilyConstants.COLF_WCD)) {
+                if (parser.hasSeparator()) {
+                    // Note: Intentionally using the same transition date format as the composite fields.
+                    try {
+                        whindexCreationDatesByType.computeIfAbsent(datatype, k -> new HashMap<>()).put(fieldName, dateFormat.parse(parser.getSuffix()));
+                    } catch (ParseException e) {
+                        log.trace("Unable to parse whindex field creation date", e);
+                    }
+                } else {
+                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + key);
+                }
+            }
+            
+            return this;
+        }
+        
+        /**
+         * Add everything accumulated by another builder, e.g. one that loaded a different range of the metadata table.
+         *
+         * @param other
+         *            the builder to merge into this one
+         * @return this builder
+         */
+        public Builder merge(Builder other) {
+            other.entries.forEach((field, fieldEntries) -> {
+                SortedMap<String,FieldEntry> merged = entries.computeIfAbsent(intern(field), k -> new TreeMap<>());
+                fieldEntries.forEach((datatype, entry) -> {
+                    FieldEntry mergedEntry = merged.computeIfAbsent(intern(datatype), k -> new FieldEntry());
+                    mergedEntry.columns |= entry.columns;
+                    entry.normalizers.forEach(mergedEntry::addNormalizer);
+                });
+            });
+            compositeComponentFields.addAll(other.compositeComponentFields);
+            addAll(compositeMetadata, other.compositeMetadata, null);
+            other.whindexCreationDatesByType
+                            .forEach((datatype, dates) -> whindexCreationDatesByType.computeIfAbsent(datatype, k -> new HashMap<>()).putAll(dates));
+            maxTimestamp = Math.max(maxTimestamp, other.maxTimestamp);
+            return this;
+        }
+        
+        public MetadataSnapshot build() {
+            return new MetadataSnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package datawave.query.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import datawave.iterators.DistinctDatatypeIterator;
+import datawave.security.util.ScannerHelper;
+
+/**
+ * Loads a {@link MetadataSnapshot} from the DatawaveMetadata table with a single scan over all of the {@link MetadataSnapshot#COLUMN_FAMILIES}. The snapshot is
+ * cached per auths and table name, and is shared by the {@link AllFieldMetadataHelper}, {@link TypeMetadataHelper}, and
+ * {@link datawave.query.composite.CompositeMetadataHelper} created for the same auths.
+ * <p>
+ * When the {@link #SNAPSHOT_DIR_PROPERTY} system property names a directory, every snapshot loaded from the table is also written to a file there, one per
+ * auths and table name. After a restart, the first request for a snapshot copies the snapshot out of the file onto the heap instead of scanning the table,
+ * and the table is loaded again in the background. The reloaded snapshot replaces the one from the file on the first request for a snapshot after the reload
+ * completes. The other cached metadata derived from the snapshot from the file is kept until it is refreshed or evicted.
+ */
+@EnableCaching
+@Component("metadataSnapshotHelper")
+@Scope("prototype")
+public class MetadataSnapshotHelper {
+    private static final Logger log = LoggerFactory.getLogger(MetadataSnapshotHelper.class);
+    
+    public static final String SNAPSHOT_DIR_PROPERTY = "dw.metadatahelper.snapshot.dir";
+    
+    // the background reloads of the snapshots read from files, keyed by table name and auths
+    private static final ConcurrentMap<List<Object>,Future<MetadataSnapshot>> reloads = new ConcurrentHashMap<>();
+    private static final ExecutorService reloadExecutor = Executors
+                    .newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("metadata-snapshot-reload-%d").build());
+    // the table names and auths whose stale snapshots are being refreshed
+    private static final Set<List<Object>> refreshes = ConcurrentHashMap.newKeySet();
+    
+    protected final AccumuloClient accumuloClient;
+    protected final String metadataTableName;
+    protected final Set<Authorizations> auths;
+    
+    /**
+     * Initializes the instance.
+     *
+     * @param client
+     *            A client connection to Accumulo
+     * @param metadataTableName
+     *            The name of the DatawaveMetadata table
+     * @param auths
+     *            Any {@link Authorizations} to use
+     */
+    public MetadataSnapshotHelper(AccumuloClient client, String metadataTableName, Set<Authorizations> auths) {
+        Preconditions.checkNotNull(client, "A valid AccumuloClient is required by MetadataSnapshotHelper");
+        this.accumuloClient = client;
+        
+        Preconditions.checkNotNull(metadataTableName, "The metadata table name is required by MetadataSnapshotHelper");
+        this.metadataTableName = metadataTableName;
+        
+        Preconditions.checkNotNull(auths, "Accumulo scan Authorizations are required by MetadataSnapshotHelper");
+        this.auths = auths;
+        
+        log.trace("Constructor connector: {} with auths: {} and metadata table name: {}", accumuloClient.getClass().getCanonicalName(), auths,
+                        metadataTableName);
+    }
+    
+    public Set<Authorizations> getAuths() {
+        return auths;
+    }
+    
+    public String getMetadataTableName() {
+        return metadataTableName;
+    }
+    
+    /**
+     * Returns true if this helper loads snapshots from the given table with the given auths, i.e. if the snapshot can stand in for a scan of that table.
+     *
+     * @param metadataTableName
+     *            the name of the metadata table
+     * @param auths
+     *            the scan authorizations
+     * @return true if the snapshot covers the table and auths
+     */
+    public boolean covers(String metadataTableName, Set<Authorizations> auths) {
+        return this.metadataTableName.equals(metadataTableName) && this.auths.equals(auths);
+    }
+    
+    /**
+     * Fetch every entry in the {@link MetadataSnapshot#COLUMN_FAMILIES} from the {@link #metadataTableName} table in one pass, and build a snapshot from them.
+     *
+     * @return the snapshot
+     * @throws TableNotFoundException
+     */
+    @Cacheable(value = "getMetadataSnapshot", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
+    public MetadataSnapshot getMetadataSnapshot() throws TableNotFoundException {
+        log.debug("cache fault for getMetadataSnapshot(" + this.auths + "," + this.metadataTableName + ")");
+        
+        MetadataSnapshot snapshot = readSnapshotFile();
+        if (snapshot != null) {
+            reloads.computeIfAbsent(reloadKey(), k -> reloadExecutor.submit(() -> write(load(new MetadataSnapshot.Builder(), null))));
+            return snapshot;
+        }
+        
+        return write(load(new MetadataSnapshot.Builder(), null));
+    }
+    
+    /**
+     * Replace the cached snapshot, e.g. with one reloaded in the background.
+     *
+     * @param snapshot
+     *            the snapshot
+     * @return the snapshot
+     */
+    @CachePut(value = "getMetadataSnapshot", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    public MetadataSnapshot putMetadataSnapshot(MetadataSnapshot snapshot) {
+        return snapshot;
+    }
+    
+    /**
+     * Get the snapshot reloaded in the background after the cached snapshot was read from a file, once the reload has completed. A reload is only returned
+     * once.
+     *
+     * @return the reloaded snapshot, or null if there is none or it is not complete
+     */
+    public MetadataSnapshot takeReloadedSnapshot() {
+        Future<MetadataSnapshot> reload = reloads.get(reloadKey());
+        if (reload == null || !reload.isDone() || !reloads.remove(reloadKey(), reload)) {
+            return null;
+        }
+        try {
+            return reload.get();
+        } catch (ExecutionException e) {
+            log.warn("Could not reload the metadata snapshot of " + metadataTableName + ", continuing with the snapshot from " + getSnapshotFile(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+    
+    /**
+     * Bring a stale snapshot up to date by scanning only the entries written at or after its {@link MetadataSnapshot#getMaxTimestamp()}, and replace the
+     * cached snapshot with the result.
+     *
+     * @param previous
+     *            the snapshot to refresh
+     * @return the refreshed snapshot
+     * @throws TableNotFoundException
+     */
+    @CachePut(value = "getMetadataSnapshot", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    public MetadataSnapshot refreshMetadataSnapshot(MetadataSnapshot previous) throws TableNotFoundException {
+        log.debug("incremental refresh for getMetadataSnapshot(" + this.auths + "," + this.metadataTableName + ") since " + previous.getMaxTimestamp());
+        
+        IteratorSetting timestampFilter = new IteratorSetting(50, TimestampFilter.class);
+        TimestampFilter.setStart(timestampFilter, previous.getMaxTimestamp(), true);
+        
+        return write(load(new MetadataSnapshot.Builder(previous), timestampFilter));
+    }
+    
+    /**
+     * Get the current snapshot from the given helper, refreshing it first if it has been marked stale by {@link MetadataCacheManager#refreshCaches()}, or
+     * replacing it if it was read from a file and has since been reloaded. This must be called with the Spring-managed proxy of the helper so that the
+     * refreshed snapshot is put in the cache. Only one thread at a time refreshes the snapshot of a table and auths, and the other threads are given the stale
+     * snapshot until the refreshed one is in the cache.
+     *
+     * @param helper
+     *            the snapshot helper
+     * @return an up to date snapshot
+     * @throws TableNotFoundException
+     */
+    public static MetadataSnapshot getCurrentMetadataSnapshot(MetadataSnapshotHelper helper) throws TableNotFoundException {
+        MetadataSnapshot snapshot = helper.getMetadataSnapshot();
+        MetadataSnapshot reloaded = helper.takeReloadedSnapshot();
+        if (reloaded != null) {
+            // a stale mark on the snapshot from the file is kept, as the entries it was meant to pick up may have been written after the reload scanned them
+            snapshot = helper.putMetadataSnapshot(snapshot.isStale() ? reloaded.stale() : reloaded);
+        }
+        if (snapshot.isStale()) {
+            List<Object> key = Arrays.asList(helper.getMetadataTableName(), helper.getAuths());
+            if (refreshes.add(key)) {
+                try {
+                    // another thread may have put its refresh in the cache since the stale snapshot was read
+                    snapshot = helper.getMetadataSnapshot();
+                    if (snapshot.isStale()) {
+                        snapshot = helper.refreshMetadataSnapshot(snapshot);
+                    }
+                } finally {
+                    refreshes.remove(key);
+                }
+            }
+        }
+        return snapshot;
+    }
+    
+    private List<Object> reloadKey() {
+        return Arrays.asList(metadataTableName, auths);
+    }
+    
+    /**
+     * @return the file the snapshots of this helper's table and auths are written to, or null if the {@link #SNAPSHOT_DIR_PROPERTY} is not set
+     */
+    protected Path getSnapshotFile() {
+        String dir = System.getProperty(SNAPSHOT_DIR_PROPERTY);
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        
+        // the auths are sorted so that the same auths always map to the same file
+        Set<String> sortedAuths = new TreeSet<>();
+        for (Authorizations authorizations : auths) {
+            for (byte[] auth : authorizations) {
+                sortedAuths.add(new String(auth, StandardCharsets.UTF_8));
+            }
+        }
+        String authsHash = Hashing.murmur3_128().hashString(String.join(",", sortedAuths), StandardCharsets.UTF_8).toString();
+        return Paths.get(dir, metadataTableName.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + authsHash + ".snapshot");
+    }
+    
+    /**
+     * @return the snapshot in the {@link #getSnapshotFile()}, or null if there is no file or it cannot be read
+     */
+    private MetadataSnapshot readSnapshotFile() {
+        Path file = getSnapshotFile();
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file)) {
+            MetadataSnapshot snapshot = MetadataSnapshot.readFrom(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            log.debug("read the metadata snapshot of " + metadataTableName + " from " + file + " with max timestamp " + snapshot.getMaxTimestamp());
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("Could not read the metadata snapshot from " + file + ", loading it from " + metadataTableName, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Write a snapshot to the {@link #getSnapshotFile()}, if there is one. The snapshot is written to a temporary file that is then moved into place, so that
+     * a partially written snapshot is never read.
+     *
+     * @param snapshot
+     *            the snapshot
+     * @return the snapshot
+     */
+    private MetadataSnapshot write(MetadataSnapshot snapshot) {
+        Path file = getSnapshotFile();
+        if (file == null) {
+            return snapshot;
+        }
+        
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                snapshot.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            log.warn("Could not write the metadata snapshot of " + metadataTableName + " to " + file, e);
+        }
+        return snapshot;
+    }
+    
+    private MetadataSnapshot load(MetadataSnapshot.Builder builder, IteratorSetting iterator) throws TableNotFoundException {
+        // split the table on tablet boundaries so the ranges can be loaded in parallel, with a few ranges per thread to even out uneven tablets
+        int threads = ParallelScans.getLoadThreads();
+        List<Range> ranges = (threads > 1) ? ParallelScans.getTabletRanges(accumuloClient, metadataTableName, threads * 4)
+                        : Collections.singletonList(new Range());
+        
+        MetadataSnapshot.Builder loaded = ParallelScans.scan(ranges, range -> load(new MetadataSnapshot.Builder(), range, iterator),
+                        MetadataSnapshot.Builder::merge);
+        return builder.merge(loaded).build();
+    }
+    
+    private MetadataSnapshot.Builder load(MetadataSnapshot.Builder builder, Range range, IteratorSetting iterator) throws TableNotFoundException {
+        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, auths);
+        bs.setRange(range);
+        
+        if (iterator != null) {
+            bs.addScanIterator(iterator);
+        }
+        
+        // only one key per field and datatype is needed for the column families that are tracked as bits
+        IteratorSetting distinct = new IteratorSetting(60, DistinctDatatypeIterator.class);
+        DistinctDatatypeIterator.setColumns(distinct, MetadataSnapshot.DISTINCT_COLUMN_FAMILIES);
+        bs.addScanIterator(distinct);
+        
+        for (Text colf : MetadataSnapshot.COLUMN_FAMILIES) {
+            bs.fetchColumnFamily(colf);
+        }
+        
+        long count = 0;
+        try {
+            for (Entry<Key,Value> entry : bs) {
+                builder.add(entry.getKey());
+                count++;
+            }
+        } finally {
+            bs.close();
+        }
+        
+        if (log.isTraceEnabled())
+            log.trace("loaded " + count + " entries into a metadata snapshot from table: " + metadataTableName + " range: " + range);
+        
+        return builder;
+    }
+}
@@ -0,0 +1,28 @@
+package datawave.query.util;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * A dictionary of the field names, datatypes and other strings held by the cached metadata, shared by every loader and structure in the JVM. The same field
+ * names and datatypes are loaded for every set of authorizations and into every cached structure, so interning them keeps a single copy of each string no
+ * matter how many cached results refer to it.
+ * <p>
+ * The dictionary holds the strings weakly, so a string is dropped from it once no cached structure refers to it any longer, e.g. after a field is removed from
+ * the metadata table and the caches are refreshed.
+ */
+public final class MetadataStrings {
+    
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+    
+    private MetadataStrings() {}
+    
+    /**
+     * @param value
+     *            a string, or null
+     * @return the shared instance of an equal string, which is the given one if there was none, or null for null
+     */
+    public static String intern(String value) {
+        return value == null ? null : INTERNER.intern(value);
+    }
+}
@@ -0,0 +1,160 @@
+package datawave.query.util;
+
+import java.util.Arrays;
+
+/**
+ * Parses the mini-map form of a {@link TypeMetadata} in a single pass over the string. The form starts with the ingest types and normalizers, each with an
+ * id, followed by every field and the ids of its (ingest type, normalizer) pairs:
+ *
+ * <pre>
+ * dts:[0:ingest1,1:ingest2];types:[0:DateType,1:IntegerType,2:LcType];FIELD1:[0:2,1:0];FIELD2:[0:1,1:2]
+ * </pre>
+ *
+ * The ids are resolved through arrays indexed by id, and the only strings created are the ingest types, normalizers and field names, which are interned with
+ * {@link MetadataStrings}.
+ */
+final class MiniMapParser {
+    
+    static final String INGESTTYPE_PREFIX = "dts";
+    static final String DATATYPES_PREFIX = "types";
+    
+    private static final String[] NO_STRINGS = new String[0];
+    
+    private final String data;
+    private int pos;
+    
+    private MiniMapParser(String data) {
+        this.data = data;
+    }
+    
+    /**
+     * Parse a type metadata in the mini-map form.
+     *
+     * @param data
+     *            the string of {@link TypeMetadata#toNewString()}
+     * @param consumer
+     *            receives every (field, ingest type, normalizer) entry
+     * @throws IllegalArgumentException
+     *             if the string is not in the mini-map form
+     */
+    static void parse(String data, TypeMetadata.EntryConsumer consumer) {
+        new MiniMapParser(data).parseInto(consumer);
+    }
+    
+    private void parseInto(TypeMetadata.EntryConsumer consumer) {
+        String[] ingestTypes = null;
+        String[] normalizers = null;
+        
+        // the two mini-maps come before the fields, in either order
+        while (ingestTypes == null || normalizers == null) {
+            if (ingestTypes == null && skip(INGESTTYPE_PREFIX + ":[")) {
+                ingestTypes = readMiniMap();
+            } else if (normalizers == null && skip(DATATYPES_PREFIX + ":[")) {
+                normalizers = readMiniMap();
+            } else {
+                throw error("expected the " + INGESTTYPE_PREFIX + " and " + DATATYPES_PREFIX + " mini-maps");
+            }
+            endSection();
+        }
+        
+        while (pos < data.length()) {
+            int end = data.indexOf(":[", pos);
+            if (end <= pos) {
+                throw error("expected a field name");
+            }
+            String fieldName = MetadataStrings.intern(data.substring(pos, end));
+            pos = end + 2;
+            if (!skip(']')) {
+                do {
+                    String ingestType = lookup(ingestTypes, readId());
+                    expect(':');
+                    String normalizer = lookup(normalizers, readId());
+                    consumer.accept(fieldName, ingestType, normalizer);
+                } while (skip(','));
+                expect(']');
+            }
+            endSection();
+        }
+    }
+    
+    /**
+     * @return the values of a mini-map indexed by their ids, with null for the ids that are not used
+     */
+    private String[] readMiniMap() {
+        String[] values = NO_STRINGS;
+        if (!skip(']')) {
+            do {
+                int id = readId();
+                expect(':');
+                int end = pos;
+                while (end < data.length() && data.charAt(end) != ',' && data.charAt(end) != ']') {
+                    end++;
+                }
+                if (id >= values.length) {
+                    values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+                }
+                values[id] = MetadataStrings.intern(data.substring(pos, end));
+                pos = end;
+            } while (skip(','));
+            expect(']');
+        }
+        return values;
+    }
+    
+    private String lookup(String[] values, int id) {
+        if (id >= values.length || values[id] == null) {
+            throw error("unknown id " + id);
+        }
+        return values[id];
+    }
+    
+    private int readId() {
+        int start = pos;
+        int id = 0;
+        while (pos < data.length() && data.charAt(pos) >= '0' && data.charAt(pos) <= '9') {
+            if (id > (Integer.MAX_VALUE - 9) / 10) {
+                throw error("id too large");
+            }
+            id = id * 10 + (data.charAt(pos++) - '0');
+        }
+        if (pos == start) {
+            throw error("expected an id");
+        }
+        return id;
+    }
+    
+    /**
+     * A section is followed by a ';', or is the last one.
+     */
+    private void endSection() {
+        if (pos < data.length()) {
+            expect(';');
+        }
+    }
+    
+    private void expect(char c) {
+        if (!skip(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+    
+    private boolean skip(char c) {
+        if (pos < data.length() && data.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+    
+    private boolean skip(String prefix) {
+        if (data.startsWith(prefix, pos)) {
+            pos += prefix.length();
+            return true;
+        }
+        return false;
+    }
+    
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Unable to parse string using mini-map format, " + message + " at position " + pos);
+    }
+}
@@ -0,0 +1,746 @@
+package datawave.query.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Multimap;
+
+import io.protostuff.Output;
+
+/**
+ * An immutable {@link TypeMetadata} that is dictionary encoded rather than held in a map of multimaps. The field names, ingest types and normalizer class
+ * names are each stored once in a sorted dictionary, and every (field, ingest type, normalizer) entry is a pair of ingest type and normalizer ids packed into
+ * two int arrays. The entries are sorted by field, ingest type and normalizer, with the entries of each field found through an array of offsets, and a second
+ * index lists the entries of each ingest type in field order.
+ * <p>
+ * This takes a small fraction of the memory of a {@link TypeMetadata} with the same entries, and is used for the type metadata that is cached. The methods that
+ * modify a TypeMetadata throw an {@link UnsupportedOperationException}; use {@link TypeMetadata#TypeMetadata(TypeMetadata)} for a modifiable copy.
+ * <p>
+ * A {@link #freeze() frozen} packed type metadata also holds the normalizers and datatypes of each field, and the normalizers of each field in each ingest
+ * type, as shared immutable sets. Its lookups return those sets rather than building a new one on every call, so they allocate nothing. The results of
+ * {@link #fold()}, {@link #fold(Set)} and {@link #filter(Set)} of a frozen type metadata are immutable, and memoized for each ingest type filter.
+ */
+public class PackedTypeMetadata extends TypeMetadata {
+    
+    private static final long serialVersionUID = -2712367400372861465L;
+    
+    private static final String[] NO_STRINGS = new String[0];
+    private static final int[] NO_INTS = new int[0];
+    
+    private final String[] fieldNames;
+    private final String[] ingestTypes;
+    private final String[] normalizers;
+    
+    // the entries of field i are fieldOffsets[i] until fieldOffsets[i + 1]
+    private final int[] fieldOffsets;
+    private final int[] entryIngestTypes;
+    private final int[] entryNormalizers;
+    
+    // the entries of ingest type i, in field order, are entriesByIngestType[ingestTypeOffsets[i]] until entriesByIngestType[ingestTypeOffsets[i + 1]]
+    private final int[] ingestTypeOffsets;
+    private final int[] entriesByIngestType;
+    
+    private final Set<String> keySet;
+    
+    // the shared sets of a frozen type metadata, or null if it is not frozen. The first entry of each (field, ingest type) holds the normalizers of the
+    // field in the ingest type.
+    private final Set<String>[] normalizersByField;
+    private final Set<String>[] dataTypesByField;
+    private final Set<String>[] normalizersByEntry;
+    
+    // the memoized results of fold and filter of a frozen type metadata, or null if it is not frozen
+    private final FilteredViews<Multimap<String,String>> foldViews;
+    private final FilteredViews<TypeMetadata> filterViews;
+    
+    private PackedTypeMetadata(String[] fieldNames, String[] ingestTypes, String[] normalizers, int[] fieldOffsets, int[] entryIngestTypes,
+                    int[] entryNormalizers) {
+        this.fieldNames = fieldNames;
+        this.ingestTypes = ingestTypes;
+        this.normalizers = normalizers;
+        this.fieldOffsets = fieldOffsets;
+        this.entryIngestTypes = entryIngestTypes;
+        this.entryNormalizers = entryNormalizers;
+        
+        // a counting sort of the entries by ingest type, which keeps them in field order within each ingest type
+        this.ingestTypeOffsets = new int[ingestTypes.length + 1];
+        for (int ingestType : entryIngestTypes) {
+            ingestTypeOffsets[ingestType + 1]++;
+        }
+        for (int i = 0; i < ingestTypes.length; i++) {
+            ingestTypeOffsets[i + 1] += ingestTypeOffsets[i];
+        }
+        this.entriesByIngestType = new int[entryIngestTypes.length];
+        int[] next = Arrays.copyOf(ingestTypeOffsets, ingestTypes.length);
+        for (int entry = 0; entry < entryIngestTypes.length; entry++) {
+            entriesByIngestType[next[entryIngestTypes[entry]]++] = entry;
+        }
+        
+        this.keySet = new SortedArraySet(fieldNames);
+        this.normalizersByField = null;
+        this.dataTypesByField = null;
+        this.normalizersByEntry = null;
+        this.foldViews = null;
+        this.filterViews = null;
+    }
+    
+    /**
+     * A frozen copy of a packed type metadata, sharing its arrays.
+     */
+    @SuppressWarnings("unchecked")
+    private PackedTypeMetadata(PackedTypeMetadata packed) {
+        this.fieldNames = packed.fieldNames;
+        this.ingestTypes = packed.ingestTypes;
+        this.normalizers = packed.normalizers;
+        this.fieldOffsets = packed.fieldOffsets;
+        this.entryIngestTypes = packed.entryIngestTypes;
+        this.entryNormalizers = packed.entryNormalizers;
+        this.ingestTypeOffsets = packed.ingestTypeOffsets;
+        this.entriesByIngestType = packed.entriesByIngestType;
+        this.keySet = packed.keySet;
+        
+        this.normalizersByField = new Set[fieldNames.length];
+        this.dataTypesByField = new Set[fieldNames.length];
+        this.normalizersByEntry = new Set[entryIngestTypes.length];
+        this.foldViews = new FilteredViews<>();
+        this.filterViews = new FilteredViews<>();
+        
+        // most fields have one of a few sets of normalizers or datatypes, so equal sets are shared
+        Map<Set<String>,Set<String>> shared = new HashMap<>();
+        for (int field = 0; field < fieldNames.length; field++) {
+            ImmutableSet.Builder<String> fieldNormalizers = ImmutableSet.builder();
+            ImmutableSet.Builder<String> fieldDataTypes = ImmutableSet.builder();
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1];) {
+                // the entries of a field are sorted by ingest type, so the entries of each ingest type are next to each other
+                int start = entry;
+                ImmutableSet.Builder<String> runNormalizers = ImmutableSet.builder();
+                for (; entry < fieldOffsets[field + 1] && entryIngestTypes[entry] == entryIngestTypes[start]; entry++) {
+                    runNormalizers.add(normalizers[entryNormalizers[entry]]);
+                    fieldNormalizers.add(normalizers[entryNormalizers[entry]]);
+                }
+                normalizersByEntry[start] = share(shared, runNormalizers);
+                fieldDataTypes.add(ingestTypes[entryIngestTypes[start]]);
+            }
+            normalizersByField[field] = share(shared, fieldNormalizers);
+            dataTypesByField[field] = share(shared, fieldDataTypes);
+        }
+    }
+    
+    private static Set<String> share(Map<Set<String>,Set<String>> shared, ImmutableSet.Builder<String> builder) {
+        return shared.computeIfAbsent(builder.build(), set -> set);
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * @param typeMetadata
+     *            a type metadata
+     * @return a packed copy of the type metadata, or the same instance if it is already packed
+     */
+    public static PackedTypeMetadata of(TypeMetadata typeMetadata) {
+        if (typeMetadata instanceof PackedTypeMetadata) {
+            return (PackedTypeMetadata) typeMetadata;
+        }
+        Builder builder = builder();
+        typeMetadata.forEachEntry(builder::put);
+        return builder.build();
+    }
+    
+    /**
+     * @return this type metadata if it is frozen, or else a frozen copy of it that shares its arrays
+     */
+    @Override
+    public PackedTypeMetadata freeze() {
+        return isFrozen() ? this : new PackedTypeMetadata(this);
+    }
+    
+    /**
+     * @return whether the lookups of this type metadata return shared immutable sets
+     */
+    public boolean isFrozen() {
+        return normalizersByField != null;
+    }
+    
+    @Override
+    protected void copyTo(TypeMetadata target) {
+        forEachEntry(target::put);
+    }
+    
+    @Override
+    protected void forEachEntry(EntryConsumer consumer) {
+        for (int field = 0; field < fieldNames.length; field++) {
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                consumer.accept(fieldNames[field], ingestTypes[entryIngestTypes[entry]], normalizers[entryNormalizers[entry]]);
+            }
+        }
+    }
+    
+    @Override
+    public TypeMetadata reduce(Set<String> fields) {
+        boolean[] fieldMask = new boolean[fieldNames.length];
+        for (int field = 0; field < fieldNames.length; field++) {
+            fieldMask[field] = fields.contains(fieldNames[field]);
+        }
+        return frozenIfThis(select(fieldMask, null));
+    }
+    
+    @Override
+    public void addForAllIngestTypes(Map<String,Set<String>> map) {
+        throw new UnsupportedOperationException("PackedTypeMetadata is immutable");
+    }
+    
+    @Override
+    public TypeMetadata put(String fieldName, String ingestType, String type) {
+        throw new UnsupportedOperationException("PackedTypeMetadata is immutable");
+    }
+    
+    @Override
+    public Collection<String> getTypeMetadata(String fieldName, String ingestType) {
+        int field = Arrays.binarySearch(fieldNames, fieldName);
+        int type = Arrays.binarySearch(ingestTypes, ingestType);
+        if (isFrozen()) {
+            if (field >= 0 && type >= 0) {
+                for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                    if (entryIngestTypes[entry] == type) {
+                        return normalizersByEntry[entry];
+                    }
+                }
+            }
+            return Collections.emptySet();
+        }
+        Set<String> types = new HashSet<>();
+        if (field >= 0 && type >= 0) {
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                if (entryIngestTypes[entry] == type) {
+                    types.add(normalizers[entryNormalizers[entry]]);
+                }
+            }
+        }
+        return types;
+    }
+    
+    @Override
+    public Set<String> getNormalizerNamesForField(String fieldName) {
+        int field = fieldIndex(fieldName);
+        if (field < 0) {
+            return Collections.emptySet();
+        }
+        if (isFrozen()) {
+            return normalizersByField[field];
+        }
+        Set<String> names = new HashSet<>();
+        for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+            names.add(normalizers[entryNormalizers[entry]]);
+        }
+        return names;
+    }
+    
+    @Override
+    public Set<String> getDataTypesForField(String fieldName) {
+        int field = fieldIndex(fieldName);
+        if (field < 0) {
+            return Collections.emptySet();
+        }
+        if (isFrozen()) {
+            return dataTypesByField[field];
+        }
+        Set<String> dataTypes = new HashSet<>();
+        for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+            dataTypes.add(ingestTypes[entryIngestTypes[entry]]);
+        }
+        return dataTypes;
+    }
+    
+    @Override
+    public Multimap<String,String> fold() {
+        if (isFrozen()) {
+            Multimap<String,String> folded = foldViews.get(null);
+            return folded != null ? folded : foldViews.put(null, ImmutableSetMultimap.copyOf(computeFold()));
+        }
+        return computeFold();
+    }
+    
+    private Multimap<String,String> computeFold() {
+        Multimap<String,String> map = HashMultimap.create();
+        for (int field = 0; field < fieldNames.length; field++) {
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                map.put(fieldNames[field], normalizers[entryNormalizers[entry]]);
+            }
+        }
+        return map;
+    }
+    
+    @Override
+    public Multimap<String,String> fold(Set<String> ingestTypeFilter) {
+        if (ingestTypeFilter == null || ingestTypeFilter.isEmpty()) {
+            return this.fold();
+        }
+        if (isFrozen()) {
+            Multimap<String,String> folded = foldViews.get(ingestTypeFilter);
+            return folded != null ? folded : foldViews.put(ingestTypeFilter, ImmutableSetMultimap.copyOf(computeFold(ingestTypeFilter)));
+        }
+        return computeFold(ingestTypeFilter);
+    }
+    
+    private Multimap<String,String> computeFold(Set<String> ingestTypeFilter) {
+        Multimap<String,String> map = HashMultimap.create();
+        for (String ingestType : ingestTypeFilter) {
+            int type = Arrays.binarySearch(ingestTypes, ingestType);
+            if (type >= 0) {
+                for (int i = ingestTypeOffsets[type]; i < ingestTypeOffsets[type + 1]; i++) {
+                    int entry = entriesByIngestType[i];
+                    map.put(fieldNames[fieldOf(entry)], normalizers[entryNormalizers[entry]]);
+                }
+            }
+        }
+        return map;
+    }
+    
+    @Override
+    public int size() {
+        return ingestTypes.length;
+    }
+    
+    @Override
+    public Set<String> keySet() {
+        return keySet;
+    }
+    
+    @Override
+    public TypeMetadata filter(Set<String> datatypeFilter) {
+        if (datatypeFilter == null || datatypeFilter.isEmpty()) {
+            return this;
+        }
+        if (isFrozen()) {
+            TypeMetadata filtered = filterViews.get(datatypeFilter);
+            return filtered != null ? filtered : filterViews.put(datatypeFilter, computeFilter(datatypeFilter));
+        }
+        return computeFilter(datatypeFilter);
+    }
+    
+    private TypeMetadata computeFilter(Set<String> datatypeFilter) {
+        boolean[] ingestTypeMask = new boolean[ingestTypes.length];
+        for (int type = 0; type < ingestTypes.length; type++) {
+            ingestTypeMask[type] = datatypeFilter.contains(ingestTypes[type]);
+        }
+        return frozenIfThis(select(null, ingestTypeMask));
+    }
+    
+    private PackedTypeMetadata frozenIfThis(PackedTypeMetadata selected) {
+        return isFrozen() ? selected.freeze() : selected;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return fieldNames.length == 0;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (field > 0) {
+                sb.append(';');
+            }
+            sb.append(fieldNames[field]).append(":[");
+            int previousType = -1;
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                if (entryIngestTypes[entry] != previousType) {
+                    if (previousType != -1) {
+                        sb.append(';');
+                    }
+                    previousType = entryIngestTypes[entry];
+                    sb.append(ingestTypes[previousType]).append(':');
+                } else {
+                    sb.append(',');
+                }
+                sb.append(normalizers[entryNormalizers[entry]]);
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+    
+    @Override
+    public String toNewString() {
+        // the dictionaries are sorted, so their ids are the ids of the mini-maps
+        StringBuilder sb = new StringBuilder();
+        appendMiniMap(sb.append("dts:["), ingestTypes).append("];");
+        appendMiniMap(sb.append("types:["), normalizers).append("];");
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (field > 0) {
+                sb.append("];");
+            }
+            sb.append(fieldNames[field]).append(":[");
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                if (entry > fieldOffsets[field]) {
+                    sb.append(',');
+                }
+                sb.append(entryIngestTypes[entry]).append(':').append(entryNormalizers[entry]);
+            }
+        }
+        if (fieldNames.length > 0) {
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+    
+    private static StringBuilder appendMiniMap(StringBuilder sb, String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(i).append(':').append(values[i]);
+        }
+        return sb;
+    }
+    
+    @Override
+    protected int entryCount() {
+        return entryIngestTypes.length;
+    }
+    
+    @Override
+    protected boolean containsEntry(String fieldName, String ingestType, String normalizer) {
+        int field = Arrays.binarySearch(fieldNames, fieldName);
+        int type = Arrays.binarySearch(ingestTypes, ingestType);
+        int norm = Arrays.binarySearch(normalizers, normalizer);
+        if (field >= 0 && type >= 0 && norm >= 0) {
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                if (entryIngestTypes[entry] == type && entryNormalizers[entry] == norm) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    protected boolean entriesIn(TypeMetadata other) {
+        for (int field = 0; field < fieldNames.length; field++) {
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                if (!other.containsEntry(fieldNames[field], ingestTypes[entryIngestTypes[entry]], normalizers[entryNormalizers[entry]])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    protected int computeHashCode() {
+        int result = 0;
+        for (int field = 0; field < fieldNames.length; field++) {
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                result += entryHashCode(fieldNames[field], ingestTypes[entryIngestTypes[entry]], normalizers[entryNormalizers[entry]]);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof PackedTypeMetadata) {
+            // the dictionaries and entries are sorted, so equal type metadata is packed into equal arrays
+            PackedTypeMetadata other = (PackedTypeMetadata) obj;
+            return hashCode() == other.hashCode() && Arrays.equals(fieldNames, other.fieldNames) && Arrays.equals(ingestTypes, other.ingestTypes)
+                            && Arrays.equals(normalizers, other.normalizers) && Arrays.equals(fieldOffsets, other.fieldOffsets)
+                            && Arrays.equals(entryIngestTypes, other.entryIngestTypes) && Arrays.equals(entryNormalizers, other.entryNormalizers);
+        }
+        return super.equals(obj);
+    }
+    
+    /**
+     * Write this type metadata in the form of {@link TypeMetadata#TYPE_METADATA_SCHEMA}.
+     *
+     * @param output
+     *            the output
+     * @throws IOException
+     *             if it could not be written
+     */
+    void writeTo(Output output) throws IOException {
+        for (String ingestType : ingestTypes) {
+            output.writeString(1, ingestType, true);
+        }
+        for (String normalizer : normalizers) {
+            output.writeString(2, normalizer, true);
+        }
+        for (int field = 0; field < fieldNames.length; field++) {
+            output.writeString(3, fieldNames[field], true);
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                output.writeUInt64(4, (long) entryIngestTypes[entry] * normalizers.length + entryNormalizers[entry], true);
+            }
+        }
+    }
+    
+    private int fieldIndex(String fieldName) {
+        return (fieldName == null || fieldName.isEmpty()) ? -1 : Arrays.binarySearch(fieldNames, fieldName);
+    }
+    
+    /**
+     * @return the field of an entry, i.e. the last field whose entries start at or before it
+     */
+    private int fieldOf(int entry) {
+        int low = 0;
+        int high = fieldNames.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fieldOffsets[mid] <= entry) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Select the entries of some fields and ingest types, dropping the strings that are no longer used from the dictionaries.
+     *
+     * @param fieldMask
+     *            the fields to keep, or null for all of them
+     * @param ingestTypeMask
+     *            the ingest types to keep, or null for all of them
+     * @return the selected type metadata
+     */
+    private PackedTypeMetadata select(boolean[] fieldMask, boolean[] ingestTypeMask) {
+        int[] selected = new int[entryIngestTypes.length];
+        int[] selectedFields = new int[entryIngestTypes.length];
+        boolean[] usedFields = new boolean[fieldNames.length];
+        boolean[] usedIngestTypes = new boolean[ingestTypes.length];
+        boolean[] usedNormalizers = new boolean[normalizers.length];
+        int count = 0;
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (fieldMask != null && !fieldMask[field]) {
+                continue;
+            }
+            for (int entry = fieldOffsets[field]; entry < fieldOffsets[field + 1]; entry++) {
+                if (ingestTypeMask == null || ingestTypeMask[entryIngestTypes[entry]]) {
+                    selected[count] = entry;
+                    selectedFields[count++] = field;
+                    usedFields[field] = true;
+                    usedIngestTypes[entryIngestTypes[entry]] = true;
+                    usedNormalizers[entryNormalizers[entry]] = true;
+                }
+            }
+        }
+        if (count == entryIngestTypes.length) {
+            return this;
+        }
+        
+        // the ids are renumbered in the same order, so the dictionaries and entries stay sorted
+        int[] fieldIds = renumber(usedFields);
+        int[] ingestTypeIds = renumber(usedIngestTypes);
+        int[] normalizerIds = renumber(usedNormalizers);
+        String[] newFieldNames = compact(fieldNames, fieldIds);
+        int[] newFieldOffsets = new int[newFieldNames.length + 1];
+        int[] newEntryIngestTypes = new int[count];
+        int[] newEntryNormalizers = new int[count];
+        for (int i = 0; i < count; i++) {
+            newFieldOffsets[fieldIds[selectedFields[i]] + 1] = i + 1;
+            newEntryIngestTypes[i] = ingestTypeIds[entryIngestTypes[selected[i]]];
+            newEntryNormalizers[i] = normalizerIds[entryNormalizers[selected[i]]];
+        }
+        return new PackedTypeMetadata(newFieldNames, compact(ingestTypes, ingestTypeIds), compact(normalizers, normalizerIds), newFieldOffsets,
+                        newEntryIngestTypes, newEntryNormalizers);
+    }
+    
+    /**
+     * @return the new id of each used id, or -1 for the unused ones
+     */
+    private static int[] renumber(boolean[] used) {
+        int[] ids = new int[used.length];
+        int next = 0;
+        for (int i = 0; i < used.length; i++) {
+            ids[i] = used[i] ? next++ : -1;
+        }
+        return ids;
+    }
+    
+    private static String[] compact(String[] values, int[] ids) {
+        List<String> compacted = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (ids[i] != -1) {
+                compacted.add(values[i]);
+            }
+        }
+        return compacted.toArray(NO_STRINGS);
+    }
+    
+    private Object writeReplace() {
+        return new SerializedForm(toBytes(this), isFrozen());
+    }
+    
+    /**
+     * Serializes a packed type metadata in the binary form of a {@link TypeMetadata}, and packs it again when it is read.
+     */
+    private static class SerializedForm implements Serializable {
+        private static final long serialVersionUID = 6185946720395862211L;
+        
+        private final byte[] data;
+        private final boolean frozen;
+        
+        private SerializedForm(byte[] data, boolean frozen) {
+            this.data = data;
+            this.frozen = frozen;
+        }
+        
+        private Object readResolve() {
+            PackedTypeMetadata packed = PackedTypeMetadata.of(fromBytes(data));
+            return frozen ? packed.freeze() : packed;
+        }
+    }
+    
+    /**
+     * A read-only set view of a sorted array of distinct strings.
+     */
+    private static class SortedArraySet extends AbstractSet<String> {
+        private final String[] values;
+        
+        private SortedArraySet(String[] values) {
+            this.values = values;
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && Arrays.binarySearch(values, o) >= 0;
+        }
+        
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next;
+                
+                @Override
+                public boolean hasNext() {
+                    return next < values.length;
+                }
+                
+                @Override
+                public String next() {
+                    if (next == values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return values[next++];
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+    
+    /**
+     * Collects the entries of a packed type metadata. A builder is not thread-safe.
+     */
+    public static class Builder {
+        private final List<String> entryFieldNames = new ArrayList<>();
+        private final List<String> entryIngestTypes = new ArrayList<>();
+        private final List<String> entryNormalizers = new ArrayList<>();
+        
+        private Builder() {}
+        
+        /**
+         * @param fieldName
+         *            the field name
+         * @param ingestType
+         *            the ingest type, or datatype, of the field
+         * @param normalizer
+         *            the normalizer class name of the field in the ingest type
+         * @return this builder
+         */
+        public Builder put(String fieldName, String ingestType, String normalizer) {
+            entryFieldNames.add(fieldName);
+            entryIngestTypes.add(ingestType);
+            entryNormalizers.add(normalizer);
+            return this;
+        }
+        
+        public PackedTypeMetadata build() {
+            if (entryFieldNames.isEmpty()) {
+                return new PackedTypeMetadata(NO_STRINGS, NO_STRINGS, NO_STRINGS, new int[1], NO_INTS, NO_INTS);
+            }
+            
+            String[] fieldNames = dictionary(entryFieldNames);
+            String[] ingestTypes = dictionary(entryIngestTypes);
+            String[] normalizers = dictionary(entryNormalizers);
+            Map<String,Integer> fieldIds = ids(fieldNames);
+            Map<String,Integer> ingestTypeIds = ids(ingestTypes);
+            Map<String,Integer> normalizerIds = ids(normalizers);
+            
+            // a counting sort of the entries by field, then a sort of each field's entries by ingest type and normalizer
+            int size = entryFieldNames.size();
+            int[] fields = new int[size];
+            int[] starts = new int[fieldNames.length + 1];
+            for (int i = 0; i < size; i++) {
+                fields[i] = fieldIds.get(entryFieldNames.get(i));
+                starts[fields[i] + 1]++;
+            }
+            for (int field = 0; field < fieldNames.length; field++) {
+                starts[field + 1] += starts[field];
+            }
+            long[] entries = new long[size];
+            int[] next = Arrays.copyOf(starts, fieldNames.length);
+            for (int i = 0; i < size; i++) {
+                long ingestType = ingestTypeIds.get(entryIngestTypes.get(i));
+                entries[next[fields[i]]++] = (ingestType << 32) | normalizerIds.get(entryNormalizers.get(i));
+            }
+            
+            // drop the duplicate entries of each field
+            int[] fieldOffsets = new int[fieldNames.length + 1];
+            int[] packedIngestTypes = new int[size];
+            int[] packedNormalizers = new int[size];
+            int count = 0;
+            for (int field = 0; field < fieldNames.length; field++) {
+                Arrays.sort(entries, starts[field], starts[field + 1]);
+                for (int i = starts[field]; i < starts[field + 1]; i++) {
+                    if (i == starts[field] || entries[i] != entries[i - 1]) {
+                        packedIngestTypes[count] = (int) (entries[i] >>> 32);
+                        packedNormalizers[count++] = (int) entries[i];
+                    }
+                }
+                fieldOffsets[field + 1] = count;
+            }
+            return new PackedTypeMetadata(fieldNames, ingestTypes, normalizers, fieldOffsets, Arrays.copyOf(packedIngestTypes, count),
+                            Arrays.copyOf(packedNormalizers, count));
+        }
+        
+        private static String[] dictionary(List<String> values) {
+            Set<String> distinct = new TreeSet<>();
+            for (String value : values) {
+                distinct.add(MetadataStrings.intern(value));
+            }
+            return distinct.toArray(NO_STRINGS);
+        }
+        
+        private static Map<String,Integer> ids(String[] dictionary) {
+            Map<String,Integer> ids = new HashMap<>();
+            for (int i = 0; i < dictionary.length; i++) {
+                ids.put(dictionary[i], i);
+            }
+            return ids;
+        }
+    }
+}
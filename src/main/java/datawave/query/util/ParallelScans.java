@@ -0,0 +1,184 @@
+package datawave.query.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import datawave.security.util.ScannerHelper;
+
+/**
+ * Support for reading a whole table with several threads, so that full-table metadata loads scale with the number of tablet servers instead of being
+ * limited to a single RPC stream. The number of threads is set with the {@link #LOAD_THREADS_PROPERTY} system property, and defaults to
+ * {@link #DEFAULT_LOAD_THREADS}. The range scans of every load run on one shared pool of that many daemon threads, so concurrent loads queue for the threads
+ * rather than each starting their own.
+ */
+public final class ParallelScans {
+    private static final Logger log = LoggerFactory.getLogger(ParallelScans.class);
+    
+    public static final String LOAD_THREADS_PROPERTY = "dw.metadatahelper.load.threads";
+    public static final int DEFAULT_LOAD_THREADS = 8;
+    
+    private ParallelScans() {}
+    
+    /**
+     * Holds the shared pool of load threads, which is created on first use with the {@link #getLoadThreads()} of that time. Idle threads exit after a minute.
+     */
+    private static final class LoadExecutor {
+        private static final ExecutorService executor = createExecutor();
+        
+        private static ExecutorService createExecutor() {
+            int threads = getLoadThreads();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("metadata-load-%d").build());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+    
+    /**
+     * A scan of a single range that may throw a {@link TableNotFoundException}.
+     *
+     * @param <T>
+     *            the partial result type
+     */
+    @FunctionalInterface
+    public interface RangeScan<T> {
+        T scan(Range range) throws TableNotFoundException;
+    }
+    
+    /**
+     * @return the number of threads to use for a full-table load, at least one
+     */
+    public static int getLoadThreads() {
+        return Math.max(1, Integer.getInteger(LOAD_THREADS_PROPERTY, DEFAULT_LOAD_THREADS));
+    }
+    
+    /**
+     * Create a {@link BatchScanner} over the whole table using {@link #getLoadThreads()} threads. The batch scanner splits the range on tablet boundaries
+     * and reads the tablets in parallel, so entries are not returned in sorted order.
+     *
+     * @param client
+     *            the Accumulo client
+     * @param tableName
+     *            the table to scan
+     * @param auths
+     *            the scan authorizations
+     * @return the batch scanner, which the caller must close
+     * @throws TableNotFoundException
+     */
+    public static BatchScanner createFullTableBatchScanner(AccumuloClient client, String tableName, Collection<Authorizations> auths)
+                    throws TableNotFoundException {
+        BatchScanner bs = ScannerHelper.createBatchScanner(client, tableName, auths, getLoadThreads());
+        bs.setRanges(Collections.singleton(new Range()));
+        return bs;
+    }
+    
+    /**
+     * Split the whole table into ranges on tablet boundaries. When the table has more tablets than {@code maxRanges}, neighbouring tablets are grouped into
+     * the same range. If the splits cannot be listed, the whole table is returned as a single range.
+     *
+     * @param client
+     *            the Accumulo client
+     * @param tableName
+     *            the table to split
+     * @param maxRanges
+     *            the maximum number of ranges to return
+     * @return the ranges, in sorted order, that together cover the table
+     * @throws TableNotFoundException
+     */
+    public static List<Range> getTabletRanges(AccumuloClient client, String tableName, int maxRanges) throws TableNotFoundException {
+        Collection<Text> splits;
+        try {
+            splits = maxRanges > 1 ? client.tableOperations().listSplits(tableName, maxRanges - 1) : Collections.emptyList();
+        } catch (AccumuloSecurityException | AccumuloException e) {
+            log.warn("Unable to list the splits of " + tableName + ", scanning it as a single range", e);
+            splits = Collections.emptyList();
+        }
+        
+        List<Range> ranges = new ArrayList<>(splits.size() + 1);
+        Text start = null;
+        for (Text split : splits) {
+            ranges.add(new Range(start, false, split, true));
+            start = split;
+        }
+        ranges.add(new Range(start, false, null, true));
+        return ranges;
+    }
+    
+    /**
+     * Scan each of the ranges on its own thread and merge the partial results as they are collected. The scans run on the shared pool of
+     * {@link #getLoadThreads()} threads, and the merge runs on the calling thread in range order.
+     *
+     * @param ranges
+     *            the ranges to scan
+     * @param scan
+     *            scans one range into a partial result
+     * @param merge
+     *            merges two partial results, returning the merged result
+     * @param <T>
+     *            the result type
+     * @return the merged result
+     * @throws TableNotFoundException
+     */
+    public static <T> T scan(List<Range> ranges, RangeScan<T> scan, BinaryOperator<T> merge) throws TableNotFoundException {
+        int threads = Math.min(getLoadThreads(), ranges.size());
+        if (threads <= 1) {
+            T result = null;
+            for (Range range : ranges) {
+                T partial = scan.scan(range);
+                result = (result == null) ? partial : merge.apply(result, partial);
+            }
+            return result;
+        }
+        
+        List<Future<T>> partials = new ArrayList<>(ranges.size());
+        try {
+            for (Range range : ranges) {
+                partials.add(LoadExecutor.executor.submit(() -> scan.scan(range)));
+            }
+            
+            T result = null;
+            for (Future<T> future : partials) {
+                T partial = future.get();
+                result = (result == null) ? partial : merge.apply(result, partial);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading metadata", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TableNotFoundException) {
+                throw (TableNotFoundException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to load metadata", e.getCause());
+        } finally {
+            // stop the scans of a failed load, which is a no-op for the scans that completed
+            for (Future<T> future : partials) {
+                future.cancel(true);
+            }
+        }
+    }
+}
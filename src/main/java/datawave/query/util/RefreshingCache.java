@@ -0,0 +1,187 @@
+package datawave.query.util;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * A Spring {@link org.springframework.cache.Cache} backed by Caffeine that reloads entries in the background once they are older than a refresh interval,
+ * in the style of {@link Caffeine#refreshAfterWrite(Duration)}. The previous value keeps being served while the reload runs, and is kept if the reload fails,
+ * so only the first load of a key is ever paid for by a caller.
+ * <p>
+ * Spring only hands a value loader to the cache for {@link org.springframework.cache.annotation.Cacheable} methods declared with {@code sync = true}. That
+ * loader is kept with the entry and invoked again to refresh it. Entries written without a loader, e.g. by
+ * {@link org.springframework.cache.annotation.CachePut}, inherit the loader of the entry they replace, and are otherwise never refreshed.
+ */
+public class RefreshingCache extends AbstractValueAdaptingCache {
+    private static final Logger log = LoggerFactory.getLogger(RefreshingCache.class);
+    
+    private final String name;
+    private final Cache<Object,Entry> store;
+    private final long refreshNanos;
+    private final Executor executor;
+    private final Ticker ticker;
+    
+    /**
+     * Initializes the instance.
+     *
+     * @param name
+     *            the cache name
+     * @param builder
+     *            the Caffeine builder for the backing cache, which still applies its own size and expiration limits
+     * @param refreshInterval
+     *            the age after which an entry is reloaded in the background, or null to never refresh
+     * @param executor
+     *            the executor that runs the reloads
+     * @param ticker
+     *            the time source used to age entries
+     */
+    public RefreshingCache(String name, Caffeine<Object,Object> builder, Duration refreshInterval, Executor executor, Ticker ticker) {
+        super(true);
+        this.name = name;
+        this.store = builder.build();
+        this.refreshNanos = refreshInterval == null ? 0 : refreshInterval.toNanos();
+        this.executor = executor;
+        this.ticker = ticker;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public Cache<Object,Entry> getNativeCache() {
+        return store;
+    }
+    
+    @Override
+    protected Object lookup(Object key) {
+        Entry entry = store.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        refreshIfDue(key, entry);
+        return entry.value;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Entry entry = store.get(key, k -> new Entry(toStoreValue(load(k, valueLoader)), ticker.read(), valueLoader));
+        refreshIfDue(key, entry);
+        return (T) fromStoreValue(entry.value);
+    }
+    
+    @Override
+    public void put(Object key, Object value) {
+        store.asMap().compute(key, (k, previous) -> new Entry(toStoreValue(value), ticker.read(), previous == null ? null : previous.loader));
+    }
+    
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Entry previous = store.asMap().putIfAbsent(key, new Entry(toStoreValue(value), ticker.read(), null));
+        return previous == null ? null : toValueWrapper(previous.value);
+    }
+    
+    @Override
+    public void evict(Object key) {
+        store.invalidate(key);
+    }
+    
+    @Override
+    public void clear() {
+        store.invalidateAll();
+    }
+    
+    /**
+     * Replace every cached value with the result of the given function, keeping the age and loader of each entry.
+     *
+     * @param function
+     *            applied to each cached value
+     */
+    public void replaceValues(UnaryOperator<Object> function) {
+        store.asMap().replaceAll((key, entry) -> new Entry(toStoreValue(function.apply(fromStoreValue(entry.value))), entry.writeTime, entry.loader));
+    }
+    
+    /**
+     * Reload every entry in the background regardless of its age, serving the current values until the reloads complete. Entries that cannot be reloaded are
+     * evicted.
+     */
+    public void refreshAll() {
+        store.asMap().forEach((key, entry) -> {
+            if (entry.loader == null) {
+                store.asMap().remove(key, entry);
+            } else {
+                refresh(key, entry);
+            }
+        });
+    }
+    
+    private void refreshIfDue(Object key, Entry entry) {
+        if (refreshNanos > 0 && entry.loader != null && ticker.read() - entry.writeTime >= refreshNanos) {
+            refresh(key, entry);
+        }
+    }
+    
+    private void refresh(Object key, Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    Object value = entry.loader.call();
+                    // only replace the entry we refreshed, in case it was evicted or overwritten in the meantime
+                    store.asMap().replace(key, entry, new Entry(toStoreValue(value), ticker.read(), entry.loader));
+                } catch (Exception e) {
+                    log.warn("Failed to refresh " + key + " in metadata cache " + name + ", serving the previous value", e);
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Unable to schedule a refresh of " + key + " in metadata cache " + name, e);
+            entry.refreshing.set(false);
+        }
+    }
+    
+    private static Object load(Object key, Callable<?> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+    
+    /**
+     * A cached value along with when it was written and how to reload it.
+     */
+    public static final class Entry {
+        private final Object value;
+        private final long writeTime;
+        private final Callable<?> loader;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        
+        private Entry(Object value, long writeTime, Callable<?> loader) {
+            this.value = value;
+            this.writeTime = writeTime;
+            this.loader = loader;
+        }
+        
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+}
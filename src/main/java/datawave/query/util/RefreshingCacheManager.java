@@ -0,0 +1,114 @@
+package datawave.query.util;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link CacheManager} of {@link RefreshingCache}s, suitable for use as the {@code metadataHelperCacheManager}. Each cache is named after the
+ * {@link org.springframework.cache.annotation.Cacheable} method it backs, and may be given its own refresh interval with {@link #setRefreshIntervals(Map)}.
+ * Caches without one use the {@link #setDefaultRefreshInterval(Duration) default}, which is to never refresh.
+ * <p>
+ * The refresh interval should be shorter than any expiration in the Caffeine spec, otherwise entries are expired before they are refreshed.
+ */
+public class RefreshingCacheManager implements CacheManager {
+    public static final String DEFAULT_CAFFEINE_SPEC = "maximumSize=1000";
+    public static final int DEFAULT_REFRESH_THREADS = 2;
+    
+    private final ConcurrentMap<String,RefreshingCache> caches = new ConcurrentHashMap<>();
+    private final Caffeine<Object,Object> cacheBuilder;
+    private final Executor executor;
+    private Map<String,Duration> refreshIntervals = new HashMap<>();
+    private Duration defaultRefreshInterval = null;
+    private Ticker ticker = Ticker.systemTicker();
+    
+    /**
+     * Creates a cache manager with the {@link #DEFAULT_CAFFEINE_SPEC} that refreshes entries on {@link #DEFAULT_REFRESH_THREADS} daemon threads.
+     */
+    public RefreshingCacheManager() {
+        this(DEFAULT_CAFFEINE_SPEC);
+    }
+    
+    /**
+     * Creates a cache manager that refreshes entries on {@link #DEFAULT_REFRESH_THREADS} daemon threads.
+     *
+     * @param caffeineSpec
+     *            the Caffeine spec used to build each cache
+     */
+    public RefreshingCacheManager(String caffeineSpec) {
+        this(caffeineSpec, Executors.newFixedThreadPool(DEFAULT_REFRESH_THREADS,
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("metadata-cache-refresh-%d").build()));
+    }
+    
+    /**
+     * Creates a cache manager.
+     *
+     * @param caffeineSpec
+     *            the Caffeine spec used to build each cache
+     * @param executor
+     *            the executor that runs the background refreshes
+     */
+    public RefreshingCacheManager(String caffeineSpec, Executor executor) {
+        this.cacheBuilder = Caffeine.from(caffeineSpec);
+        this.executor = executor;
+    }
+    
+    public Map<String,Duration> getRefreshIntervals() {
+        return refreshIntervals;
+    }
+    
+    /**
+     * Set the refresh interval of each cache by name. Only affects caches created afterwards.
+     *
+     * @param refreshIntervals
+     *            the refresh interval by cache name
+     */
+    public void setRefreshIntervals(Map<String,Duration> refreshIntervals) {
+        this.refreshIntervals = new HashMap<>(refreshIntervals);
+    }
+    
+    public Duration getDefaultRefreshInterval() {
+        return defaultRefreshInterval;
+    }
+    
+    /**
+     * Set the refresh interval of caches that are not given one by {@link #setRefreshIntervals(Map)}. Only affects caches created afterwards.
+     *
+     * @param defaultRefreshInterval
+     *            the default refresh interval, or null to never refresh
+     */
+    public void setDefaultRefreshInterval(Duration defaultRefreshInterval) {
+        this.defaultRefreshInterval = defaultRefreshInterval;
+    }
+    
+    public void setTicker(Ticker ticker) {
+        this.ticker = ticker;
+    }
+    
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+    
+    private RefreshingCache createCache(String name) {
+        return new RefreshingCache(name, cacheBuilder, refreshIntervals.getOrDefault(name, defaultRefreshInterval), executor, ticker);
+    }
+    
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+}
@@ -0,0 +1,141 @@
+package datawave.query.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.ByteSequence;
+
+/**
+ * A pool of the strings decoded from the keys of the metadata table, looked up by their UTF-8 bytes. Each distinct string is decoded once, the first time its
+ * bytes are seen, and the same instance is returned every time after that. This keeps a load of the metadata table from creating a new string for the field
+ * name and datatype of every entry, which are repeated across many entries. The strings are taken from the {@link MetadataStrings} dictionary, so they are
+ * shared with the results of every other load too.
+ * <p>
+ * A pool is meant to live as long as a single load, and is not thread-safe.
+ */
+public class StringPool {
+    
+    private static final int INITIAL_CAPACITY = 256;
+    
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+    
+    /**
+     * @param bytes
+     *            the UTF-8 bytes of a string
+     * @return the pooled string
+     */
+    public String get(ByteSequence bytes) {
+        return get(bytes, 0, bytes.length());
+    }
+    
+    /**
+     * @param bytes
+     *            a sequence of bytes
+     * @param offset
+     *            the offset of the UTF-8 bytes of the string in the sequence
+     * @param length
+     *            the length of the string in bytes
+     * @return the pooled string
+     */
+    public String get(ByteSequence bytes, int offset, int length) {
+        if (bytes.isBackedByArray()) {
+            return get(bytes.getBackingArray(), bytes.offset() + offset, length);
+        }
+        return get(bytes.subSequence(offset, offset + length).toArray(), 0, length);
+    }
+    
+    /**
+     * @param bytes
+     *            an array of bytes
+     * @param offset
+     *            the offset of the UTF-8 bytes of the string in the array
+     * @param length
+     *            the length of the string in bytes
+     * @return the pooled string
+     */
+    public String get(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int mask = keys.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                String value = MetadataStrings.intern(new String(bytes, offset, length, StandardCharsets.UTF_8));
+                insert(slot, Arrays.copyOfRange(bytes, offset, offset + length), value, hash);
+                return value;
+            } else if (hashes[slot] == hash && Arrays.equals(key, 0, key.length, bytes, offset, offset + length)) {
+                return values[slot];
+            }
+        }
+    }
+    
+    /**
+     * @param value
+     *            a string
+     * @return the pooled instance of an equal string
+     */
+    public String intern(String value) {
+        value = MetadataStrings.intern(value);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes, 0, bytes.length);
+        int mask = keys.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                insert(slot, bytes, value, hash);
+                return value;
+            } else if (hashes[slot] == hash && Arrays.equals(key, bytes)) {
+                return values[slot];
+            }
+        }
+    }
+    
+    /**
+     * @return the number of distinct strings in the pool
+     */
+    public int size() {
+        return size;
+    }
+    
+    private void insert(int slot, byte[] key, String value, int hash) {
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        // keep the table at most half full so the probes stay short
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+    
+    private void resize() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+    
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the high bits into the low ones used for the slot
+        return hash ^ (hash >>> 16);
+    }
+}
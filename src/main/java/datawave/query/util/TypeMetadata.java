@@ -1,14 +1,14 @@
 package datawave.query.util;
 
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -25,22 +25,32 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
-public class TypeMetadata implements Serializable {
+import io.protostuff.Input;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Message;
+import io.protostuff.Output;
+import io.protostuff.ProtobufIOUtil;
+import io.protostuff.Schema;
+
+/**
+ * The normalizers of each field, separated by ingest type. This class is serializable using the protostuff api, which is also used for its java serialization.
+ * Two type metadata are equal when they have the same (field, ingest type, normalizer) entries, whatever their class.
+ */
+public class TypeMetadata implements Serializable, Message<TypeMetadata> {
+    
+    private static final ThreadLocal<LinkedBuffer> linkedBuffer = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(4096));
     
     private Set<String> ingestTypes = new TreeSet<>();
     
     private Set<String> fieldNames = new TreeSet<>();
     
-    private Map<String,Integer> ingestTypesMiniMap = new HashMap<>();
-    private Map<String,Integer> dataTypesMiniMap = new HashMap<>();
-    
     // <ingestType, <fieldName, DataType(s)>>
     protected Map<String,Multimap<String,String>> typeMetadata;
     
     public static final Multimap<String,String> emptyMap = HashMultimap.create();
     
-    private static final String INGESTTYPE_PREFIX = "dts";
-    private static final String DATATYPES_PREFIX = "types";
+    // the hash of the entries, or 0 if it has not been computed since the last change
+    private transient int hash;
     
     public TypeMetadata() {
         typeMetadata = Maps.newHashMap();
@@ -62,12 +72,54 @@ public class TypeMetadata implements Serializable {
     
     public TypeMetadata(TypeMetadata in) {
         typeMetadata = Maps.newHashMap();
+        in.copyTo(this);
+    }
+    
+    /**
+     * An immutable copy of this type metadata for repeated lookups, such as the normalization of every field of every document in a query. The lookups of the
+     * copy return shared, immutable sets that were computed when it was frozen, rather than a new set on every call.
+     *
+     * @return a frozen, immutable copy of this type metadata
+     */
+    public TypeMetadata freeze() {
+        return PackedTypeMetadata.of(this).freeze();
+    }
+    
+    /**
+     * Copy the entries of this type metadata into an empty one.
+     *
+     * @param target
+     *            the type metadata to copy into
+     */
+    protected void copyTo(TypeMetadata target) {
         // make sure we do a deep copy to avoid access issues later
-        for (Map.Entry<String,Multimap<String,String>> entry : in.typeMetadata.entrySet()) {
-            this.typeMetadata.put(entry.getKey(), HashMultimap.create(entry.getValue()));
+        for (Map.Entry<String,Multimap<String,String>> entry : typeMetadata.entrySet()) {
+            target.typeMetadata.put(entry.getKey(), HashMultimap.create(entry.getValue()));
         }
-        this.ingestTypes.addAll(in.ingestTypes);
-        this.fieldNames.addAll(in.fieldNames);
+        target.ingestTypes.addAll(ingestTypes);
+        target.fieldNames.addAll(fieldNames);
+    }
+    
+    /**
+     * Pass every (field, ingest type, normalizer) entry of this type metadata to a consumer.
+     *
+     * @param consumer
+     *            the consumer
+     */
+    protected void forEachEntry(EntryConsumer consumer) {
+        for (Entry<String,Multimap<String,String>> entry : typeMetadata.entrySet()) {
+            for (Entry<String,String> element : entry.getValue().entries()) {
+                consumer.accept(element.getKey(), entry.getKey(), element.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Receives the entries of a type metadata.
+     */
+    @FunctionalInterface
+    protected interface EntryConsumer {
+        void accept(String fieldName, String ingestType, String normalizer);
     }
     
     /**
@@ -106,15 +158,15 @@ public class TypeMetadata implements Serializable {
     }
     
     public TypeMetadata put(String fieldName, String ingestType, String type) {
-        if (null == this.typeMetadata.get(ingestType)) {
-            Multimap<String,String> map = HashMultimap.create();
-            this.typeMetadata.put(ingestType, map);
-        }
         addTypeMetadata(fieldName, ingestType, type);
         return this;
     }
     
     private void addTypeMetadata(String fieldName, String ingestType, Collection<String> types) {
+        fieldName = MetadataStrings.intern(fieldName);
+        ingestType = MetadataStrings.intern(ingestType);
+        types = types.stream().map(MetadataStrings::intern).collect(Collectors.toList());
+        this.hash = 0;
         this.ingestTypes.add(ingestType);
         this.fieldNames.add(fieldName);
         if (null == this.typeMetadata.get(ingestType)) {
@@ -127,15 +179,19 @@ public class TypeMetadata implements Serializable {
     }
     
     private void addTypeMetadata(String fieldName, String ingestType, String type) {
+        addInternedTypeMetadata(MetadataStrings.intern(fieldName), MetadataStrings.intern(ingestType), MetadataStrings.intern(type));
+    }
+    
+    private void addInternedTypeMetadata(String fieldName, String ingestType, String type) {
+        this.hash = 0;
         this.ingestTypes.add(ingestType);
         this.fieldNames.add(fieldName);
-        if (null == this.typeMetadata.get(ingestType)) {
-            Multimap<String,String> typeMap = HashMultimap.create();
-            typeMap.put(fieldName, type);
+        Multimap<String,String> typeMap = this.typeMetadata.get(ingestType);
+        if (null == typeMap) {
+            typeMap = HashMultimap.create();
             this.typeMetadata.put(ingestType, typeMap);
-        } else {
-            this.typeMetadata.get(ingestType).put(fieldName, type);
         }
+        typeMap.put(fieldName, type);
     }
     
     public Collection<String> getTypeMetadata(String fieldName, String ingestType) {
@@ -306,6 +362,7 @@ public class TypeMetadata implements Serializable {
             if (2 != entrySplits.length) {
                 // Do nothing
             } else {
+                entrySplits[0] = MetadataStrings.intern(entrySplits[0]);
                 // entrySplits[1] looks like this:
                 // [type1:a,b;type2:b] - split it on the ';'
                 // get rid of the leading and trailing brackets:
@@ -315,6 +372,7 @@ public class TypeMetadata implements Serializable {
                 for (String value : values) {
                     
                     String[] vs = Iterables.toArray(Splitter.on(':').omitEmptyStrings().trimResults().split(value), String.class);
+                    vs[0] = MetadataStrings.intern(vs[0]);
                     
                     Multimap<String,String> mm = typeMetadata.get(vs[0]);
                     if (null == mm) {
@@ -325,7 +383,7 @@ public class TypeMetadata implements Serializable {
                     String[] rhs = Iterables.toArray(Splitter.on(',').omitEmptyStrings().trimResults().split(vs[1]), String.class);
                     this.ingestTypes.add(vs[0]);
                     for (String r : rhs) {
-                        mm.put(entrySplits[0], r);
+                        mm.put(entrySplits[0], MetadataStrings.intern(r));
                     }
                 }
                 fieldNames.add(entrySplits[0]);
@@ -351,157 +409,83 @@ public class TypeMetadata implements Serializable {
         return Iterables.toArray(list, String.class);
     }
     
-    private static Map<String,Integer> parseTypes(String typeEntry) {
-        // dts:[0:ingest1,1:ingest2]
-        // types:[0:DateType,1:IntegerType,2:LcType]
-        
-        // remove type designation and leading/trailing brackets
-        String types = typeEntry.split(":\\[")[1];
-        String typeEntries = types.substring(0, types.length() - 1);
-        
-        Map<String,Integer> typeMap = new HashMap<>();
-        
-        for (String entry : typeEntries.split(",")) {
-            String[] entryParts = entry.split(":");
-            typeMap.put(entryParts[1], Integer.valueOf(entryParts[0]));
-        }
-        
-        return typeMap;
+    /**
+     * @return the mini-map form of this type metadata, which {@link #TypeMetadata(String, boolean)} reads
+     */
+    public String toNewString() {
+        // the packed form holds the sorted dictionaries and the entries of each field, which is what the mini-map form writes
+        return PackedTypeMetadata.of(this).toNewString();
     }
     
-    public String toNewString() {
-        StringBuilder sb = new StringBuilder();
-        
-        // create and append ingestTypes mini-map
-        sb.append("dts:[");
-        Iterator<String> ingestIter = ingestTypes.iterator();
-        for (int i = 0; i < ingestTypes.size(); i++) {
-            String ingestType = ingestIter.next();
-            sb.append(i).append(":");
-            sb.append(ingestType);
-            sb.append(ingestIter.hasNext() ? "," : "];");
-            ingestTypesMiniMap.put(ingestType, i);
-        }
-        
-        // create and append dataTypes mini-map
-        sb.append("types:[");
-        Iterator<Multimap<String,String>> typesIter = typeMetadata.values().iterator();
-        Set<String> dataTypes = new TreeSet<>();
-        while (typesIter.hasNext()) {
-            dataTypes.addAll(typesIter.next().values());
-        }
-        
-        Iterator<String> dataIter = dataTypes.iterator();
-        for (int i = 0; i < dataTypes.size(); i++) {
-            String dataType = dataIter.next();
-            sb.append(i).append(":");
-            sb.append(dataType);
-            sb.append(dataIter.hasNext() ? "," : "];");
-            dataTypesMiniMap.put(dataType, i);
-        }
-        
-        // append fieldNames and their associated ingestTypes and Normalizers
-        // ensure ordering for ease of type -> mini-map mapping
-        Set<String> fieldNames = new TreeSet<>();
-        Set<String> ingestTypes = typeMetadata.keySet().stream().sorted().collect(Collectors.toCollection(LinkedHashSet::new));
-        for (String ingestType : ingestTypes) {
-            fieldNames.addAll(typeMetadata.get(ingestType).keySet());
+    private void fromNewString(String data) {
+        MiniMapParser.parse(data, this::addInternedTypeMetadata);
+    }
+    
+    /**
+     * @return the number of (field, ingest type, normalizer) entries
+     */
+    protected int entryCount() {
+        int count = 0;
+        for (Multimap<String,String> map : typeMetadata.values()) {
+            count += map.size();
         }
-        
-        Iterator<String> fieldIter = fieldNames.iterator();
-        while (fieldIter.hasNext()) {
-            String fieldName = fieldIter.next();
-            sb.append(fieldName).append(":[");
-            Iterator<String> iIter = ingestTypes.iterator();
-            while (iIter.hasNext()) {
-                String ingestType = iIter.next();
-                if (!typeMetadata.get(ingestType).containsKey(fieldName)) {
-                    continue;
-                }
-                for (String dataType : typeMetadata.get(ingestType).get(fieldName)) {
-                    sb.append(ingestTypesMiniMap.get(ingestType)).append(':');
-                    sb.append(dataTypesMiniMap.get(dataType));
+        return count;
+    }
+    
+    /**
+     * @param fieldName
+     *            the field name
+     * @param ingestType
+     *            the ingest type
+     * @param normalizer
+     *            the normalizer
+     * @return whether this type metadata has the entry
+     */
+    protected boolean containsEntry(String fieldName, String ingestType, String normalizer) {
+        Multimap<String,String> map = typeMetadata.get(ingestType);
+        return map != null && map.containsEntry(fieldName, normalizer);
+    }
+    
+    /**
+     * @param other
+     *            another type metadata
+     * @return whether every entry of this type metadata is in the other one
+     */
+    protected boolean entriesIn(TypeMetadata other) {
+        for (Entry<String,Multimap<String,String>> entry : typeMetadata.entrySet()) {
+            for (Entry<String,String> element : entry.getValue().entries()) {
+                if (!other.containsEntry(element.getKey(), entry.getKey(), element.getValue())) {
+                    return false;
                 }
-                sb.append(iIter.hasNext() ? "," : "");
             }
-            sb.append(fieldIter.hasNext() ? "];" : "]");
         }
-        
-        return sb.toString();
+        return true;
     }
     
-    private void fromNewString(String data) throws Exception {
-        fieldNames = Sets.newHashSet();
-        String[] entries = parse(data, ';');
-        
-        if (entries.length > 2) {
-            for (String entry : entries) {
-                if (entry.startsWith(INGESTTYPE_PREFIX)) {
-                    ingestTypesMiniMap = parseTypes(entry);
-                } else if (entry.startsWith(DATATYPES_PREFIX)) {
-                    dataTypesMiniMap = parseTypes(entry);
-                } else {
-                    String[] entrySplits = parse(entry, ':');
-                    
-                    // get rid of the leading and trailing brackets:
-                    entrySplits[1] = entrySplits[1].substring(1, entrySplits[1].length() - 1);
-                    String[] values = parse(entrySplits[1], ',');
-                    
-                    for (String aValue : values) {
-                        // @formatter:off
-                        String[] vs = Iterables
-                                .toArray(Splitter.on(':')
-                                        .omitEmptyStrings()
-                                        .trimResults()
-                                        .split(aValue), String.class);
-
-                        String ingestType = ingestTypesMiniMap
-                                .entrySet()
-                                .stream()
-                                .filter(e -> e.getValue().equals(Integer.valueOf(vs[0])))
-                                .map(Map.Entry::getKey)
-                                .findFirst().get();
-
-                        String dataType = dataTypesMiniMap
-                                .entrySet()
-                                .stream()
-                                .filter(e -> e.getValue().equals(Integer.valueOf(vs[1])))
-                                .map(Map.Entry::getKey)
-                                .findFirst().get();
-                        
-
-                        Multimap<String, String> mm = typeMetadata.get(ingestType);
-                        if (null == mm) {
-                            mm = HashMultimap.create();
-                            typeMetadata.put(ingestType, mm);
-                        }
-
-                        String[] rhs = Iterables
-                                .toArray(Splitter.on(',')
-                                        .omitEmptyStrings()
-                                        .trimResults()
-                                        .split(dataType), String.class);
-                        // @formatter:on
-                        
-                        this.ingestTypes.add(ingestType);
-                        for (String r : rhs) {
-                            mm.put(entrySplits[0], r);
-                        }
-                    }
-                    fieldNames.add(entrySplits[0]);
-                }
+    /**
+     * @return the sum of the hashes of the entries, which does not depend on how they are stored
+     */
+    protected int computeHashCode() {
+        int result = 0;
+        for (Entry<String,Multimap<String,String>> entry : typeMetadata.entrySet()) {
+            for (Entry<String,String> element : entry.getValue().entries()) {
+                result += entryHashCode(element.getKey(), entry.getKey(), element.getValue());
             }
-        } else {
-            throw new Exception("Unable to parse string using mini-map format");
         }
-        
+        return result;
+    }
+    
+    protected static int entryHashCode(String fieldName, String ingestType, String normalizer) {
+        return (31 * fieldName.hashCode() + ingestType.hashCode()) * 31 + normalizer.hashCode();
     }
     
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((typeMetadata == null) ? 0 : typeMetadata.hashCode());
+        int result = hash;
+        if (result == 0) {
+            result = computeHashCode();
+            hash = result;
+        }
         return result;
     }
     
@@ -509,27 +493,189 @@ public class TypeMetadata implements Serializable {
     public boolean equals(Object obj) {
         if (this == obj)
             return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
+        if (!(obj instanceof TypeMetadata))
             return false;
         TypeMetadata other = (TypeMetadata) obj;
-        if (typeMetadata == null) {
-            return other.typeMetadata == null;
-        } else
-            return toString().equals(obj.toString());
+        // the cached hashes tell most unequal type metadata apart without looking at their entries
+        return hashCode() == other.hashCode() && entryCount() == other.entryCount() && entriesIn(other);
     }
     
     private void writeObject(ObjectOutputStream out) throws Exception {
-        out.writeObject(this.toString());
+        out.writeObject(toBytes(this));
     }
     
     private void readObject(ObjectInputStream in) throws Exception {
-        this.ingestTypes = Sets.newHashSet();
+        this.ingestTypes = new TreeSet<>();
+        this.fieldNames = new TreeSet<>();
         this.typeMetadata = Maps.newHashMap();
-        this.fromString((String) in.readObject());
+        Object data = in.readObject();
+        if (data instanceof String) {
+            // written in the string form by an older version
+            this.fromString((String) data);
+        } else {
+            ProtobufIOUtil.mergeFrom((byte[]) data, this, TYPE_METADATA_SCHEMA);
+        }
+    }
+    
+    public static byte[] toBytes(TypeMetadata typeMetadata) {
+        if (typeMetadata != null && typeMetadata.entryCount() > 0) {
+            try {
+                return ProtobufIOUtil.toByteArray(typeMetadata, TYPE_METADATA_SCHEMA, linkedBuffer.get());
+            } finally {
+                linkedBuffer.get().clear();
+            }
+        } else
+            return new byte[] {};
     }
     
+    /**
+     * @param typeMetadataBytes
+     *            the bytes of {@link #toBytes(TypeMetadata)}
+     * @return a new, modifiable type metadata
+     */
+    public static TypeMetadata fromBytes(byte[] typeMetadataBytes) {
+        TypeMetadata typeMetadata = TYPE_METADATA_SCHEMA.newMessage();
+        ProtobufIOUtil.mergeFrom(typeMetadataBytes, typeMetadata, TYPE_METADATA_SCHEMA);
+        return typeMetadata;
+    }
+    
+    /**
+     * The binary form of a type metadata as a string, for an iterator option.
+     *
+     * @param typeMetadata
+     *            the type metadata
+     * @return the base64 encoded bytes of {@link #toBytes(TypeMetadata)}
+     */
+    public static String toOptionString(TypeMetadata typeMetadata) {
+        return Base64.getEncoder().encodeToString(toBytes(typeMetadata));
+    }
+    
+    /**
+     * @param option
+     *            the string of {@link #toOptionString(TypeMetadata)}
+     * @return a new, modifiable type metadata
+     */
+    public static TypeMetadata fromOptionString(String option) {
+        return fromBytes(Base64.getDecoder().decode(option));
+    }
+    
+    @Override
+    public Schema<TypeMetadata> cachedSchema() {
+        return TYPE_METADATA_SCHEMA;
+    }
+    
+    /**
+     * Writes the ingest types and normalizers once each, then every field name followed by its entries. An entry is a single number made of the ids of its
+     * ingest type and normalizer, in the order they were written. The entries belong to the field name written before them, so this schema is meant for the
+     * protobuf format, which reads the fields back in the order they were written.
+     */
+    public static final Schema<TypeMetadata> TYPE_METADATA_SCHEMA = new Schema<TypeMetadata>() {
+        
+        public static final String INGEST_TYPE = "ingestType";
+        public static final String NORMALIZER = "normalizer";
+        public static final String FIELD_NAME = "fieldName";
+        public static final String ENTRY = "entry";
+        
+        @Override
+        public String getFieldName(int number) {
+            switch (number) {
+                case 1:
+                    return INGEST_TYPE;
+                case 2:
+                    return NORMALIZER;
+                case 3:
+                    return FIELD_NAME;
+                case 4:
+                    return ENTRY;
+                default:
+                    return null;
+            }
+        }
+        
+        @Override
+        public int getFieldNumber(String name) {
+            switch (name) {
+                case INGEST_TYPE:
+                    return 1;
+                case NORMALIZER:
+                    return 2;
+                case FIELD_NAME:
+                    return 3;
+                case ENTRY:
+                    return 4;
+                default:
+                    return 0;
+            }
+        }
+        
+        @Override
+        public boolean isInitialized(TypeMetadata typeMetadata) {
+            return true;
+        }
+        
+        @Override
+        public TypeMetadata newMessage() {
+            return new TypeMetadata();
+        }
+        
+        @Override
+        public String messageName() {
+            return TypeMetadata.class.getSimpleName();
+        }
+        
+        @Override
+        public String messageFullName() {
+            return TypeMetadata.class.getName();
+        }
+        
+        @Override
+        public Class<? super TypeMetadata> typeClass() {
+            return TypeMetadata.class;
+        }
+        
+        @Override
+        public void mergeFrom(Input input, TypeMetadata typeMetadata) throws IOException {
+            List<String> ingestTypes = new ArrayList<>();
+            List<String> normalizers = new ArrayList<>();
+            String fieldName = null;
+            for (int number = input.readFieldNumber(this);; number = input.readFieldNumber(this)) {
+                switch (number) {
+                    case 0:
+                        return;
+                    case 1:
+                        ingestTypes.add(input.readString());
+                        break;
+                    case 2:
+                        normalizers.add(input.readString());
+                        break;
+                    case 3:
+                        fieldName = input.readString();
+                        break;
+                    case 4:
+                        long entry = input.readUInt64();
+                        if (fieldName == null || normalizers.isEmpty()) {
+                            throw new IOException("Type metadata entry " + entry + " before its field name or normalizers");
+                        }
+                        int ingestType = (int) (entry / normalizers.size());
+                        int normalizer = (int) (entry % normalizers.size());
+                        if (ingestType >= ingestTypes.size()) {
+                            throw new IOException("Type metadata entry " + entry + " of unknown ingest type " + ingestType);
+                        }
+                        typeMetadata.put(fieldName, ingestTypes.get(ingestType), normalizers.get(normalizer));
+                        break;
+                    default:
+                        input.handleUnknownField(number, this);
+                }
+            }
+        }
+        
+        @Override
+        public void writeTo(Output output, TypeMetadata typeMetadata) throws IOException {
+            // the packed form has the dictionaries and the entries of each field together already
+            PackedTypeMetadata.of(typeMetadata).writeTo(output);
+        }
+    };
+    
     public static final TypeMetadata EMPTY_TYPE_METADATA = new EmptyTypeMetadata();
     
     public static TypeMetadata emptyTypeMetadata() {
@@ -580,16 +726,6 @@ public class TypeMetadata implements Serializable {
             return this;
         }
         
-        @Override
-        public boolean equals(Object o) {
-            return (o instanceof TypeMetadata) && ((TypeMetadata) o).isEmpty();
-        }
-        
-        @Override
-        public int hashCode() {
-            return 0;
-        }
-        
         // Preserves singleton property
         private Object readResolve() {
             return EMPTY_TYPE_METADATA;
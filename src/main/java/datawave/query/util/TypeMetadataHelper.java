@@ -1,6 +1,7 @@
 package datawave.query.util;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -17,6 +18,9 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.accumulo.core.security.VisibilityEvaluator;
+import org.apache.accumulo.core.security.VisibilityParseException;
 import org.apache.hadoop.io.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +33,7 @@ import org.springframework.core.ResolvableType;
 import org.springframework.stereotype.Component;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -52,6 +57,10 @@ public class TypeMetadataHelper {
     protected final boolean useTypeSubstitution;
     protected final Map<String,String> typeSubstitutions;
     protected final Set<Authorizations> allMetadataAuths;
+    protected final MetadataSnapshotHelper metadataSnapshotHelper;
+    
+    // the type metadata scanned for the auths when the snapshot does not cover them, kept for the life of this helper
+    private volatile PackedTypeMetadata scannedTypeMetadata;
     
     /**
      * Initializes the instance with a provided update interval.
@@ -66,6 +75,25 @@ public class TypeMetadataHelper {
     public TypeMetadataHelper(@Qualifier("typeSubstitutions") Map<String,String> typeSubstitutions,
                     @Qualifier("allMetadataAuths") Set<Authorizations> allMetadataAuths, AccumuloClient client, String metadataTableName,
                     Set<Authorizations> auths, boolean useTypeSubstitution) {
+        this(typeSubstitutions, allMetadataAuths, client, metadataTableName, auths, useTypeSubstitution, null);
+    }
+    
+    /**
+     * Initializes the instance with an optional {@link MetadataSnapshotHelper}. When supplied, type metadata for this helper's auths is served from the shared
+     * metadata snapshot instead of a separate scan.
+     *
+     * @param client
+     *            A client connection to Accumulo
+     * @param metadataTableName
+     *            The name of the DatawaveMetadata table
+     * @param auths
+     *            Any {@link Authorizations} to use
+     * @param metadataSnapshotHelper
+     *            the snapshot helper for the same auths and table, may be null
+     */
+    public TypeMetadataHelper(@Qualifier("typeSubstitutions") Map<String,String> typeSubstitutions,
+                    @Qualifier("allMetadataAuths") Set<Authorizations> allMetadataAuths, AccumuloClient client, String metadataTableName,
+                    Set<Authorizations> auths, boolean useTypeSubstitution, MetadataSnapshotHelper metadataSnapshotHelper) {
         this.typeSubstitutions = (typeSubstitutions == null) ? Maps.newHashMap() : typeSubstitutions;
         this.allMetadataAuths = (allMetadataAuths == null) ? Collections.emptySet() : allMetadataAuths;
         
@@ -79,6 +107,7 @@ public class TypeMetadataHelper {
         this.auths = auths;
         
         this.useTypeSubstitution = useTypeSubstitution;
+        this.metadataSnapshotHelper = metadataSnapshotHelper;
         
         log.trace("Constructor connector: {} with auths: {} and metadata table name: {}", accumuloClient.getClass().getCanonicalName(), auths,
                         metadataTableName);
@@ -92,22 +121,73 @@ public class TypeMetadataHelper {
         return metadataTableName;
     }
     
-    @Cacheable(value = "getTypeMetadata", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
+    /**
+     * Get a modifiable copy of the type metadata. This is not cached: each call copies the {@link PackedTypeMetadata} of {@link #getFrozenTypeMetadata()}, so
+     * callers that only read the type metadata should use that instead.
+     *
+     * @return a modifiable copy of the type metadata of every datatype
+     * @throws TableNotFoundException
+     */
     public TypeMetadata getTypeMetadata() throws TableNotFoundException {
+        return new TypeMetadata(this.getFrozenTypeMetadata());
+    }
+    
+    /**
+     * Get the type metadata as an immutable {@link PackedTypeMetadata}, whose lookups return shared sets. Unlike the modifiable {@link TypeMetadata} of
+     * {@link #getTypeMetadata()}, its put methods throw an {@link UnsupportedOperationException}.
+     *
+     * @return the frozen type metadata of every datatype
+     * @throws TableNotFoundException
+     */
+    @Cacheable(value = "getFrozenTypeMetadata", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager",
+                    sync = true)
+    public PackedTypeMetadata getFrozenTypeMetadata() throws TableNotFoundException {
         if (log.isDebugEnabled())
-            log.debug("cache fault for getTypeMetadata(" + this.auths + "," + this.metadataTableName + ")");
-        return this.getTypeMetadata(null);
+            log.debug("cache fault for getFrozenTypeMetadata(" + this.auths + "," + this.metadataTableName + ")");
+        return this.getFrozenTypeMetadataOfAuths();
     }
     
-    @Cacheable(value = "getTypeMetadata", key = "{#root.target.auths,#root.target.metadataTableName,#datatypeFilter}",
-                    cacheManager = "metadataHelperCacheManager")
+    /**
+     * Get a modifiable copy of the type metadata of the datatypes in the filter. Like {@link #getTypeMetadata()}, this copies the
+     * {@link #getFrozenTypeMetadata()} on each call, filtered in memory.
+     *
+     * @param datatypeFilter
+     *            the datatypes to include, null or empty for all datatypes
+     * @return a modifiable copy of the type metadata of the datatypes
+     * @throws TableNotFoundException
+     */
     public TypeMetadata getTypeMetadata(Set<String> datatypeFilter) throws TableNotFoundException {
-        if (log.isDebugEnabled())
-            log.debug("cache fault for getTypeMetadata(" + this.auths + "," + this.metadataTableName + "," + datatypeFilter + ")");
-        return this.getTypeMetadata(this.auths, this.metadataTableName, datatypeFilter);
-        
+        return new TypeMetadata(this.getFrozenTypeMetadataOfAuths().filter(datatypeFilter));
     }
     
+    /**
+     * Get the frozen type metadata of the auths of this helper. The factory creates this helper directly rather than as a cached bean, so calls through it
+     * are not cached. The snapshot memoizes its own frozen type metadata, and otherwise the table is scanned once and kept for the life of this helper.
+     *
+     * @return the frozen type metadata of every datatype
+     * @throws TableNotFoundException
+     */
+    private PackedTypeMetadata getFrozenTypeMetadataOfAuths() throws TableNotFoundException {
+        if (metadataSnapshotHelper != null && metadataSnapshotHelper.covers(metadataTableName, auths)) {
+            return this.getFrozenTypeMetadata(this.auths, this.metadataTableName);
+        }
+        PackedTypeMetadata typeMetadata = this.scannedTypeMetadata;
+        if (typeMetadata == null) {
+            typeMetadata = this.getFrozenTypeMetadata(this.auths, this.metadataTableName);
+            this.scannedTypeMetadata = typeMetadata;
+        }
+        return typeMetadata;
+    }
+    
+    /**
+     * Get the {@link TypeMetadata} visible to every subset of the given auths. The t column is scanned once with all of the auths, and the entries are then
+     * filtered on the client by their {@link ColumnVisibility} for each subset.
+     *
+     * @param allAuths
+     *            the auths of the metadata table
+     * @return the type metadata, keyed by subset of the auths
+     * @throws TableNotFoundException
+     */
     public Map<Set<String>,TypeMetadata> getTypeMetadataMap(Collection<Authorizations> allAuths) throws TableNotFoundException {
         Collection<Set<String>> powerset = getAllMetadataAuthsPowerSet(allAuths);
         if (log.isTraceEnabled()) {
@@ -116,22 +196,102 @@ public class TypeMetadataHelper {
                 log.trace("powerset has :" + s);
             }
         }
+        
+        // every subset of the auths sees a subset of what the full auths see, so scan once with the full auths and filter on the client
+        Set<String> allAuthStrings = Sets.newHashSet();
+        powerset.forEach(allAuthStrings::addAll);
+        Authorizations fullAuths = new Authorizations(allAuthStrings.toArray(new String[0]));
+        
+        List<ColumnVisibility> visibilities = Lists.newArrayList();
+        List<List<String[]>> entriesByVisibility = Lists.newArrayList();
+        Map<Text,Integer> visibilityIds = Maps.newHashMap();
+        
+        Scanner bs = ScannerHelper.createScanner(accumuloClient, metadataTableName, Collections.singleton(fullAuths));
+        bs.setRange(new Range());
+        for (Text colf : metadataTypeColfs) {
+            bs.fetchColumnFamily(colf);
+        }
+        
+        MetadataKeyParser parser = new MetadataKeyParser();
+        for (Entry<Key,Value> entry : bs) {
+            String[] typeEntry = parseTypeEntry(entry.getKey(), parser);
+            if (typeEntry != null) {
+                Text visibility = entry.getKey().getColumnVisibility();
+                Integer id = visibilityIds.get(visibility);
+                if (id == null) {
+                    id = visibilities.size();
+                    visibilityIds.put(visibility, id);
+                    visibilities.add(new ColumnVisibility(visibility));
+                    entriesByVisibility.add(Lists.newArrayList());
+                }
+                entriesByVisibility.get(id).add(typeEntry);
+            }
+        }
+        
+        bs.close();
+        
+        if (log.isTraceEnabled())
+            log.trace("scanned type metadata with " + visibilities.size() + " distinct visibilities using auths:" + fullAuths);
+        
+        // subsets of the auths that see the same visibilities are built once, and each is given its own copy so that they can be modified independently
+        Map<BitSet,TypeMetadata> typeMetadataByVisible = Maps.newHashMap();
         Map<Set<String>,TypeMetadata> map = Maps.newHashMap();
         
         for (Set<String> a : powerset) {
-            if (log.isTraceEnabled())
-                log.trace("get TypeMetadata with auths:" + a);
+            VisibilityEvaluator evaluator = new VisibilityEvaluator(new Authorizations(a.toArray(new String[a.size()])));
+            BitSet visible = new BitSet(visibilities.size());
+            for (int id = 0; id < visibilities.size(); id++) {
+                if (isVisible(evaluator, visibilities.get(id))) {
+                    visible.set(id);
+                }
+            }
             
-            Authorizations at = new Authorizations(a.toArray(new String[a.size()]));
+            TypeMetadata tm = typeMetadataByVisible.computeIfAbsent(visible, v -> {
+                TypeMetadata typeMetadata = new TypeMetadata();
+                v.stream().forEach(id -> entriesByVisibility.get(id).forEach(e -> typeMetadata.put(e[0], e[1], e[2])));
+                return typeMetadata;
+            });
             
             if (log.isTraceEnabled())
-                log.trace("made an Authorizations:" + at);
-            TypeMetadata tm = this.getTypeMetadataForAuths(Collections.singleton(at));
-            map.put(a, tm);
+                log.trace("get TypeMetadata with auths:" + a + " sees visibilities " + visible);
+            map.put(a, new TypeMetadata(tm));
         }
         return map;
     }
     
+    private static boolean isVisible(VisibilityEvaluator evaluator, ColumnVisibility visibility) {
+        try {
+            return evaluator.evaluate(visibility);
+        } catch (VisibilityParseException e) {
+            log.warn("Unable to evaluate visibility " + visibility + " of a type metadata entry", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Parse the field, datatype and normalizer class name out of a type metadata key, applying any type substitution.
+     *
+     * @param key
+     *            the key from the t column
+     * @param parser
+     *            the parser for the load
+     * @return the field, datatype and class name, or null if the key is malformed
+     */
+    private String[] parseTypeEntry(Key key, MetadataKeyParser parser) {
+        parser.parse(key);
+        // The column qualifier contains the datatype and normalizer class
+        if (parser.hasSeparator()) {
+            String className = parser.getSuffix();
+            if (this.useTypeSubstitution && this.typeSubstitutions.containsKey(className)) {
+                className = this.typeSubstitutions.get(className);
+            }
+            return new String[] {parser.getFieldName(), parser.getDatatype(), className};
+        } else {
+            log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + key);
+        }
+        return null;
+    }
+    
     private Set<Set<String>> getAllMetadataAuthsPowerSet(Collection<Authorizations> allMetadataAuthsCollection) {
         
         // first, minimize the usersAuths:
@@ -154,11 +314,16 @@ public class TypeMetadataHelper {
     public TypeMetadata getTypeMetadataForAuths(Set<Authorizations> authSet) throws TableNotFoundException {
         if (log.isTraceEnabled())
             log.trace("getTypeMetadataForAuths(" + authSet + ")");
-        return this.getTypeMetadata(authSet, this.metadataTableName, null);
+        return new TypeMetadata(this.getFrozenTypeMetadata(authSet, this.metadataTableName));
     }
     
-    private TypeMetadata getTypeMetadata(Set<Authorizations> auths, String metadataTableName, Set<String> datatypeFilter) throws TableNotFoundException {
-        TypeMetadata typeMetadata = new TypeMetadata();
+    private PackedTypeMetadata getFrozenTypeMetadata(Set<Authorizations> auths, String metadataTableName) throws TableNotFoundException {
+        if (metadataSnapshotHelper != null && metadataSnapshotHelper.covers(metadataTableName, auths)) {
+            Map<String,String> substitutions = this.useTypeSubstitution ? this.typeSubstitutions : Collections.emptyMap();
+            return MetadataSnapshotHelper.getCurrentMetadataSnapshot(metadataSnapshotHelper).getFrozenTypeMetadata(substitutions);
+        }
+        
+        PackedTypeMetadata.Builder typeMetadata = PackedTypeMetadata.builder();
         
         // Scanner to the provided metadata table
         if (log.isTraceEnabled()) {
@@ -177,40 +342,18 @@ public class TypeMetadataHelper {
             bs.fetchColumnFamily(colf);
         }
         
+        MetadataKeyParser parser = new MetadataKeyParser();
         for (Entry<Key,Value> entry : bs) {
-            // Get the column qualifier from the key. It contains the datatype
-            // and normalizer class
-            if (null != entry.getKey().getColumnQualifier()) {
-                String colq = entry.getKey().getColumnQualifier().toString();
-                int idx = colq.indexOf(NULL_BYTE);
-                
-                if (idx != -1) {
-                    String field = entry.getKey().getRow().toString();
-                    String type = colq.substring(0, idx);
-                    String className = null;
-                    if (datatypeFilter == null || datatypeFilter.isEmpty()) { // no filtering, getem all
-                        className = colq.substring(idx + 1);
-                    } else if (datatypeFilter.contains(type)) {
-                        className = colq.substring(idx + 1);
-                    }
-                    if (className != null) {
-                        if (this.useTypeSubstitution && this.typeSubstitutions.containsKey(className)) {
-                            className = this.typeSubstitutions.get(className);
-                        }
-                        typeMetadata.put(field, type, className);
-                    }
-                    
-                } else {
-                    log.warn("EventMetadata entry did not contain a null byte in the column qualifier: " + entry.getKey());
-                }
-            } else {
-                log.warn("ColumnQualifier null in EventMetadata for key: " + entry.getKey());
+            String[] typeEntry = parseTypeEntry(entry.getKey(), parser);
+            if (typeEntry != null) {
+                typeMetadata.put(typeEntry[0], typeEntry[1], typeEntry[2]);
             }
         }
         
         bs.close();
         
-        return typeMetadata;
+        // the type metadata is cached, so it is frozen to answer its lookups, folds and filters without copying
+        return typeMetadata.build().freeze();
     }
     
     @Component
@@ -226,18 +369,25 @@ public class TypeMetadataHelper {
             this.beanFactory = beanFactory;
         }
         
-        @SuppressWarnings("unchecked")
         public TypeMetadataHelper createTypeMetadataHelper(AccumuloClient client, String metadataTableName, Set<Authorizations> auths,
                         boolean useTypeSubstitution) {
+            return createTypeMetadataHelper(client, metadataTableName, auths, useTypeSubstitution, null);
+        }
+        
+        @SuppressWarnings("unchecked")
+        public TypeMetadataHelper createTypeMetadataHelper(AccumuloClient client, String metadataTableName, Set<Authorizations> auths,
+                        boolean useTypeSubstitution, MetadataSnapshotHelper metadataSnapshotHelper) {
             if (beanFactory == null) {
                 log.info("TypeMetadataHelper created without a beanFactory. This is fine for unit tests, but an error in production.");
-                return new TypeMetadataHelper(Maps.newHashMap(), Collections.emptySet(), client, metadataTableName, auths, useTypeSubstitution);
+                return new TypeMetadataHelper(Maps.newHashMap(), Collections.emptySet(), client, metadataTableName, auths, useTypeSubstitution,
+                                metadataSnapshotHelper);
             } else {
                 Map<String,String> typeSubstitutions = (Map<String,String>) beanFactory.getBean("typeSubstitutions",
                                 ResolvableType.forClassWithGenerics(Map.class, String.class, String.class).resolve());
                 Set<Authorizations> allMetadataAuths = (Set<Authorizations>) beanFactory.getBean("allMetadataAuths",
                                 ResolvableType.forClassWithGenerics(Set.class, Authorizations.class).resolve());
-                return new TypeMetadataHelper(typeSubstitutions, allMetadataAuths, client, metadataTableName, auths, useTypeSubstitution);
+                return new TypeMetadataHelper(typeSubstitutions, allMetadataAuths, client, metadataTableName, auths, useTypeSubstitution,
+                                metadataSnapshotHelper);
             }
         }
     }
@@ -0,0 +1,104 @@
+package datawave.iterators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DateRangeCollapsingIteratorTest {
+    
+    private static final Value VALUE = new Value("1".getBytes());
+    
+    private final TreeMap<Key,Value> data = new TreeMap<>();
+    private DateRangeCollapsingIterator iterator;
+    
+    @BeforeEach
+    public void setup() throws IOException {
+        data.clear();
+        // a run of days across the end of a month, a gap, and the same day under two visibilities
+        put("AGE", "f", "csv", "20200130", "", 10);
+        put("AGE", "f", "csv", "20200131", "", 11);
+        put("AGE", "f", "csv", "20200201", "", 12);
+        put("AGE", "f", "csv", "20200205", "A", 13);
+        put("AGE", "f", "csv", "20200205", "B", 14);
+        put("AGE", "f", "csv", "20200206", "", 15);
+        put("AGE", "f", "wiki", "20200101", "", 10);
+        put("AGE", "i", "csv", "20200131", "", 10);
+        put("AGE", "i", "csv", "20200201", "", 10);
+        data.put(new Key("AGE", "f", "csv\u0000notadate", "", 10), VALUE);
+        put("NAME", "f", "csv", "20200101", "", 10);
+        
+        iterator = new DateRangeCollapsingIterator();
+        iterator.init(new SortedMapIterator(data), Collections.emptyMap(), null);
+    }
+    
+    private void put(String row, String cf, String datatype, String date, String visibility, long timestamp) {
+        data.put(new Key(row, cf, datatype + "\u0000" + date, visibility, timestamp), VALUE);
+    }
+    
+    private static Key dateRange(String row, String cf, String datatype, String start, String end, long timestamp) {
+        return new Key(row, cf, datatype + "\u0000" + start + "\u0000" + end, "", timestamp);
+    }
+    
+    private List<Key> scan(Range range) throws IOException {
+        iterator.seek(range, Collections.emptySet(), false);
+        List<Key> keys = new ArrayList<>();
+        while (iterator.hasTop()) {
+            keys.add(iterator.getTopKey());
+            iterator.next();
+        }
+        return keys;
+    }
+    
+    @Test
+    public void testCollapsesConsecutiveDays() throws IOException {
+        List<Key> expected = new ArrayList<>();
+        expected.add(dateRange("AGE", "f", "csv", "20200130", "20200201", 12));
+        expected.add(dateRange("AGE", "f", "csv", "20200205", "20200206", 15));
+        expected.add(dateRange("AGE", "f", "wiki", "20200101", "20200101", 10));
+        expected.add(dateRange("AGE", "i", "csv", "20200131", "20200201", 10));
+        expected.add(dateRange("NAME", "f", "csv", "20200101", "20200101", 10));
+        assertEquals(expected, scan(new Range()));
+    }
+    
+    @Test
+    public void testResumeAfterDateRange() throws IOException {
+        // resuming after a returned key, as a tablet server does between batches, skips the rest of its days
+        List<Key> keys = scan(new Range(dateRange("AGE", "f", "csv", "20200130", "20200201", 12), false, null, true));
+        assertEquals(dateRange("AGE", "f", "csv", "20200205", "20200206", 15), keys.get(0));
+        assertEquals(4, keys.size());
+    }
+    
+    @Test
+    public void testRangeEnd() throws IOException {
+        List<Key> keys = scan(new Range(new Key("AGE", "f"), true, new Key("AGE", "f", "csv\u000020200201"), false));
+        assertEquals(Collections.singletonList(dateRange("AGE", "f", "csv", "20200130", "20200131", 11)), keys);
+    }
+    
+    @Test
+    public void testDeepCopy() throws IOException {
+        iterator = (DateRangeCollapsingIterator) iterator.deepCopy(null);
+        assertEquals(5, scan(new Range()).size());
+    }
+    
+    @Test
+    public void testSpan() throws IOException {
+        iterator.init(new SortedMapIterator(data), Collections.singletonMap(DateRangeCollapsingIterator.SPAN_OPTION, "true"), null);
+        List<Key> expected = new ArrayList<>();
+        expected.add(dateRange("AGE", "f", "csv", "20200130", "20200206", 15));
+        expected.add(dateRange("AGE", "f", "wiki", "20200101", "20200101", 10));
+        expected.add(dateRange("AGE", "i", "csv", "20200131", "20200201", 10));
+        expected.add(dateRange("NAME", "f", "csv", "20200101", "20200101", 10));
+        assertEquals(expected, scan(new Range()));
+    }
+}
@@ -0,0 +1,107 @@
+package datawave.iterators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DistinctDatatypeIteratorTest {
+    
+    private static final Value VALUE = new Value("1".getBytes());
+    
+    private final TreeMap<Key,Value> data = new TreeMap<>();
+    private DistinctDatatypeIterator iterator;
+    
+    @BeforeEach
+    public void setup() throws IOException {
+        data.clear();
+        data.put(new Key("AGE", "e", "csv", "A", 10), VALUE);
+        data.put(new Key("AGE", "e", "csv", "B", 12), VALUE);
+        data.put(new Key("AGE", "e", "wiki", "", 10), VALUE);
+        // more keys for a single datatype than the iterator will next() over before seeking
+        for (int day = 10; day < 30; day++) {
+            data.put(new Key("AGE", "f", "csv\u0000202001" + day, "", 10), VALUE);
+        }
+        data.put(new Key("AGE", "f", "wiki\u000020200110", "", 10), VALUE);
+        data.put(new Key("AGE", "t", "csv\u0000datawave.data.type.NumberType", "", 10), VALUE);
+        data.put(new Key("AGE", "t", "csv\u0000datawave.data.type.LcNoDiacriticsType", "", 10), VALUE);
+        data.put(new Key("NAME", "e", "csv", "", 11), VALUE);
+        
+        iterator = new DistinctDatatypeIterator();
+        iterator.init(new SortedMapIterator(data), Collections.singletonMap(DistinctDatatypeIterator.COLUMNS_OPTION, "e,f"), null);
+    }
+    
+    private List<Key> scan(Range range) throws IOException {
+        iterator.seek(range, Collections.emptySet(), false);
+        List<Key> keys = new ArrayList<>();
+        while (iterator.hasTop()) {
+            keys.add(iterator.getTopKey());
+            iterator.next();
+        }
+        return keys;
+    }
+    
+    @Test
+    public void testDistinctDatatypes() throws IOException {
+        List<Key> expected = new ArrayList<>();
+        expected.add(new Key("AGE", "e", "csv", "", 10));
+        expected.add(new Key("AGE", "e", "wiki", "", 10));
+        expected.add(new Key("AGE", "f", "csv", "", 10));
+        expected.add(new Key("AGE", "f", "wiki", "", 10));
+        expected.add(new Key("AGE", "t", "csv\u0000datawave.data.type.LcNoDiacriticsType", "", 10));
+        expected.add(new Key("AGE", "t", "csv\u0000datawave.data.type.NumberType", "", 10));
+        expected.add(new Key("NAME", "e", "csv", "", 11));
+        assertEquals(expected, scan(new Range()));
+    }
+    
+    @Test
+    public void testValues() throws IOException {
+        iterator.seek(new Range(), Collections.emptySet(), false);
+        assertEquals(0, iterator.getTopValue().getSize());
+        Map<Key,Value> values = new TreeMap<>();
+        while (iterator.hasTop()) {
+            values.put(iterator.getTopKey(), iterator.getTopValue());
+            iterator.next();
+        }
+        assertEquals(VALUE, values.get(new Key("AGE", "t", "csv\u0000datawave.data.type.NumberType", "", 10)));
+    }
+    
+    @Test
+    public void testRangeEnd() throws IOException {
+        List<Key> keys = scan(new Range(new Key("AGE", "f"), true, new Key("AGE", "f", "csv\u000020200125"), true));
+        assertEquals(Collections.singletonList(new Key("AGE", "f", "csv", "", 10)), keys);
+    }
+    
+    @Test
+    public void testResumeAfterDistinctKey() throws IOException {
+        // resuming after a returned key, as a tablet server does between batches, skips the rest of its datatype
+        List<Key> keys = scan(new Range(new Key("AGE", "e", "csv", "", 10), false, null, true));
+        assertEquals(new Key("AGE", "e", "wiki", "", 10), keys.get(0));
+        
+        keys = scan(new Range(new Key("AGE", "f", "wiki", "", 10), false, new Key("AGE", "f\u0000"), false));
+        assertEquals(Collections.emptyList(), keys);
+    }
+    
+    @Test
+    public void testDeepCopy() throws IOException {
+        iterator = (DistinctDatatypeIterator) iterator.deepCopy(null);
+        assertEquals(7, scan(new Range()).size());
+    }
+    
+    @Test
+    public void testColumnsRequired() {
+        assertThrows(IllegalArgumentException.class, () -> new DistinctDatatypeIterator().init(new SortedMapIterator(data), Collections.emptyMap(), null));
+    }
+}
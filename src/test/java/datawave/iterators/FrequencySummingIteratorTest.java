@@ -0,0 +1,100 @@
+package datawave.iterators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FrequencySummingIteratorTest {
+    
+    private final TreeMap<Key,Value> data = new TreeMap<>();
+    
+    @BeforeEach
+    public void setup() {
+        data.clear();
+        for (int day = 10; day < 30; day++) {
+            put("AGE", "csv", "202001" + day, 1, day);
+        }
+        put("AGE", "wiki", "20200115", 100, 5);
+        put("AGE", "wiki", "20200301", 1000, 5);
+        put("NAME", "csv", "20200120", 7, 3);
+        data.put(new Key("NAME", "i", "csv"), new Value(new byte[0]));
+    }
+    
+    private void put(String row, String datatype, String date, long count, long timestamp) {
+        data.put(new Key(row, "f", datatype + "\u0000" + date, "", timestamp), new Value(SummingCombiner.VAR_LEN_ENCODER.encode(count)));
+    }
+    
+    private Map<Key,Long> scan(Range range, String begin, String end, String datatypes) throws IOException {
+        Map<String,String> options = new HashMap<>();
+        options.put(FrequencySummingIterator.BEGIN_DATE_OPTION, begin);
+        options.put(FrequencySummingIterator.END_DATE_OPTION, end);
+        if (datatypes != null) {
+            options.put(FrequencySummingIterator.DATATYPES_OPTION, datatypes);
+        }
+        
+        FrequencySummingIterator iterator = new FrequencySummingIterator();
+        iterator.init(new SortedMapIterator(data), options, null);
+        iterator.seek(range, Collections.emptySet(), false);
+        
+        Map<Key,Long> sums = new LinkedHashMap<>();
+        while (iterator.hasTop()) {
+            sums.put(iterator.getTopKey(), SummingCombiner.VAR_LEN_ENCODER.decode(iterator.getTopValue().get()));
+            iterator.next();
+        }
+        return sums;
+    }
+    
+    @Test
+    public void testSumsByFieldAndDatatype() throws IOException {
+        Map<Key,Long> expected = new LinkedHashMap<>();
+        expected.put(new Key("AGE", "f", "csv", "", 20), 6L);
+        expected.put(new Key("AGE", "f", "wiki", "", 5), 100L);
+        expected.put(new Key("NAME", "f", "csv", "", 3), 7L);
+        assertEquals(expected, scan(new Range(), "20200115", "20200120", null));
+    }
+    
+    @Test
+    public void testDatatypes() throws IOException {
+        Map<Key,Long> expected = new LinkedHashMap<>();
+        expected.put(new Key("AGE", "f", "wiki", "", 5), 1100L);
+        assertEquals(expected, scan(Range.exact("AGE"), "20200101", "20201231", "wiki,other"));
+    }
+    
+    @Test
+    public void testNoCountsInRange() throws IOException {
+        assertEquals(Collections.emptyMap(), scan(new Range(), "20210101", "20211231", null));
+    }
+    
+    @Test
+    public void testResumeAfterSum() throws IOException {
+        Map<Key,Long> sums = scan(new Range(new Key("AGE", "f", "csv", "", 20), false, null, true), "20200101", "20201231", null);
+        assertEquals(Long.valueOf(1100L), sums.get(new Key("AGE", "f", "wiki", "", 5)));
+        assertEquals(2, sums.size());
+    }
+    
+    @Test
+    public void testMalformedKeysAreSkipped() throws IOException {
+        // f keys without a null byte in the column qualifier carry no date
+        data.put(new Key("AGE", "f", "csv", "", 50), new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1000L)));
+        data.put(new Key("BAD", "f", "wiki", "", 50), new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1000L)));
+        
+        Map<Key,Long> expected = new LinkedHashMap<>();
+        expected.put(new Key("AGE", "f", "csv", "", 20), 6L);
+        expected.put(new Key("AGE", "f", "wiki", "", 5), 100L);
+        expected.put(new Key("NAME", "f", "csv", "", 3), 7L);
+        assertEquals(expected, scan(new Range(), "20200115", "20200120", null));
+    }
+}
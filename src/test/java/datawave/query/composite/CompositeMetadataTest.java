@@ -3,6 +3,7 @@ package datawave.query.composite;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
@@ -75,6 +76,21 @@ public class CompositeMetadataTest {
         assertTrue(filteredCompMetadata.compositeTransitionDatesByType.isEmpty());
     }
     
+    @Test
+    public void filterIngestTypesTest() {
+        Set<String> ingestTypes = new HashSet<>(Arrays.asList("FIRE", "HEART", "PLUTO"));
+        CompositeMetadata filtered = compositeMetadata.filterIngestTypes(ingestTypes);
+        assertEquals(new HashSet<>(Arrays.asList("FIRE", "HEART")), filtered.compositeFieldMapByType.keySet());
+        assertEquals(new HashSet<>(Arrays.asList("FIRE", "HEART")), filtered.compositeTransitionDatesByType.keySet());
+        assertEquals(compositeMetadata.compositeFieldMapByType.get("FIRE"), filtered.compositeFieldMapByType.get("FIRE"));
+        assertEquals(compositeMetadata.compositeTransitionDatesByType.get("HEART"), filtered.compositeTransitionDatesByType.get("HEART"));
+        
+        // a filter that allows every ingest type returns the same composite metadata
+        assertSame(compositeMetadata, compositeMetadata.filterIngestTypes(null));
+        assertSame(compositeMetadata, compositeMetadata.filterIngestTypes(new HashSet<>()));
+        assertTrue(compositeMetadata.filterIngestTypes(new HashSet<>(Arrays.asList("PLUTO"))).isEmpty());
+    }
+    
     @Test
     public void readWriteCompositeMetadataTest() {
         byte[] compMetadataBytes = CompositeMetadata.toBytes(compositeMetadata);
@@ -33,11 +33,13 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.BloomFilter;
 
 import datawave.accumulo.inmemory.InMemoryAccumuloClient;
 import datawave.accumulo.inmemory.InMemoryInstance;
@@ -362,6 +364,22 @@ class AllFieldMetadataHelperTest {
         }
     }
     
+    /**
+     * Tests for {@link AllFieldMetadataHelper#getFieldNameFilter()}.
+     */
+    @Test
+    void testFieldNameFilter() throws TableNotFoundException {
+        MutationCreator mutationCreator = new MutationCreator();
+        mutationCreator.addFrequencyMutations("NAME", "csv", "20200101", "20200105");
+        mutationCreator.addIndexMutations("i", "EVENT_DATE", "wiki", "20200101", "20200101");
+        writeMutations(mutationCreator.getMutations());
+        
+        BloomFilter<CharSequence> filter = helper.getFieldNameFilter();
+        Assertions.assertTrue(filter.mightContain("NAME"));
+        Assertions.assertTrue(filter.mightContain("EVENT_DATE"));
+        Assertions.assertFalse(filter.mightContain("UNKNOWN_FIELD"));
+    }
+    
     private Map<String,Map<String,FieldIndexHole>> createFieldIndexHoleMap(FieldIndexHole... holes) {
         Map<String,Map<String,FieldIndexHole>> fieldIndexHoles = new HashMap<>();
         for (FieldIndexHole hole : holes) {
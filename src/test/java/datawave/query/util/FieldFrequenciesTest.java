@@ -0,0 +1,105 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FieldFrequenciesTest {
+    
+    private FieldFrequencies frequencies;
+    
+    @BeforeEach
+    public void setup() {
+        FieldFrequencies.Builder builder = FieldFrequencies.builder();
+        // a count on each day of 2020, spanning many blocks, with the day of the year as the count
+        LocalDate day = LocalDate.of(2020, 1, 1);
+        for (int i = 1; i <= 366; i++) {
+            builder.add("csv", day.format(DateTimeFormatter.BASIC_ISO_DATE), i);
+            day = day.plusDays(1);
+        }
+        builder.add("wiki", "20200105", 1000);
+        builder.add("wiki", "20200105", 1000);
+        builder.add("wiki", "20220105", 1L << 40);
+        frequencies = builder.build();
+    }
+    
+    @Test
+    public void testCount() {
+        assertEquals(1, frequencies.getCount("csv", "20200101", "20200101"));
+        assertEquals(366 * 367 / 2, frequencies.getCount("csv", "20190101", "20301231"));
+        // the days of the year from 32 to 64
+        assertEquals((32 + 64) * 33 / 2, frequencies.getCount("csv", "20200201", "20200304"));
+        assertEquals(0, frequencies.getCount("csv", "20210101", "20211231"));
+        assertEquals(0, frequencies.getCount("csv", "20200301", "20200201"));
+        assertEquals(0, frequencies.getCount("other", "20200101", "20201231"));
+    }
+    
+    @Test
+    public void testCountOfDatatypes() {
+        // the days of the year from 5 to 366
+        assertEquals(366 * 367 / 2 - 10 + 2000 + (1L << 40), frequencies.getCount((String) null, "20200105", "20221231"));
+        assertEquals(2000 + (1L << 40), frequencies.getCount(Collections.singleton("wiki"), "20200101", "20221231"));
+        assertEquals(2000 + 5, frequencies.getCount(Arrays.asList("csv", "wiki"), "20200105", "20200105"));
+    }
+    
+    @Test
+    public void testCountsByDay() {
+        SortedMap<String,Map<String,Long>> expected = new TreeMap<>();
+        expected.put("20200104", Collections.singletonMap("csv", 4L));
+        expected.put("20200105", new HashMap<>());
+        expected.get("20200105").put("csv", 5L);
+        expected.get("20200105").put("wiki", 2000L);
+        assertEquals(expected, frequencies.getCountsByDay("20200104", "20200105", null));
+        
+        // the days without counts in between are not returned
+        expected.clear();
+        expected.put("20200105", Collections.singletonMap("wiki", 2000L));
+        expected.put("20220105", Collections.singletonMap("wiki", 1L << 40));
+        assertEquals(expected, frequencies.getCountsByDay("20200101", "20221231", Collections.singleton("wiki")));
+    }
+    
+    @Test
+    public void testFirstDay() {
+        assertEquals("20200101", frequencies.getFirstDay(null));
+        assertEquals("20200105", frequencies.getFirstDay(Collections.singleton("wiki")));
+        assertNull(frequencies.getFirstDay(Collections.singleton("other")));
+        assertNull(FieldFrequencies.EMPTY.getFirstDay(null));
+    }
+    
+    @Test
+    public void testLastDay() {
+        assertEquals("20220105", frequencies.getLastDay(null));
+        assertEquals("20201231", frequencies.getLastDay(Collections.singleton("csv")));
+        assertNull(frequencies.getLastDay(Collections.singleton("other")));
+        assertNull(FieldFrequencies.EMPTY.getLastDay(null));
+    }
+    
+    @Test
+    public void testSerialization() {
+        ByteBuffer buffer = ByteBuffer.allocate(frequencies.getSerializedSize() + FieldFrequencies.EMPTY.getSerializedSize());
+        frequencies.writeTo(buffer);
+        FieldFrequencies.EMPTY.writeTo(buffer);
+        assertEquals(0, buffer.remaining());
+        
+        buffer.flip();
+        FieldFrequencies copy = FieldFrequencies.readFrom(buffer);
+        assertEquals(frequencies.getDatatypes(), copy.getDatatypes());
+        assertEquals(frequencies.getSizeInBytes(), copy.getSizeInBytes());
+        assertEquals(frequencies.getCountsByDay("20190101", "20221231", null), copy.getCountsByDay("20190101", "20221231", null));
+        assertEquals(frequencies.getCount((String) null, "20200210", "20210101"), copy.getCount((String) null, "20200210", "20210101"));
+        assertSame(FieldFrequencies.EMPTY, FieldFrequencies.readFrom(buffer));
+    }
+}
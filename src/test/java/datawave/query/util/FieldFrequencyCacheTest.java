@@ -0,0 +1,121 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FieldFrequencyCacheTest {
+    
+    private static final String TABLE = "metadata";
+    private static final Set<Authorizations> AUTHS = Collections.singleton(new Authorizations("A"));
+    
+    private final AtomicLong time = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    
+    @TempDir
+    Path tempDir;
+    
+    @BeforeEach
+    public void setup() {
+        time.set(0);
+        loads.set(0);
+    }
+    
+    private Callable<FieldFrequencies> loader(FieldFrequencies frequencies) {
+        return () -> {
+            loads.incrementAndGet();
+            return frequencies;
+        };
+    }
+    
+    private static FieldFrequencies frequencies(String day) {
+        return FieldFrequencies.builder().add("csv", day, 1).build();
+    }
+    
+    @Test
+    public void testLoadsOnce() throws Exception {
+        FieldFrequencyCache cache = FieldFrequencyCache.builder().ticker(time::get).build();
+        FieldFrequencies frequencies = frequencies("20200101");
+        assertSame(frequencies, cache.get(TABLE, AUTHS, "FIELD", loader(frequencies)));
+        assertSame(frequencies, cache.get(TABLE, AUTHS, "FIELD", loader(frequencies)));
+        assertEquals(1, loads.get());
+        
+        // the auths are part of the key
+        cache.get(TABLE, Collections.singleton(new Authorizations("B")), "FIELD", loader(frequencies));
+        assertEquals(2, loads.get());
+    }
+    
+    @Test
+    public void testMissesAreCached() throws Exception {
+        FieldFrequencyCache cache = FieldFrequencyCache.builder().ticker(time::get).negativeExpireAfterWrite(Duration.ofMinutes(1)).build();
+        assertSame(FieldFrequencies.EMPTY, cache.get(TABLE, AUTHS, "MISSING", loader(null)));
+        assertSame(FieldFrequencies.EMPTY, cache.get(TABLE, AUTHS, "MISSING", loader(FieldFrequencies.EMPTY)));
+        assertEquals(1, loads.get());
+        
+        // a miss is remembered for less time than a hit
+        cache.get(TABLE, AUTHS, "FIELD", loader(frequencies("20200101")));
+        time.addAndGet(Duration.ofMinutes(1).toNanos());
+        cache.get(TABLE, AUTHS, "MISSING", loader(FieldFrequencies.EMPTY));
+        cache.get(TABLE, AUTHS, "FIELD", loader(frequencies("20200101")));
+        assertEquals(3, loads.get());
+    }
+    
+    @Test
+    public void testExpiry() throws Exception {
+        FieldFrequencyCache cache = FieldFrequencyCache.builder().ticker(time::get).expireAfterWrite(Duration.ofHours(1)).build();
+        cache.get(TABLE, AUTHS, "FIELD", loader(frequencies("20200101")));
+        time.addAndGet(Duration.ofMinutes(59).toNanos());
+        cache.get(TABLE, AUTHS, "FIELD", loader(frequencies("20200101")));
+        assertEquals(1, loads.get());
+        
+        time.addAndGet(Duration.ofMinutes(1).toNanos());
+        cache.get(TABLE, AUTHS, "FIELD", loader(frequencies("20200101")));
+        assertEquals(2, loads.get());
+    }
+    
+    @Test
+    public void testLoaderFailure() {
+        FieldFrequencyCache cache = FieldFrequencyCache.builder().ticker(time::get).build();
+        assertThrows(TableNotFoundException.class, () -> cache.get(TABLE, AUTHS, "FIELD", () -> {
+            throw new TableNotFoundException(null, TABLE, "missing");
+        }));
+        assertEquals(0, cache.getHeapSize());
+    }
+    
+    @Test
+    public void testFileTier() throws Exception {
+        // room on the heap for the frequencies of a single field
+        FieldFrequencyCache cache = FieldFrequencyCache.builder().ticker(time::get).maximumHeapBytes(300).file(tempDir.resolve("frequencies"), 4096)
+                        .build();
+        cache.get(TABLE, AUTHS, "FIRST", loader(frequencies("20200101")));
+        cache.get(TABLE, AUTHS, "SECOND", loader(frequencies("20200102")));
+        assertEquals(1, cache.getHeapSize());
+        assertEquals(1, cache.getFileSize());
+        
+        // both fields are answered from one tier or the other without loading them again
+        Callable<FieldFrequencies> failing = () -> {
+            throw new IllegalStateException("should not be loaded");
+        };
+        assertEquals("20200101", cache.get(TABLE, AUTHS, "FIRST", failing).getFirstDay(null));
+        assertEquals("20200102", cache.get(TABLE, AUTHS, "SECOND", failing).getFirstDay(null));
+        assertEquals(2, loads.get());
+        
+        cache.clear();
+        assertEquals(0, cache.getHeapSize());
+        assertEquals(0, cache.getFileSize());
+    }
+}
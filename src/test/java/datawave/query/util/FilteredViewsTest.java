@@ -0,0 +1,57 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.Sets;
+
+import datawave.util.UniversalSet;
+
+public class FilteredViewsTest {
+    
+    @Test
+    public void testMemoizesByContents() {
+        FilteredViews<String> views = new FilteredViews<>();
+        assertNull(views.get(null));
+        assertSame("all", views.put(null, "all"));
+        assertSame("all", views.get(null));
+        
+        Set<String> filter = Sets.newHashSet("csv", "wiki");
+        assertSame("csv,wiki", views.put(filter, "csv,wiki"));
+        assertSame("csv,wiki", views.get(Sets.newTreeSet(filter)));
+        
+        // the first view that was memoized wins, and changing the filter afterwards does not change the key
+        assertSame("csv,wiki", views.put(Sets.newHashSet("wiki", "csv"), "another"));
+        filter.remove("csv");
+        assertNull(views.get(filter));
+        
+        // an empty filter is not the unfiltered view
+        assertNull(views.get(Collections.emptySet()));
+    }
+    
+    @Test
+    public void testUniversalSetIsNotMemoized() {
+        FilteredViews<String> views = new FilteredViews<>();
+        assertSame("universal", views.put(UniversalSet.instance(), "universal"));
+        assertNull(views.get(UniversalSet.instance()));
+        assertNull(views.get(Collections.emptySet()));
+    }
+    
+    @Test
+    public void testBounded() {
+        FilteredViews<String> views = new FilteredViews<>();
+        for (int i = 0; i < FilteredViews.MAX_FILTERS; i++) {
+            views.put(Collections.singleton("datatype" + i), "view" + i);
+        }
+        Set<String> extra = Collections.singleton("extra");
+        assertSame("extra", views.put(extra, "extra"));
+        assertNull(views.get(extra));
+        assertEquals("view0", views.get(Collections.singleton("datatype0")));
+    }
+}
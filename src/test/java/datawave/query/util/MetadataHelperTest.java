@@ -1,9 +1,19 @@
 package datawave.query.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.client.AccumuloException;
@@ -15,16 +25,23 @@ import org.apache.accumulo.core.client.TableExistsException;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
 import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.io.Text;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.google.common.collect.Maps;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 import com.google.common.collect.Sets;
 
 import datawave.accumulo.inmemory.InMemoryAccumuloClient;
 import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.data.ColumnFamilyConstants;
 import datawave.query.composite.CompositeMetadataHelper;
+import datawave.util.time.DateHelper;
 
 public class MetadataHelperTest {
     
@@ -118,4 +135,216 @@ public class MetadataHelperTest {
     private void testFilter(Set<String> expected, Set<String> actual) throws TableNotFoundException {
         assertEquals(expected, actual);
     }
+    
+    @Test
+    public void testCardinalityForField() throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
+        clearTable();
+        Mutation m = new Mutation("FIELD");
+        m.put("f", "csv\u000020200101", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1L)));
+        m.put("f", "csv\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(2L)));
+        m.put("f", "csv\u000020200103", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(4L)));
+        m.put("f", "wiki\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(8L)));
+        m.put("i", "csv", new Value(new byte[0]));
+        addFields(m);
+        
+        Mutation other = new Mutation("OTHER");
+        other.put("f", "csv\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(16L)));
+        addFields(other);
+        
+        MetadataHelper helper = new MetadataHelper(createAllFieldMetadataHelper(), Collections.emptySet(), accumuloClient, TABLE_METADATA,
+                        Collections.singleton(new Authorizations(AUTHS)), Collections.emptySet());
+        
+        assertEquals(15, helper.getCardinalityForField("FIELD", DateHelper.parse("20200101"), DateHelper.parse("20200103")));
+        assertEquals(14, helper.getCardinalityForField("field", DateHelper.parse("20200102"), DateHelper.parse("20200131")));
+        assertEquals(6, helper.getCardinalityForField("FIELD", "csv", DateHelper.parse("20200102"), DateHelper.parse("20200103")));
+        assertEquals(0, helper.getCardinalityForField("FIELD", "wiki", DateHelper.parse("20200103"), DateHelper.parse("20200105")));
+        
+        // a day is only counted if it starts within the date range
+        Date afterMidnight = new Date(DateHelper.parse("20200101").getTime() + 1);
+        assertEquals(14, helper.getCardinalityForField("FIELD", afterMidnight, DateHelper.parse("20200103")));
+        assertEquals(0, helper.getCardinalityForField("FIELD", afterMidnight, new Date(DateHelper.parse("20200102").getTime() - 1)));
+    }
+    
+    @Test
+    public void testCountsByFieldForDays() throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
+        clearTable();
+        Mutation m = new Mutation("FIELD");
+        m.put("f", "csv\u000020200101", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1L)));
+        m.put("f", "csv\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(2L)));
+        m.put("f", "csv\u000020200103", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(4L)));
+        m.put("f", "wiki\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(8L)));
+        addFields(m);
+        
+        MetadataHelper helper = new MetadataHelper(createAllFieldMetadataHelper(), Collections.emptySet(), accumuloClient, TABLE_METADATA,
+                        Collections.singleton(new Authorizations(AUTHS)), Collections.emptySet());
+        
+        SortedMap<String,Map<String,Long>> expected = new TreeMap<>();
+        expected.put("20200102", new HashMap<>());
+        expected.get("20200102").put("csv", 2L);
+        expected.get("20200102").put("wiki", 8L);
+        expected.put("20200103", Collections.singletonMap("csv", 4L));
+        assertEquals(expected, helper.getCountsByFieldForDaysWithTypes("FIELD", "20200102", "20200131", null));
+        
+        expected.remove("20200102");
+        expected.put("20200101", Collections.singletonMap("csv", 1L));
+        expected.put("20200102", Collections.singletonMap("csv", 2L));
+        assertEquals(expected, helper.getCountsByFieldForDaysWithTypes("FIELD", "20200101", "20200103", Collections.singleton("csv")));
+        assertEquals(Collections.emptyMap(), helper.getCountsByFieldForDaysWithTypes("FIELD", "20200101", "20200103", Collections.emptySet()));
+        
+        assertEquals(10L, (long) helper.getCountsByFieldInDay("FIELD", "20200102"));
+        assertEquals(8L, (long) helper.getCountsByFieldInDayWithTypes("FIELD", "20200102", Collections.singleton("wiki")));
+        assertEquals(0L, (long) helper.getCountsByFieldInDay("FIELD", "20200104"));
+    }
+    
+    @Test
+    public void testCardinalityForFields() throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
+        clearTable();
+        Mutation m = new Mutation("FIELD");
+        m.put("f", "csv\u000020200101", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1L)));
+        m.put("f", "csv\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(2L)));
+        m.put("f", "wiki\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(8L)));
+        addFields(m);
+        
+        Mutation other = new Mutation("OTHER");
+        other.put("f", "csv\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(16L)));
+        other.put("f", "csv\u000020200103", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(32L)));
+        addFields(other);
+        
+        MetadataHelper helper = new MetadataHelper(createAllFieldMetadataHelper(), Collections.emptySet(), accumuloClient, TABLE_METADATA,
+                        Collections.singleton(new Authorizations(AUTHS)), Collections.emptySet());
+        
+        Map<String,Long> expected = new HashMap<>();
+        expected.put("FIELD", 10L);
+        expected.put("other", 16L);
+        expected.put("MISSING", 0L);
+        assertEquals(expected, helper.getCardinalityForFields(Arrays.asList("FIELD", "other", "MISSING"), null, DateHelper.parse("20200102"),
+                        DateHelper.parse("20200102")));
+        
+        expected.put("FIELD", 3L);
+        expected.put("other", 48L);
+        assertEquals(expected, helper.getCardinalityForFields(Arrays.asList("FIELD", "other", "MISSING"), Collections.singleton("csv"),
+                        DateHelper.parse("20200101"), DateHelper.parse("20200131")));
+        
+        assertEquals(Collections.singletonMap("FIELD", 0L),
+                        helper.getCardinalityForFields(Collections.singleton("FIELD"), Collections.emptySet(), DateHelper.parse("20200101"),
+                                        DateHelper.parse("20200131")));
+    }
+    
+    @Test
+    public void testIndexFlagColumns() throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
+        clearTable();
+        Mutation m = new Mutation("FIELD");
+        m.put("i", "csv", new Value(new byte[0]));
+        m.put("ri", "wiki", new Value(new byte[0]));
+        m.put("tf", "csv", new Value(new byte[0]));
+        addFields(m);
+        
+        Mutation other = new Mutation("OTHER");
+        other.put("i", "wiki", new Value(new byte[0]));
+        addFields(other);
+        
+        MetadataHelper helper = new MetadataHelper(createAllFieldMetadataHelper(), Collections.emptySet(), accumuloClient, TABLE_METADATA,
+                        Collections.singleton(new Authorizations(AUTHS)), Collections.emptySet());
+        
+        Map<String,Set<Text>> expected = new HashMap<>();
+        expected.put("field", Sets.newHashSet(ColumnFamilyConstants.COLF_I, ColumnFamilyConstants.COLF_RI, ColumnFamilyConstants.COLF_TF));
+        expected.put("OTHER", Collections.singleton(ColumnFamilyConstants.COLF_I));
+        expected.put("MISSING", Collections.emptySet());
+        assertEquals(expected, helper.getIndexFlagColumns(Arrays.asList("field", "OTHER", "MISSING"), null));
+        
+        expected.put("field", Sets.newHashSet(ColumnFamilyConstants.COLF_I, ColumnFamilyConstants.COLF_TF));
+        expected.put("OTHER", Collections.emptySet());
+        assertEquals(expected, helper.getIndexFlagColumns(Arrays.asList("field", "OTHER", "MISSING"), Collections.singleton("csv")));
+        
+        // the single field lookups agree
+        assertTrue(helper.isReverseIndexed("FIELD", null));
+        assertFalse(helper.isReverseIndexed("FIELD", Collections.singleton("csv")));
+        assertFalse(helper.isTokenized("OTHER", null));
+    }
+    
+    @Test
+    public void testIndexedInAnotherTable() throws Exception {
+        clearTable();
+        Mutation m = new Mutation("FIELD");
+        m.put("i", "csv", new Value(new byte[0]));
+        addFields(m);
+        
+        // a field that is only in the queried table, which is not the table of the AllFieldMetadataHelper
+        String otherTable = "otherMetadataTable";
+        if (!accumuloClient.tableOperations().exists(otherTable)) {
+            accumuloClient.tableOperations().create(otherTable);
+        }
+        Mutation other = new Mutation("OTHER");
+        other.put("i", "wiki", new Value(new byte[0]));
+        other.put("tf", "wiki", new Value(new byte[0]));
+        try (BatchWriter writer = accumuloClient.createBatchWriter(otherTable, new BatchWriterConfig())) {
+            writer.addMutation(other);
+        }
+        
+        MetadataHelper helper = new MetadataHelper(createAllFieldMetadataHelper(), Collections.emptySet(), accumuloClient, otherTable,
+                        Collections.singleton(new Authorizations(AUTHS)), Collections.emptySet());
+        assertTrue(helper.isIndexed("OTHER", null));
+        assertTrue(helper.isTokenized("OTHER", Collections.singleton("wiki")));
+        assertFalse(helper.isReverseIndexed("OTHER", null));
+        
+        // a field that is missing from the queried table is looked up in that table
+        assertFalse(helper.isIndexed("FIELD", null));
+        assertFalse(helper.isIndexed("MISSING", null));
+    }
+    
+    @Test
+    public void testFieldWrittenAfterTheFieldNameFilter() throws Exception {
+        clearTable();
+        Mutation m = new Mutation("FIELD");
+        m.put("e", "csv", new Value(new byte[0]));
+        m.put("f", "csv\u000020200101", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(3L)));
+        addFields(m);
+        
+        // a filter that was built before the field was written
+        final Set<Authorizations> auths = Collections.singleton(new Authorizations(AUTHS));
+        TypeMetadataHelper tmh = new TypeMetadataHelper(Maps.newHashMap(), Collections.emptySet(), accumuloClient, TABLE_METADATA, auths, false);
+        CompositeMetadataHelper cmh = new CompositeMetadataHelper(accumuloClient, TABLE_METADATA, auths);
+        AllFieldMetadataHelper allFieldMetadataHelper = new AllFieldMetadataHelper(tmh, cmh, accumuloClient, TABLE_METADATA, auths, Collections.emptySet()) {
+            @Override
+            public BloomFilter<CharSequence> getFieldNameFilter(String tableName) {
+                return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), 100, 0.01);
+            }
+        };
+        
+        // the field is found in the snapshot, rather than answered as missing from the filter alone
+        MetadataHelper helper = new MetadataHelper(allFieldMetadataHelper, Collections.emptySet(), accumuloClient, TABLE_METADATA, auths,
+                        Collections.emptySet());
+        assertEquals(3, helper.getCardinalityForField("FIELD", DateHelper.parse("20200101"), DateHelper.parse("20200101")));
+        assertEquals(0, helper.getCardinalityForField("MISSING", DateHelper.parse("20200101"), DateHelper.parse("20200101")));
+    }
+    
+    @Test
+    public void testOccurrenceDateRanges() throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
+        clearTable();
+        Mutation m = new Mutation("FIELD");
+        m.put("f", "csv\u000020200101", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1L)));
+        m.put("f", "csv\u000020200110", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1L)));
+        m.put("f", "wiki\u000020191231", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1L)));
+        m.put("f", "wiki\u000020200102", new Value(SummingCombiner.VAR_LEN_ENCODER.encode(1L)));
+        addFields(m);
+        
+        MetadataHelper helper = new MetadataHelper(createAllFieldMetadataHelper(), Collections.emptySet(), accumuloClient, TABLE_METADATA,
+                        Collections.singleton(new Authorizations(AUTHS)), Collections.emptySet());
+        
+        Map<String,Pair<Date,Date>> expected = new HashMap<>();
+        expected.put("csv", Pair.of(DateHelper.parse("20200101"), DateHelper.parse("20200110")));
+        expected.put("wiki", Pair.of(DateHelper.parse("20191231"), DateHelper.parse("20200102")));
+        Map<String,Map<String,Pair<Date,Date>>> dateRanges = helper.getOccurrenceDateRanges(Arrays.asList("field", "MISSING"));
+        assertEquals(expected, dateRanges.get("field"));
+        assertEquals(Collections.emptyMap(), dateRanges.get("MISSING"));
+        
+        assertEquals(Pair.of(DateHelper.parse("20191231"), DateHelper.parse("20200110")), helper.getOccurrenceDateRange("FIELD", null));
+        assertEquals(DateHelper.parse("20191231"), helper.getEarliestOccurrenceOfField("FIELD"));
+        assertEquals(DateHelper.parse("20200101"), helper.getEarliestOccurrenceOfFieldWithType("FIELD", "csv"));
+        assertEquals(DateHelper.parse("20200102"), helper.getLatestOccurrenceOfFieldWithType("FIELD", "wiki"));
+        assertEquals(DateHelper.parse("20200110"), helper.getLatestOccurrenceOfField("FIELD"));
+        assertNull(helper.getLatestOccurrenceOfField("MISSING"));
+        // unlike the batch lookup, the single field lookups use the field name as given
+        assertNull(helper.getEarliestOccurrenceOfField("field"));
+    }
 }
@@ -0,0 +1,80 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.Test;
+
+import datawave.data.ColumnFamilyConstants;
+
+public class MetadataKeyParserTest {
+    
+    @Test
+    public void testParse() {
+        MetadataKeyParser parser = new MetadataKeyParser();
+        parser.parse(new Key("FIELD", "t", "csv\0datawave.data.type.LcNoDiacriticsType"));
+        assertEquals("FIELD", parser.getFieldName());
+        assertTrue(parser.isColumnFamily(ColumnFamilyConstants.COLF_T));
+        assertFalse(parser.isColumnFamily(ColumnFamilyConstants.COLF_TF));
+        assertEquals("t", parser.getColumnFamily());
+        assertTrue(parser.hasSeparator());
+        assertEquals("csv", parser.getDatatype());
+        assertEquals("datawave.data.type.LcNoDiacriticsType", parser.getSuffix());
+        assertEquals("csv\0datawave.data.type.LcNoDiacriticsType", parser.getColumnQualifier());
+    }
+    
+    @Test
+    public void testNoSeparator() {
+        MetadataKeyParser parser = new MetadataKeyParser();
+        parser.parse(new Key("FIELD", "i", "csv"));
+        assertFalse(parser.hasSeparator());
+        assertEquals("csv", parser.getDatatype());
+        assertNull(parser.getSuffix());
+        assertEquals("csv", parser.getQualifierPart(0));
+        assertNull(parser.getQualifierPart(1));
+    }
+    
+    @Test
+    public void testQualifierParts() {
+        MetadataKeyParser parser = new MetadataKeyParser();
+        parser.parse(new Key("FIELD", "f", "csv\u000020200101\u000020200131"));
+        assertEquals("csv", parser.getQualifierPart(0));
+        assertEquals("20200101", parser.getQualifierPart(1));
+        assertEquals("20200131", parser.getQualifierPart(2));
+        assertNull(parser.getQualifierPart(3));
+        assertEquals("20200101\u000020200131", parser.getSuffix());
+    }
+    
+    @Test
+    public void testColumnFamilyIndex() {
+        List<Text> columnFamilies = Arrays.asList(ColumnFamilyConstants.COLF_E, ColumnFamilyConstants.COLF_I, ColumnFamilyConstants.COLF_RI);
+        MetadataKeyParser parser = new MetadataKeyParser();
+        assertEquals(1, parser.parse(new Key("FIELD", "i", "csv")).getColumnFamilyIndex(columnFamilies));
+        assertEquals(-1, parser.parse(new Key("FIELD", "f", "csv\u000020200101")).getColumnFamilyIndex(columnFamilies));
+    }
+    
+    @Test
+    public void testStringsArePooled() {
+        MetadataKeyParser parser = new MetadataKeyParser();
+        parser.parse(new Key("FIELD", "e", "csv"));
+        String fieldName = parser.getFieldName();
+        String datatype = parser.getDatatype();
+        
+        parser.parse(new Key("FIELD", "i", "csv"));
+        assertSame(fieldName, parser.getFieldName());
+        assertSame(datatype, parser.getDatatype());
+        
+        // the datatype is the same string whether or not the column qualifier has more after it
+        parser.parse(new Key("OTHER", "t", "csv\0datawave.data.type.NoOpType"));
+        assertSame(datatype, parser.getDatatype());
+        assertEquals(3, parser.getPool().size());
+    }
+}
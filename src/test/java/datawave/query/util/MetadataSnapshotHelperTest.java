@@ -0,0 +1,431 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import datawave.accumulo.inmemory.InMemoryAccumuloClient;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.data.ColumnFamilyConstants;
+import datawave.data.type.NumberType;
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.composite.CompositeMetadataHelper;
+
+class MetadataSnapshotHelperTest {
+    
+    private static final String TABLE_METADATA = "metadata";
+    private static final Set<Authorizations> AUTHS = Collections.singleton(new Authorizations("FOO"));
+    private static final String NULL_BYTE = "\0";
+    private static final Value NULL_VALUE = new Value(new byte[0]);
+    
+    private AccumuloClient accumuloClient;
+    private MetadataSnapshotHelper snapshotHelper;
+    private AllFieldMetadataHelper helper;
+    
+    @BeforeAll
+    static void beforeAll() throws URISyntaxException {
+        File dir = new File(Objects.requireNonNull(ClassLoader.getSystemClassLoader().getResource(".")).toURI());
+        File targetDir = dir.getParentFile();
+        System.setProperty("hadoop.home.dir", targetDir.getAbsolutePath());
+    }
+    
+    @BeforeEach
+    void setUp() throws AccumuloSecurityException, AccumuloException, TableExistsException, TableNotFoundException {
+        accumuloClient = new InMemoryAccumuloClient("root", new InMemoryInstance(MetadataSnapshotHelperTest.class.toString()));
+        if (!accumuloClient.tableOperations().exists(TABLE_METADATA)) {
+            accumuloClient.tableOperations().create(TABLE_METADATA);
+        }
+        
+        snapshotHelper = new MetadataSnapshotHelper(accumuloClient, TABLE_METADATA, AUTHS);
+        TypeMetadataHelper typeMetadataHelper = new TypeMetadataHelper(Maps.newHashMap(), Collections.emptySet(), accumuloClient, TABLE_METADATA, AUTHS,
+                        false, snapshotHelper);
+        CompositeMetadataHelper compositeMetadataHelper = new CompositeMetadataHelper(accumuloClient, TABLE_METADATA, AUTHS, snapshotHelper);
+        helper = new AllFieldMetadataHelper(typeMetadataHelper, compositeMetadataHelper, snapshotHelper, accumuloClient, TABLE_METADATA, AUTHS,
+                        Collections.emptySet());
+        
+        writeMutations();
+    }
+    
+    @AfterEach
+    void tearDown() throws AccumuloException, TableNotFoundException, AccumuloSecurityException {
+        accumuloClient.tableOperations().deleteRows(TABLE_METADATA, null, null);
+    }
+    
+    private void writeMutations() throws TableNotFoundException, AccumuloException {
+        try (BatchWriter writer = accumuloClient.createBatchWriter(TABLE_METADATA, new BatchWriterConfig())) {
+            Mutation m = new Mutation("NAME");
+            m.put("e", "csv", NULL_VALUE);
+            m.put("i", "csv", NULL_VALUE);
+            m.put("ri", "csv", NULL_VALUE);
+            m.put("t", "csv" + NULL_BYTE + "datawave.data.type.LcNoDiacriticsType", NULL_VALUE);
+            m.put("tf", "csv", NULL_VALUE);
+            m.put("exp", "csv", NULL_VALUE);
+            m.put("content", "csv", NULL_VALUE);
+            m.put("n", "csv", NULL_VALUE);
+            writer.addMutation(m);
+            
+            m = new Mutation("AGE");
+            m.put("e", "wiki", NULL_VALUE);
+            m.put("i", "wiki", NULL_VALUE);
+            m.put("t", "wiki" + NULL_BYTE + "datawave.data.type.NumberType", NULL_VALUE);
+            writer.addMutation(m);
+            
+            m = new Mutation("SECRET");
+            m.put("i", "wiki", NULL_VALUE);
+            writer.addMutation(m);
+            
+            m = new Mutation("NAME_AGE");
+            m.put("ci", "csv" + NULL_BYTE + "NAME,AGE", NULL_VALUE);
+            m.put("citd", "csv" + NULL_BYTE + "20200101 000000.000", NULL_VALUE);
+            m.put("cisep", "csv" + NULL_BYTE + "|", NULL_VALUE);
+            m.put("i", "csv", NULL_VALUE);
+            writer.addMutation(m);
+            
+            m = new Mutation("GEO");
+            m.put("wcd", "wiki" + NULL_BYTE + "20210101 000000.000", NULL_VALUE);
+            writer.addMutation(m);
+            
+            // frequency entries are not part of the snapshot
+            m = new Mutation("UNSEEN");
+            m.put("f", "csv" + NULL_BYTE + "20200101", NULL_VALUE);
+            writer.addMutation(m);
+        }
+    }
+    
+    @Test
+    void testFields() throws TableNotFoundException {
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        
+        Multimap<String,String> expected = HashMultimap.create();
+        expected.putAll("csv", Arrays.asList("NAME", "NAME_AGE"));
+        expected.putAll("wiki", Arrays.asList("AGE", "SECRET"));
+        assertEquals(expected, snapshot.getAllFields());
+        assertEquals(expected, helper.loadAllFields());
+        
+        assertEquals(Sets.newHashSet("NAME", "AGE", "SECRET", "NAME_AGE"), Sets.newHashSet(helper.loadIndexedFields().values()));
+        assertEquals(Collections.singleton("NAME"), Sets.newHashSet(helper.loadReverseIndexedFields().values()));
+        assertEquals(Collections.singleton("NAME"), helper.getTermFrequencyFields(null));
+        assertEquals(Collections.singleton("NAME"), helper.getExpansionFields(null));
+        assertEquals(Collections.singleton("NAME"), helper.getContentFields(null));
+        assertEquals(Collections.singleton("NAME"), snapshot.getNormalizedFields());
+        assertEquals(Sets.newHashSet("csv", "wiki"), helper.loadDatatypes());
+        assertEquals(Collections.singleton("wiki"), helper.getDatatypes(Collections.singleton("wiki")));
+    }
+    
+    @Test
+    void testMemoizedFields() throws Exception {
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        
+        // any set with the same datatypes gets the same unmodifiable set back
+        Set<String> indexed = snapshot.getFields(ColumnFamilyConstants.COLF_I, Sets.newHashSet("csv"));
+        assertSame(indexed, snapshot.getFields(ColumnFamilyConstants.COLF_I, Collections.singleton("csv")));
+        assertEquals(Sets.newHashSet("NAME", "NAME_AGE"), indexed);
+        assertThrows(UnsupportedOperationException.class, () -> indexed.add("AGE"));
+        
+        assertSame(snapshot.getAllFields(null), snapshot.getAllFields(null));
+        assertSame(snapshot.getAllFields(), snapshot.getAllFields());
+        assertSame(snapshot.getIndexOnlyFields(Collections.singleton("wiki")), snapshot.getIndexOnlyFields(Sets.newHashSet("wiki")));
+        assertSame(snapshot.getDatatypes(), snapshot.getDatatypes());
+        assertSame(helper.getTermFrequencyFields(null), helper.getTermFrequencyFields(Collections.emptySet()));
+        
+        // a stale copy has the same entries, so it shares the memoized sets
+        assertSame(indexed, snapshot.stale().getFields(ColumnFamilyConstants.COLF_I, Sets.newHashSet("csv")));
+    }
+    
+    @Test
+    void testIndexOnlyFields() throws TableNotFoundException {
+        Multimap<String,String> indexOnly = helper.getIndexOnlyFields();
+        // NAME_AGE has a 'ci' entry, and AGE is the first component of a composite field
+        assertEquals(1, indexOnly.size());
+        assertTrue(indexOnly.containsEntry("wiki", "SECRET"));
+    }
+    
+    @Test
+    void testTypeMetadata() throws Exception {
+        TypeMetadata typeMetadata = helper.getTypeMetadata();
+        assertEquals(Collections.singleton("datawave.data.type.LcNoDiacriticsType"), typeMetadata.getNormalizerNamesForField("NAME"));
+        assertEquals(Collections.singleton("datawave.data.type.NumberType"), typeMetadata.getNormalizerNamesForField("AGE"));
+        
+        TypeMetadata filtered = helper.getTypeMetadata(Collections.singleton("csv"));
+        assertTrue(filtered.getNormalizerNamesForField("AGE").isEmpty());
+        assertEquals(Collections.singleton("NAME"), helper.getFieldsToDatatypes(Collections.singleton("csv")).keySet());
+        assertEquals(Sets.newHashSet("NAME", "AGE"), helper.getFieldsToDatatypes(Collections.emptySet()).keySet());
+        assertTrue(helper.getFieldsForDatatype(NumberType.class, Collections.singleton("csv")).isEmpty());
+        assertEquals(Collections.singleton("AGE"), helper.getFieldsForDatatype(NumberType.class, Collections.singleton("wiki")));
+        
+        // the type metadata of every datatype is built once per snapshot, and each filter is applied to it in memory
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        PackedTypeMetadata all = snapshot.getFrozenTypeMetadata(Collections.emptyMap());
+        assertSame(all, snapshot.getFrozenTypeMetadata(Maps.newHashMap()));
+        assertSame(all.filter(Collections.singleton("csv")), all.filter(Sets.newHashSet("csv")));
+        assertEquals(all.filter(Collections.singleton("csv")), snapshot.getTypeMetadata(Collections.emptyMap(), Collections.singleton("csv")));
+        assertThrows(UnsupportedOperationException.class, () -> all.put("NAME", "csv", "datawave.data.type.NumberType"));
+        
+        // the existing getters return a modifiable copy
+        typeMetadata.put("NAME", "csv", "datawave.data.type.NumberType");
+        filtered.put("AGE", "csv", "datawave.data.type.NumberType");
+        snapshot.getTypeMetadata(Collections.emptyMap(), null).put("NAME", "csv", "datawave.data.type.NumberType");
+        assertEquals(Collections.singleton("datawave.data.type.LcNoDiacriticsType"), all.getNormalizerNamesForField("NAME"));
+        
+        assertEquals(Sets.newHashSet("datawave.data.type.LcNoDiacriticsType", "datawave.data.type.NumberType"),
+                        snapshotHelper.getMetadataSnapshot().getNormalizerClassNames());
+    }
+    
+    @Test
+    void testCompositeMetadata() throws TableNotFoundException {
+        assertEquals(Arrays.asList("NAME", "AGE"), helper.getCompositeToFieldMap().get("NAME_AGE"));
+        assertTrue(helper.getCompositeToFieldMap(Collections.singleton("wiki")).isEmpty());
+        assertEquals(Collections.singleton("NAME_AGE"), helper.getCompositeTransitionDateMap().keySet());
+        assertEquals("|", helper.getCompositeFieldSeparatorMap().get("NAME_AGE"));
+        assertEquals(Collections.singleton("GEO"), helper.getWhindexCreationDateMap().keySet());
+        
+        CompositeMetadata compositeMetadata = helper.getCompositeMetadata();
+        assertEquals(Arrays.asList("NAME", "AGE"), compositeMetadata.getCompositeFieldMapByType().get("csv").get("NAME_AGE"));
+        assertEquals("|", compositeMetadata.getCompositeFieldSeparatorsByType().get("csv").get("NAME_AGE"));
+        assertTrue(helper.getCompositeMetadata(Collections.singleton("wiki")).isEmpty());
+        assertEquals(compositeMetadata.getCompositeFieldMapByType(),
+                        helper.getCompositeMetadata(Collections.singleton("csv")).getCompositeFieldMapByType());
+        
+        // the results for each filter are derived in memory from the snapshot, and shared by equal filters
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        assertSame(snapshot.getCompositeToFieldMap(null), snapshot.getCompositeToFieldMap(Collections.emptySet()));
+        assertSame(snapshot.getCompositeTransitionDateMap(Collections.singleton("csv")), snapshot.getCompositeTransitionDateMap(Sets.newHashSet("csv")));
+        assertSame(snapshot.getCompositeFieldSeparatorMap(Collections.singleton("wiki")), snapshot.getCompositeFieldSeparatorMap(Sets.newHashSet("wiki")));
+        assertSame(snapshot.getWhindexCreationDateMap(null), snapshot.getWhindexCreationDateMap(null));
+        assertSame(snapshot.getCompositeMetadata(Collections.singleton("csv")), snapshot.getCompositeMetadata(Sets.newHashSet("csv")));
+    }
+    
+    @Test
+    void testColumnLookups() throws Exception {
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        assertTrue(snapshot.isIndexed("NAME", null));
+        assertTrue(snapshot.isIndexed("name", Collections.emptySet()));
+        assertTrue(snapshot.isIndexed("NAME", Sets.newHashSet("csv", "wiki")));
+        assertFalse(snapshot.isIndexed("NAME", Collections.singleton("wiki")));
+        assertTrue(snapshot.isReverseIndexed("NAME", Collections.singleton("csv")));
+        assertFalse(snapshot.isReverseIndexed("AGE", null));
+        assertTrue(snapshot.isTokenized("NAME", null));
+        assertFalse(snapshot.isTokenized("SECRET", null));
+        assertFalse(snapshot.isIndexed("MISSING", null));
+        assertFalse(snapshot.hasColumn(ColumnFamilyConstants.COLF_F, "NAME", null));
+        
+        // the snapshot answers for the helper's own table
+        assertTrue(helper.isIndexed(ColumnFamilyConstants.COLF_I, Maps.immutableEntry(TABLE_METADATA, Maps.immutableEntry("AGE", (Set<String>) null))));
+        assertFalse(helper.isIndexed(ColumnFamilyConstants.COLF_RI, Maps.immutableEntry(TABLE_METADATA, Maps.immutableEntry("AGE", (Set<String>) null))));
+        
+        assertEquals(Sets.newHashSet("AGE", "SECRET"), snapshot.getFields(ColumnFamilyConstants.COLF_I, Collections.singleton("wiki")));
+        assertTrue(snapshot.getFields(ColumnFamilyConstants.COLF_I, Collections.emptySet()).isEmpty());
+        assertEquals(Sets.newHashSet("NAME", "NAME_AGE"), snapshot.getAllFields(Collections.singleton("csv")));
+    }
+    
+    @Test
+    void testIncrementalRefresh() throws TableNotFoundException, AccumuloException {
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        assertFalse(snapshot.isStale());
+        
+        MetadataSnapshot stale = snapshot.stale();
+        assertTrue(stale.isStale());
+        assertEquals(snapshot.getAllFields(), stale.getAllFields());
+        
+        long timestamp = snapshot.getMaxTimestamp() + 1000L;
+        try (BatchWriter writer = accumuloClient.createBatchWriter(TABLE_METADATA, new BatchWriterConfig())) {
+            Mutation m = new Mutation("COLOR");
+            m.put("e", "csv", timestamp, NULL_VALUE);
+            m.put("i", "csv", timestamp, NULL_VALUE);
+            writer.addMutation(m);
+            
+            m = new Mutation("AGE");
+            m.put("ri", "wiki", timestamp, NULL_VALUE);
+            writer.addMutation(m);
+        }
+        
+        MetadataSnapshot refreshed = snapshotHelper.refreshMetadataSnapshot(stale);
+        assertFalse(refreshed.isStale());
+        assertEquals(timestamp, refreshed.getMaxTimestamp());
+        assertTrue(refreshed.isIndexed("COLOR", Collections.singleton("csv")));
+        assertTrue(refreshed.isReverseIndexed("AGE", null));
+        assertTrue(refreshed.isIndexed("AGE", null));
+        assertEquals(Sets.newHashSet("NAME", "NAME_AGE", "COLOR"), refreshed.getAllFields(Collections.singleton("csv")));
+        assertEquals(Arrays.asList("NAME", "AGE"), refreshed.getCompositeToFieldMap(null).get("NAME_AGE"));
+        assertEquals(Collections.singleton("datawave.data.type.NumberType"),
+                        refreshed.getTypeMetadata(Collections.emptyMap(), null).getNormalizerNamesForField("AGE"));
+        
+        // the previous snapshot is unchanged
+        assertFalse(snapshot.isIndexed("COLOR", null));
+        assertFalse(snapshot.isReverseIndexed("AGE", null));
+    }
+    
+    @Test
+    void testOneRefreshAtATime() throws Exception {
+        MetadataSnapshot stale = snapshotHelper.getMetadataSnapshot().stale();
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger refreshes = new AtomicInteger();
+        MetadataSnapshotHelper blocking = new MetadataSnapshotHelper(accumuloClient, TABLE_METADATA, AUTHS) {
+            @Override
+            public MetadataSnapshot getMetadataSnapshot() {
+                return stale;
+            }
+            
+            @Override
+            public MetadataSnapshot refreshMetadataSnapshot(MetadataSnapshot previous) throws TableNotFoundException {
+                refreshes.incrementAndGet();
+                refreshing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.refreshMetadataSnapshot(previous);
+            }
+        };
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MetadataSnapshot> refreshed = executor.submit(() -> MetadataSnapshotHelper.getCurrentMetadataSnapshot(blocking));
+            refreshing.await();
+            
+            // the stale snapshot is served while another thread refreshes it
+            assertSame(stale, MetadataSnapshotHelper.getCurrentMetadataSnapshot(blocking));
+            
+            release.countDown();
+            assertFalse(refreshed.get().isStale());
+            assertEquals(1, refreshes.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void testIgnoresOtherColumnFamilies() throws TableNotFoundException {
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        assertTrue(snapshot.getFields(ColumnFamilyConstants.COLF_F).isEmpty());
+        assertFalse(snapshot.getAllFields().containsValue("UNSEEN"));
+    }
+    
+    @Test
+    void testParallelLoadMatchesSerialLoad() throws Exception {
+        MetadataSnapshot serial;
+        System.setProperty(ParallelScans.LOAD_THREADS_PROPERTY, "1");
+        try {
+            serial = snapshotHelper.getMetadataSnapshot();
+        } finally {
+            System.clearProperty(ParallelScans.LOAD_THREADS_PROPERTY);
+        }
+        
+        accumuloClient.tableOperations().addSplits(TABLE_METADATA, new TreeSet<>(Arrays.asList(new Text("B"), new Text("N"), new Text("NAME_AGE"))));
+        assertEquals(4, ParallelScans.getTabletRanges(accumuloClient, TABLE_METADATA, 8).size());
+        
+        MetadataSnapshot parallel = snapshotHelper.getMetadataSnapshot();
+        assertEquals(serial.getAllFields(), parallel.getAllFields());
+        assertEquals(serial.getIndexOnlyFields(), parallel.getIndexOnlyFields());
+        assertEquals(serial.getNormalizedFields(), parallel.getNormalizedFields());
+        assertEquals(serial.getCompositeToFieldMap(null), parallel.getCompositeToFieldMap(null));
+        assertEquals(serial.getCompositeTransitionDateMap(null), parallel.getCompositeTransitionDateMap(null));
+        assertEquals(serial.getWhindexCreationDateMap(null), parallel.getWhindexCreationDateMap(null));
+        assertEquals(serial.getMaxTimestamp(), parallel.getMaxTimestamp());
+    }
+    
+    @Test
+    void testSnapshotFileFormat() throws Exception {
+        MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out);
+        byte[] bytes = out.toByteArray();
+        
+        MetadataSnapshot read = MetadataSnapshot.readFrom(ByteBuffer.wrap(bytes));
+        assertFalse(read.isStale());
+        assertEquals(snapshot.getMaxTimestamp(), read.getMaxTimestamp());
+        assertEquals(snapshot.getAllFields(), read.getAllFields());
+        assertEquals(snapshot.getIndexOnlyFields(), read.getIndexOnlyFields());
+        assertEquals(snapshot.getNormalizedFields(), read.getNormalizedFields());
+        assertEquals(snapshot.getDatatypes(), read.getDatatypes());
+        assertTrue(read.isReverseIndexed("NAME", Collections.singleton("csv")));
+        assertEquals(Collections.singleton("datawave.data.type.NumberType"),
+                        read.getTypeMetadata(Collections.emptyMap(), null).getNormalizerNamesForField("AGE"));
+        assertEquals(snapshot.getCompositeToFieldMap(null), read.getCompositeToFieldMap(null));
+        assertEquals(snapshot.getCompositeTransitionDateMap(null), read.getCompositeTransitionDateMap(null));
+        assertEquals(snapshot.getCompositeFieldSeparatorMap(null), read.getCompositeFieldSeparatorMap(null));
+        assertEquals(snapshot.getWhindexCreationDateMap(null), read.getWhindexCreationDateMap(null));
+        
+        // a damaged or truncated file is rejected rather than misread
+        bytes[bytes.length / 2] ^= 1;
+        assertThrows(IOException.class, () -> MetadataSnapshot.readFrom(ByteBuffer.wrap(bytes)));
+        assertThrows(IOException.class, () -> MetadataSnapshot.readFrom(ByteBuffer.wrap(bytes, 0, 20)));
+    }
+    
+    @Test
+    void testStartsFromSnapshotFile(@TempDir Path dir) throws Exception {
+        System.setProperty(MetadataSnapshotHelper.SNAPSHOT_DIR_PROPERTY, dir.toString());
+        try {
+            // the first load scans the table and writes the file
+            MetadataSnapshot snapshot = snapshotHelper.getMetadataSnapshot();
+            Path file = snapshotHelper.getSnapshotFile();
+            assertTrue(Files.isRegularFile(file));
+            
+            // after a restart, the snapshot comes from the file even though the table has changed, and the table is reloaded in the background
+            accumuloClient.tableOperations().deleteRows(TABLE_METADATA, null, null);
+            MetadataSnapshotHelper restarted = new MetadataSnapshotHelper(accumuloClient, TABLE_METADATA, AUTHS);
+            assertEquals(snapshot.getAllFields(), restarted.getMetadataSnapshot().getAllFields());
+            
+            MetadataSnapshot reloaded = null;
+            for (int i = 0; i < 100 && reloaded == null; i++) {
+                Thread.sleep(50);
+                reloaded = restarted.takeReloadedSnapshot();
+            }
+            assertNotNull(reloaded);
+            assertTrue(reloaded.getAllFields().isEmpty());
+            assertNull(restarted.takeReloadedSnapshot());
+            
+            // the reloaded snapshot was written over the file
+            assertTrue(MetadataSnapshot.readFrom(ByteBuffer.wrap(Files.readAllBytes(file))).getAllFields().isEmpty());
+        } finally {
+            System.clearProperty(MetadataSnapshotHelper.SNAPSHOT_DIR_PROPERTY);
+        }
+    }
+}
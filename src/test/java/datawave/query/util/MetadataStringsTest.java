@@ -0,0 +1,52 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.junit.jupiter.api.Test;
+
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.model.QueryModel;
+
+public class MetadataStringsTest {
+    
+    @Test
+    public void testIntern() {
+        String value = MetadataStrings.intern(new String("FIELD_A"));
+        assertSame(value, MetadataStrings.intern(new String("FIELD_A")));
+        assertNull(MetadataStrings.intern(null));
+    }
+    
+    @Test
+    public void testSharedAcrossStructures() {
+        String fieldName = MetadataStrings.intern(new String("FIELD_B"));
+        String datatype = MetadataStrings.intern(new String("csv"));
+        
+        // strings decoded by separate loads are the same instances
+        assertSame(fieldName, new StringPool().get(new ArrayByteSequence("FIELD_B")));
+        assertSame(fieldName, new StringPool().intern(new String("FIELD_B")));
+        
+        TypeMetadata typeMetadata = new TypeMetadata().put(new String("FIELD_B"), new String("csv"), "datawave.data.type.LcType");
+        assertSame(fieldName, typeMetadata.keySet().iterator().next());
+        assertSame(datatype, typeMetadata.getDataTypesForField("FIELD_B").iterator().next());
+        
+        // including the ones that are deserialized
+        TypeMetadata copy = new TypeMetadata(typeMetadata.toString());
+        assertSame(fieldName, copy.keySet().iterator().next());
+        
+        CompositeMetadata compositeMetadata = new CompositeMetadata();
+        compositeMetadata.setCompositeFieldMappingByType(new String("csv"), "COMPOSITE", Arrays.asList(new String("FIELD_B"), "FIELD_C"));
+        compositeMetadata = CompositeMetadata.fromBytes(CompositeMetadata.toBytes(compositeMetadata));
+        assertSame(datatype, compositeMetadata.getCompositeFieldMapByType().keySet().iterator().next());
+        assertSame(fieldName, compositeMetadata.getCompositeFieldMapByType().get("csv").get("COMPOSITE").iterator().next());
+        
+        QueryModel queryModel = new QueryModel();
+        queryModel.addTermToModel("ALIAS", new String("FIELD_B"));
+        queryModel.addTermToReverseModel(new String("FIELD_B"), "ALIAS");
+        assertSame(fieldName, queryModel.getMappingsForAlias("ALIAS").iterator().next());
+        assertSame(fieldName, queryModel.getReverseQueryMapping().keySet().iterator().next());
+    }
+}
@@ -0,0 +1,39 @@
+package datawave.query.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.log4j.Logger;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares {@link MiniMapParser} with the parser it replaced, which looked up each id by streaming over the entries of the mini-maps, on a type metadata of
+ * 50k fields. This is too slow for every build, so it is ignored and run by hand.
+ */
+@Ignore("benchmark")
+public class MiniMapParserBenchmark {
+    
+    private static final Logger log = Logger.getLogger(MiniMapParserBenchmark.class);
+    
+    @Test
+    public void testBenchmark() throws Exception {
+        TypeMetadata typeMetadata = MiniMapParserTest.createTypeMetadata(50000);
+        String data = typeMetadata.toNewString();
+        
+        long legacy = Long.MAX_VALUE;
+        long parser = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            TypeMetadata legacyParsed = MiniMapParserTest.legacyParse(data);
+            legacy = Math.min(legacy, System.nanoTime() - start);
+            
+            start = System.nanoTime();
+            TypeMetadata parsed = new TypeMetadata(data, true);
+            parser = Math.min(parser, System.nanoTime() - start);
+            
+            assertEquals(legacyParsed, parsed);
+        }
+        log.info("Parsed " + data.length() + " characters of mini-map form in " + (parser / 1000000) + " ms, and " + (legacy / 1000000)
+                        + " ms with the legacy parser");
+    }
+}
@@ -0,0 +1,130 @@
+package datawave.query.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+public class MiniMapParserTest {
+    
+    @Test
+    public void testParse() {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        MiniMapParser.parse("dts:[0:ingest1,1:ingest2];types:[0:DateType,1:IntegerType,2:LcType];FIELD1:[0:2,1:0];FIELD2:[0:1,0:2,1:2]", typeMetadata::put);
+        
+        TypeMetadata expected = new TypeMetadata();
+        expected.put("FIELD1", "ingest1", "LcType");
+        expected.put("FIELD1", "ingest2", "DateType");
+        expected.put("FIELD2", "ingest1", "IntegerType");
+        expected.put("FIELD2", "ingest1", "LcType");
+        expected.put("FIELD2", "ingest2", "LcType");
+        assertEquals(expected, typeMetadata);
+        
+        // the mini-maps may come in either order
+        TypeMetadata swapped = new TypeMetadata();
+        MiniMapParser.parse("types:[0:LcType];dts:[0:ingest1];FIELD1:[0:0]", swapped::put);
+        assertEquals(new TypeMetadata().put("FIELD1", "ingest1", "LcType"), swapped);
+        
+        // an empty type metadata is written with no fields, which the legacy parser rejected
+        TypeMetadata empty = new TypeMetadata();
+        MiniMapParser.parse(new TypeMetadata().toNewString(), empty::put);
+        assertTrue(empty.isEmpty());
+    }
+    
+    @Test
+    public void testMalformed() {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        assertThrows(IllegalArgumentException.class, () -> MiniMapParser.parse("", typeMetadata::put));
+        assertThrows(IllegalArgumentException.class, () -> MiniMapParser.parse("FIELD1:[0:0]", typeMetadata::put));
+        assertThrows(IllegalArgumentException.class, () -> MiniMapParser.parse("dts:[0:ingest1];types:[0:LcType];FIELD1:[0:1]", typeMetadata::put));
+        assertThrows(IllegalArgumentException.class, () -> MiniMapParser.parse("dts:[0:ingest1];types:[0:LcType];FIELD1:[0-0]", typeMetadata::put));
+        assertThrows(IllegalArgumentException.class, () -> MiniMapParser.parse("dts:[0:ingest1];types:[0:LcType];FIELD1:[0:0", typeMetadata::put));
+        assertTrue(typeMetadata.isEmpty());
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception {
+        TypeMetadata typeMetadata = createTypeMetadata(1000);
+        String data = typeMetadata.toNewString();
+        assertEquals(typeMetadata, new TypeMetadata(data, true));
+        assertEquals(typeMetadata, legacyParse(data));
+    }
+    
+    static TypeMetadata createTypeMetadata(int fields) {
+        Random random = new Random(42);
+        TypeMetadata typeMetadata = new TypeMetadata();
+        for (int field = 0; field < fields; field++) {
+            int entries = 1 + random.nextInt(4);
+            for (int i = 0; i < entries; i++) {
+                typeMetadata.put("FIELD_" + field, "ingest" + random.nextInt(12), "datawave.data.type.Type" + random.nextInt(20));
+            }
+        }
+        return typeMetadata;
+    }
+    
+    // the parser before MiniMapParser
+    static TypeMetadata legacyParse(String data) {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        Map<String,Integer> ingestTypesMiniMap = null;
+        Map<String,Integer> dataTypesMiniMap = null;
+        for (String entry : parse(data, ';')) {
+            if (entry.startsWith("dts")) {
+                ingestTypesMiniMap = parseTypes(entry);
+            } else if (entry.startsWith("types")) {
+                dataTypesMiniMap = parseTypes(entry);
+            } else {
+                String[] entrySplits = parse(entry, ':');
+                entrySplits[1] = entrySplits[1].substring(1, entrySplits[1].length() - 1);
+                for (String aValue : parse(entrySplits[1], ',')) {
+                    String[] vs = Iterables.toArray(Splitter.on(':').omitEmptyStrings().trimResults().split(aValue), String.class);
+                    String ingestType = ingestTypesMiniMap.entrySet().stream().filter(e -> e.getValue().equals(Integer.valueOf(vs[0])))
+                                    .map(Map.Entry::getKey).findFirst().get();
+                    String dataType = dataTypesMiniMap.entrySet().stream().filter(e -> e.getValue().equals(Integer.valueOf(vs[1])))
+                                    .map(Map.Entry::getKey).findFirst().get();
+                    for (String r : Splitter.on(',').omitEmptyStrings().trimResults().split(dataType)) {
+                        typeMetadata.put(entrySplits[0], ingestType, r);
+                    }
+                }
+            }
+        }
+        return typeMetadata;
+    }
+    
+    private static String[] parse(String in, char c) {
+        List<String> list = Lists.newArrayList();
+        boolean inside = false;
+        int start = 0;
+        for (int i = 0; i < in.length(); i++) {
+            if (in.charAt(i) == '[')
+                inside = true;
+            if (in.charAt(i) == ']')
+                inside = false;
+            if (in.charAt(i) == c && !inside) {
+                list.add(in.substring(start, i));
+                start = i + 1;
+            }
+        }
+        list.add(in.substring(start));
+        return Iterables.toArray(list, String.class);
+    }
+    
+    private static Map<String,Integer> parseTypes(String typeEntry) {
+        String types = typeEntry.split(":\\[")[1];
+        Map<String,Integer> typeMap = new HashMap<>();
+        for (String entry : types.substring(0, types.length() - 1).split(",")) {
+            String[] entryParts = entry.split(":");
+            typeMap.put(entryParts[1], Integer.valueOf(entryParts[0]));
+        }
+        return typeMap;
+    }
+}
@@ -0,0 +1,166 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.Sets;
+
+public class PackedTypeMetadataTest {
+    
+    private TypeMetadata typeMetadata;
+    private PackedTypeMetadata packed;
+    
+    @BeforeEach
+    public void setup() {
+        typeMetadata = new TypeMetadata();
+        typeMetadata.put("FIELD1", "datatypeA", "LcType");
+        typeMetadata.put("FIELD1", "datatypeB", "DateType");
+        typeMetadata.put("FIELD2", "datatypeA", "IntegerType");
+        typeMetadata.put("FIELD2", "datatypeB", "LcType");
+        typeMetadata.put("FIELD2", "datatypeC", "NumberType");
+        typeMetadata.put("FIELD2", "datatypeC", "LcType");
+        typeMetadata.put("FIELD3", "datatypeC", "LcType");
+        packed = PackedTypeMetadata.of(typeMetadata);
+    }
+    
+    @Test
+    public void testSameAnswers() {
+        assertEquals(typeMetadata.keySet(), packed.keySet());
+        assertEquals(typeMetadata.size(), packed.size());
+        for (String field : Sets.newHashSet("FIELD1", "FIELD2", "FIELD3", "FIELD4", "")) {
+            assertEquals(typeMetadata.getNormalizerNamesForField(field), packed.getNormalizerNamesForField(field));
+            assertEquals(typeMetadata.getDataTypesForField(field), packed.getDataTypesForField(field));
+            for (String datatype : Sets.newHashSet("datatypeA", "datatypeB", "datatypeC", "datatypeD")) {
+                assertEquals(typeMetadata.getTypeMetadata(field, datatype), packed.getTypeMetadata(field, datatype));
+            }
+        }
+        assertEquals(typeMetadata.fold(), packed.fold());
+        assertEquals(typeMetadata.fold(Sets.newHashSet("datatypeA", "datatypeC")), packed.fold(Sets.newHashSet("datatypeA", "datatypeC")));
+    }
+    
+    @Test
+    public void testFilter() {
+        TypeMetadata filtered = packed.filter(Collections.singleton("datatypeC"));
+        assertEquals(Sets.newHashSet("FIELD2", "FIELD3"), filtered.keySet());
+        assertEquals(Sets.newHashSet("NumberType", "LcType"), filtered.getNormalizerNamesForField("FIELD2"));
+        assertEquals(Collections.singleton("datatypeC"), filtered.getDataTypesForField("FIELD2"));
+        assertEquals(1, filtered.size());
+        
+        assertSame(packed, packed.filter(null));
+        assertTrue(packed.filter(Collections.singleton("datatypeD")).isEmpty());
+    }
+    
+    @Test
+    public void testReduce() {
+        TypeMetadata reduced = packed.reduce(Sets.newHashSet("FIELD1", "FIELD4"));
+        assertEquals(Collections.singleton("FIELD1"), reduced.keySet());
+        assertEquals(Sets.newHashSet("datatypeA", "datatypeB"), reduced.getDataTypesForField("FIELD1"));
+        assertEquals(PackedTypeMetadata.of(typeMetadata.reduce(Sets.newHashSet("FIELD1", "FIELD4"))), reduced);
+        
+        assertSame(packed, packed.reduce(Sets.newHashSet("FIELD1", "FIELD2", "FIELD3")));
+        assertTrue(packed.reduce(Collections.emptySet()).isEmpty());
+    }
+    
+    @Test
+    public void testStringForms() throws Exception {
+        assertEquals(packed, PackedTypeMetadata.of(new TypeMetadata(packed.toString())));
+        assertEquals(packed, PackedTypeMetadata.of(new TypeMetadata(packed.toNewString(), true)));
+        assertEquals("dts:[0:datatypeA,1:datatypeB,2:datatypeC];types:[0:DateType,1:IntegerType,2:LcType,3:NumberType];FIELD1:[0:2,1:0];"
+                        + "FIELD2:[0:1,1:2,2:2,2:3];FIELD3:[2:2]", packed.toNewString());
+    }
+    
+    @Test
+    public void testFreeze() throws Exception {
+        PackedTypeMetadata frozen = PackedTypeMetadata.of(typeMetadata.freeze());
+        assertTrue(frozen.isFrozen());
+        assertFalse(packed.isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(packed, frozen);
+        
+        // the same answers, as the same immutable sets on every call
+        for (String field : Sets.newHashSet("FIELD1", "FIELD2", "FIELD3", "FIELD4")) {
+            assertEquals(typeMetadata.getNormalizerNamesForField(field), frozen.getNormalizerNamesForField(field));
+            assertEquals(typeMetadata.getDataTypesForField(field), frozen.getDataTypesForField(field));
+            assertSame(frozen.getNormalizerNamesForField(field), frozen.getNormalizerNamesForField(field));
+            assertSame(frozen.getDataTypesForField(field), frozen.getDataTypesForField(field));
+            for (String datatype : Sets.newHashSet("datatypeA", "datatypeB", "datatypeC", "datatypeD")) {
+                assertEquals(typeMetadata.getTypeMetadata(field, datatype), frozen.getTypeMetadata(field, datatype));
+                assertSame(frozen.getTypeMetadata(field, datatype), frozen.getTypeMetadata(field, datatype));
+            }
+        }
+        assertSame(frozen.keySet(), frozen.keySet());
+        assertThrows(UnsupportedOperationException.class, () -> frozen.getNormalizerNamesForField("FIELD2").add("DateType"));
+        
+        // equal sets are shared between fields
+        assertSame(frozen.getTypeMetadata("FIELD1", "datatypeA"), frozen.getTypeMetadata("FIELD3", "datatypeC"));
+        
+        // folds and filters are immutable and memoized for each filter
+        assertEquals(typeMetadata.fold(), frozen.fold());
+        assertSame(frozen.fold(), frozen.fold());
+        assertSame(frozen.fold(Sets.newHashSet("datatypeA", "datatypeC")), frozen.fold(Sets.newHashSet("datatypeC", "datatypeA")));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.fold().put("FIELD4", "LcType"));
+        assertSame(frozen.filter(Collections.singleton("datatypeC")), frozen.filter(Sets.newHashSet("datatypeC")));
+        
+        // filtering a frozen type metadata keeps it frozen
+        assertTrue(((PackedTypeMetadata) frozen.filter(Collections.singleton("datatypeC"))).isFrozen());
+        assertTrue(((PackedTypeMetadata) frozen.reduce(Collections.singleton("FIELD1"))).isFrozen());
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(frozen);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            PackedTypeMetadata read = (PackedTypeMetadata) in.readObject();
+            assertTrue(read.isFrozen());
+            assertEquals(frozen, read);
+        }
+    }
+    
+    @Test
+    public void testImmutable() {
+        assertThrows(UnsupportedOperationException.class, () -> packed.put("FIELD4", "datatypeA", "LcType"));
+        assertThrows(UnsupportedOperationException.class, () -> packed.keySet().add("FIELD4"));
+        
+        // a copy can be modified
+        TypeMetadata copy = new TypeMetadata(packed);
+        copy.put("FIELD4", "datatypeA", "LcType");
+        assertEquals(typeMetadata.fold().size() + 1, copy.fold().size());
+        assertFalse(packed.keySet().contains("FIELD4"));
+    }
+    
+    @Test
+    public void testEquals() {
+        PackedTypeMetadata.Builder builder = PackedTypeMetadata.builder();
+        // the order and duplicates of the entries do not matter
+        builder.put("FIELD3", "datatypeC", "LcType").put("FIELD2", "datatypeC", "LcType").put("FIELD2", "datatypeC", "NumberType");
+        builder.put("FIELD2", "datatypeB", "LcType").put("FIELD2", "datatypeA", "IntegerType").put("FIELD1", "datatypeB", "DateType");
+        builder.put("FIELD1", "datatypeA", "LcType").put("FIELD1", "datatypeA", "LcType");
+        assertEquals(packed, builder.build());
+        assertEquals(packed.hashCode(), builder.build().hashCode());
+        assertNotEquals(packed, builder.put("FIELD3", "datatypeA", "LcType").build());
+    }
+    
+    @Test
+    public void testSerialization() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(packed);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(packed, in.readObject());
+        }
+    }
+}
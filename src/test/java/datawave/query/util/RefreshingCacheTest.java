@@ -0,0 +1,139 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+public class RefreshingCacheTest {
+    
+    private final AtomicLong time = new AtomicLong();
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Callable<Integer> loader = loads::incrementAndGet;
+    
+    private RefreshingCacheManager cacheManager;
+    
+    @BeforeEach
+    public void setup() {
+        time.set(0);
+        pending.clear();
+        loads.set(0);
+        
+        cacheManager = new RefreshingCacheManager(RefreshingCacheManager.DEFAULT_CAFFEINE_SPEC, pending::add);
+        cacheManager.setRefreshIntervals(Collections.singletonMap("refreshed", Duration.ofMinutes(5)));
+        cacheManager.setTicker(time::get);
+    }
+    
+    private void runPending() {
+        while (!pending.isEmpty()) {
+            pending.poll().run();
+        }
+    }
+    
+    @Test
+    public void testServesPreviousValueWhileRefreshing() {
+        Cache cache = cacheManager.getCache("refreshed");
+        assertEquals(1, (int) cache.get("key", loader));
+        
+        time.addAndGet(Duration.ofMinutes(4).toNanos());
+        assertEquals(1, (int) cache.get("key", loader));
+        assertEquals(0, pending.size());
+        
+        // due for a refresh, which is scheduled once while the previous value is still served
+        time.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertEquals(1, (int) cache.get("key", loader));
+        assertEquals(1, cache.get("key").get());
+        assertEquals(1, pending.size());
+        
+        runPending();
+        assertEquals(2, (int) cache.get("key", loader));
+        assertEquals(0, pending.size());
+    }
+    
+    @Test
+    public void testNoRefreshByDefault() {
+        Cache cache = cacheManager.getCache("notRefreshed");
+        assertEquals(1, (int) cache.get("key", loader));
+        
+        time.addAndGet(Duration.ofDays(1).toNanos());
+        assertEquals(1, (int) cache.get("key", loader));
+        assertEquals(0, pending.size());
+    }
+    
+    @Test
+    public void testFailedRefreshKeepsPreviousValue() {
+        Cache cache = cacheManager.getCache("refreshed");
+        AtomicInteger calls = new AtomicInteger();
+        Callable<String> failing = () -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("metadata table is unavailable");
+            }
+            return "value";
+        };
+        assertEquals("value", cache.get("key", failing));
+        
+        time.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertEquals("value", cache.get("key", failing));
+        runPending();
+        assertEquals("value", cache.get("key", failing));
+        
+        // the refresh is retried on a later access
+        assertEquals(1, pending.size());
+    }
+    
+    @Test
+    public void testFailedInitialLoad() {
+        Cache cache = cacheManager.getCache("refreshed");
+        assertThrows(Cache.ValueRetrievalException.class, () -> cache.get("key", () -> {
+            throw new IllegalStateException("metadata table is unavailable");
+        }));
+        assertNull(cache.get("key"));
+    }
+    
+    @Test
+    public void testPutKeepsLoader() {
+        Cache cache = cacheManager.getCache("refreshed");
+        assertEquals(1, (int) cache.get("key", loader));
+        
+        cache.put("key", 10);
+        assertEquals(10, (int) cache.get("key", loader));
+        
+        time.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertEquals(10, (int) cache.get("key", loader));
+        runPending();
+        assertEquals(2, (int) cache.get("key", loader));
+    }
+    
+    @Test
+    public void testRefreshAll() {
+        RefreshingCache cache = (RefreshingCache) cacheManager.getCache("notRefreshed");
+        assertEquals(1, (int) cache.get("key", loader));
+        cache.put("other", 10);
+        
+        cache.refreshAll();
+        assertEquals(1, (int) cache.get("key", loader));
+        assertNull(cache.get("other"));
+        
+        runPending();
+        assertEquals(2, (int) cache.get("key", loader));
+    }
+    
+    @Test
+    public void testNullValues() {
+        Cache cache = cacheManager.getCache("refreshed");
+        assertNull(cache.get("key", () -> null));
+        assertNull(cache.get("key").get());
+    }
+}
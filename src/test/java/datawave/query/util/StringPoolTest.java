@@ -0,0 +1,64 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.junit.jupiter.api.Test;
+
+public class StringPoolTest {
+    
+    @Test
+    public void testDedupes() {
+        StringPool pool = new StringPool();
+        String first = pool.get(new ArrayByteSequence("FIELD"));
+        String second = pool.get(new ArrayByteSequence("FIELD"));
+        assertEquals("FIELD", first);
+        assertSame(first, second);
+        assertEquals(1, pool.size());
+        
+        // a string that was interned is returned for its bytes, and the other way around
+        String datatype = new String("csv");
+        assertSame(datatype, pool.intern(datatype));
+        assertSame(datatype, pool.get(new ArrayByteSequence("csv")));
+        assertSame(first, pool.intern(new String("FIELD")));
+        assertEquals(2, pool.size());
+    }
+    
+    @Test
+    public void testOffsets() {
+        StringPool pool = new StringPool();
+        byte[] bytes = "csv\0datawave.data.type.LcNoDiacriticsType".getBytes(StandardCharsets.UTF_8);
+        ArrayByteSequence cq = new ArrayByteSequence(bytes, 0, bytes.length);
+        assertEquals("csv", pool.get(cq, 0, 3));
+        assertEquals("datawave.data.type.LcNoDiacriticsType", pool.get(cq, 4, bytes.length - 4));
+        
+        // a sequence that starts part way into its backing array
+        ArrayByteSequence offset = new ArrayByteSequence(bytes, 4, bytes.length - 4);
+        assertSame(pool.get(cq, 4, bytes.length - 4), pool.get(offset));
+        assertEquals("dat", pool.get(offset, 0, 3));
+    }
+    
+    @Test
+    public void testGrows() {
+        StringPool pool = new StringPool();
+        String[] values = new String[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = pool.get(new ArrayByteSequence("FIELD_" + i));
+        }
+        assertEquals(values.length, pool.size());
+        for (int i = 0; i < values.length; i++) {
+            assertSame(values[i], pool.get(new ArrayByteSequence("FIELD_" + i)));
+        }
+    }
+    
+    @Test
+    public void testMultibyte() {
+        StringPool pool = new StringPool();
+        String value = "FIELD_é中";
+        assertEquals(value, pool.get(new ArrayByteSequence(value.getBytes(StandardCharsets.UTF_8))));
+        assertSame(pool.intern(value), pool.get(new ArrayByteSequence(value.getBytes(StandardCharsets.UTF_8))));
+    }
+}
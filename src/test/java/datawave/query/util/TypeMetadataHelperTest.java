@@ -0,0 +1,152 @@
+package datawave.query.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import datawave.accumulo.inmemory.InMemoryAccumuloClient;
+import datawave.accumulo.inmemory.InMemoryInstance;
+
+class TypeMetadataHelperTest {
+    
+    private static final String TABLE_METADATA = "metadata";
+    private static final Authorizations ALL_AUTHS = new Authorizations("A", "B");
+    private static final String NULL_BYTE = "\0";
+    private static final Value NULL_VALUE = new Value(new byte[0]);
+    private static final String LC_TYPE = "datawave.data.type.LcNoDiacriticsType";
+    private static final String NUMBER_TYPE = "datawave.data.type.NumberType";
+    
+    private AccumuloClient accumuloClient;
+    private TypeMetadataHelper helper;
+    
+    @BeforeAll
+    static void beforeAll() throws URISyntaxException {
+        File dir = new File(Objects.requireNonNull(ClassLoader.getSystemClassLoader().getResource(".")).toURI());
+        File targetDir = dir.getParentFile();
+        System.setProperty("hadoop.home.dir", targetDir.getAbsolutePath());
+    }
+    
+    @BeforeEach
+    void setUp() throws AccumuloSecurityException, AccumuloException, TableExistsException, TableNotFoundException {
+        accumuloClient = new InMemoryAccumuloClient("root", new InMemoryInstance(TypeMetadataHelperTest.class.toString()));
+        accumuloClient.securityOperations().changeUserAuthorizations("root", ALL_AUTHS);
+        if (!accumuloClient.tableOperations().exists(TABLE_METADATA)) {
+            accumuloClient.tableOperations().create(TABLE_METADATA);
+        }
+        
+        Set<Authorizations> allMetadataAuths = Collections.singleton(ALL_AUTHS);
+        helper = new TypeMetadataHelper(Maps.newHashMap(), allMetadataAuths, accumuloClient, TABLE_METADATA, allMetadataAuths, false);
+        
+        try (BatchWriter writer = accumuloClient.createBatchWriter(TABLE_METADATA, new BatchWriterConfig())) {
+            Mutation m = new Mutation("PUBLIC");
+            m.put("t", "csv" + NULL_BYTE + LC_TYPE, NULL_VALUE);
+            writer.addMutation(m);
+            m = new Mutation("ALPHA");
+            m.put("t", "csv" + NULL_BYTE + LC_TYPE, new ColumnVisibility("A"), NULL_VALUE);
+            writer.addMutation(m);
+            m = new Mutation("BETA");
+            m.put("t", "wiki" + NULL_BYTE + NUMBER_TYPE, new ColumnVisibility("B"), NULL_VALUE);
+            writer.addMutation(m);
+            m = new Mutation("BOTH");
+            m.put("t", "csv" + NULL_BYTE + NUMBER_TYPE, new ColumnVisibility("A&B"), NULL_VALUE);
+            writer.addMutation(m);
+            m = new Mutation("EITHER");
+            m.put("t", "wiki" + NULL_BYTE + LC_TYPE, new ColumnVisibility("A|B"), NULL_VALUE);
+            writer.addMutation(m);
+        }
+    }
+    
+    @AfterEach
+    void tearDown() throws AccumuloException, TableNotFoundException, AccumuloSecurityException {
+        accumuloClient.tableOperations().deleteRows(TABLE_METADATA, null, null);
+    }
+    
+    @Test
+    void testTypeMetadataMap() throws TableNotFoundException {
+        Map<Set<String>,TypeMetadata> map = helper.getTypeMetadataMap(Collections.singleton(ALL_AUTHS));
+        assertEquals(Sets.newHashSet(Collections.emptySet(), Collections.singleton("A"), Collections.singleton("B"), Sets.newHashSet("A", "B")),
+                        map.keySet());
+        
+        assertEquals(Collections.singleton("PUBLIC"), map.get(Collections.emptySet()).keySet());
+        assertEquals(Sets.newHashSet("PUBLIC", "ALPHA", "EITHER"), map.get(Collections.singleton("A")).keySet());
+        assertEquals(Sets.newHashSet("PUBLIC", "BETA", "EITHER"), map.get(Collections.singleton("B")).keySet());
+        assertEquals(Sets.newHashSet("PUBLIC", "ALPHA", "BETA", "BOTH", "EITHER"), map.get(Sets.newHashSet("A", "B")).keySet());
+        
+        assertEquals(Collections.singleton(NUMBER_TYPE), map.get(Sets.newHashSet("A", "B")).getNormalizerNamesForField("BOTH"));
+        assertEquals(Collections.singleton(NUMBER_TYPE), map.get(Collections.singleton("B")).getNormalizerNamesForField("BETA"));
+    }
+    
+    @Test
+    void testTypeMetadataMapMatchesScanPerSubset() throws TableNotFoundException {
+        Map<Set<String>,TypeMetadata> map = helper.getTypeMetadataMap(Collections.singleton(ALL_AUTHS));
+        for (Map.Entry<Set<String>,TypeMetadata> entry : map.entrySet()) {
+            Authorizations auths = new Authorizations(entry.getKey().toArray(new String[0]));
+            TypeMetadata scanned = helper.getTypeMetadataForAuths(Collections.singleton(auths));
+            assertEquals(scanned.keySet(), entry.getValue().keySet());
+            for (String field : scanned.keySet()) {
+                assertEquals(scanned.getNormalizerNamesForField(field), entry.getValue().getNormalizerNamesForField(field));
+            }
+        }
+    }
+    
+    @Test
+    void testSubsetsWithTheSameVisibilitiesHaveSeparateTypeMetadata() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        accumuloClient.tableOperations().deleteRows(TABLE_METADATA, null, null);
+        try (BatchWriter writer = accumuloClient.createBatchWriter(TABLE_METADATA, new BatchWriterConfig())) {
+            Mutation m = new Mutation("ALPHA");
+            m.put("t", "csv" + NULL_BYTE + LC_TYPE, new ColumnVisibility("A"), NULL_VALUE);
+            writer.addMutation(m);
+        }
+        
+        Map<Set<String>,TypeMetadata> map = helper.getTypeMetadataMap(Collections.singleton(ALL_AUTHS));
+        assertEquals(map.get(Collections.singleton("A")), map.get(Sets.newHashSet("A", "B")));
+        assertEquals(map.get(Collections.emptySet()), map.get(Collections.singleton("B")));
+        assertEquals(Collections.emptySet(), map.get(Collections.singleton("B")).keySet());
+        
+        // modifying the type metadata of one subset does not change the others
+        assertNotSame(map.get(Collections.singleton("A")), map.get(Sets.newHashSet("A", "B")));
+        map.get(Collections.singleton("A")).put("GAMMA", "csv", LC_TYPE);
+        assertEquals(Collections.singleton("ALPHA"), map.get(Sets.newHashSet("A", "B")).keySet());
+    }
+    
+    @Test
+    void testTypeMetadataIsScannedOncePerHelper() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        PackedTypeMetadata frozen = helper.getFrozenTypeMetadata();
+        assertSame(frozen, helper.getFrozenTypeMetadata());
+        
+        // the helper is not proxied by the cache, so a field written after the first load is not seen by the later calls
+        try (BatchWriter writer = accumuloClient.createBatchWriter(TABLE_METADATA, new BatchWriterConfig())) {
+            Mutation m = new Mutation("GAMMA");
+            m.put("t", "csv" + NULL_BYTE + LC_TYPE, NULL_VALUE);
+            writer.addMutation(m);
+        }
+        assertEquals(frozen, helper.getTypeMetadata());
+        assertEquals(frozen.filter(Collections.singleton("csv")), helper.getTypeMetadata(Collections.singleton("csv")));
+    }
+}
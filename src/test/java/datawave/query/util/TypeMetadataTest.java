@@ -2,8 +2,13 @@ package datawave.query.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Collections;
 import java.util.Set;
 
@@ -135,4 +140,52 @@ public class TypeMetadataTest {
         assertTrue(reduced.keySet().contains("FIELD3"));
         assertEquals(reduced, typeMetadata);
     }
+    
+    @Test
+    public void testBinaryForm() {
+        TypeMetadata read = TypeMetadata.fromBytes(TypeMetadata.toBytes(typeMetadata));
+        assertEquals(typeMetadata, read);
+        assertEquals(typeMetadata.fold(), read.fold());
+        assertEquals(typeMetadata.keySet(), read.keySet());
+        
+        // the binary form is smaller than the string form it replaces
+        assertTrue(TypeMetadata.toBytes(typeMetadata).length < typeMetadata.toString().length());
+        
+        assertEquals(typeMetadata, TypeMetadata.fromOptionString(TypeMetadata.toOptionString(typeMetadata)));
+        assertTrue(TypeMetadata.fromBytes(TypeMetadata.toBytes(new TypeMetadata())).isEmpty());
+    }
+    
+    @Test
+    public void testJavaSerialization() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(typeMetadata);
+            out.writeObject(TypeMetadata.emptyTypeMetadata());
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            TypeMetadata read = (TypeMetadata) in.readObject();
+            assertEquals(typeMetadata, read);
+            assertEquals(typeMetadata.getNormalizerNamesForField("FIELD2"), read.getNormalizerNamesForField("FIELD2"));
+            assertTrue(TypeMetadata.emptyTypeMetadata() == in.readObject());
+        }
+    }
+    
+    @Test
+    public void testEquality() {
+        // equal entries make equal type metadata, however they are stored
+        TypeMetadata packed = PackedTypeMetadata.of(typeMetadata);
+        assertEquals(typeMetadata, packed);
+        assertEquals(packed, typeMetadata);
+        assertEquals(typeMetadata.hashCode(), packed.hashCode());
+        assertEquals(TypeMetadata.emptyTypeMetadata(), new TypeMetadata());
+        assertEquals(new TypeMetadata(), TypeMetadata.emptyTypeMetadata());
+        
+        // the cached hash follows a change
+        TypeMetadata copy = new TypeMetadata(typeMetadata);
+        int hashCode = copy.hashCode();
+        copy.put("FIELD3", "datatypeA", "LcType");
+        assertNotEquals(hashCode, copy.hashCode());
+        assertNotEquals(typeMetadata, copy);
+        assertNotEquals(copy, packed);
+    }
 }